@@ -1,8 +1,14 @@
 package com.aliwudi.marketplace.backend.lgtmed.controller;
 
 import com.aliwudi.marketplace.backend.common.model.Delivery;
+import com.aliwudi.marketplace.backend.common.model.DeliveryEvent;
+import com.aliwudi.marketplace.backend.lgtmed.dto.CarrierScan;
+import com.aliwudi.marketplace.backend.lgtmed.dto.CarrierScanResult;
+import com.aliwudi.marketplace.backend.lgtmed.dto.DeliveryPlanSummary;
 import com.aliwudi.marketplace.backend.lgtmed.dto.DeliveryRequest;
 import com.aliwudi.marketplace.backend.lgtmed.dto.DeliveryUpdateRequest;
+import com.aliwudi.marketplace.backend.lgtmed.service.DeliveryPlanningService;
+import com.aliwudi.marketplace.backend.lgtmed.service.DeliveryScanIngestionService;
 import com.aliwudi.marketplace.backend.lgtmed.service.DeliveryService;
 import com.aliwudi.marketplace.backend.common.exception.DeliveryNotFoundException;
 import com.aliwudi.marketplace.backend.common.exception.InvalidDeliveryDataException;
@@ -12,6 +18,8 @@ import com.aliwudi.marketplace.backend.common.status.DeliveryStatus; // For Deli
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus; // For @ResponseStatus
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Mono;
@@ -32,6 +40,11 @@ import static com.aliwudi.marketplace.backend.common.constants.ApiConstants.*;
 public class DeliveryController {
 
     private final DeliveryService deliveryService;
+    private final DeliveryScanIngestionService deliveryScanIngestionService;
+    private final DeliveryPlanningService deliveryPlanningService;
+
+    // Sent by SSE clients on reconnect
+    private static final String LAST_EVENT_ID_HEADER = "Last-Event-ID";
     // Removed direct injection of OrderIntegrationService as its usage is now confined to DeliveryService's prepareDto
 
     /**
@@ -101,6 +114,49 @@ public class DeliveryController {
         // Exceptions are handled by GlobalExceptionHandler.
     }
 
+    /**
+     * Endpoint to retrieve the tracking history of a delivery, oldest event
+     * first. Streamed as it is read; request application/x-ndjson to receive
+     * one event per line instead of a JSON array.
+     *
+     * @param trackingNumber The tracking number.
+     * @return A Flux emitting the delivery's events in the order they happened.
+     * @throws IllegalArgumentException if tracking number is invalid.
+     * @throws DeliveryNotFoundException if the delivery is not found.
+     */
+    @GetMapping(DELIVERY_GET_TIMELINE)
+    @ResponseStatus(HttpStatus.OK)
+    public Flux<DeliveryEvent> getDeliveryTimeline(@PathVariable String trackingNumber) {
+        if (trackingNumber == null || trackingNumber.isBlank()) {
+            throw new IllegalArgumentException(ApiResponseMessages.INVALID_TRACKING_NUMBER);
+        }
+        return deliveryService.getDeliveryTimeline(trackingNumber);
+        // Exceptions are handled by GlobalExceptionHandler.
+    }
+
+    /**
+     * Endpoint to watch a delivery live (SSE), instead of polling it. Sends
+     * the delivery's current state as a "delivery" event, then each change as
+     * a "tracking" event.
+     *
+     * @param trackingNumber The tracking number.
+     * @param lastEventId Sent by reconnecting clients; the missed changes are replayed.
+     * @return A Flux emitting ServerSentEvents.
+     * @throws IllegalArgumentException if tracking number is invalid.
+     * @throws DeliveryNotFoundException if the delivery is not found.
+     */
+    @GetMapping(value = DELIVERY_TRACK_STREAM, produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @ResponseStatus(HttpStatus.OK)
+    public Flux<ServerSentEvent<Object>> streamDeliveryTracking(
+            @PathVariable String trackingNumber,
+            @RequestHeader(value = LAST_EVENT_ID_HEADER, required = false) String lastEventId) {
+        if (trackingNumber == null || trackingNumber.isBlank()) {
+            throw new IllegalArgumentException(ApiResponseMessages.INVALID_TRACKING_NUMBER);
+        }
+        return deliveryService.getTrackingStream(trackingNumber, lastEventId);
+        // Exceptions are handled by GlobalExceptionHandler.
+    }
+
     /**
      * Endpoint to update the status of an existing delivery.
      *
@@ -127,6 +183,25 @@ public class DeliveryController {
         // Exceptions are handled by GlobalExceptionHandler.
     }
 
+    /**
+     * Endpoint to ingest a carrier scan feed: a stream of status updates,
+     * as NDJSON (one scan per line) or a JSON array. Scans are applied in
+     * batches, without the per-update order lookup of update-status, and one
+     * result per scan is streamed back in feed order.
+     *
+     * @param scans The scans, in the order the carrier made them.
+     * @return A Flux emitting one result per scan.
+     */
+    @PostMapping(value = DELIVERY_INGEST_SCANS,
+            consumes = { MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE },
+            produces = { MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE })
+    @ResponseStatus(HttpStatus.OK)
+    @PreAuthorize("hasRole('" + ROLE_ADMIN + "') or hasRole('" + ROLE_DELIVERY_AGENT + "')")
+    public Flux<CarrierScanResult> ingestCarrierScans(@RequestBody Flux<CarrierScan> scans) {
+        return deliveryScanIngestionService.ingest(scans);
+        // Invalid scans are reported in the results; malformed input is handled by GlobalExceptionHandler.
+    }
+
     /**
      * Endpoint to cancel a delivery.
      *
@@ -169,6 +244,21 @@ public class DeliveryController {
         // Exceptions are handled by GlobalExceptionHandler.
     }
 
+    /**
+     * Endpoint to plan all PENDING deliveries now, instead of waiting for the
+     * next scheduled planning run: each is assigned to a delivery agent with
+     * capacity in its region and marked SCHEDULED.
+     *
+     * @return A Mono emitting what the planning run did.
+     */
+    @PostMapping(DELIVERY_ADMIN_PLAN)
+    @ResponseStatus(HttpStatus.OK)
+    @PreAuthorize("hasRole('" + ROLE_ADMIN + "')")
+    public Mono<DeliveryPlanSummary> planPendingDeliveries() {
+        return deliveryPlanningService.planPending();
+        // Errors are handled by GlobalExceptionHandler.
+    }
+
     // --- NEW: Controller Endpoints for all DeliveryRepository methods ---
 
     /**
@@ -1,15 +1,33 @@
 package com.aliwudi.marketplace.backend.lgtmed.controller;
 
 import com.aliwudi.marketplace.backend.common.model.MediaAsset;
+import com.aliwudi.marketplace.backend.lgtmed.dto.EntityMediaAssets;
+import com.aliwudi.marketplace.backend.lgtmed.dto.MediaBatchRequest;
+import com.aliwudi.marketplace.backend.lgtmed.dto.MediaContent;
 import com.aliwudi.marketplace.backend.lgtmed.dto.MediaUploadRequest;
+import com.aliwudi.marketplace.backend.lgtmed.dto.ResumableUploadRequest;
+import com.aliwudi.marketplace.backend.lgtmed.dto.ResumableUploadStatus;
+import com.aliwudi.marketplace.backend.lgtmed.image.ImageVariant;
 import com.aliwudi.marketplace.backend.lgtmed.service.MediaService;
+import com.aliwudi.marketplace.backend.lgtmed.service.ResumableUploadService;
 import com.aliwudi.marketplace.backend.common.exception.MediaAssetNotFoundException;
 import com.aliwudi.marketplace.backend.common.exception.InvalidMediaDataException;
 import com.aliwudi.marketplace.backend.common.response.ApiResponseMessages;
 
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.multipart.FilePartEvent;
+import org.springframework.http.codec.multipart.FormPartEvent;
+import org.springframework.http.codec.multipart.PartEvent;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Mono;
@@ -18,7 +36,15 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
 
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.Principal;
+import java.time.Duration;
+import java.time.ZoneId;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 // Static import for API path constants and roles
 import static com.aliwudi.marketplace.backend.common.constants.ApiConstants.*;
@@ -28,7 +54,14 @@ import static com.aliwudi.marketplace.backend.common.constants.ApiConstants.*;
 @RequiredArgsConstructor
 public class MediaController {
 
+    // Raster image types browsers display without running anything; everything else is downloaded as an attachment
+    private static final Set<String> INLINE_CONTENT_TYPES = Set.of("image/jpeg", "image/png", "image/webp", "image/gif");
+
     private final MediaService mediaService;
+    private final ResumableUploadService resumableUploadService;
+
+    @Value("${media.download.cache-max-age:365d}")
+    private Duration downloadCacheMaxAge;
 
     /**
      * Endpoint to upload a new media asset.
@@ -38,7 +71,7 @@ public class MediaController {
      * @throws IllegalArgumentException if input validation fails.
      * @throws InvalidMediaDataException if file type is unsupported, content is invalid, or duplicate unique file name.
      */
-    @PostMapping(MEDIA_UPLOAD) // MODIFIED
+    @PostMapping(value = MEDIA_UPLOAD, consumes = MediaType.APPLICATION_JSON_VALUE) // MODIFIED
     @ResponseStatus(HttpStatus.CREATED) // HTTP 201 Created
     @PreAuthorize("hasRole('" + ROLE_ADMIN + "') or hasRole('" + ROLE_SELLER + "') or hasRole('" + ROLE_USER + "')") // MODIFIED
     public Mono<MediaAsset> uploadMedia(@Valid @RequestBody MediaUploadRequest request) {
@@ -55,6 +88,133 @@ public class MediaController {
         // Exceptions (InvalidMediaDataException) are handled by GlobalExceptionHandler.
     }
 
+    /**
+     * Endpoint to upload a new media asset as multipart/form-data: the
+     * entityId and entityType form fields (optionally assetName and fileType),
+     * followed by the file part. The file is streamed to storage as it is
+     * received, without being buffered in memory or on disk first.
+     *
+     * @param parts The multipart events of the request.
+     * @return A Mono emitting the created MediaAsset.
+     * @throws IllegalArgumentException if required form fields or the file part are missing.
+     * @throws InvalidMediaDataException if file type is unsupported, the file is too large, or duplicate unique file name.
+     */
+    @PostMapping(value = MEDIA_UPLOAD, consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @ResponseStatus(HttpStatus.CREATED) // HTTP 201 Created
+    @PreAuthorize("hasRole('" + ROLE_ADMIN + "') or hasRole('" + ROLE_SELLER + "') or hasRole('" + ROLE_USER + "')")
+    public Mono<MediaAsset> uploadMediaMultipart(@RequestBody Flux<PartEvent> parts) {
+        Map<String, String> fields = new HashMap<>();
+        return parts.windowUntil(PartEvent::isLast)
+                .concatMap(part -> part.switchOnFirst((first, events) -> {
+                    if (first.get() instanceof FormPartEvent field) {
+                        fields.put(field.name(), field.value());
+                        return events.then(Mono.<MediaAsset>empty());
+                    }
+                    if (first.get() instanceof FilePartEvent file) {
+                        MediaUploadRequest request = MediaUploadRequest.builder()
+                                .assetName(fields.getOrDefault("assetName", file.filename()))
+                                .fileType(fields.getOrDefault("fileType", String.valueOf(file.headers().getContentType())))
+                                .entityId(fields.get("entityId"))
+                                .entityType(fields.get("entityType"))
+                                .build();
+                        if (request.getAssetName() == null || request.getAssetName().isBlank()
+                                || request.getEntityId() == null || request.getEntityId().isBlank()
+                                || request.getEntityType() == null || request.getEntityType().isBlank()) {
+                            return Mono.error(new IllegalArgumentException(ApiResponseMessages.INVALID_MEDIA_MULTIPART_UPLOAD));
+                        }
+                        return mediaService.uploadMedia(request, events.map(PartEvent::content));
+                    }
+                    return events.then(Mono.<MediaAsset>empty()); // Empty part
+                }))
+                .next() // Only the first file part is stored
+                .switchIfEmpty(Mono.error(new IllegalArgumentException(ApiResponseMessages.MISSING_MEDIA_FILE_PART)));
+        // Exceptions (InvalidMediaDataException) are handled by GlobalExceptionHandler.
+    }
+
+    /**
+     * Endpoint to start a resumable upload, for large files: the file is then
+     * sent chunk by chunk and the upload completed once all chunks arrived.
+     *
+     * @param request The asset details and the file size.
+     * @return A Mono emitting the new upload, with its chunk layout.
+     * @throws InvalidMediaDataException if file type is unsupported or the file is too large.
+     */
+    @PostMapping(MEDIA_UPLOADS)
+    @ResponseStatus(HttpStatus.CREATED) // HTTP 201 Created
+    @PreAuthorize("hasRole('" + ROLE_ADMIN + "') or hasRole('" + ROLE_SELLER + "') or hasRole('" + ROLE_USER + "')")
+    public Mono<ResumableUploadStatus> initiateResumableUpload(@Valid @RequestBody ResumableUploadRequest request, Principal principal) {
+        return resumableUploadService.initiate(request, principal.getName());
+        // Exceptions (InvalidMediaDataException) are handled by GlobalExceptionHandler.
+    }
+
+    /**
+     * Endpoint to get the progress of a resumable upload, i.e. which chunks
+     * a resuming client still has to send.
+     *
+     * @param uploadId The upload ID.
+     * @return A Mono emitting the upload's progress.
+     * @throws MediaAssetNotFoundException if the upload does not exist, or was started by another user.
+     */
+    @GetMapping(MEDIA_UPLOAD_SESSION)
+    @ResponseStatus(HttpStatus.OK)
+    @PreAuthorize("hasRole('" + ROLE_ADMIN + "') or hasRole('" + ROLE_SELLER + "') or hasRole('" + ROLE_USER + "')")
+    public Mono<ResumableUploadStatus> getResumableUpload(@PathVariable String uploadId, Principal principal) {
+        return resumableUploadService.getStatus(uploadId, principal.getName());
+        // Exceptions are handled by GlobalExceptionHandler.
+    }
+
+    /**
+     * Endpoint to send one chunk of a resumable upload as the raw request
+     * body. Idempotent: a chunk may be sent again, e.g. after a timeout.
+     *
+     * @param uploadId The upload ID.
+     * @param chunkIndex The chunk number, from 0.
+     * @param content The chunk bytes.
+     * @return A Mono emitting the upload's progress.
+     * @throws MediaAssetNotFoundException if the upload does not exist, or was started by another user.
+     * @throws InvalidMediaDataException if the upload is not active or held by another node, or the chunk index or size is wrong.
+     */
+    @PutMapping(MEDIA_UPLOAD_CHUNK)
+    @ResponseStatus(HttpStatus.OK)
+    @PreAuthorize("hasRole('" + ROLE_ADMIN + "') or hasRole('" + ROLE_SELLER + "') or hasRole('" + ROLE_USER + "')")
+    public Mono<ResumableUploadStatus> uploadChunk(@PathVariable String uploadId, @PathVariable int chunkIndex,
+                                                   @RequestBody Flux<DataBuffer> content, Principal principal) {
+        return resumableUploadService.uploadChunk(uploadId, principal.getName(), chunkIndex, content);
+        // Exceptions are handled by GlobalExceptionHandler.
+    }
+
+    /**
+     * Endpoint to complete a resumable upload once all chunks are sent. The
+     * chunks are assembled into the media asset. Idempotent.
+     *
+     * @param uploadId The upload ID.
+     * @return A Mono emitting the completed upload, with its asset.
+     * @throws MediaAssetNotFoundException if the upload does not exist.
+     * @throws InvalidMediaDataException if chunks are missing or the upload is already being completed.
+     */
+    @PostMapping(MEDIA_UPLOAD_COMPLETE)
+    @ResponseStatus(HttpStatus.OK)
+    @PreAuthorize("hasRole('" + ROLE_ADMIN + "') or hasRole('" + ROLE_SELLER + "') or hasRole('" + ROLE_USER + "')")
+    public Mono<ResumableUploadStatus> completeResumableUpload(@PathVariable String uploadId, Principal principal) {
+        return resumableUploadService.complete(uploadId, principal.getName());
+        // Exceptions are handled by GlobalExceptionHandler.
+    }
+
+    /**
+     * Endpoint to abort a resumable upload, deleting the chunks sent so far.
+     *
+     * @param uploadId The upload ID.
+     * @return A Mono<Void> indicating completion (HTTP 204 No Content).
+     * @throws MediaAssetNotFoundException if the upload does not exist.
+     */
+    @DeleteMapping(MEDIA_UPLOAD_SESSION)
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    @PreAuthorize("hasRole('" + ROLE_ADMIN + "') or hasRole('" + ROLE_SELLER + "') or hasRole('" + ROLE_USER + "')")
+    public Mono<Void> abortResumableUpload(@PathVariable String uploadId, Principal principal) {
+        return resumableUploadService.abort(uploadId, principal.getName());
+        // Exceptions are handled by GlobalExceptionHandler.
+    }
+
     /**
      * Endpoint to retrieve a media asset by its unique file name.
      *
@@ -73,6 +233,76 @@ public class MediaController {
         // Exceptions are handled by GlobalExceptionHandler.
     }
 
+    /**
+     * Endpoint to download the content of a media asset.
+     *
+     * Local files are sent with zero-copy file transfer. Range requests get
+     * 206 Partial Content, and the response carries a strong ETag (the
+     * content hash) and Last-Modified, so If-None-Match / If-Modified-Since
+     * get 304 Not Modified. When the storage backend serves content itself,
+     * the client is redirected to the asset's URL. Only raster images are
+     * served inline; other content (PDF, audio, video, and SVG uploaded before
+     * SVG was refused) is sent as an attachment, and browsers are told not to
+     * sniff a different type from the content.
+     *
+     * @param uniqueFileName The unique file name.
+     * @return A Mono emitting the content response.
+     * @throws MediaAssetNotFoundException if the media asset or its content is not found.
+     */
+    @GetMapping(MEDIA_DOWNLOAD)
+    public Mono<ResponseEntity<Resource>> downloadMedia(@PathVariable String uniqueFileName) {
+        if (uniqueFileName == null || uniqueFileName.isBlank()) {
+            throw new IllegalArgumentException(ApiResponseMessages.INVALID_UNIQUE_FILE_NAME);
+        }
+        return mediaService.getMediaContent(uniqueFileName).map(this::toContentResponse);
+        // Exceptions are handled by GlobalExceptionHandler.
+    }
+
+    /**
+     * Endpoint to download a resized variant (thumbnail, card, full) of an
+     * image asset, generated on first request if needed. Served like the
+     * original; assets without variants redirect to the original.
+     *
+     * @param uniqueFileName The unique file name.
+     * @param variant The variant name.
+     * @return A Mono emitting the content response.
+     * @throws IllegalArgumentException if the variant is unknown.
+     * @throws MediaAssetNotFoundException if the media asset is not found.
+     */
+    @GetMapping(MEDIA_DOWNLOAD_VARIANT)
+    public Mono<ResponseEntity<Resource>> downloadMediaVariant(@PathVariable String uniqueFileName, @PathVariable String variant) {
+        if (uniqueFileName == null || uniqueFileName.isBlank()) {
+            throw new IllegalArgumentException(ApiResponseMessages.INVALID_UNIQUE_FILE_NAME);
+        }
+        return mediaService.getMediaVariant(uniqueFileName, ImageVariant.fromPathValue(variant)).map(this::toContentResponse);
+        // Exceptions are handled by GlobalExceptionHandler.
+    }
+
+    private ResponseEntity<Resource> toContentResponse(MediaContent media) {
+        MediaAsset asset = media.asset();
+        if (media.content() == null) {
+            return ResponseEntity.status(HttpStatus.FOUND).location(URI.create(asset.getUrl())).build();
+        }
+        // Conditional requests (304) and Range requests (206) are answered by WebFlux from these headers
+        MediaType contentType = MediaType.parseMediaType(media.contentType());
+        ContentDisposition.Builder disposition = INLINE_CONTENT_TYPES.contains(contentType.getType() + "/" + contentType.getSubtype())
+                ? ContentDisposition.inline()
+                : ContentDisposition.attachment();
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(contentType)
+                .cacheControl(CacheControl.maxAge(downloadCacheMaxAge).cachePublic().immutable())
+                .header(HttpHeaders.CONTENT_DISPOSITION, disposition
+                        .filename(asset.getAssetName(), StandardCharsets.UTF_8).build().toString())
+                .header("X-Content-Type-Options", "nosniff");
+        if (media.contentHash() != null) {
+            response.eTag(media.contentHash());
+        }
+        if (asset.getUploadTime() != null) {
+            response.lastModified(asset.getUploadTime().atZone(ZoneId.systemDefault()));
+        }
+        return response.body(media.content());
+    }
+
     /**
      * Endpoint to retrieve media assets for a specific entity with pagination.
      *
@@ -106,6 +336,22 @@ public class MediaController {
         // Errors are handled by GlobalExceptionHandler.
     }
 
+    /**
+     * Endpoint to retrieve the media assets of many entities in one call,
+     * e.g. every product of a listing page, instead of one list call and one
+     * count call per entity.
+     *
+     * @param request The entities (at most 500).
+     * @return A Flux emitting the assets of each entity, grouped, in request order.
+     * @throws IllegalArgumentException if the entity list is invalid.
+     */
+    @PostMapping(MEDIA_GET_FOR_ENTITIES)
+    @ResponseStatus(HttpStatus.OK)
+    public Flux<EntityMediaAssets> getMediaAssetsForEntities(@Valid @RequestBody MediaBatchRequest request) {
+        return mediaService.getMediaAssetsForEntities(request.getEntities());
+        // Errors are handled by GlobalExceptionHandler.
+    }
+
     /**
      * Endpoint to count media assets for a specific entity.
      *
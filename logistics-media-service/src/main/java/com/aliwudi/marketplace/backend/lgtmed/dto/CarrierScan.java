@@ -0,0 +1,24 @@
+package com.aliwudi.marketplace.backend.lgtmed.dto;
+
+import com.aliwudi.marketplace.backend.common.status.DeliveryStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * One status update of a carrier scan feed.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CarrierScan {
+    private String trackingNumber;
+    private DeliveryStatus status;
+    private String location; // Optional
+    private String notes; // Optional
+    private LocalDateTime scannedAt; // Optional; defaults to the time the scan is received
+}
@@ -0,0 +1,27 @@
+package com.aliwudi.marketplace.backend.lgtmed.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * The outcome of one scan of a carrier scan feed.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CarrierScanResult {
+    private long index; // Position of the scan in the feed, from 0
+    private String trackingNumber;
+    private Outcome outcome;
+    private String message; // Why the scan was not applied
+
+    public enum Outcome {
+        APPLIED,
+        REJECTED, // Invalid scan or status transition
+        NOT_FOUND, // No delivery with this tracking number
+        FAILED // Its batch could not be written; nothing of it was applied, it can be sent again
+    }
+}
@@ -0,0 +1,22 @@
+package com.aliwudi.marketplace.backend.lgtmed.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+/**
+ * The outcome of a delivery planning run.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DeliveryPlanSummary {
+    private int considered; // PENDING deliveries looked at
+    private int assigned; // Deliveries assigned to an agent and SCHEDULED
+    private int unassigned; // Deliveries no agent had capacity for; still PENDING
+    private Map<String, Integer> assignedByAgent;
+}
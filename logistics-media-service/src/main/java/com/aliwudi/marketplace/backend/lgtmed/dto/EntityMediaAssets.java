@@ -0,0 +1,23 @@
+package com.aliwudi.marketplace.backend.lgtmed.dto;
+
+import com.aliwudi.marketplace.backend.common.model.MediaAsset;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * The media assets of one entity, in a batch lookup response.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class EntityMediaAssets {
+    private String entityType;
+    private String entityId;
+    private long count; // Number of assets of the entity
+    private List<MediaAsset> assets;
+}
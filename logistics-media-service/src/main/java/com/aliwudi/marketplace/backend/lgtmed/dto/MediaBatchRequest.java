@@ -0,0 +1,37 @@
+package com.aliwudi.marketplace.backend.lgtmed.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * DTO for looking up the media assets of many entities in one call, e.g. all
+ * products of a listing page.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MediaBatchRequest {
+
+    @NotEmpty(message = "At least one entity is required")
+    @Size(max = 500, message = "A batch cannot contain more than 500 entities")
+    private List<@Valid EntityRef> entities;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class EntityRef {
+
+        @NotBlank(message = "Entity type cannot be blank (e.g., PRODUCT, USER)")
+        private String entityType;
+
+        @NotBlank(message = "Entity ID cannot be blank")
+        private String entityId;
+    }
+}
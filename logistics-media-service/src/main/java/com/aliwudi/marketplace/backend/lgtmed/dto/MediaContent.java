@@ -0,0 +1,18 @@
+package com.aliwudi.marketplace.backend.lgtmed.dto;
+
+import com.aliwudi.marketplace.backend.common.model.MediaAsset;
+import org.springframework.core.io.Resource;
+
+/**
+ * A media asset together with its content (the original or an image
+ * variant), for download.
+ *
+ * @param asset The media asset.
+ * @param content The content, or null if it is served from the asset's URL
+ *                instead (storage backend serving content itself, or image
+ *                without variants).
+ * @param contentType The MIME type of the content.
+ * @param contentHash The hash identifying the content (the ETag), or null if unknown.
+ */
+public record MediaContent(MediaAsset asset, Resource content, String contentType, String contentHash) {
+}
@@ -0,0 +1,32 @@
+package com.aliwudi.marketplace.backend.lgtmed.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Positive;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO for starting a resumable upload: the asset details, and the size of
+ * the file that will be sent in chunks.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ResumableUploadRequest {
+
+    @NotBlank(message = "Asset name cannot be blank")
+    private String assetName;
+
+    @NotBlank(message = "File type cannot be blank (e.g., image/jpeg, video/mp4)")
+    private String fileType;
+
+    @NotBlank(message = "Entity ID cannot be blank")
+    private String entityId;
+
+    @NotBlank(message = "Entity type cannot be blank (e.g., PRODUCT, USER)")
+    private String entityType;
+
+    @Positive(message = "Total size must be positive")
+    private long totalSize; // File size in bytes
+}
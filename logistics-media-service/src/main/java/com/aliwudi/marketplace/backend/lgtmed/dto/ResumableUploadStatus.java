@@ -0,0 +1,31 @@
+package com.aliwudi.marketplace.backend.lgtmed.dto;
+
+import com.aliwudi.marketplace.backend.common.model.MediaAsset;
+import com.aliwudi.marketplace.backend.common.status.MediaUploadStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * The progress of a resumable upload. Chunk N covers bytes
+ * [N * chunkSize, min((N + 1) * chunkSize, totalSize)); a client resumes by
+ * sending the chunks missing from receivedChunks.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ResumableUploadStatus {
+    private String uploadId;
+    private MediaUploadStatus status;
+    private long totalSize;
+    private long chunkSize;
+    private int totalChunks;
+    private List<Integer> receivedChunks;
+    private LocalDateTime expiresAt;
+    private MediaAsset asset; // Set once completed
+}
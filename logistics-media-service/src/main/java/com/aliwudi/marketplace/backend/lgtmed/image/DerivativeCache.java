@@ -0,0 +1,210 @@
+package com.aliwudi.marketplace.backend.lgtmed.image;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Disk-backed LRU cache of generated image variants.
+ *
+ * Files live under the cache directory as &lt;variant&gt;/&lt;2 chars&gt;/&lt;key&gt;.&lt;ext&gt;.
+ * The access order and total size are tracked in memory; when the total goes
+ * over max-size, the least recently served files are deleted. Evicted files
+ * are deleted after delete-delay rather than at once, so that a file looked up
+ * just before its eviction can still be sent; a file cached again meanwhile is
+ * kept. On startup the index is rebuilt from the directory, oldest files first.
+ */
+@Component
+@Slf4j
+public class DerivativeCache {
+
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final Path root;
+    private final long maxBytes;
+    private final Duration deleteDelay;
+
+    // File -> size, in access order (least recently used first); guarded by this
+    private final LinkedHashMap<Path, Long> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private long totalBytes;
+
+    public DerivativeCache(@Value("${media.derivatives.cache.directory:./media-derivatives}") String directory,
+                           @Value("${media.derivatives.cache.max-size:2GB}") DataSize maxSize,
+                           @Value("${media.derivatives.cache.delete-delay:1m}") Duration deleteDelay) throws IOException {
+        this.root = Paths.get(directory).toAbsolutePath().normalize();
+        this.maxBytes = maxSize.toBytes();
+        this.deleteDelay = deleteDelay;
+        Files.createDirectories(this.root);
+    }
+
+    @PostConstruct
+    public void load() throws IOException {
+        List<Path> abandoned = new ArrayList<>();
+        try (Stream<Path> files = Files.walk(root)) {
+            files.filter(Files::isRegularFile)
+                    .map(file -> Map.entry(file, attributes(file)))
+                    .filter(entry -> entry.getValue() != null)
+                    .sorted(Comparator.comparing(entry -> entry.getValue().lastModifiedTime()))
+                    .forEach(entry -> {
+                        if (entry.getKey().getFileName().toString().endsWith(TEMP_SUFFIX)) {
+                            abandoned.add(entry.getKey()); // Left by a generation interrupted by a restart
+                        } else {
+                            synchronized (this) {
+                                entries.put(entry.getKey(), entry.getValue().size());
+                                totalBytes += entry.getValue().size();
+                            }
+                        }
+                    });
+        }
+        abandoned.forEach(DerivativeCache::deleteQuietly);
+        deleteAll(evictOverflow());
+        log.info("Image derivative cache at {}: {} file(s), {} bytes", root, entries.size(), totalBytes);
+    }
+
+    /**
+     * @param key The storage key of the original.
+     * @param variant The variant.
+     * @param extension The file extension of the variant's format.
+     * @return Where the variant of the original is cached.
+     */
+    Path path(String key, ImageVariant variant, String extension) {
+        Path file = root.resolve(variant.pathValue()).resolve(key.substring(0, 2)).resolve(key + "." + extension).normalize();
+        if (!file.startsWith(root)) {
+            throw new IllegalArgumentException("Invalid derivative cache key: " + key);
+        }
+        return file;
+    }
+
+    /**
+     * Looks a file up, marking it as recently used.
+     *
+     * @param file A path returned by path().
+     * @return The file if it is cached, or null.
+     */
+    synchronized Path get(Path file) {
+        return entries.get(file) != null ? file : null;
+    }
+
+    /**
+     * @param file A path returned by path().
+     * @return A temporary file to generate the variant into, before moving it to file.
+     */
+    Path tempFile(Path file) {
+        return file.resolveSibling(file.getFileName() + "." + System.nanoTime() + TEMP_SUFFIX);
+    }
+
+    /**
+     * Registers a file that was just written, evicting the least recently
+     * used files if the cache is over its size.
+     *
+     * @param file The cached file.
+     * @param size Its size in bytes.
+     */
+    void put(Path file, long size) {
+        List<Path> evicted;
+        synchronized (this) {
+            Long previous = entries.put(file, size);
+            totalBytes += size - (previous != null ? previous : 0);
+            evicted = evictOverflow();
+        }
+        deleteAll(evicted);
+    }
+
+    /**
+     * Forgets a file that turned out to be missing from disk.
+     *
+     * @param file A path returned by path().
+     */
+    synchronized void remove(Path file) {
+        Long size = entries.remove(file);
+        if (size != null) {
+            totalBytes -= size;
+        }
+    }
+
+    /**
+     * Deletes every cached variant of an original.
+     *
+     * @param key The storage key of the original.
+     */
+    void evict(String key) {
+        List<Path> evicted = new ArrayList<>();
+        synchronized (this) {
+            Iterator<Map.Entry<Path, Long>> iterator = entries.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<Path, Long> entry = iterator.next();
+                String name = entry.getKey().getFileName().toString();
+                if (name.startsWith(key + ".")) {
+                    totalBytes -= entry.getValue();
+                    evicted.add(entry.getKey());
+                    iterator.remove();
+                }
+            }
+        }
+        deleteAll(evicted);
+    }
+
+    // Must hold the lock
+    private List<Path> evictOverflow() {
+        List<Path> evicted = new ArrayList<>();
+        Iterator<Map.Entry<Path, Long>> iterator = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && iterator.hasNext()) {
+            Map.Entry<Path, Long> eldest = iterator.next();
+            totalBytes -= eldest.getValue();
+            evicted.add(eldest.getKey());
+            iterator.remove();
+        }
+        return evicted;
+    }
+
+    // File deletion is blocking; never do it on the caller's (possibly event loop) thread
+    private void deleteAll(List<Path> files) {
+        if (!files.isEmpty()) {
+            Schedulers.boundedElastic().schedule(() -> files.forEach(this::deleteUnlessCached),
+                    deleteDelay.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void deleteUnlessCached(Path file) {
+        synchronized (this) {
+            if (entries.containsKey(file)) {
+                return; // Generated again since it was evicted
+            }
+        }
+        deleteQuietly(file);
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Failed to delete cached image derivative {}: {}", file, e.getMessage());
+        }
+    }
+
+    private static BasicFileAttributes attributes(Path file) {
+        try {
+            return Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
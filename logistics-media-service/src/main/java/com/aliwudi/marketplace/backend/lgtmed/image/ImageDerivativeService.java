@@ -0,0 +1,323 @@
+package com.aliwudi.marketplace.backend.lgtmed.image;
+
+import com.aliwudi.marketplace.backend.common.model.MediaAsset;
+import com.aliwudi.marketplace.backend.lgtmed.storage.MediaStorage;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferLimitException;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Generates resized, recompressed variants of image assets (see ImageVariant)
+ * so that listing pages do not download originals.
+ *
+ * All variants of an image are generated together, from a single decode,
+ * right after upload and otherwise on the first request for one of them.
+ * Concurrent requests for an image that is being processed share that one
+ * generation. Reading the original, decoding and encoding are memory- and
+ * CPU-heavy, so all of it runs on a small dedicated worker pool: no more
+ * originals are held in memory at once than there are workers. Results are
+ * kept in the DerivativeCache; a cached file that was removed from disk
+ * anyway is generated again.
+ *
+ * Variants are cached per stored content, so assets sharing content share
+ * their variants too.
+ *
+ * Images that ImageIO cannot read (e.g. WebP, SVG), or that are too large to
+ * decode safely, get no variants; their original is served instead.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ImageDerivativeService {
+
+    // Formats that may carry transparency are kept as PNG, everything else becomes JPEG
+    private static final Set<String> ALPHA_FILE_TYPES = Set.of("image/png", "image/gif");
+
+    private final MediaStorage mediaStorage;
+    private final DerivativeCache cache;
+
+    @Value("${media.derivatives.thumbnail.max-dimension:200}")
+    private int thumbnailMaxDimension;
+
+    @Value("${media.derivatives.card.max-dimension:600}")
+    private int cardMaxDimension;
+
+    @Value("${media.derivatives.full.max-dimension:1600}")
+    private int fullMaxDimension;
+
+    @Value("${media.derivatives.jpeg-quality:0.8}")
+    private float jpegQuality;
+
+    // Originals larger than this (bytes, or pixels once decoded) are not processed
+    @Value("${media.derivatives.max-source-size:25MB}")
+    private DataSize maxSourceSize;
+
+    @Value("${media.derivatives.max-source-pixels:50000000}")
+    private long maxSourcePixels;
+
+    @Value("${media.derivatives.workers:2}")
+    private int workerCount;
+
+    @Value("${media.derivatives.queue-capacity:1000}")
+    private int queueCapacity;
+
+    private Scheduler workers;
+
+    // Generations in progress, by storage key
+    private final Map<String, Mono<Map<ImageVariant, Derivative>>> inFlight = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        workers = Schedulers.newBoundedElastic(workerCount, queueCapacity, "media-derivatives");
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.dispose();
+    }
+
+    /**
+     * @param asset A media asset.
+     * @return Whether variants can be generated for the asset.
+     */
+    public boolean supports(MediaAsset asset) {
+        return asset.getFileType() != null && ImageIO.getImageReadersByMIMEType(asset.getFileType()).hasNext();
+    }
+
+    /**
+     * Returns a variant of an image asset, generating it if it is not cached.
+     *
+     * @param asset The image asset.
+     * @param storageKey The storage key of the asset's content.
+     * @param variant The variant.
+     * @return A Mono emitting the variant, or empty if the asset has no variants.
+     */
+    public Mono<Derivative> getDerivative(MediaAsset asset, String storageKey, ImageVariant variant) {
+        if (!supports(asset)) {
+            return Mono.empty();
+        }
+        String contentType = outputContentType(asset);
+        Path file = cache.path(storageKey, variant, extension(contentType));
+        if (cache.get(file) == null) {
+            return generate(asset, storageKey, variant);
+        }
+        // Evicted files stay on disk for the cache's delete delay, so one found here can still be sent
+        return Mono.fromCallable(() -> Files.size(file))
+                .subscribeOn(Schedulers.boundedElastic())
+                .map(size -> new Derivative(file, contentType))
+                .onErrorResume(NoSuchFileException.class, e -> {
+                    log.debug("Cached variant {} is gone from disk, generating it again", file);
+                    cache.remove(file);
+                    return generate(asset, storageKey, variant);
+                });
+    }
+
+    /**
+     * Starts generating the variants of a newly uploaded asset, without
+     * waiting for them.
+     *
+     * @param asset The uploaded asset.
+     * @param storageKey The storage key of its content.
+     */
+    public void generateInBackground(MediaAsset asset, String storageKey) {
+        if (supports(asset)) {
+            generate(asset, storageKey).subscribe(
+                    derivatives -> log.debug("Generated {} variant(s) of media asset {}", derivatives.size(), asset.getUniqueFileName()),
+                    e -> log.warn("Failed to generate variants of media asset {}: {}", asset.getUniqueFileName(), e.getMessage()));
+        }
+    }
+
+    /**
+     * Deletes the cached variants of stored content.
+     *
+     * @param storageKey The storage key of the content.
+     */
+    public void evict(String storageKey) {
+        cache.evict(storageKey);
+    }
+
+    private Mono<Derivative> generate(MediaAsset asset, String key, ImageVariant variant) {
+        return generate(asset, key).flatMap(derivatives -> Mono.justOrEmpty(derivatives.get(variant)));
+    }
+
+    // Single flight: one generation per image content at a time, shared by every caller (and asset) that needs it
+    private Mono<Map<ImageVariant, Derivative>> generate(MediaAsset asset, String key) {
+        int maxSourceBytes = (int) Math.min(Integer.MAX_VALUE, maxSourceSize.toBytes());
+        return inFlight.computeIfAbsent(key, k -> Mono.fromCallable(() -> {
+                    // The original is read on the worker too, so waiting generations do not hold it in memory
+                    DataBuffer source = DataBufferUtils.join(mediaStorage.read(k), maxSourceBytes).block();
+                    if (source == null) {
+                        return Map.<ImageVariant, Derivative>of(); // No stored content
+                    }
+                    try (InputStream in = source.asInputStream(true)) {
+                        return render(asset, k, in);
+                    }
+                })
+                .subscribeOn(workers)
+                .onErrorResume(e -> {
+                    if (e instanceof DataBufferLimitException) {
+                        log.info("Media asset {} is too large for image variants, serving the original", key);
+                    } else {
+                        log.warn("Failed to generate variants of media asset {}, serving the original: {}", key, e.getMessage());
+                    }
+                    return Mono.just(Map.of());
+                })
+                .doFinally(signal -> inFlight.remove(k))
+                .cache());
+    }
+
+    private Map<ImageVariant, Derivative> render(MediaAsset asset, String key, InputStream in) throws IOException {
+        BufferedImage source = decode(in);
+        if (source == null) {
+            log.info("Media asset {} cannot be decoded for image variants, serving the original", asset.getUniqueFileName());
+            return Map.of();
+        }
+
+        String contentType = outputContentType(asset);
+        Map<ImageVariant, Derivative> derivatives = new EnumMap<>(ImageVariant.class);
+        for (ImageVariant variant : ImageVariant.values()) {
+            Path file = cache.path(key, variant, extension(contentType));
+            if (cache.get(file) == null || !Files.exists(file)) {
+                BufferedImage resized = resize(source, maxDimension(variant), ALPHA_FILE_TYPES.contains(asset.getFileType()));
+                Files.createDirectories(file.getParent());
+                Path temp = cache.tempFile(file);
+                try {
+                    encode(resized, contentType, temp);
+                    Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } finally {
+                    Files.deleteIfExists(temp);
+                }
+                cache.put(file, Files.size(file));
+            }
+            derivatives.put(variant, new Derivative(file, contentType));
+        }
+        return derivatives;
+    }
+
+    // Refuses images whose pixels would not fit comfortably in memory (e.g. decompression bombs)
+    private BufferedImage decode(InputStream in) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(in)) {
+            Iterator<ImageReader> readers = input != null ? ImageIO.getImageReaders(input) : null;
+            if (readers == null || !readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                if ((long) reader.getWidth(0) * reader.getHeight(0) > maxSourcePixels) {
+                    return null;
+                }
+                return reader.read(0);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    // Scales down in steps of at most half, which keeps bilinear filtering sharp; never scales up
+    private static BufferedImage resize(BufferedImage source, int maxDimension, boolean alpha) {
+        double scale = Math.min(1.0, (double) maxDimension / Math.max(source.getWidth(), source.getHeight()));
+        int targetWidth = Math.max(1, (int) Math.round(source.getWidth() * scale));
+        int targetHeight = Math.max(1, (int) Math.round(source.getHeight() * scale));
+
+        BufferedImage current = source;
+        int width = source.getWidth();
+        int height = source.getHeight();
+        do {
+            width = Math.max(targetWidth, width / 2);
+            height = Math.max(targetHeight, height / 2);
+            current = draw(current, width, height, alpha);
+        } while (width != targetWidth || height != targetHeight);
+        return current;
+    }
+
+    private static BufferedImage draw(BufferedImage image, int width, int height, boolean alpha) {
+        BufferedImage target = new BufferedImage(width, height, alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = target.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            if (!alpha) {
+                graphics.setColor(Color.WHITE); // JPEG has no transparency
+                graphics.fillRect(0, 0, width, height);
+            }
+            graphics.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return target;
+    }
+
+    private void encode(BufferedImage image, String contentType, Path target) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByMIMEType(contentType).next();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(target.toFile())) {
+            writer.setOutput(output);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if (param.canWriteCompressed() && "image/jpeg".equals(contentType)) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(jpegQuality);
+            }
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    private int maxDimension(ImageVariant variant) {
+        return switch (variant) {
+            case THUMBNAIL -> thumbnailMaxDimension;
+            case CARD -> cardMaxDimension;
+            case FULL -> fullMaxDimension;
+        };
+    }
+
+    private static String outputContentType(MediaAsset asset) {
+        return ALPHA_FILE_TYPES.contains(asset.getFileType()) ? "image/png" : "image/jpeg";
+    }
+
+    private static String extension(String contentType) {
+        return "image/png".equals(contentType) ? "png" : "jpg";
+    }
+
+    /**
+     * A generated variant.
+     *
+     * @param file The cached file.
+     * @param contentType Its MIME type.
+     */
+    public record Derivative(Path file, String contentType) {
+    }
+}
@@ -0,0 +1,38 @@
+package com.aliwudi.marketplace.backend.lgtmed.image;
+
+import com.aliwudi.marketplace.backend.common.response.ApiResponseMessages;
+
+import java.util.Locale;
+
+/**
+ * The resized variants generated for image assets. Their maximum dimensions
+ * are configured with media.derivatives.&lt;variant&gt;.max-dimension.
+ */
+public enum ImageVariant {
+    THUMBNAIL, // Listing tiles, cart lines
+    CARD,      // Product and store cards
+    FULL;      // Detail pages
+
+    /**
+     * @return The name of the variant in URLs and cache paths.
+     */
+    public String pathValue() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Parses a variant name as it appears in URLs.
+     *
+     * @param value The variant name (e.g., "thumbnail").
+     * @return The variant.
+     * @throws IllegalArgumentException if there is no such variant.
+     */
+    public static ImageVariant fromPathValue(String value) {
+        for (ImageVariant variant : values()) {
+            if (variant.pathValue().equalsIgnoreCase(value)) {
+                return variant;
+            }
+        }
+        throw new IllegalArgumentException(ApiResponseMessages.INVALID_IMAGE_VARIANT + value);
+    }
+}
@@ -0,0 +1,228 @@
+package com.aliwudi.marketplace.backend.lgtmed.planning;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Capacity-aware greedy assignment of deliveries to agents.
+ *
+ * Deliveries are grouped into batches by region and day. Batches are handled
+ * earliest day first and, within a day, largest first; each batch is given to
+ * the agent of its region with the most capacity left that day, and only the
+ * overflow goes to the next one, so a batch is split over as few agents (and
+ * routes) as possible. Agents without a region take what the regional agents
+ * cannot. Runs in O(n + b * a log a) for n deliveries in b batches and a
+ * agents, and keeps no state: existing assignments are passed in as loads, so
+ * it can be run again as new deliveries arrive.
+ *
+ * A large run is planned in parts with chunks(), which splits the deliveries
+ * along batch boundaries, in the order plan() handles the batches; planning
+ * the parts one after another, each against the loads of the previous ones,
+ * then gives the same assignments as planning them all at once, except for
+ * batches too large for one chunk.
+ */
+public class RoutePlanner {
+
+    /**
+     * A delivery to assign.
+     *
+     * @param deliveryId The ID of the delivery.
+     * @param region The normalized region of the delivery (see region()).
+     * @param day The day the delivery is due.
+     */
+    public record Stop(long deliveryId, String region, LocalDate day) {
+    }
+
+    /**
+     * An agent available for assignments.
+     *
+     * @param name The name of the agent.
+     * @param region The normalized region served, or "" for any region.
+     * @param dailyCapacity The maximum number of deliveries per day.
+     */
+    public record Agent(String name, String region, int dailyCapacity) {
+    }
+
+    /**
+     * The deliveries already assigned to an agent on a day.
+     */
+    public record AgentLoad(String agent, LocalDate day, int deliveries) {
+    }
+
+    public record Assignment(long deliveryId, String agent) {
+    }
+
+    /**
+     * @param assignments The new assignments.
+     * @param unassigned The deliveries no agent had capacity for.
+     */
+    public record Plan(List<Assignment> assignments, List<Long> unassigned) {
+    }
+
+    /**
+     * Normalizes a region name, or extracts the region of an address: the
+     * last non-blank comma-separated part (e.g. "12 Main St, Ikeja, Lagos"
+     * is in "lagos").
+     *
+     * @param address An address or a region name; may be null.
+     * @return The normalized region, or "" if there is none.
+     */
+    public static String region(String address) {
+        if (address == null) {
+            return "";
+        }
+        String[] parts = address.split(",");
+        for (int i = parts.length - 1; i >= 0; i--) {
+            String part = parts[i].trim();
+            if (!part.isEmpty()) {
+                return part.toLowerCase(Locale.ROOT);
+            }
+        }
+        return "";
+    }
+
+    /**
+     * Assigns deliveries to agents.
+     *
+     * @param stops The deliveries to assign.
+     * @param agents The available agents.
+     * @param loads The existing assignments, counted against capacity.
+     * @return The assignments, and the deliveries left unassigned.
+     */
+    public Plan plan(List<Stop> stops, List<Agent> agents, List<AgentLoad> loads) {
+        Map<String, List<Agent>> agentsByRegion = new HashMap<>();
+        for (Agent agent : agents) {
+            if (agent.dailyCapacity() > 0) {
+                agentsByRegion.computeIfAbsent(agent.region(), region -> new ArrayList<>()).add(agent);
+            }
+        }
+        Map<SlotKey, Slot> slots = new HashMap<>();
+        for (AgentLoad load : loads) {
+            slots.computeIfAbsent(new SlotKey(load.agent(), load.day()), key -> new Slot(key.agent(), 0)).remaining -= load.deliveries();
+        }
+
+        List<Assignment> assignments = new ArrayList<>(stops.size());
+        List<Long> unassigned = new ArrayList<>();
+        for (Map.Entry<BatchKey, List<Stop>> batch : batches(stops)) {
+            List<Stop> batchStops = batch.getValue();
+            LocalDate day = batch.getKey().day();
+            int next = 0;
+            if (!batch.getKey().region().isEmpty()) {
+                next = fill(batchStops, next, agentsByRegion.get(batch.getKey().region()), day, slots, assignments);
+            }
+            next = fill(batchStops, next, agentsByRegion.get(""), day, slots, assignments);
+            for (int i = next; i < batchStops.size(); i++) {
+                unassigned.add(batchStops.get(i).deliveryId());
+            }
+        }
+        return new Plan(assignments, unassigned);
+    }
+
+    /**
+     * Splits deliveries into chunks of at most chunkSize for planning one
+     * chunk at a time. A batch (region and day) is never split over chunks
+     * unless it is larger than chunkSize on its own; then it fills chunks of
+     * its own, and the last of them is topped up with the batches after it.
+     *
+     * @param stops The deliveries to plan.
+     * @param chunkSize The maximum number of deliveries per chunk.
+     * @return The delivery IDs of each chunk, in the order to plan them.
+     */
+    public List<List<Long>> chunks(List<Stop> stops, int chunkSize) {
+        List<List<Long>> chunks = new ArrayList<>();
+        List<Long> chunk = new ArrayList<>(chunkSize);
+        for (Map.Entry<BatchKey, List<Stop>> batch : batches(stops)) {
+            List<Stop> batchStops = batch.getValue();
+            if (!chunk.isEmpty() && chunk.size() + batchStops.size() > chunkSize) {
+                chunks.add(chunk);
+                chunk = new ArrayList<>(chunkSize);
+            }
+            for (Stop stop : batchStops) {
+                if (chunk.size() == chunkSize) {
+                    chunks.add(chunk);
+                    chunk = new ArrayList<>(chunkSize);
+                }
+                chunk.add(stop.deliveryId());
+            }
+        }
+        if (!chunk.isEmpty()) {
+            chunks.add(chunk);
+        }
+        return chunks;
+    }
+
+    // Groups the stops by region and day: earliest day first and, within a day, largest first, then by region
+    private static List<Map.Entry<BatchKey, List<Stop>>> batches(List<Stop> stops) {
+        Map<BatchKey, List<Stop>> batches = new LinkedHashMap<>();
+        for (Stop stop : stops) {
+            batches.computeIfAbsent(new BatchKey(stop.region(), stop.day()), key -> new ArrayList<>()).add(stop);
+        }
+        List<Map.Entry<BatchKey, List<Stop>>> ordered = new ArrayList<>(batches.entrySet());
+        ordered.sort(Comparator.<Map.Entry<BatchKey, List<Stop>>, LocalDate>comparing(batch -> batch.getKey().day())
+                .thenComparing(batch -> -batch.getValue().size())
+                .thenComparing(batch -> batch.getKey().region())); // Same order however the stops are split
+        return ordered;
+    }
+
+    /**
+     * Assigns stops from index next on to the agents with the most capacity
+     * left, each taking as many as it can.
+     *
+     * @return The index of the first stop left unassigned.
+     */
+    private int fill(List<Stop> stops, int next, List<Agent> agents, LocalDate day,
+                     Map<SlotKey, Slot> slots, List<Assignment> assignments) {
+        if (agents == null || next >= stops.size()) {
+            return next;
+        }
+        PriorityQueue<Slot> available = new PriorityQueue<>(Comparator.comparingInt((Slot slot) -> -slot.remaining));
+        for (Agent agent : agents) {
+            Slot slot = slots.computeIfAbsent(new SlotKey(agent.name(), day), key -> new Slot(key.agent(), 0));
+            if (!slot.initialized) {
+                slot.remaining += agent.dailyCapacity();
+                slot.initialized = true;
+            }
+            if (slot.remaining > 0) {
+                available.add(slot);
+            }
+        }
+        while (next < stops.size() && !available.isEmpty()) {
+            Slot slot = available.poll();
+            int count = Math.min(slot.remaining, stops.size() - next);
+            for (int i = 0; i < count; i++) {
+                assignments.add(new Assignment(stops.get(next++).deliveryId(), slot.agent));
+            }
+            slot.remaining -= count;
+        }
+        return next;
+    }
+
+    private record BatchKey(String region, LocalDate day) {
+    }
+
+    private record SlotKey(String agent, LocalDate day) {
+    }
+
+    /**
+     * The capacity an agent has left on a day. Starts at minus the existing
+     * load; the agent's capacity is added when the slot is first offered.
+     */
+    private static final class Slot {
+
+        private final String agent;
+        private int remaining;
+        private boolean initialized;
+
+        private Slot(String agent, int remaining) {
+            this.agent = agent;
+            this.remaining = remaining;
+        }
+    }
+}
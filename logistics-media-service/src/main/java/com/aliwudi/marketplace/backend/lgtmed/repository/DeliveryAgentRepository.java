@@ -0,0 +1,18 @@
+package com.aliwudi.marketplace.backend.lgtmed.repository;
+
+import com.aliwudi.marketplace.backend.common.model.DeliveryAgent;
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import reactor.core.publisher.Flux;
+
+/**
+ * Reactive Repository for DeliveryAgent entities.
+ */
+public interface DeliveryAgentRepository extends R2dbcRepository<DeliveryAgent, Long> {
+
+    /**
+     * Finds the agents that can be assigned new deliveries.
+     *
+     * @return A Flux emitting the active agents.
+     */
+    Flux<DeliveryAgent> findByActiveTrue();
+}
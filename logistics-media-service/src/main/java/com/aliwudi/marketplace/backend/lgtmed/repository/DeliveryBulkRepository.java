@@ -0,0 +1,64 @@
+package com.aliwudi.marketplace.backend.lgtmed.repository;
+
+import com.aliwudi.marketplace.backend.common.model.Delivery;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Bulk operations on deliveries, mixed into DeliveryRepository.
+ */
+public interface DeliveryBulkRepository {
+
+    /**
+     * Writes the tracking state (status, current location, notes, actual
+     * delivery date, update time) of deliveries with a single UPDATE statement
+     * keyed by tracking number.
+     *
+     * @param deliveries The deliveries to update.
+     * @return A Mono emitting the number of rows updated.
+     */
+    Mono<Long> updateTrackingState(List<Delivery> deliveries);
+
+    /**
+     * Assigns PENDING deliveries to agents and marks them SCHEDULED, with a
+     * single UPDATE statement keyed by ID. Deliveries that are no longer
+     * PENDING are left unchanged.
+     *
+     * @param deliveries The deliveries, with their agent, notes and update time set.
+     * @return A Mono emitting the number of rows updated.
+     */
+    Mono<Long> assignAgents(List<Delivery> deliveries);
+
+    /**
+     * Counts the deliveries assigned to each agent per day, from today on.
+     * Deliveries due before today, or without a due date, count for today.
+     *
+     * @param today The current day.
+     * @return A Flux emitting one load per agent and day.
+     */
+    Flux<AgentDayLoad> findAgentLoads(LocalDate today);
+
+    /**
+     * Reads what planning needs to know of every PENDING delivery, without
+     * locking anything, to split a planning run into chunks.
+     *
+     * @return A Flux emitting the pending deliveries in ID order.
+     */
+    Flux<PendingDelivery> findPendingDeliveries();
+
+    /**
+     * The number of deliveries assigned to an agent on a day.
+     */
+    record AgentDayLoad(String agent, LocalDate day, int deliveries) {
+    }
+
+    /**
+     * The address and due date of a PENDING delivery.
+     */
+    record PendingDelivery(Long id, String recipientAddress, LocalDateTime estimatedDeliveryDate) {
+    }
+}
@@ -0,0 +1,116 @@
+package com.aliwudi.marketplace.backend.lgtmed.repository;
+
+import com.aliwudi.marketplace.backend.common.model.Delivery;
+import lombok.RequiredArgsConstructor;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds one UPDATE ... SET column = CASE key WHEN ... END statement for the
+ * whole batch instead of one UPDATE per delivery.
+ */
+@RequiredArgsConstructor
+public class DeliveryBulkRepositoryImpl implements DeliveryBulkRepository {
+
+    private final DatabaseClient databaseClient;
+
+    @Override
+    public Mono<Long> updateTrackingState(List<Delivery> deliveries) {
+        if (deliveries.isEmpty()) {
+            return Mono.just(0L);
+        }
+
+        StringBuilder status = new StringBuilder("status = CASE tracking_number");
+        StringBuilder location = new StringBuilder("current_location = CASE tracking_number");
+        StringBuilder notes = new StringBuilder("notes = CASE tracking_number");
+        StringBuilder actualDeliveryDate = new StringBuilder("actual_delivery_date = CASE tracking_number");
+        StringBuilder updatedAt = new StringBuilder("updated_at = CASE tracking_number");
+        List<String> keys = new ArrayList<>(deliveries.size());
+        for (int i = 0; i < deliveries.size(); i++) {
+            status.append(" WHEN :trackingNumber").append(i).append(" THEN :status").append(i);
+            location.append(" WHEN :trackingNumber").append(i).append(" THEN :location").append(i);
+            notes.append(" WHEN :trackingNumber").append(i).append(" THEN :notes").append(i);
+            actualDeliveryDate.append(" WHEN :trackingNumber").append(i).append(" THEN :actualDeliveryDate").append(i);
+            updatedAt.append(" WHEN :trackingNumber").append(i).append(" THEN :updatedAt").append(i);
+            keys.add(":trackingNumber" + i);
+        }
+        String sql = "UPDATE deliveries SET "
+                + String.join(" END, ", status, location, notes, actualDeliveryDate, updatedAt) + " END"
+                + " WHERE tracking_number IN (" + String.join(", ", keys) + ")";
+
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(sql);
+        for (int i = 0; i < deliveries.size(); i++) {
+            Delivery delivery = deliveries.get(i);
+            spec = spec.bind("trackingNumber" + i, delivery.getTrackingNumber())
+                    .bind("status" + i, delivery.getStatus().name())
+                    .bind("updatedAt" + i, delivery.getUpdatedAt());
+            spec = bindNullable(spec, "location" + i, delivery.getCurrentLocation(), String.class);
+            spec = bindNullable(spec, "notes" + i, delivery.getNotes(), String.class);
+            spec = bindNullable(spec, "actualDeliveryDate" + i, delivery.getActualDeliveryDate(), LocalDateTime.class);
+        }
+        return spec.fetch().rowsUpdated();
+    }
+
+    @Override
+    public Mono<Long> assignAgents(List<Delivery> deliveries) {
+        if (deliveries.isEmpty()) {
+            return Mono.just(0L);
+        }
+
+        StringBuilder agent = new StringBuilder("delivery_agent = CASE id");
+        StringBuilder notes = new StringBuilder("notes = CASE id");
+        List<String> keys = new ArrayList<>(deliveries.size());
+        for (int i = 0; i < deliveries.size(); i++) {
+            agent.append(" WHEN :id").append(i).append(" THEN :agent").append(i);
+            notes.append(" WHEN :id").append(i).append(" THEN :notes").append(i);
+            keys.add(":id" + i);
+        }
+        String sql = "UPDATE deliveries SET " + agent + " END, " + notes + " END, status = 'SCHEDULED', updated_at = :updatedAt"
+                + " WHERE id IN (" + String.join(", ", keys) + ") AND status = 'PENDING'";
+
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(sql)
+                .bind("updatedAt", deliveries.get(0).getUpdatedAt());
+        for (int i = 0; i < deliveries.size(); i++) {
+            Delivery delivery = deliveries.get(i);
+            spec = spec.bind("id" + i, delivery.getId())
+                    .bind("agent" + i, delivery.getDeliveryAgent());
+            spec = bindNullable(spec, "notes" + i, delivery.getNotes(), String.class);
+        }
+        return spec.fetch().rowsUpdated();
+    }
+
+    @Override
+    public Flux<AgentDayLoad> findAgentLoads(LocalDate today) {
+        return databaseClient.sql("SELECT delivery_agent, GREATEST(COALESCE(DATE(estimated_delivery_date), :today), :today) AS day, "
+                        + "COUNT(*) AS deliveries FROM deliveries "
+                        + "WHERE status IN ('SCHEDULED', 'OUT_FOR_DELIVERY') AND delivery_agent IS NOT NULL "
+                        + "GROUP BY delivery_agent, day")
+                .bind("today", today)
+                .map((row, metadata) -> new AgentDayLoad(
+                        row.get("delivery_agent", String.class),
+                        row.get("day", LocalDate.class),
+                        row.get("deliveries", Long.class).intValue()))
+                .all();
+    }
+
+    @Override
+    public Flux<PendingDelivery> findPendingDeliveries() {
+        return databaseClient.sql("SELECT id, recipient_address, estimated_delivery_date FROM deliveries WHERE status = 'PENDING' ORDER BY id")
+                .map((row, metadata) -> new PendingDelivery(
+                        row.get("id", Long.class),
+                        row.get("recipient_address", String.class),
+                        row.get("estimated_delivery_date", LocalDateTime.class)))
+                .all();
+    }
+
+    private static <T> DatabaseClient.GenericExecuteSpec bindNullable(DatabaseClient.GenericExecuteSpec spec, String name,
+                                                                     T value, Class<T> type) {
+        return value != null ? spec.bind(name, value) : spec.bindNull(name, type);
+    }
+}
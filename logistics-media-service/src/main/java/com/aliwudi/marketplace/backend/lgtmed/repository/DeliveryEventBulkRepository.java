@@ -0,0 +1,22 @@
+package com.aliwudi.marketplace.backend.lgtmed.repository;
+
+import com.aliwudi.marketplace.backend.common.model.DeliveryEvent;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * Bulk write operations on delivery events, mixed into
+ * DeliveryEventRepository.
+ */
+public interface DeliveryEventBulkRepository {
+
+    /**
+     * Inserts events with a single multi-row INSERT statement, and sets their
+     * generated IDs.
+     *
+     * @param events The events to insert (without IDs).
+     * @return A Mono emitting the number of rows inserted.
+     */
+    Mono<Long> insertAll(List<DeliveryEvent> events);
+}
@@ -0,0 +1,69 @@
+package com.aliwudi.marketplace.backend.lgtmed.repository;
+
+import com.aliwudi.marketplace.backend.common.model.DeliveryEvent;
+import lombok.RequiredArgsConstructor;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Builds one INSERT ... VALUES (...), (...) statement for the whole batch
+ * instead of one INSERT per event.
+ *
+ * The generated IDs are read back by a random marker written to every row of
+ * the statement (insert_batch), in ID order: InnoDB only guarantees that the
+ * IDs of one statement increase in row order, not that they are consecutive
+ * (innodb_autoinc_lock_mode 2 interleaves concurrent inserts), so the first
+ * ID alone does not tell the others.
+ */
+@RequiredArgsConstructor
+public class DeliveryEventBulkRepositoryImpl implements DeliveryEventBulkRepository {
+
+    private final DatabaseClient databaseClient;
+
+    @Override
+    public Mono<Long> insertAll(List<DeliveryEvent> events) {
+        if (events.isEmpty()) {
+            return Mono.just(0L);
+        }
+
+        List<String> rows = new ArrayList<>(events.size());
+        for (int i = 0; i < events.size(); i++) {
+            rows.add("(:deliveryId" + i + ", :status" + i + ", :location" + i + ", :notes" + i
+                    + ", :source" + i + ", :occurredAt" + i + ", :recordedAt" + i + ", :batch)");
+        }
+        String sql = "INSERT INTO delivery_events (delivery_id, status, location, notes, source, occurred_at, recorded_at, insert_batch) VALUES "
+                + String.join(", ", rows);
+
+        String batch = UUID.randomUUID().toString();
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(sql).bind("batch", batch);
+        for (int i = 0; i < events.size(); i++) {
+            DeliveryEvent event = events.get(i);
+            spec = spec.bind("deliveryId" + i, event.getDeliveryId())
+                    .bind("status" + i, event.getStatus().name())
+                    .bind("source" + i, event.getSource().name())
+                    .bind("occurredAt" + i, event.getOccurredAt())
+                    .bind("recordedAt" + i, event.getRecordedAt());
+            spec = event.getLocation() != null ? spec.bind("location" + i, event.getLocation()) : spec.bindNull("location" + i, String.class);
+            spec = event.getNotes() != null ? spec.bind("notes" + i, event.getNotes()) : spec.bindNull("notes" + i, String.class);
+        }
+        return spec.fetch().rowsUpdated()
+                .flatMap(inserted -> databaseClient.sql("SELECT id FROM delivery_events WHERE insert_batch = :batch ORDER BY id")
+                        .bind("batch", batch)
+                        .map(row -> row.get("id", Long.class))
+                        .all()
+                        .collectList()
+                        .map(ids -> {
+                            if (ids.size() != events.size()) {
+                                throw new IllegalStateException("Inserted " + events.size() + " delivery events but read back " + ids.size() + " IDs");
+                            }
+                            for (int i = 0; i < events.size(); i++) {
+                                events.get(i).setId(ids.get(i));
+                            }
+                            return inserted;
+                        }));
+    }
+}
@@ -0,0 +1,76 @@
+package com.aliwudi.marketplace.backend.lgtmed.repository;
+
+import com.aliwudi.marketplace.backend.common.model.DeliveryEvent;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Reactive Repository for DeliveryEvent entities, the append-only tracking
+ * history of deliveries.
+ */
+public interface DeliveryEventRepository extends R2dbcRepository<DeliveryEvent, Long>, DeliveryEventBulkRepository {
+
+    /**
+     * Finds the events of a delivery in the order they happened.
+     *
+     * @param deliveryId The ID of the delivery.
+     * @return A Flux emitting DeliveryEvent entities, oldest first.
+     */
+    @Query("SELECT * FROM delivery_events WHERE delivery_id = :deliveryId ORDER BY occurred_at, id")
+    Flux<DeliveryEvent> findTimeline(Long deliveryId);
+
+    /**
+     * Finds the events of a delivery recorded after a given event, in the
+     * order they were recorded.
+     *
+     * @param deliveryId The ID of the delivery.
+     * @param afterId The ID of the last event already known.
+     * @return A Flux emitting DeliveryEvent entities.
+     */
+    @Query("SELECT * FROM delivery_events WHERE delivery_id = :deliveryId AND id > :afterId ORDER BY id")
+    Flux<DeliveryEvent> findTimelineAfter(Long deliveryId, Long afterId);
+
+    /**
+     * Finds which of the given deliveries have events.
+     *
+     * @param deliveryIds The IDs of the deliveries.
+     * @return A Flux emitting the IDs of the deliveries having events.
+     */
+    @Query("SELECT DISTINCT delivery_id FROM delivery_events WHERE delivery_id IN (:deliveryIds)")
+    Flux<Long> findDeliveryIdsWithEvents(Collection<Long> deliveryIds);
+
+    /**
+     * Keeps the events of the deliveries that have no events yet, e.g. to
+     * record the legacy notes history of a delivery only once.
+     *
+     * @param events The events to filter.
+     * @return A Mono emitting the events of deliveries without events, in order.
+     */
+    default Mono<List<DeliveryEvent>> retainDeliveriesWithoutEvents(List<DeliveryEvent> events) {
+        if (events.isEmpty()) {
+            return Mono.just(List.of());
+        }
+        return findDeliveryIdsWithEvents(events.stream().map(DeliveryEvent::getDeliveryId).collect(Collectors.toSet()))
+                .collect(Collectors.toSet())
+                .map(withEvents -> events.stream()
+                        .filter(event -> !withEvents.contains(event.getDeliveryId()))
+                        .toList());
+    }
+
+    /**
+     * Deletes the events of a delivery.
+     *
+     * @param deliveryId The ID of the delivery.
+     * @return A Mono emitting the number of events deleted.
+     */
+    @Modifying
+    @Query("DELETE FROM delivery_events WHERE delivery_id = :deliveryId")
+    Mono<Integer> deleteByDeliveryId(Long deliveryId);
+}
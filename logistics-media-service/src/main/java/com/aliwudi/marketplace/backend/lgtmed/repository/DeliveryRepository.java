@@ -3,15 +3,17 @@ package com.aliwudi.marketplace.backend.lgtmed.repository;
 import com.aliwudi.marketplace.backend.common.model.Delivery;
 import com.aliwudi.marketplace.backend.common.status.DeliveryStatus;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.r2dbc.repository.R2dbcRepository;
 import org.springframework.stereotype.Repository;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 
 @Repository
-public interface DeliveryRepository extends R2dbcRepository<Delivery, Long> {
+public interface DeliveryRepository extends R2dbcRepository<Delivery, Long>, DeliveryBulkRepository {
 
     // --- Basic Retrieval & Pagination ---
     Flux<Delivery> findAllBy(Pageable pageable);
@@ -20,6 +22,18 @@ public interface DeliveryRepository extends R2dbcRepository<Delivery, Long> {
     Mono<Delivery> findByOrderId(Long orderId); // Assumes one delivery record per order
     Mono<Delivery> findByTrackingNumber(String trackingNumber); // Tracking number is unique
 
+    // Locks the rows until the end of the transaction, so they cannot change between validation and update
+    @Query("SELECT * FROM deliveries WHERE tracking_number IN (:trackingNumbers) FOR UPDATE")
+    Flux<Delivery> findAllByTrackingNumberForUpdate(Collection<String> trackingNumbers);
+
+    // Same for a single delivery, so concurrent updates to it apply one after the other
+    @Query("SELECT * FROM deliveries WHERE tracking_number = :trackingNumber FOR UPDATE")
+    Mono<Delivery> findByTrackingNumberForUpdate(String trackingNumber);
+
+    // The given deliveries that are still pending, in ID order, locked against concurrent planning runs
+    @Query("SELECT * FROM deliveries WHERE id IN (:ids) AND status = 'PENDING' ORDER BY id FOR UPDATE")
+    Flux<Delivery> findPendingForUpdate(Collection<Long> ids);
+
     Flux<Delivery> findByStatus(DeliveryStatus status, Pageable pageable);
     Flux<Delivery> findByDeliveryAgent(String deliveryAgent, Pageable pageable);
     Flux<Delivery> findByEstimatedDeliveryDateBefore(LocalDateTime date, Pageable pageable);
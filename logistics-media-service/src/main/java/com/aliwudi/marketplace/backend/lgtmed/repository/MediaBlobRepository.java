@@ -0,0 +1,67 @@
+package com.aliwudi.marketplace.backend.lgtmed.repository;
+
+import com.aliwudi.marketplace.backend.common.model.MediaBlob;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+
+/**
+ * Reactive Repository for MediaBlob entities, the reference counts of stored
+ * media content.
+ *
+ * Every statement locks the blob's row until the end of the transaction.
+ * An upload stores the content while it holds that lock. Content that lost
+ * its last reference is deleted after that transaction has committed, in a
+ * second one that first checks with lockIfReferenced that no upload has
+ * referenced it again. So an upload of some content and the deletion of its
+ * last reference never interleave, and a rolled back delete loses nothing.
+ */
+public interface MediaBlobRepository extends R2dbcRepository<MediaBlob, String> {
+
+    /**
+     * Adds a reference to a blob, creating it if it does not exist.
+     *
+     * @param contentHash The content hash.
+     * @param size The content size in bytes.
+     * @param now The current time.
+     * @return A Mono emitting the number of affected rows (1 if created, 2 if referenced again).
+     */
+    @Modifying
+    @Query("INSERT INTO media_blobs (content_hash, size, ref_count, created_at) VALUES (:contentHash, :size, 1, :now) " +
+           "ON DUPLICATE KEY UPDATE ref_count = ref_count + 1")
+    Mono<Integer> acquire(String contentHash, long size, LocalDateTime now);
+
+    /**
+     * Removes a reference to a blob.
+     *
+     * @param contentHash The content hash.
+     * @return A Mono emitting the number of blobs updated.
+     */
+    @Modifying
+    @Query("UPDATE media_blobs SET ref_count = ref_count - 1 WHERE content_hash = :contentHash AND ref_count > 0")
+    Mono<Integer> release(String contentHash);
+
+    /**
+     * Deletes a blob that is no longer referenced.
+     *
+     * @param contentHash The content hash.
+     * @return A Mono emitting 1 if the blob was deleted, 0 if it is still referenced.
+     */
+    @Modifying
+    @Query("DELETE FROM media_blobs WHERE content_hash = :contentHash AND ref_count = 0")
+    Mono<Integer> deleteUnreferenced(String contentHash);
+
+    /**
+     * Locks a blob's row, or the place where it would be inserted if there is
+     * none, until the end of the transaction: an upload of the same content
+     * waits until then to reference it.
+     *
+     * @param contentHash The content hash.
+     * @return A Mono emitting the content hash if the blob is referenced, or empty.
+     */
+    @Query("SELECT content_hash FROM media_blobs WHERE content_hash = :contentHash FOR UPDATE")
+    Mono<String> lockIfReferenced(String contentHash);
+}
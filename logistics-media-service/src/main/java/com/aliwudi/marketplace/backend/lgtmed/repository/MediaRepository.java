@@ -2,12 +2,15 @@ package com.aliwudi.marketplace.backend.lgtmed.repository;
 
 import com.aliwudi.marketplace.backend.common.model.MediaAsset;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.r2dbc.repository.R2dbcRepository;
 import org.springframework.stereotype.Repository;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 
 @Repository
 public interface MediaRepository extends R2dbcRepository<MediaAsset, Long> {
@@ -17,11 +20,21 @@ public interface MediaRepository extends R2dbcRepository<MediaAsset, Long> {
 
     // --- MediaAsset Specific Queries ---
     Flux<MediaAsset> findByEntityIdAndEntityType(String entityId, String entityType, Pageable pageable);
+    Flux<MediaAsset> findByEntityTypeAndEntityIdIn(String entityType, Collection<String> entityIds, Sort sort); // Batch lookup
     Flux<MediaAsset> findByEntityType(String entityType, Pageable pageable);
     Flux<MediaAsset> findByFileType(String fileType, Pageable pageable);
     Flux<MediaAsset> findByAssetNameContainingIgnoreCase(String assetName, Pageable pageable);
     Mono<MediaAsset> findByUniqueFileName(String uniqueFileName); // Unique file name is unique
 
+    @Query("SELECT * FROM media_assets WHERE id = :id FOR UPDATE")
+    Mono<MediaAsset> findByIdForUpdate(Long id); // Locked until the end of the transaction
+
+    // Assets whose content is not stored under its hash yet (see LegacyMediaMigration), in ID order from afterId
+    @Query("SELECT * FROM media_assets WHERE id > :afterId " +
+           "AND (content_hash IS NULL OR storage_path IS NULL OR storage_path NOT LIKE CONCAT('%', content_hash)) " +
+           "ORDER BY id LIMIT :limit")
+    Flux<MediaAsset> findStoredBeforeContentAddressing(Long afterId, int limit);
+
     // --- Count Queries ---
     Mono<Long> count();
     Mono<Long> countByEntityIdAndEntityType(String entityId, String entityType);
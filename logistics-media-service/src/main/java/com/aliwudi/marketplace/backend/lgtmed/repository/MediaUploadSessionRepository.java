@@ -0,0 +1,115 @@
+package com.aliwudi.marketplace.backend.lgtmed.repository;
+
+import com.aliwudi.marketplace.backend.common.model.MediaUploadSession;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+
+/**
+ * Reactive Repository for MediaUploadSession entities, and for the
+ * media_upload_chunks rows that record which chunks of an upload were
+ * received.
+ *
+ * Status changes are conditional single UPDATE statements, so concurrent
+ * requests (e.g. two completions of the same upload) cannot both proceed.
+ * Chunks are recorded, and uploads deleted, under the session's row lock
+ * (findByIdForUpdate), which those UPDATE statements wait for as well.
+ */
+public interface MediaUploadSessionRepository extends R2dbcRepository<MediaUploadSession, Long> {
+
+    Mono<MediaUploadSession> findByUploadId(String uploadId);
+
+    /**
+     * Locks an upload session until the end of the transaction.
+     *
+     * @param id The upload session ID.
+     * @return A Mono emitting the session, or empty if it was deleted.
+     */
+    @Query("SELECT * FROM media_upload_sessions WHERE id = :id FOR UPDATE")
+    Mono<MediaUploadSession> findByIdForUpdate(Long id);
+
+    /**
+     * @param sessionId The upload session ID.
+     * @return A Flux emitting the indexes of the received chunks, in order.
+     */
+    @Query("SELECT chunk_index FROM media_upload_chunks WHERE session_id = :sessionId ORDER BY chunk_index")
+    Flux<Integer> findReceivedChunks(Long sessionId);
+
+    /**
+     * Records a received chunk; receiving it again only updates the row.
+     *
+     * @param sessionId The upload session ID.
+     * @param chunkIndex The chunk number.
+     * @param size The chunk size in bytes.
+     * @param now The current time.
+     * @return A Mono emitting the number of affected rows.
+     */
+    @Modifying
+    @Query("INSERT INTO media_upload_chunks (session_id, chunk_index, size, received_at) " +
+           "VALUES (:sessionId, :chunkIndex, :size, :now) " +
+           "ON DUPLICATE KEY UPDATE size = :size, received_at = :now")
+    Mono<Integer> recordChunk(Long sessionId, int chunkIndex, long size, LocalDateTime now);
+
+    /**
+     * Extends an active upload's expiry after it made progress.
+     *
+     * @param id The upload session ID.
+     * @param now The current time.
+     * @param expiresAt The new expiry.
+     * @return A Mono emitting 1 if the upload is still active, 0 otherwise.
+     */
+    @Modifying
+    @Query("UPDATE media_upload_sessions SET updated_at = :now, expires_at = :expiresAt WHERE id = :id AND status = 'ACTIVE'")
+    Mono<Integer> touch(Long id, LocalDateTime now, LocalDateTime expiresAt);
+
+    /**
+     * Moves an upload from one status to another, if it is in the first.
+     *
+     * @param id The upload session ID.
+     * @param from The expected current status.
+     * @param to The new status.
+     * @param now The current time.
+     * @return A Mono emitting 1 if the status was changed, 0 otherwise.
+     */
+    @Modifying
+    @Query("UPDATE media_upload_sessions SET status = :to, updated_at = :now WHERE id = :id AND status = :from")
+    Mono<Integer> transition(Long id, String from, String to, LocalDateTime now);
+
+    /**
+     * Marks an upload as completed.
+     *
+     * @param id The upload session ID.
+     * @param mediaAssetId The ID of the created media asset.
+     * @param now The current time.
+     * @return A Mono emitting the number of sessions updated.
+     */
+    @Modifying
+    @Query("UPDATE media_upload_sessions SET status = 'COMPLETED', media_asset_id = :mediaAssetId, updated_at = :now WHERE id = :id")
+    Mono<Integer> markCompleted(Long id, Long mediaAssetId, LocalDateTime now);
+
+    /**
+     * Finds uploads past their expiry. Uploads being assembled are only
+     * included once their assembly is older than staleBefore, i.e. was
+     * abandoned by a stopped node. Uploads held by another node are left to
+     * that node until they expired before staleBefore, i.e. the node is gone.
+     *
+     * @param now The current time.
+     * @param staleBefore Assemblies started, and uploads of other nodes expired, before this are abandoned.
+     * @param nodeId This node.
+     * @param anyNode True if every node can delete every upload's chunks.
+     * @param limit The maximum number of uploads to return.
+     * @return A Flux emitting expired upload sessions.
+     */
+    @Query("SELECT * FROM media_upload_sessions WHERE expires_at < :now " +
+           "AND (status <> 'ASSEMBLING' OR updated_at < :staleBefore) " +
+           "AND (:anyNode OR node_id IS NULL OR node_id = :nodeId OR expires_at < :staleBefore) ORDER BY expires_at LIMIT :limit")
+    Flux<MediaUploadSession> findExpired(LocalDateTime now, LocalDateTime staleBefore, String nodeId, boolean anyNode, int limit);
+
+    @Modifying
+    @Query("DELETE FROM media_upload_chunks WHERE session_id = :sessionId")
+    Mono<Integer> deleteChunks(Long sessionId);
+}
@@ -0,0 +1,207 @@
+package com.aliwudi.marketplace.backend.lgtmed.service;
+
+import com.aliwudi.marketplace.backend.common.enumeration.DeliveryEventSource;
+import com.aliwudi.marketplace.backend.common.model.Delivery;
+import com.aliwudi.marketplace.backend.common.model.DeliveryEvent;
+import com.aliwudi.marketplace.backend.common.status.DeliveryStatus;
+import com.aliwudi.marketplace.backend.lgtmed.dto.DeliveryPlanSummary;
+import com.aliwudi.marketplace.backend.lgtmed.planning.RoutePlanner;
+import com.aliwudi.marketplace.backend.lgtmed.repository.DeliveryAgentRepository;
+import com.aliwudi.marketplace.backend.lgtmed.repository.DeliveryEventRepository;
+import com.aliwudi.marketplace.backend.lgtmed.repository.DeliveryRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Assigns PENDING deliveries to delivery agents and marks them SCHEDULED.
+ *
+ * A planning run reads the address and due date of every PENDING delivery
+ * and splits them into chunks of at most batch-size with RoutePlanner.chunks,
+ * which keeps each region and day together, so chunking does not spread a
+ * batch over more agents than planning everything at once would. Each chunk
+ * is locked, planned by RoutePlanner against the agents' current loads (their
+ * SCHEDULED and OUT_FOR_DELIVERY deliveries per day), and written with one
+ * UPDATE and one multi-row event INSERT, in one transaction (after the legacy
+ * notes history of deliveries without events; every writer of a delivery
+ * locks its row first, so that history is recorded once). Only PENDING
+ * deliveries are touched, so a run is incremental: it plans what arrived
+ * since the last one around the existing assignments.
+ * Runs happen every interval, and on demand. Deliveries no agent has capacity
+ * for stay PENDING and are retried by the next run.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DeliveryPlanningService {
+
+    private final DeliveryRepository deliveryRepository;
+    private final DeliveryEventRepository deliveryEventRepository;
+    private final DeliveryAgentRepository deliveryAgentRepository;
+    private final TransactionalOperator transactionalOperator;
+    private final DeliveryTrackingStreamRegistry trackingStreamRegistry;
+
+    private final RoutePlanner routePlanner = new RoutePlanner();
+
+    @Value("${delivery.planning.enabled:true}")
+    private boolean enabled;
+
+    // How often new PENDING deliveries are planned
+    @Value("${delivery.planning.interval:1m}")
+    private Duration interval;
+
+    // Deliveries planned per transaction; bounded by the bind parameters of one statement
+    @Value("${delivery.planning.batch-size:2000}")
+    private int batchSize;
+
+    private Disposable planningLoop;
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        planningLoop = Flux.interval(interval)
+                .onBackpressureDrop() // Skip a tick if the previous run is still going
+                .concatMap(tick -> planPending()
+                        .onErrorResume(e -> {
+                            log.error("Delivery planning run failed: {}", e.getMessage(), e);
+                            return Mono.empty();
+                        }))
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (planningLoop != null) {
+            planningLoop.dispose();
+        }
+    }
+
+    /**
+     * Plans all PENDING deliveries.
+     *
+     * @return A Mono emitting what the run did.
+     */
+    public Mono<DeliveryPlanSummary> planPending() {
+        LocalDate today = LocalDate.now();
+        Mono<List<RoutePlanner.Agent>> agents = deliveryAgentRepository.findByActiveTrue()
+                .map(agent -> new RoutePlanner.Agent(agent.getName(), RoutePlanner.region(agent.getRegion()), agent.getDailyCapacity()))
+                .collectList();
+        Mono<List<RoutePlanner.Stop>> pending = deliveryRepository.findPendingDeliveries()
+                .map(delivery -> toStop(delivery.id(), delivery.recipientAddress(), delivery.estimatedDeliveryDate(), today))
+                .collectList();
+        return Mono.zip(agents, pending)
+                .flatMap(tuple -> Flux.fromIterable(routePlanner.chunks(tuple.getT2(), batchSize))
+                        .concatMap(ids -> planChunk(ids, tuple.getT1(), today))
+                        .collectList())
+                .map(this::summarize)
+                .doOnNext(summary -> {
+                    if (summary.getConsidered() > 0) {
+                        log.info("Delivery planning assigned {} of {} pending deliveries ({} left unassigned)",
+                                summary.getAssigned(), summary.getConsidered(), summary.getUnassigned());
+                    }
+                });
+    }
+
+    private Mono<PlannedChunk> planChunk(List<Long> ids, List<RoutePlanner.Agent> agents, LocalDate today) {
+        return deliveryRepository.findPendingForUpdate(ids)
+                .collectList()
+                .flatMap(pending -> {
+                    if (pending.isEmpty()) { // Planned or cancelled since they were read
+                        return Mono.just(new PlannedChunk(0, List.of(), List.of()));
+                    }
+                    // Loads are read after the lock, so they include the assignments of any concurrent run
+                    return deliveryRepository.findAgentLoads(today)
+                            .map(load -> new RoutePlanner.AgentLoad(load.agent(), load.day(), load.deliveries()))
+                            .collectList()
+                            .flatMap(loads -> assign(pending, routePlanner.plan(toStops(pending, today), agents, loads)));
+                })
+                .as(transactionalOperator::transactional)
+                .doOnNext(this::publish); // Only committed changes are pushed to live tracking streams
+    }
+
+    private Mono<PlannedChunk> assign(List<Delivery> pending, RoutePlanner.Plan plan) {
+        Map<Long, Delivery> byId = pending.stream().collect(Collectors.toMap(Delivery::getId, Function.identity()));
+        LocalDateTime now = LocalDateTime.now();
+        List<Delivery> assigned = new ArrayList<>(plan.assignments().size());
+        List<DeliveryEvent> events = new ArrayList<>(plan.assignments().size());
+        List<DeliveryEvent> legacyEvents = new ArrayList<>();
+        for (RoutePlanner.Assignment assignment : plan.assignments()) {
+            Delivery delivery = byId.get(assignment.deliveryId());
+            legacyEvents.addAll(DeliveryService.toLegacyEvents(delivery)); // Taken before the notes are overwritten
+            delivery.setDeliveryAgent(assignment.agent());
+            delivery.setStatus(DeliveryStatus.SCHEDULED);
+            delivery.setNotes("Scheduled with " + assignment.agent() + ".");
+            delivery.setUpdatedAt(now);
+            assigned.add(delivery);
+            events.add(DeliveryService.toEvent(delivery, DeliveryEventSource.SYSTEM, now));
+        }
+        return deliveryRepository.assignAgents(assigned)
+                .then(deliveryEventRepository.retainDeliveriesWithoutEvents(legacyEvents))
+                .flatMap(deliveryEventRepository::insertAll)
+                .then(deliveryEventRepository.insertAll(events))
+                .thenReturn(new PlannedChunk(pending.size(), assigned, events));
+    }
+
+    private static List<RoutePlanner.Stop> toStops(List<Delivery> deliveries, LocalDate today) {
+        List<RoutePlanner.Stop> stops = new ArrayList<>(deliveries.size());
+        for (Delivery delivery : deliveries) {
+            stops.add(toStop(delivery.getId(), delivery.getRecipientAddress(), delivery.getEstimatedDeliveryDate(), today));
+        }
+        return stops;
+    }
+
+    private static RoutePlanner.Stop toStop(Long id, String recipientAddress, LocalDateTime estimatedDeliveryDate, LocalDate today) {
+        // Overdue deliveries, and those without a date, are due today
+        LocalDate day = estimatedDeliveryDate == null || estimatedDeliveryDate.toLocalDate().isBefore(today)
+                ? today
+                : estimatedDeliveryDate.toLocalDate();
+        return new RoutePlanner.Stop(id, RoutePlanner.region(recipientAddress), day);
+    }
+
+    private void publish(PlannedChunk chunk) {
+        for (int i = 0; i < chunk.assigned().size(); i++) {
+            trackingStreamRegistry.publish(chunk.assigned().get(i).getTrackingNumber(), chunk.events().get(i));
+        }
+    }
+
+    private DeliveryPlanSummary summarize(List<PlannedChunk> chunks) {
+        int considered = 0;
+        Map<String, Integer> assignedByAgent = new TreeMap<>();
+        for (PlannedChunk chunk : chunks) {
+            considered += chunk.considered();
+            chunk.assigned().forEach(delivery -> assignedByAgent.merge(delivery.getDeliveryAgent(), 1, Integer::sum));
+        }
+        int assigned = assignedByAgent.values().stream().mapToInt(Integer::intValue).sum();
+        return DeliveryPlanSummary.builder()
+                .considered(considered)
+                .assigned(assigned)
+                .unassigned(considered - assigned)
+                .assignedByAgent(assignedByAgent)
+                .build();
+    }
+
+    /**
+     * One planned and committed chunk of PENDING deliveries.
+     */
+    private record PlannedChunk(int considered, List<Delivery> assigned, List<DeliveryEvent> events) {
+    }
+}
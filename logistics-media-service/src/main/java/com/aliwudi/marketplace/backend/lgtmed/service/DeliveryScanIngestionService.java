@@ -0,0 +1,191 @@
+package com.aliwudi.marketplace.backend.lgtmed.service;
+
+import com.aliwudi.marketplace.backend.common.enumeration.DeliveryEventSource;
+import com.aliwudi.marketplace.backend.common.model.Delivery;
+import com.aliwudi.marketplace.backend.common.model.DeliveryEvent;
+import com.aliwudi.marketplace.backend.common.response.ApiResponseMessages;
+import com.aliwudi.marketplace.backend.common.status.DeliveryStatus;
+import com.aliwudi.marketplace.backend.lgtmed.dto.CarrierScan;
+import com.aliwudi.marketplace.backend.lgtmed.dto.CarrierScanResult;
+import com.aliwudi.marketplace.backend.lgtmed.repository.DeliveryEventRepository;
+import com.aliwudi.marketplace.backend.lgtmed.repository.DeliveryRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Applies carrier scan feeds to deliveries in batches.
+ *
+ * Each batch loads all its deliveries with one locking SELECT, validates the
+ * scans against them in memory, in feed order (a scan sees the state left by
+ * the previous scans of the same delivery), then writes the resulting state of
+ * every delivery with one UPDATE and all accepted scans to the tracking
+ * history with one INSERT, in a single transaction. The legacy notes history
+ * of deliveries without events is recorded first. Unlike the single status
+ * update endpoint, deliveries are not enriched with their orders. Committed
+ * scans are pushed to the live tracking streams of their deliveries.
+ *
+ * A batch whose transaction fails on a transient error (deadlock, lock wait
+ * timeout) is retried from its locking SELECT up to retries times. If it
+ * still fails, its scans are reported FAILED and the feed goes on with the
+ * next batch: the carrier sends the failed scans again, which is safe since
+ * none of them was written.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DeliveryScanIngestionService {
+
+    private static final Duration RETRY_BACKOFF = Duration.ofMillis(100);
+
+    private final DeliveryRepository deliveryRepository;
+    private final DeliveryEventRepository deliveryEventRepository;
+    private final TransactionalOperator transactionalOperator;
+    private final DeliveryTrackingStreamRegistry trackingStreamRegistry;
+
+    // Scans applied per transaction; bounded by the bind parameters of one statement
+    @Value("${delivery.scans.batch-size:500}")
+    private int batchSize;
+
+    // A partial batch is applied after this long, so slow feeds still get timely results
+    @Value("${delivery.scans.batch-max-wait:1s}")
+    private Duration batchMaxWait;
+
+    // Attempts after the first for a batch that failed on a transient database error
+    @Value("${delivery.scans.retries:2}")
+    private int retries;
+
+    /**
+     * Applies a feed of carrier scans. Scans are read, applied and reported
+     * batch by batch, so the feed can be arbitrarily long.
+     *
+     * @param scans The scans, in the order the carrier made them.
+     * @return A Flux emitting one result per scan, in feed order.
+     */
+    public Flux<CarrierScanResult> ingest(Flux<CarrierScan> scans) {
+        return scans.index()
+                .bufferTimeout(batchSize, batchMaxWait, true) // Requests scans as batches are applied, not all at once
+                .concatMap(batch -> Mono.defer(() -> applyBatch(batch)) // Each attempt reads the deliveries again
+                        .retryWhen(Retry.backoff(retries, RETRY_BACKOFF).filter(TransientDataAccessException.class::isInstance))
+                        .onErrorResume(e -> {
+                            log.error("Failed to apply {} carrier scan(s) from index {}: {}", batch.size(), batch.get(0).getT1(), e.getMessage(), e);
+                            return Mono.just(failed(batch));
+                        })
+                        .doOnNext(this::publish) // Only committed changes are pushed to live tracking streams
+                        .flatMapIterable(AppliedBatch::results));
+    }
+
+    // Runs the batch in its own transaction; nothing is kept from a failed attempt
+    private Mono<AppliedBatch> applyBatch(List<Tuple2<Long, CarrierScan>> batch) {
+        Set<String> trackingNumbers = batch.stream()
+                .map(scan -> scan.getT2().getTrackingNumber())
+                .filter(trackingNumber -> trackingNumber != null && !trackingNumber.isBlank())
+                .collect(Collectors.toSet());
+
+        return deliveryRepository.findAllByTrackingNumberForUpdate(trackingNumbers)
+                .collectMap(Delivery::getTrackingNumber, Function.identity())
+                .flatMap(deliveries -> {
+                    LocalDateTime now = LocalDateTime.now();
+                    Map<String, Delivery> updated = new LinkedHashMap<>();
+                    List<DeliveryEvent> events = new ArrayList<>();
+                    List<CarrierScanResult> results = new ArrayList<>(batch.size());
+                    // Taken before the scans overwrite the notes
+                    Map<Long, List<DeliveryEvent>> legacyEvents = deliveries.values().stream()
+                            .collect(Collectors.toMap(Delivery::getId, DeliveryService::toLegacyEvents));
+                    for (Tuple2<Long, CarrierScan> scan : batch) {
+                        results.add(apply(scan.getT1(), scan.getT2(), deliveries, updated, events, now));
+                    }
+                    List<DeliveryEvent> legacy = updated.values().stream()
+                            .flatMap(delivery -> legacyEvents.get(delivery.getId()).stream())
+                            .toList();
+                    return deliveryRepository.updateTrackingState(List.copyOf(updated.values()))
+                            .then(deliveryEventRepository.retainDeliveriesWithoutEvents(legacy))
+                            .flatMap(deliveryEventRepository::insertAll)
+                            .then(deliveryEventRepository.insertAll(events))
+                            .doOnSuccess(inserted -> log.info("Applied {} of {} carrier scan(s) to {} deliveries",
+                                    events.size(), batch.size(), updated.size()))
+                            .thenReturn(new AppliedBatch(results, events, deliveries.values()));
+                })
+                .as(transactionalOperator::transactional);
+    }
+
+    private static AppliedBatch failed(List<Tuple2<Long, CarrierScan>> batch) {
+        List<CarrierScanResult> results = batch.stream()
+                .map(scan -> result(scan.getT1(), scan.getT2(), CarrierScanResult.Outcome.FAILED, ApiResponseMessages.CARRIER_SCAN_BATCH_FAILED))
+                .toList();
+        return new AppliedBatch(results, List.of(), List.of());
+    }
+
+    private CarrierScanResult apply(long index, CarrierScan scan, Map<String, Delivery> deliveries,
+                                    Map<String, Delivery> updated, List<DeliveryEvent> events, LocalDateTime now) {
+        String trackingNumber = scan.getTrackingNumber();
+        if (trackingNumber == null || trackingNumber.isBlank() || scan.getStatus() == null) {
+            return result(index, scan, CarrierScanResult.Outcome.REJECTED, ApiResponseMessages.INVALID_CARRIER_SCAN);
+        }
+        Delivery delivery = deliveries.get(trackingNumber);
+        if (delivery == null) {
+            return result(index, scan, CarrierScanResult.Outcome.NOT_FOUND, ApiResponseMessages.DELIVERY_NOT_FOUND_FOR_TRACKING + trackingNumber);
+        }
+        String transitionError = DeliveryService.transitionError(delivery.getStatus(), scan.getStatus());
+        if (transitionError != null) {
+            return result(index, scan, CarrierScanResult.Outcome.REJECTED, transitionError);
+        }
+
+        LocalDateTime scannedAt = scan.getScannedAt() != null ? scan.getScannedAt() : now;
+        delivery.setStatus(scan.getStatus());
+        if (scan.getLocation() != null && !scan.getLocation().isBlank()) {
+            delivery.setCurrentLocation(scan.getLocation());
+        }
+        delivery.setNotes(scan.getNotes() != null && !scan.getNotes().isBlank() ? scan.getNotes() : null);
+        if (scan.getStatus() == DeliveryStatus.DELIVERED && delivery.getActualDeliveryDate() == null) {
+            delivery.setActualDeliveryDate(scannedAt);
+        }
+        delivery.setUpdatedAt(now);
+
+        updated.put(trackingNumber, delivery);
+        events.add(DeliveryService.toEvent(delivery, DeliveryEventSource.CARRIER_SCAN, scannedAt));
+        return result(index, scan, CarrierScanResult.Outcome.APPLIED, null);
+    }
+
+    private void publish(AppliedBatch batch) {
+        if (batch.events().isEmpty()) {
+            return;
+        }
+        Map<Long, String> trackingNumbers = batch.deliveries().stream()
+                .collect(Collectors.toMap(Delivery::getId, Delivery::getTrackingNumber));
+        batch.events().forEach(event -> trackingStreamRegistry.publish(trackingNumbers.get(event.getDeliveryId()), event));
+    }
+
+    private static CarrierScanResult result(long index, CarrierScan scan, CarrierScanResult.Outcome outcome, String message) {
+        return CarrierScanResult.builder()
+                .index(index)
+                .trackingNumber(scan.getTrackingNumber())
+                .outcome(outcome)
+                .message(message)
+                .build();
+    }
+
+    /**
+     * The outcome of a committed batch.
+     */
+    private record AppliedBatch(List<CarrierScanResult> results, List<DeliveryEvent> events, Collection<Delivery> deliveries) {
+    }
+}
@@ -1,33 +1,58 @@
 package com.aliwudi.marketplace.backend.lgtmed.service;
 
 import com.aliwudi.marketplace.backend.common.interservice.OrderIntegrationService;
+import com.aliwudi.marketplace.backend.common.enumeration.DeliveryEventSource;
 import com.aliwudi.marketplace.backend.common.model.Delivery;
+import com.aliwudi.marketplace.backend.common.model.DeliveryEvent;
 import com.aliwudi.marketplace.backend.common.model.Order; // Import Order model for prepareDto
 import com.aliwudi.marketplace.backend.common.exception.DeliveryNotFoundException;
 import com.aliwudi.marketplace.backend.common.exception.InvalidDeliveryDataException;
 import com.aliwudi.marketplace.backend.common.exception.ResourceNotFoundException;
+import com.aliwudi.marketplace.backend.lgtmed.repository.DeliveryEventRepository;
 import com.aliwudi.marketplace.backend.lgtmed.repository.DeliveryRepository;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import org.springframework.data.domain.Pageable;
 
 import java.time.LocalDateTime;
 import java.util.List; // For prepareDto List.of
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 import com.aliwudi.marketplace.backend.common.response.ApiResponseMessages;
 import com.aliwudi.marketplace.backend.common.status.DeliveryStatus;
 
+/**
+ * Manages deliveries and their tracking history.
+ *
+ * Every change of a delivery is appended to the delivery_events table as its
+ * own small row, in the same transaction as the update of the delivery. The
+ * deliveries row only holds the latest state (status, location, note), so its
+ * size stays the same however many updates a delivery receives. Committed
+ * events are also pushed to the live tracking streams of the delivery.
+ */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class DeliveryService {
 
     private final DeliveryRepository deliveryRepository;
+    private final DeliveryEventRepository deliveryEventRepository;
     private final OrderIntegrationService orderIntegrationService;
+    private final TransactionalOperator transactionalOperator;
+    private final DeliveryTrackingStreamRegistry trackingStreamRegistry;
+
+    private static final String SSE_EVENT_DELIVERY = "delivery"; // Current state, first event of a stream
+    private static final String SSE_EVENT_TRACKING = "tracking"; // One change
+    private static final String SSE_HEARTBEAT_COMMENT = "heartbeat";
+    private static final int EVENT_NOTES_MAX_LENGTH = 1000; // delivery_events.notes
 
     // IMPORTANT: This prepareDto method is moved from the controller
     // and kept *exactly* as provided by you. It is now a private helper method
@@ -106,7 +131,7 @@ public class DeliveryService {
                                         .updatedAt(LocalDateTime.now())
                                         .notes("Delivery created.")
                                         .build();
-                                return deliveryRepository.save(delivery);
+                                return saveWithEvent(delivery, DeliveryEventSource.SYSTEM, delivery.getCreatedAt());
                             }));
                 })
                 .cast(Delivery.class) // Cast to Delivery after switchIfEmpty block
@@ -161,24 +186,17 @@ public class DeliveryService {
      */
     public Mono<Delivery> updateDeliveryStatus(String trackingNumber, String newStatus, String currentLocation, String notes) {
         log.info("Attempting to update delivery status for tracking number: {} to {}", trackingNumber, newStatus);
-        return deliveryRepository.findByTrackingNumber(trackingNumber)
+        return deliveryRepository.findByTrackingNumberForUpdate(trackingNumber)
                 .switchIfEmpty(Mono.error(new DeliveryNotFoundException(ApiResponseMessages.DELIVERY_NOT_FOUND_FOR_UPDATE + trackingNumber)))
                 .flatMap(delivery -> {
                     try {
                         DeliveryStatus status = DeliveryStatus.valueOf(newStatus.toUpperCase());
 
                         // Basic status transition validation (example: cannot go from DELIVERED to SHIPPED)
-                        if (delivery.getStatus() == DeliveryStatus.DELIVERED && status != DeliveryStatus.DELIVERED) {
-                            log.warn("Invalid status transition: DELIVERED to {} for tracking number {}", status, trackingNumber);
-                            return Mono.error(new InvalidDeliveryDataException(ApiResponseMessages.INVALID_DELIVERY_STATUS_TRANSITION_FROM_DELIVERED));
-                        }
-                        if (delivery.getStatus() == DeliveryStatus.CANCELLED && status != DeliveryStatus.CANCELLED) {
-                            log.warn("Invalid status transition: CANCELLED to {} for tracking number {}", status, trackingNumber);
-                            return Mono.error(new InvalidDeliveryDataException(ApiResponseMessages.INVALID_DELIVERY_STATUS_TRANSITION_FROM_CANCELED));
-                        }
-                        if (delivery.getStatus() == DeliveryStatus.FAILED && status != DeliveryStatus.FAILED) {
-                            log.warn("Invalid status transition: FAILED to {} for tracking number {}", status, trackingNumber);
-                            return Mono.error(new InvalidDeliveryDataException(ApiResponseMessages.INVALID_DELIVERY_STATUS_TRANSITION_FROM_FAILED));
+                        String transitionError = transitionError(delivery.getStatus(), status);
+                        if (transitionError != null) {
+                            log.warn("Invalid status transition: {} to {} for tracking number {}", delivery.getStatus(), status, trackingNumber);
+                            return Mono.error(new InvalidDeliveryDataException(transitionError));
                         }
                         // Prevent setting to DELIVERED if estimated date is in future (optional, but good practice)
                         if (status == DeliveryStatus.DELIVERED && delivery.getEstimatedDeliveryDate() != null && delivery.getEstimatedDeliveryDate().isAfter(LocalDateTime.now())) {
@@ -192,21 +210,21 @@ public class DeliveryService {
                         return Mono.error(new InvalidDeliveryDataException(ApiResponseMessages.INVALID_DELIVERY_STATUS + newStatus));
                     }
 
+                    List<DeliveryEvent> legacyEvents = toLegacyEvents(delivery); // Taken before the notes are overwritten
                     if (currentLocation != null && !currentLocation.isBlank()) {
                         delivery.setCurrentLocation(currentLocation);
                     }
-                    if (notes != null && !notes.isBlank()) {
-                        String existingNotes = delivery.getNotes();
-                        delivery.setNotes(existingNotes == null || existingNotes.isBlank() ? notes : existingNotes + "\n" + notes);
-                    }
+                    // Only the latest note is kept on the delivery; earlier ones are in its events
+                    delivery.setNotes(notes != null && !notes.isBlank() ? notes : null);
                     delivery.setUpdatedAt(LocalDateTime.now());
 
                     if (delivery.getStatus() == DeliveryStatus.DELIVERED && delivery.getActualDeliveryDate() == null) {
                         delivery.setActualDeliveryDate(LocalDateTime.now());
                     }
 
-                    return deliveryRepository.save(delivery);
+                    return saveChanges(delivery, legacyEvents, DeliveryEventSource.API, delivery.getUpdatedAt());
                 })
+                .as(this::commitAndPublish)
                 .flatMap(this::prepareDto) // Enrich the updated delivery
                 .doOnSuccess(d -> log.info("Delivery status updated successfully for tracking number {}. New status: {}", trackingNumber, d.getStatus()))
                 .doOnError(e -> log.error("Error updating delivery status for tracking number {}: {}", trackingNumber, e.getMessage(), e));
@@ -224,7 +242,7 @@ public class DeliveryService {
      */
     public Mono<Delivery> cancelDelivery(String trackingNumber, String cancellationReason) {
         log.info("Attempting to cancel delivery with tracking number: {}", trackingNumber);
-        return deliveryRepository.findByTrackingNumber(trackingNumber)
+        return deliveryRepository.findByTrackingNumberForUpdate(trackingNumber)
                 .switchIfEmpty(Mono.error(new DeliveryNotFoundException(ApiResponseMessages.DELIVERY_NOT_FOUND_FOR_CANCEL + trackingNumber)))
                 .flatMap(delivery -> {
                     // Only allow cancellation if status is PENDING or SHIPPED (adjust as per business rules)
@@ -233,13 +251,13 @@ public class DeliveryService {
                         return Mono.error(new InvalidDeliveryDataException(ApiResponseMessages.INVALID_DELIVERY_STATUS_FOR_CANCELLATION + delivery.getStatus().name()));
                     }
 
+                    List<DeliveryEvent> legacyEvents = toLegacyEvents(delivery); // Taken before the notes are overwritten
                     delivery.setStatus(DeliveryStatus.CANCELLED);
-                    String newNotes = "Canceled. Reason: " + (cancellationReason != null && !cancellationReason.isBlank() ? cancellationReason : "No reason provided.");
-                    String existingNotes = delivery.getNotes();
-                    delivery.setNotes(existingNotes == null || existingNotes.isBlank() ? newNotes : existingNotes + "\n" + newNotes);
+                    delivery.setNotes("Canceled. Reason: " + (cancellationReason != null && !cancellationReason.isBlank() ? cancellationReason : "No reason provided."));
                     delivery.setUpdatedAt(LocalDateTime.now());
-                    return deliveryRepository.save(delivery);
+                    return saveChanges(delivery, legacyEvents, DeliveryEventSource.API, delivery.getUpdatedAt());
                 })
+                .as(this::commitAndPublish)
                 .flatMap(this::prepareDto) // Enrich the updated delivery
                 .doOnSuccess(d -> log.info("Delivery canceled successfully for tracking number: {}", d.getTrackingNumber()))
                 .doOnError(e -> log.error("Error canceling delivery {}: {}", trackingNumber, e.getMessage(), e));
@@ -257,11 +275,199 @@ public class DeliveryService {
         log.info("Attempting to delete delivery with tracking number: {}", trackingNumber);
         return deliveryRepository.findByTrackingNumber(trackingNumber)
                 .switchIfEmpty(Mono.error(new DeliveryNotFoundException(ApiResponseMessages.DELIVERY_NOT_FOUND_FOR_DELETE + trackingNumber)))
-                .flatMap(deliveryRepository::delete)
+                .flatMap(delivery -> deliveryEventRepository.deleteByDeliveryId(delivery.getId())
+                        .then(deliveryRepository.delete(delivery))
+                        .as(transactionalOperator::transactional))
                 .doOnSuccess(v -> log.info("Delivery deleted successfully with tracking number: {}", trackingNumber))
                 .doOnError(e -> log.error("Error deleting delivery {}: {}", trackingNumber, e.getMessage(), e));
     }
 
+    /**
+     * Retrieves the tracking history of a delivery, oldest event first.
+     *
+     * @param trackingNumber The tracking number of the delivery.
+     * @return A Flux emitting the delivery's events in the order they happened.
+     * @throws DeliveryNotFoundException if no delivery is found for the given tracking number.
+     */
+    public Flux<DeliveryEvent> getDeliveryTimeline(String trackingNumber) {
+        log.info("Retrieving tracking timeline for tracking number: {}", trackingNumber);
+        return deliveryRepository.findByTrackingNumber(trackingNumber)
+                .switchIfEmpty(Mono.error(new DeliveryNotFoundException(ApiResponseMessages.DELIVERY_NOT_FOUND_FOR_TRACKING + trackingNumber)))
+                .flatMapMany(delivery -> deliveryEventRepository.findTimeline(delivery.getId()))
+                .doOnError(e -> log.error("Error retrieving tracking timeline for tracking number {}: {}", trackingNumber, e.getMessage(), e));
+    }
+
+    /**
+     * Checks whether a delivery may go from one status to another: DELIVERED,
+     * CANCELLED and FAILED are final.
+     *
+     * @param current The current status of the delivery.
+     * @param next The requested status.
+     * @return null if the transition is allowed, otherwise the reason it is not.
+     */
+    static String transitionError(DeliveryStatus current, DeliveryStatus next) {
+        if (current == next || current == null) {
+            return null;
+        }
+        return switch (current) {
+            case DELIVERED -> ApiResponseMessages.INVALID_DELIVERY_STATUS_TRANSITION_FROM_DELIVERED;
+            case CANCELLED -> ApiResponseMessages.INVALID_DELIVERY_STATUS_TRANSITION_FROM_CANCELED;
+            case FAILED -> ApiResponseMessages.INVALID_DELIVERY_STATUS_TRANSITION_FROM_FAILED;
+            default -> null;
+        };
+    }
+
+    /**
+     * Opens a live tracking stream for a delivery. The stream starts with the
+     * delivery's current state (not enriched with its order), then pushes each
+     * of its tracking events as it is committed. A client reconnecting with
+     * the ID of the last event it received is sent the events it missed
+     * instead of the current state.
+     *
+     * @param trackingNumber The tracking number of the delivery.
+     * @param lastEventId The Last-Event-ID sent by a reconnecting client, or null.
+     * @return A Flux emitting the SSE events of the stream.
+     * @throws DeliveryNotFoundException if no delivery is found for the given tracking number.
+     */
+    public Flux<ServerSentEvent<Object>> getTrackingStream(String trackingNumber, String lastEventId) {
+        log.info("Opening tracking stream for tracking number: {}", trackingNumber);
+        Long lastSeenId = parseLastEventId(lastEventId);
+
+        return deliveryRepository.findByTrackingNumber(trackingNumber)
+                .switchIfEmpty(Mono.error(new DeliveryNotFoundException(ApiResponseMessages.DELIVERY_NOT_FOUND_FOR_TRACKING + trackingNumber)))
+                .flatMapMany(delivery -> {
+                    // Live and replayed events may overlap while the replay runs; drop duplicates
+                    Set<Long> seenDuringReplay = ConcurrentHashMap.newKeySet();
+                    AtomicBoolean replaying = new AtomicBoolean(lastSeenId != null);
+                    Flux<DeliveryEvent> live = trackingStreamRegistry.connect(trackingNumber)
+                            .filter(event -> !replaying.get() || event.getId() == null || seenDuringReplay.add(event.getId()));
+
+                    // Read after live is subscribed (merge subscribes in order), so no change falls in between
+                    Flux<ServerSentEvent<Object>> initial = lastSeenId == null
+                            ? deliveryRepository.findById(delivery.getId())
+                                    .map(current -> ServerSentEvent.<Object>builder(current)
+                                            .event(SSE_EVENT_DELIVERY)
+                                            .build())
+                                    .flux()
+                            : deliveryEventRepository.findTimelineAfter(delivery.getId(), lastSeenId)
+                                    .filter(event -> seenDuringReplay.add(event.getId()))
+                                    .doFinally(signal -> {
+                                        replaying.set(false);
+                                        seenDuringReplay.clear();
+                                    })
+                                    .map(this::toTrackingSse);
+                    Flux<ServerSentEvent<Object>> heartbeats = trackingStreamRegistry.heartbeats()
+                            .map(tick -> ServerSentEvent.<Object>builder().comment(SSE_HEARTBEAT_COMMENT).build());
+
+                    return Flux.merge(live.map(this::toTrackingSse), initial, heartbeats); // Cancelling the connection stops its heartbeats too
+                })
+                .doOnCancel(() -> log.info("Tracking stream closed for tracking number: {}", trackingNumber))
+                .doOnError(e -> log.error("Error in tracking stream for tracking number {}: {}", trackingNumber, e.getMessage(), e));
+    }
+
+    private ServerSentEvent<Object> toTrackingSse(DeliveryEvent event) {
+        return ServerSentEvent.<Object>builder(event)
+                .id(event.getId() != null ? String.valueOf(event.getId()) : null)
+                .event(SSE_EVENT_TRACKING)
+                .build();
+    }
+
+    private Long parseLastEventId(String lastEventId) {
+        if (lastEventId == null || lastEventId.isBlank()) {
+            return null;
+        }
+        try {
+            return Long.valueOf(lastEventId.trim());
+        } catch (NumberFormatException e) {
+            log.debug("Ignoring malformed Last-Event-ID: {}", lastEventId);
+            return null;
+        }
+    }
+
+    /**
+     * Saves the new state of a delivery and appends it to the delivery's
+     * events, in one transaction.
+     */
+    private Mono<Delivery> saveWithEvent(Delivery delivery, DeliveryEventSource source, LocalDateTime occurredAt) {
+        return saveChanges(delivery, List.of(), source, occurredAt).as(this::commitAndPublish);
+    }
+
+    /**
+     * Saves the new state of a delivery and appends it to the delivery's
+     * events, first recording the legacy notes history of the delivery if it
+     * has no events yet. Runs in the caller's transaction: updates read the
+     * delivery FOR UPDATE in that same transaction, so a concurrent update
+     * waits for this one and then finds its events, and the legacy notes are
+     * recorded once.
+     */
+    private Mono<SavedUpdate> saveChanges(Delivery delivery, List<DeliveryEvent> legacyEvents,
+                                          DeliveryEventSource source, LocalDateTime occurredAt) {
+        return deliveryRepository.save(delivery)
+                .flatMap(saved -> deliveryEventRepository.retainDeliveriesWithoutEvents(legacyEvents)
+                        .flatMap(deliveryEventRepository::insertAll)
+                        .then(deliveryEventRepository.save(toEvent(saved, source, occurredAt)))
+                        .map(event -> new SavedUpdate(saved, event)));
+    }
+
+    /**
+     * Commits an update, then pushes its event to live tracking streams.
+     */
+    private Mono<Delivery> commitAndPublish(Mono<SavedUpdate> update) {
+        return update
+                .as(transactionalOperator::transactional)
+                // Only committed changes are pushed to live tracking streams
+                .doOnNext(saved -> trackingStreamRegistry.publish(saved.delivery().getTrackingNumber(), saved.event()))
+                .map(SavedUpdate::delivery);
+    }
+
+    static DeliveryEvent toEvent(Delivery delivery, DeliveryEventSource source, LocalDateTime occurredAt) {
+        return DeliveryEvent.builder()
+                .deliveryId(delivery.getId())
+                .status(delivery.getStatus())
+                .location(delivery.getCurrentLocation())
+                .notes(delivery.getNotes())
+                .source(source)
+                .occurredAt(occurredAt)
+                .recordedAt(LocalDateTime.now())
+                .build();
+    }
+
+    /**
+     * Deliveries created before tracking events were recorded keep their whole
+     * history in notes, one note per line. Returns one LEGACY event per note,
+     * to be recorded (if the delivery has no events yet) before the notes are
+     * first overwritten.
+     *
+     * @param delivery The delivery, before any change.
+     * @return The events preserving its notes, oldest first; empty if it has no notes.
+     */
+    static List<DeliveryEvent> toLegacyEvents(Delivery delivery) {
+        if (delivery.getNotes() == null || delivery.getNotes().isBlank()) {
+            return List.of();
+        }
+        // Only the time of the last legacy change is known
+        LocalDateTime occurredAt = delivery.getUpdatedAt() != null ? delivery.getUpdatedAt() : delivery.getCreatedAt();
+        LocalDateTime now = LocalDateTime.now();
+        return delivery.getNotes().lines()
+                .filter(note -> !note.isBlank())
+                .map(note -> DeliveryEvent.builder()
+                        .deliveryId(delivery.getId())
+                        .status(delivery.getStatus())
+                        .location(delivery.getCurrentLocation())
+                        .notes(note.length() > EVENT_NOTES_MAX_LENGTH ? note.substring(0, EVENT_NOTES_MAX_LENGTH) : note)
+                        .source(DeliveryEventSource.LEGACY)
+                        .occurredAt(occurredAt != null ? occurredAt : now)
+                        .recordedAt(now)
+                        .build())
+                .toList();
+    }
+
+    /**
+     * A saved delivery and the event recording its change.
+     */
+    private record SavedUpdate(Delivery delivery, DeliveryEvent event) {
+    }
+
     // --- NEW: Implementations for all DeliveryRepository methods (with logging and error handling) ---
 
     /**
@@ -0,0 +1,102 @@
+package com.aliwudi.marketplace.backend.lgtmed.service;
+
+import com.aliwudi.marketplace.backend.common.model.DeliveryEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Routing table of the live tracking (SSE) connections open on this node,
+ * keyed by tracking number.
+ *
+ * A tracking event is handed only to the connections watching its delivery
+ * (a map lookup). Each connection has its own sink with a small bounded
+ * buffer that drops the oldest events when a client falls behind; the
+ * delivery's latest state is always in the last event. A single shared timer
+ * produces the heartbeats for all connections.
+ */
+@Component
+@Slf4j
+public class DeliveryTrackingStreamRegistry {
+
+    private final Map<String, Set<Sinks.Many<DeliveryEvent>>> connectionsByTrackingNumber = new ConcurrentHashMap<>();
+    private final AtomicInteger connectionCount = new AtomicInteger();
+
+    private final int bufferSize;
+    private final Flux<Long> heartbeats;
+
+    public DeliveryTrackingStreamRegistry(@Value("${delivery.tracking.sse.buffer-size:16}") int bufferSize,
+                                          @Value("${delivery.tracking.sse.heartbeat-interval:25s}") Duration heartbeatInterval) {
+        this.bufferSize = bufferSize;
+        this.heartbeats = Flux.interval(heartbeatInterval).share(); // One timer for all connections
+    }
+
+    /**
+     * Opens a connection watching a delivery. The connection is registered
+     * when the returned Flux is subscribed to, and unregistered as soon as that
+     * subscription is cancelled or terminates.
+     *
+     * @param trackingNumber The tracking number of the delivery.
+     * @return The delivery's tracking events as they are published.
+     */
+    public Flux<DeliveryEvent> connect(String trackingNumber) {
+        Sinks.Many<DeliveryEvent> sink = Sinks.many().unicast().onBackpressureBuffer();
+        return sink.asFlux()
+                .onBackpressureBuffer(bufferSize,
+                        dropped -> log.debug("Tracking stream buffer full for {}, dropped event {}", trackingNumber, dropped.getId()),
+                        BufferOverflowStrategy.DROP_OLDEST)
+                .doOnSubscribe(subscription -> {
+                    connectionsByTrackingNumber.computeIfAbsent(trackingNumber, key -> ConcurrentHashMap.newKeySet()).add(sink);
+                    log.debug("Tracking stream opened for {} ({} open on this node)", trackingNumber, connectionCount.incrementAndGet());
+                })
+                .doFinally(signal -> {
+                    connectionsByTrackingNumber.computeIfPresent(trackingNumber, (key, sinks) -> {
+                        sinks.remove(sink);
+                        return sinks.isEmpty() ? null : sinks;
+                    });
+                    log.debug("Tracking stream closed for {} ({} open on this node)", trackingNumber, connectionCount.decrementAndGet());
+                });
+    }
+
+    /**
+     * Delivers a tracking event to every connection watching the delivery on
+     * this node. Does nothing if nobody is watching it here.
+     *
+     * @param trackingNumber The tracking number of the delivery.
+     * @param event The committed event.
+     */
+    public void publish(String trackingNumber, DeliveryEvent event) {
+        Set<Sinks.Many<DeliveryEvent>> sinks = connectionsByTrackingNumber.get(trackingNumber);
+        if (sinks == null) {
+            return;
+        }
+        for (Sinks.Many<DeliveryEvent> sink : sinks) {
+            // Retry only on concurrent emission; other failures mean the connection is closing
+            sink.emitNext(event, (signal, result) -> result == Sinks.EmitResult.FAIL_NON_SERIALIZED);
+        }
+    }
+
+    /**
+     * @return The shared heartbeat ticks, for keeping idle connections open
+     * through proxies and detecting dead clients.
+     */
+    public Flux<Long> heartbeats() {
+        return heartbeats;
+    }
+
+    /**
+     * @return The number of tracking connections open on this node.
+     */
+    public int getConnectionCount() {
+        return connectionCount.get();
+    }
+}
@@ -0,0 +1,118 @@
+package com.aliwudi.marketplace.backend.lgtmed.service;
+
+import com.aliwudi.marketplace.backend.common.exception.MediaAssetNotFoundException;
+import com.aliwudi.marketplace.backend.common.model.MediaAsset;
+import com.aliwudi.marketplace.backend.lgtmed.repository.MediaBlobRepository;
+import com.aliwudi.marketplace.backend.lgtmed.repository.MediaRepository;
+import com.aliwudi.marketplace.backend.lgtmed.storage.MediaStorage;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Moves media content stored before content addressing, under its asset's
+ * unique file name, to its content hash, and counts the asset's reference in
+ * media_blobs, as an upload would.
+ *
+ * Runs in the background once the application is ready, in ID order, one
+ * asset at a time; with nothing left to migrate it costs a single query. Each
+ * asset's content is read and hashed again (assets from before the download
+ * ETag have no hash), then committed and counted in the transaction that
+ * updates the asset, which holds the asset's row lock: nodes migrating at the
+ * same time, or a concurrent delete, leave it to whoever locked it first. The
+ * old object is deleted after that transaction has committed. Until an asset
+ * has been migrated, MediaService serves its content from the old key.
+ *
+ * Disabled with media.storage.legacy-migration.enabled=false.
+ */
+@Component
+@ConditionalOnProperty(name = "media.storage.legacy-migration.enabled", havingValue = "true", matchIfMissing = true)
+@RequiredArgsConstructor
+@Slf4j
+public class LegacyMediaMigration {
+
+    private static final int PAGE_SIZE = 100;
+
+    private final MediaRepository mediaRepository;
+    private final MediaBlobRepository mediaBlobRepository;
+    private final MediaStorage mediaStorage;
+    private final MediaService mediaService;
+    private final TransactionalOperator transactionalOperator;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        migrate().subscribe(
+                migrated -> {
+                    if (migrated > 0) {
+                        log.info("Moved the content of {} media asset(s) to content-addressed storage", migrated);
+                    }
+                },
+                e -> log.error("Failed to migrate media content to content-addressed storage: {}", e.getMessage(), e));
+    }
+
+    /**
+     * Migrates every asset stored before content addressing.
+     *
+     * @return A Mono emitting the number of assets migrated.
+     */
+    Mono<Long> migrate() {
+        return page(0L)
+                .expand(assets -> assets.size() < PAGE_SIZE
+                        ? Mono.empty()
+                        : page(assets.get(assets.size() - 1).getId()))
+                .concatMapIterable(assets -> assets)
+                .concatMap(this::migrate)
+                .filter(migrated -> migrated)
+                .count();
+    }
+
+    private Mono<List<MediaAsset>> page(Long afterId) {
+        return mediaRepository.findStoredBeforeContentAddressing(afterId, PAGE_SIZE).collectList();
+    }
+
+    private Mono<Boolean> migrate(MediaAsset asset) {
+        String legacyKey = asset.getUniqueFileName();
+        return mediaStorage.stage(mediaStorage.read(legacyKey))
+                .flatMap(staged -> mediaRepository.findByIdForUpdate(asset.getId())
+                        // Deleted, or migrated by another node, since the page was read
+                        .filter(current -> Objects.equals(current.getStoragePath(), asset.getStoragePath())
+                                && !MediaService.isContentAddressed(current))
+                        .flatMap(current -> mediaBlobRepository.acquire(staged.contentHash(), staged.size(), LocalDateTime.now())
+                                // Stored while the blob row is locked, like an upload
+                                .then(mediaStorage.commit(staged, current.getFileType()))
+                                .flatMap(stored -> {
+                                    current.setContentHash(stored.contentHash());
+                                    current.setStoragePath(stored.storagePath());
+                                    current.setFileSize(stored.size());
+                                    current.setUrl(mediaService.assetUrl(current.getUniqueFileName(), stored.key()));
+                                    return mediaRepository.save(current);
+                                }))
+                        .as(transactionalOperator::transactional)
+                        .onErrorResume(e -> mediaStorage.discard(staged).then(Mono.error(e)))
+                        .switchIfEmpty(Mono.defer(() -> mediaStorage.discard(staged).then(Mono.empty()))))
+                .flatMap(migrated -> mediaStorage.delete(legacyKey)
+                        .onErrorResume(e -> {
+                            log.warn("Failed to delete migrated media content {} from storage: {}", legacyKey, e.getMessage());
+                            return Mono.empty();
+                        })
+                        .thenReturn(true))
+                .defaultIfEmpty(false)
+                .onErrorResume(e -> {
+                    if (e instanceof MediaAssetNotFoundException) {
+                        log.warn("Content of media asset {} is missing from storage, not migrated", legacyKey);
+                    } else {
+                        log.warn("Failed to migrate content of media asset {}: {}", legacyKey, e.getMessage());
+                    }
+                    return Mono.just(false);
+                });
+    }
+}
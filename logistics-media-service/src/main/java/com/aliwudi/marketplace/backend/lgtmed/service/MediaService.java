@@ -1,32 +1,64 @@
 package com.aliwudi.marketplace.backend.lgtmed.service;
 
 import com.aliwudi.marketplace.backend.common.model.MediaAsset;
+import com.aliwudi.marketplace.backend.lgtmed.dto.EntityMediaAssets;
+import com.aliwudi.marketplace.backend.lgtmed.dto.MediaBatchRequest;
+import com.aliwudi.marketplace.backend.lgtmed.dto.MediaContent;
 import com.aliwudi.marketplace.backend.lgtmed.dto.MediaUploadRequest;
 import com.aliwudi.marketplace.backend.common.exception.InvalidMediaDataException;
 import com.aliwudi.marketplace.backend.common.exception.MediaAssetNotFoundException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.springframework.util.unit.DataSize;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 
 import java.time.LocalDateTime;
 import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
 import com.aliwudi.marketplace.backend.common.response.ApiResponseMessages;
+import com.aliwudi.marketplace.backend.lgtmed.image.ImageDerivativeService;
+import com.aliwudi.marketplace.backend.lgtmed.image.ImageVariant;
+import com.aliwudi.marketplace.backend.lgtmed.repository.MediaBlobRepository;
 import com.aliwudi.marketplace.backend.lgtmed.repository.MediaRepository;
+import com.aliwudi.marketplace.backend.lgtmed.storage.MediaStorage;
+import com.aliwudi.marketplace.backend.lgtmed.storage.MediaStorage.StagedMedia;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class MediaService {
 
+    private static final int MAX_STORED_NAME_LENGTH = 100;
+
     private final MediaRepository mediaRepository;
+    private final MediaBlobRepository mediaBlobRepository;
+    private final MediaStorage mediaStorage;
+    private final TransactionalOperator transactionalOperator;
+    private final ImageDerivativeService imageDerivativeService;
+
+    @Value("${media.download.base-url:http://localhost:5004/api/media/files}")
+    private String downloadBaseUrl;
 
-    // In a real application, you'd inject a cloud storage client (e.g., S3Client, GcsClient)
-    // For demonstration, we'll simulate storage operations.
-    // private final S3Client s3Client; // Example
+    @Value("${media.upload.max-size:100MB}")
+    private DataSize maxUploadSize;
 
     // IMPORTANT: This prepareDto method is moved from the controller
     // and kept *exactly* as provided by you. It is now a private helper method
@@ -55,13 +87,49 @@ public class MediaService {
     }
 
     /**
-     * Uploads a new media asset.
+     * Uploads a new media asset whose content is sent Base64-encoded in a
+     * JSON body. Prefer the multipart upload for anything but small files.
      *
      * @param request The MediaUploadRequest containing asset details and content.
      * @return A Mono emitting the created MediaAsset (enriched).
      * @throws InvalidMediaDataException if file type is unsupported, content is invalid, or a media asset with the same unique file name already exists.
      */
     public Mono<MediaAsset> uploadMedia(MediaUploadRequest request) {
+        // Decode Base64 content; large payloads take a while, keep it off the event loop
+        Flux<DataBuffer> content = Mono.fromCallable(() -> Base64.getDecoder().decode(request.getFileContent()))
+                .subscribeOn(Schedulers.boundedElastic())
+                .onErrorMap(IllegalArgumentException.class, e -> {
+                    log.warn("Invalid Base64 content for upload: {}", e.getMessage());
+                    return new InvalidMediaDataException(ApiResponseMessages.INVALID_BASE64_CONTENT);
+                })
+                .map(bytes -> (DataBuffer) DefaultDataBufferFactory.sharedInstance.wrap(bytes))
+                .flux();
+        return uploadMedia(request, content);
+    }
+
+    /**
+     * Uploads a new media asset, streaming its content to media storage as it
+     * arrives. The content is never held in memory as a whole, and is rejected
+     * as soon as it exceeds the maximum upload size.
+     *
+     * @param request The asset details; its fileContent is ignored.
+     * @param content The file content.
+     * @return A Mono emitting the created MediaAsset (enriched).
+     * @throws InvalidMediaDataException if file type is unsupported, the file is too large, or a media asset with the same unique file name already exists.
+     */
+    public Mono<MediaAsset> uploadMedia(MediaUploadRequest request, Flux<DataBuffer> content) {
+        return createMediaAsset(request, Mono.defer(() -> mediaStorage.stage(limitSize(content))));
+    }
+
+    /**
+     * Creates a media asset from staged content: stores the content (shared
+     * with assets of the same content) and records the asset.
+     *
+     * @param request The asset details; its fileContent is ignored.
+     * @param staging Stages the content once the request has been validated.
+     * @return A Mono emitting the created MediaAsset (enriched).
+     */
+    Mono<MediaAsset> createMediaAsset(MediaUploadRequest request, Mono<StagedMedia> staging) {
         log.info("Attempting to upload media asset: {}", request.getAssetName());
 
         // Validate file type
@@ -70,19 +138,8 @@ public class MediaService {
             return Mono.error(new InvalidMediaDataException(ApiResponseMessages.UNSUPPORTED_FILE_TYPE + request.getFileType()));
         }
 
-        // Decode Base64 content (for potential validation or processing, not actually stored here)
-        byte[] fileBytes;
-        try {
-            fileBytes = Base64.getDecoder().decode(request.getFileContent());
-            // long fileSize = fileBytes.length; // You might use this
-        } catch (IllegalArgumentException e) {
-            log.warn("Invalid Base64 content for upload: {}", e.getMessage());
-            return Mono.error(new InvalidMediaDataException(ApiResponseMessages.INVALID_BASE64_CONTENT));
-        }
-
-        // Generate unique file name and simulated URL
-        String uniqueFileName = UUID.randomUUID().toString() + "_" + request.getAssetName().replaceAll("\\s+", "_");
-        String simulatedUrl = "https://your-cloud-storage.com/media/" + uniqueFileName;
+        // Generate unique file name; it appears in download URLs, so keep it URL-safe
+        String uniqueFileName = UUID.randomUUID().toString() + "_" + storageSafeName(request.getAssetName());
 
         // Check if a media asset with this generated unique file name already exists (though UUID should prevent this)
         return mediaRepository.existsByUniqueFileName(uniqueFileName)
@@ -91,25 +148,92 @@ public class MediaService {
                         log.warn("Generated unique file name already exists: {}", uniqueFileName);
                         return Mono.error(new InvalidMediaDataException(ApiResponseMessages.DUPLICATE_MEDIA_UNIQUE_FILE_NAME));
                     }
-
-                    MediaAsset mediaAsset = MediaAsset.builder()
-                            .assetName(request.getAssetName())
-                            .uniqueFileName(uniqueFileName)
-                            .url(simulatedUrl)
-                            .fileType(request.getFileType())
-                            .entityId(request.getEntityId())
-                            .entityType(request.getEntityType())
-                            .uploadTime(LocalDateTime.now())
-                            // .fileSize(fileSize) // If calculated
-                            .build();
-
-                    return mediaRepository.save(mediaAsset);
+                    return staging;
                 })
+                .flatMap(staged -> mediaBlobRepository.acquire(staged.contentHash(), staged.size(), LocalDateTime.now())
+                        .doOnNext(rows -> {
+                            if (rows > 1) {
+                                log.info("Content of media asset {} is already stored, sharing it", request.getAssetName());
+                            }
+                        })
+                        // Stored while the blob row is locked, so a concurrent delete of its last reference cannot remove it
+                        .then(mediaStorage.commit(staged, request.getFileType()))
+                        .flatMap(stored -> {
+                            MediaAsset mediaAsset = MediaAsset.builder()
+                                    .assetName(request.getAssetName())
+                                    .uniqueFileName(uniqueFileName)
+                                    .url(assetUrl(uniqueFileName, stored.key()))
+                                    .fileType(request.getFileType())
+                                    .entityId(request.getEntityId())
+                                    .entityType(request.getEntityType())
+                                    .uploadTime(LocalDateTime.now())
+                                    .fileSize(stored.size())
+                                    .storagePath(stored.storagePath())
+                                    .contentHash(stored.contentHash())
+                                    .build();
+                            return mediaRepository.save(mediaAsset);
+                        })
+                        .as(transactionalOperator::transactional)
+                        .onErrorResume(e -> mediaStorage.discard(staged).then(Mono.error(e))))
+                .doOnNext(asset -> imageDerivativeService.generateInBackground(asset, asset.getContentHash())) // Listing pages will ask for the variants soon
                 .flatMap(this::prepareDto) // Enrich the created media asset
                 .doOnSuccess(asset -> log.info("Media asset uploaded successfully: {}", asset.getUniqueFileName()))
                 .doOnError(e -> log.error("Error uploading media asset {}: {}", request.getAssetName(), e.getMessage(), e));
     }
 
+    String assetUrl(String uniqueFileName, String storageKey) {
+        String publicUrl = mediaStorage.publicUrl(storageKey);
+        return publicUrl != null ? publicUrl : downloadBaseUrl + "/" + uniqueFileName;
+    }
+
+    // Fails the upload as soon as it goes over the maximum size, instead of storing it whole first
+    private Flux<DataBuffer> limitSize(Flux<DataBuffer> content) {
+        long maxBytes = maxUploadSize.toBytes();
+        return Flux.defer(() -> {
+            AtomicLong received = new AtomicLong();
+            return content.handle((buffer, sink) -> {
+                if (received.addAndGet(buffer.readableByteCount()) > maxBytes) {
+                    DataBufferUtils.release(buffer);
+                    sink.error(new InvalidMediaDataException(ApiResponseMessages.MEDIA_FILE_TOO_LARGE + maxUploadSize));
+                } else {
+                    sink.next(buffer);
+                }
+            });
+        });
+    }
+
+    private static String storageSafeName(String assetName) {
+        String name = assetName.strip().replaceAll("[^A-Za-z0-9._-]", "_");
+        return name.length() > MAX_STORED_NAME_LENGTH ? name.substring(name.length() - MAX_STORED_NAME_LENGTH) : name;
+    }
+
+    /**
+     * The storage key of an asset's content. Content uploaded since content
+     * addressing is stored under its hash, which then has a media_blobs row.
+     * Older content stays under the asset's unique file name until
+     * LegacyMediaMigration moves it; if the same content has been uploaded
+     * since, that copy (stored under the hash) is served instead.
+     *
+     * @param asset The media asset.
+     * @return A Mono emitting the storage key.
+     */
+    Mono<String> storageKey(MediaAsset asset) {
+        if (isContentAddressed(asset)) {
+            return Mono.just(asset.getContentHash());
+        }
+        if (asset.getContentHash() == null) {
+            return Mono.just(asset.getUniqueFileName());
+        }
+        return mediaBlobRepository.existsById(asset.getContentHash())
+                .map(stored -> stored ? asset.getContentHash() : asset.getUniqueFileName());
+    }
+
+    // Whether the asset was stored under its hash, and so holds one of the references counted in media_blobs
+    static boolean isContentAddressed(MediaAsset asset) {
+        return asset.getContentHash() != null && asset.getStoragePath() != null
+                && asset.getStoragePath().endsWith(asset.getContentHash());
+    }
+
     /**
      * Retrieves a media asset by its unique file name, enriching it.
      *
@@ -126,6 +250,56 @@ public class MediaService {
                 .doOnError(e -> log.error("Error retrieving media asset {}: {}", uniqueFileName, e.getMessage(), e));
     }
 
+    /**
+     * Retrieves a media asset by its ID, enriching it.
+     *
+     * @param id The ID of the media asset.
+     * @return A Mono emitting the MediaAsset if found (enriched), or empty.
+     */
+    Mono<MediaAsset> getMediaAssetById(Long id) {
+        return mediaRepository.findById(id).flatMap(this::prepareDto);
+    }
+
+    /**
+     * Retrieves a media asset with its stored content, for download.
+     *
+     * @param uniqueFileName The unique file name of the media asset.
+     * @return A Mono emitting the MediaAsset and its content.
+     * @throws MediaAssetNotFoundException if the media asset or its content is not found.
+     */
+    public Mono<MediaContent> getMediaContent(String uniqueFileName) {
+        log.debug("Retrieving content of media asset: {}", uniqueFileName);
+        return mediaRepository.findByUniqueFileName(uniqueFileName)
+                .switchIfEmpty(Mono.error(new MediaAssetNotFoundException(ApiResponseMessages.MEDIA_NOT_FOUND + uniqueFileName)))
+                .flatMap(asset -> storageKey(asset)
+                        .flatMap(mediaStorage::load)
+                        .map(content -> new MediaContent(asset, content, asset.getFileType(), asset.getContentHash()))
+                        .defaultIfEmpty(new MediaContent(asset, null, asset.getFileType(), asset.getContentHash())))
+                .doOnError(e -> log.error("Error retrieving content of media asset {}: {}", uniqueFileName, e.getMessage()));
+    }
+
+    /**
+     * Retrieves a resized variant of an image asset, generating it on first
+     * request. Assets without variants (not an image, or a format that cannot
+     * be processed) come without content, to be served from their URL.
+     *
+     * @param uniqueFileName The unique file name of the media asset.
+     * @param variant The image variant.
+     * @return A Mono emitting the MediaAsset and the variant content.
+     * @throws MediaAssetNotFoundException if the media asset is not found.
+     */
+    public Mono<MediaContent> getMediaVariant(String uniqueFileName, ImageVariant variant) {
+        log.debug("Retrieving {} variant of media asset: {}", variant, uniqueFileName);
+        return mediaRepository.findByUniqueFileName(uniqueFileName)
+                .switchIfEmpty(Mono.error(new MediaAssetNotFoundException(ApiResponseMessages.MEDIA_NOT_FOUND + uniqueFileName)))
+                .flatMap(asset -> storageKey(asset)
+                        .flatMap(key -> imageDerivativeService.getDerivative(asset, key, variant))
+                        .map(derivative -> new MediaContent(asset, new FileSystemResource(derivative.file()), derivative.contentType(),
+                                asset.getContentHash() != null ? asset.getContentHash() + "-" + variant.pathValue() : null))
+                        .defaultIfEmpty(new MediaContent(asset, null, asset.getFileType(), asset.getContentHash())))
+                .doOnError(e -> log.error("Error retrieving {} variant of media asset {}: {}", variant, uniqueFileName, e.getMessage()));
+    }
+
     /**
      * Retrieves media assets for a specific entity with pagination, enriching each.
      *
@@ -142,6 +316,44 @@ public class MediaService {
                 .doOnError(e -> log.error("Error retrieving media assets for entity {} type {}: {}", entityId, entityType, e.getMessage(), e));
     }
 
+    /**
+     * Retrieves the media assets of many entities at once, grouped by entity,
+     * in the order the entities are given. Entities without assets get an
+     * empty group. Uses one query per distinct entity type (usually one),
+     * backed by the (entity_type, entity_id) index.
+     *
+     * @param entities The entities.
+     * @return A Flux of EntityMediaAssets, one per distinct entity.
+     */
+    public Flux<EntityMediaAssets> getMediaAssetsForEntities(List<MediaBatchRequest.EntityRef> entities) {
+        log.info("Retrieving media assets for {} entities", entities.size());
+        Map<String, Set<String>> entityIdsByType = entities.stream()
+                .collect(Collectors.groupingBy(MediaBatchRequest.EntityRef::getEntityType, LinkedHashMap::new,
+                        Collectors.mapping(MediaBatchRequest.EntityRef::getEntityId, Collectors.toCollection(LinkedHashSet::new))));
+
+        return Flux.fromIterable(entityIdsByType.entrySet())
+                .concatMap(group -> mediaRepository.findByEntityTypeAndEntityIdIn(group.getKey(), group.getValue(), Sort.by("id")))
+                .concatMap(this::prepareDto)
+                .collect(Collectors.groupingBy(asset -> new EntityKey(asset.getEntityType(), asset.getEntityId())))
+                .flatMapMany(assetsByEntity -> Flux.fromIterable(entities.stream()
+                        .map(entity -> new EntityKey(entity.getEntityType(), entity.getEntityId()))
+                        .distinct()
+                        .map(key -> {
+                            List<MediaAsset> assets = assetsByEntity.getOrDefault(key, List.of());
+                            return EntityMediaAssets.builder()
+                                    .entityType(key.entityType())
+                                    .entityId(key.entityId())
+                                    .count(assets.size())
+                                    .assets(assets)
+                                    .build();
+                        })
+                        .toList()))
+                .doOnError(e -> log.error("Error retrieving media assets for {} entities: {}", entities.size(), e.getMessage(), e));
+    }
+
+    private record EntityKey(String entityType, String entityId) {
+    }
+
     /**
      * Counts media assets for a specific entity.
      *
@@ -157,8 +369,10 @@ public class MediaService {
     }
 
     /**
-     * Deletes a media asset by its unique file name.
-     * This operation is transactional.
+     * Deletes a media asset by its unique file name. The asset and its
+     * reference to its content are removed in one transaction; content left
+     * without references is deleted from storage only once that transaction
+     * has committed.
      *
      * @param uniqueFileName The unique file name of the media asset to delete.
      * @return A Mono<Void> indicating completion.
@@ -166,21 +380,49 @@ public class MediaService {
      */
     public Mono<Void> deleteMediaAsset(String uniqueFileName) {
         log.info("Attempting to delete media asset with unique file name: {}", uniqueFileName);
-        // In a real scenario, you would delete from cloud storage first, then from DB
         return mediaRepository.findByUniqueFileName(uniqueFileName)
                 .switchIfEmpty(Mono.error(new MediaAssetNotFoundException(ApiResponseMessages.MEDIA_NOT_FOUND_FOR_DELETE + uniqueFileName)))
-                .flatMap(asset -> {
-                    // Simulate deletion from cloud storage:
-                    // return Mono.fromCallable(() -> s3Client.deleteObject(DeleteObjectRequest.builder()...))
-                    //            .then(mediaRepository.delete(asset));
-                    log.info("Simulating deletion of {} from cloud storage.", asset.getUrl());
-                    return mediaRepository.delete(asset);
-                })
+                // Re-read under lock, so a concurrent LegacyMediaMigration of its content is seen
+                .flatMap(found -> mediaRepository.findByIdForUpdate(found.getId())
+                        .flatMap(asset -> mediaRepository.delete(asset).then(releaseContent(asset)))
+                        .as(transactionalOperator::transactional))
+                .flatMap(this::deleteContent)
                 .then() // Ensure Mono<Void> is returned
                 .doOnSuccess(v -> log.info("Media asset deleted successfully: {}", uniqueFileName))
                 .doOnError(e -> log.error("Error deleting media asset {}: {}", uniqueFileName, e.getMessage(), e));
     }
 
+    // Drops the asset's reference to its content; emits the storage key of content left without references
+    private Mono<String> releaseContent(MediaAsset asset) {
+        if (!isContentAddressed(asset)) {
+            return Mono.just(asset.getUniqueFileName()); // Stored before content addressing, never shared
+        }
+        return mediaBlobRepository.release(asset.getContentHash())
+                .then(mediaBlobRepository.deleteUnreferenced(asset.getContentHash()))
+                .filter(deleted -> deleted > 0)
+                .map(deleted -> asset.getContentHash());
+    }
+
+    // Runs after the deletion has committed. The content is deleted while its blob row, or the gap left by it, is
+    // locked, and only if nothing references it: an upload of the same content meanwhile keeps it
+    private Mono<Void> deleteContent(String storageKey) {
+        return mediaBlobRepository.lockIfReferenced(storageKey)
+                .hasElement()
+                .flatMap(referenced -> {
+                    if (referenced) {
+                        return Mono.<Void>empty();
+                    }
+                    imageDerivativeService.evict(storageKey);
+                    return mediaStorage.delete(storageKey);
+                })
+                .as(transactionalOperator::transactional)
+                // The asset is gone either way; leftover content is only logged
+                .onErrorResume(e -> {
+                    log.warn("Failed to delete media content {} from storage: {}", storageKey, e.getMessage());
+                    return Mono.empty();
+                });
+    }
+
     // --- NEW: Implementations for all MediaAssetRepository methods (with logging and error handling) ---
 
     /**
@@ -294,10 +536,10 @@ public class MediaService {
                 .doOnError(e -> log.error("Error checking media asset existence for unique file name {}: {}", uniqueFileName, e.getMessage(), e));
     }
 
-    // Helper for basic file type validation
-    private boolean isValidFileType(String fileType) {
+    // Helper for basic file type validation. SVG is refused: it is a document that can run scripts, not just an image
+    boolean isValidFileType(String fileType) {
         return fileType != null &&
-               (fileType.startsWith("image/") ||
+               ((fileType.startsWith("image/") && !fileType.startsWith("image/svg")) ||
                 fileType.startsWith("video/") ||
                 fileType.startsWith("audio/") ||
                 fileType.equals("application/pdf")); // Example types
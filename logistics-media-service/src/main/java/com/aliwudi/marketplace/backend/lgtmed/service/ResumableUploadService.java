@@ -0,0 +1,325 @@
+package com.aliwudi.marketplace.backend.lgtmed.service;
+
+import com.aliwudi.marketplace.backend.common.exception.InvalidMediaDataException;
+import com.aliwudi.marketplace.backend.common.exception.MediaAssetNotFoundException;
+import com.aliwudi.marketplace.backend.common.model.MediaAsset;
+import com.aliwudi.marketplace.backend.common.model.MediaUploadSession;
+import com.aliwudi.marketplace.backend.common.response.ApiResponseMessages;
+import com.aliwudi.marketplace.backend.common.status.MediaUploadStatus;
+import com.aliwudi.marketplace.backend.lgtmed.dto.MediaUploadRequest;
+import com.aliwudi.marketplace.backend.lgtmed.dto.ResumableUploadRequest;
+import com.aliwudi.marketplace.backend.lgtmed.dto.ResumableUploadStatus;
+import com.aliwudi.marketplace.backend.lgtmed.repository.MediaUploadSessionRepository;
+import com.aliwudi.marketplace.backend.lgtmed.storage.UploadChunkStore;
+import com.aliwudi.marketplace.backend.lgtmed.storage.UploadChunkStore.ReceivedChunk;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.springframework.util.unit.DataSize;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Resumable media uploads, for large files sent over unreliable networks.
+ *
+ * The client initiates an upload with the file size, sends the file as
+ * numbered chunks (PUT, idempotent, in any order, retried as needed), then
+ * completes it. Chunks are kept on local disk by UploadChunkStore and
+ * recorded in media_upload_chunks, so an interrupted client asks for the
+ * upload's status and only sends the chunks that are missing. On completion
+ * the chunks are assembled into one file and stored like any other upload.
+ * Uploads that are not completed within session-ttl of their last chunk are
+ * deleted by a background loop.
+ *
+ * An upload belongs to the user who started it: for anyone else it does not
+ * exist. Its chunks are on the disk of the node that started it, so requests
+ * for an upload must be routed to that node (sticky on the upload ID) unless
+ * the chunk directory is shared (see UploadChunkStore); a request reaching
+ * another node is refused with the node to route it to. A chunk is received
+ * outside any transaction, then committed and recorded under the upload's
+ * row lock, and only if the upload is still active: completion and abort
+ * wait for that lock, so no chunk is added or replaced once an upload is
+ * being assembled or deleted.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ResumableUploadService {
+
+    private static final int CLEANUP_BATCH_SIZE = 100;
+
+    private final MediaUploadSessionRepository sessionRepository;
+    private final UploadChunkStore chunkStore;
+    private final MediaService mediaService;
+    private final TransactionalOperator transactionalOperator;
+
+    @Value("${media.upload.chunk-size:8MB}")
+    private DataSize chunkSize;
+
+    @Value("${media.upload.chunked.max-size:5GB}")
+    private DataSize maxSize;
+
+    @Value("${media.upload.session-ttl:24h}")
+    private Duration sessionTtl;
+
+    @Value("${media.upload.cleanup-interval:1h}")
+    private Duration cleanupInterval;
+
+    private Disposable cleanupLoop;
+
+    @PostConstruct
+    public void start() {
+        cleanupLoop = Flux.interval(cleanupInterval)
+                .onBackpressureDrop() // Skip a tick if the previous cleanup is still running
+                .concatMap(tick -> deleteExpired()
+                        .onErrorResume(e -> {
+                            log.error("Cleanup of expired resumable uploads failed: {}", e.getMessage(), e);
+                            return Mono.empty();
+                        }))
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (cleanupLoop != null) {
+            cleanupLoop.dispose();
+        }
+    }
+
+    /**
+     * Starts a resumable upload.
+     *
+     * @param request The asset details and file size.
+     * @param owner The name of the authenticated user.
+     * @return A Mono emitting the status of the new upload, with its chunk layout.
+     * @throws InvalidMediaDataException if the file type is unsupported or the file is too large.
+     */
+    public Mono<ResumableUploadStatus> initiate(ResumableUploadRequest request, String owner) {
+        if (!mediaService.isValidFileType(request.getFileType())) {
+            return Mono.error(new InvalidMediaDataException(ApiResponseMessages.UNSUPPORTED_FILE_TYPE + request.getFileType()));
+        }
+        if (request.getTotalSize() <= 0 || request.getTotalSize() > maxSize.toBytes()) {
+            return Mono.error(new InvalidMediaDataException(ApiResponseMessages.INVALID_UPLOAD_SIZE + maxSize));
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        long chunkBytes = chunkSize.toBytes();
+        MediaUploadSession session = MediaUploadSession.builder()
+                .uploadId(UUID.randomUUID().toString())
+                .owner(owner)
+                .nodeId(chunkStore.nodeId())
+                .assetName(request.getAssetName())
+                .fileType(request.getFileType())
+                .entityId(request.getEntityId())
+                .entityType(request.getEntityType())
+                .totalSize(request.getTotalSize())
+                .chunkSize(chunkBytes)
+                .totalChunks((int) ((request.getTotalSize() + chunkBytes - 1) / chunkBytes))
+                .createdAt(now)
+                .updatedAt(now)
+                .expiresAt(now.plus(sessionTtl))
+                .build();
+        return sessionRepository.save(session)
+                .doOnSuccess(saved -> log.info("Resumable upload {} started for {} ({} bytes in {} chunks)",
+                        saved.getUploadId(), saved.getAssetName(), saved.getTotalSize(), saved.getTotalChunks()))
+                .map(saved -> toStatus(saved, List.of(), null));
+    }
+
+    /**
+     * @param uploadId The upload ID.
+     * @param owner The name of the authenticated user.
+     * @return A Mono emitting the upload's progress.
+     * @throws MediaAssetNotFoundException if the upload does not exist (or expired), or is someone else's.
+     */
+    public Mono<ResumableUploadStatus> getStatus(String uploadId, String owner) {
+        return findSession(uploadId, owner).flatMap(this::status);
+    }
+
+    /**
+     * Stores one chunk of an upload. Sending a chunk again replaces it.
+     *
+     * @param uploadId The upload ID.
+     * @param owner The name of the authenticated user.
+     * @param chunkIndex The chunk number, from 0.
+     * @param content The chunk content.
+     * @return A Mono emitting the upload's progress.
+     * @throws MediaAssetNotFoundException if the upload does not exist, or is someone else's.
+     * @throws InvalidMediaDataException if the upload is not active or held by another node, or the index or size is wrong.
+     */
+    public Mono<ResumableUploadStatus> uploadChunk(String uploadId, String owner, int chunkIndex, Flux<DataBuffer> content) {
+        return findLocalSession(uploadId, owner)
+                .flatMap(session -> {
+                    if (session.getStatus() != MediaUploadStatus.ACTIVE) {
+                        return Mono.error(new InvalidMediaDataException(ApiResponseMessages.UPLOAD_NOT_ACTIVE + session.getStatus()));
+                    }
+                    if (chunkIndex < 0 || chunkIndex >= session.getTotalChunks()) {
+                        return Mono.error(new InvalidMediaDataException(ApiResponseMessages.INVALID_CHUNK_INDEX + (session.getTotalChunks() - 1)));
+                    }
+                    long expectedSize = chunkIndex < session.getTotalChunks() - 1
+                            ? session.getChunkSize()
+                            : session.getTotalSize() - session.getChunkSize() * (session.getTotalChunks() - 1);
+                    return chunkStore.receiveChunk(uploadId, chunkIndex, expectedSize, content)
+                            .flatMap(chunk -> recordChunk(session, chunkIndex, chunk)
+                                    .onErrorResume(e -> chunkStore.discardChunk(chunk).then(Mono.error(e))));
+                })
+                .flatMap(this::status);
+    }
+
+    // Commits a received chunk under the upload's row lock, if the upload was not completed or aborted meanwhile
+    private Mono<MediaUploadSession> recordChunk(MediaUploadSession session, int chunkIndex, ReceivedChunk chunk) {
+        LocalDateTime now = LocalDateTime.now();
+        return sessionRepository.findByIdForUpdate(session.getId())
+                .switchIfEmpty(Mono.error(() -> new MediaAssetNotFoundException(ApiResponseMessages.UPLOAD_SESSION_NOT_FOUND + session.getUploadId())))
+                .flatMap(current -> {
+                    if (current.getStatus() != MediaUploadStatus.ACTIVE) {
+                        return Mono.error(new InvalidMediaDataException(ApiResponseMessages.UPLOAD_NOT_ACTIVE + current.getStatus()));
+                    }
+                    current.setUpdatedAt(now);
+                    current.setExpiresAt(now.plus(sessionTtl));
+                    return chunkStore.commitChunk(chunk)
+                            .then(sessionRepository.recordChunk(current.getId(), chunkIndex, chunk.size(), now))
+                            .then(sessionRepository.touch(current.getId(), now, current.getExpiresAt()))
+                            .thenReturn(current);
+                })
+                .as(transactionalOperator::transactional);
+    }
+
+    /**
+     * Completes an upload once all its chunks are received: assembles them
+     * and creates the media asset. Completing a completed upload again
+     * returns the same asset.
+     *
+     * @param uploadId The upload ID.
+     * @param owner The name of the authenticated user.
+     * @return A Mono emitting the completed upload, with its asset.
+     * @throws MediaAssetNotFoundException if the upload does not exist, or is someone else's.
+     * @throws InvalidMediaDataException if chunks are missing, the upload is being completed or it is held by another node.
+     */
+    public Mono<ResumableUploadStatus> complete(String uploadId, String owner) {
+        return findLocalSession(uploadId, owner)
+                .flatMap(session -> switch (session.getStatus()) {
+                    case COMPLETED -> status(session);
+                    case ASSEMBLING -> Mono.error(new InvalidMediaDataException(ApiResponseMessages.UPLOAD_IN_PROGRESS));
+                    case ACTIVE -> sessionRepository.findReceivedChunks(session.getId())
+                            .count()
+                            .flatMap(received -> received < session.getTotalChunks()
+                                    ? Mono.error(new InvalidMediaDataException(ApiResponseMessages.UPLOAD_INCOMPLETE + (session.getTotalChunks() - received)))
+                                    : sessionRepository.transition(session.getId(), MediaUploadStatus.ACTIVE.name(), MediaUploadStatus.ASSEMBLING.name(), LocalDateTime.now()))
+                            .flatMap(claimed -> claimed > 0
+                                    ? assemble(session)
+                                    : Mono.error(new InvalidMediaDataException(ApiResponseMessages.UPLOAD_IN_PROGRESS)));
+                });
+    }
+
+    private Mono<ResumableUploadStatus> assemble(MediaUploadSession session) {
+        MediaUploadRequest request = MediaUploadRequest.builder()
+                .assetName(session.getAssetName())
+                .fileType(session.getFileType())
+                .entityId(session.getEntityId())
+                .entityType(session.getEntityType())
+                .build();
+        return mediaService.createMediaAsset(request, chunkStore.assemble(session.getUploadId(), session.getTotalChunks()))
+                .flatMap(asset -> sessionRepository.markCompleted(session.getId(), asset.getId(), LocalDateTime.now())
+                        .then(chunkStore.delete(session.getUploadId())) // Chunk rows stay until expiry, for status requests
+                        .doOnSuccess(v -> log.info("Resumable upload {} completed as media asset {}", session.getUploadId(), asset.getUniqueFileName()))
+                        .then(findSession(session.getUploadId(), session.getOwner()))
+                        .flatMap(this::status))
+                .onErrorResume(e -> sessionRepository.transition(session.getId(), MediaUploadStatus.ASSEMBLING.name(), MediaUploadStatus.ACTIVE.name(), LocalDateTime.now())
+                        .then(Mono.error(e))); // Chunks are kept; completing can be retried
+    }
+
+    /**
+     * Aborts an upload, deleting its chunks.
+     *
+     * @param uploadId The upload ID.
+     * @param owner The name of the authenticated user.
+     * @return A Mono completing once the upload is deleted.
+     * @throws MediaAssetNotFoundException if the upload does not exist, or is someone else's.
+     * @throws InvalidMediaDataException if the upload is being completed or is held by another node.
+     */
+    public Mono<Void> abort(String uploadId, String owner) {
+        return findLocalSession(uploadId, owner)
+                .flatMap(session -> sessionRepository.findByIdForUpdate(session.getId())
+                        .flatMap(current -> current.getStatus() == MediaUploadStatus.ASSEMBLING
+                                ? Mono.error(new InvalidMediaDataException(ApiResponseMessages.UPLOAD_IN_PROGRESS))
+                                : deleteRows(current))
+                        .as(transactionalOperator::transactional)
+                        .then(chunkStore.delete(uploadId))) // No chunk can be committed any more
+                .doOnSuccess(v -> log.info("Resumable upload {} aborted", uploadId));
+    }
+
+    /**
+     * Deletes one batch of expired uploads.
+     */
+    Mono<Void> deleteExpired() {
+        LocalDateTime now = LocalDateTime.now();
+        return sessionRepository.findExpired(now, now.minus(sessionTtl), chunkStore.nodeId(), chunkStore.isShared(), CLEANUP_BATCH_SIZE)
+                .concatMap(session -> sessionRepository.findByIdForUpdate(session.getId())
+                        .filter(current -> current.getExpiresAt().isBefore(now)) // Not resumed since it was found
+                        .flatMap(current -> deleteRows(current).thenReturn(current))
+                        .as(transactionalOperator::transactional)
+                        .flatMap(deleted -> (chunkStore.holds(deleted.getNodeId()) ? chunkStore.delete(deleted.getUploadId()) : Mono.<Void>empty())
+                                .thenReturn(deleted)))
+                .count()
+                .doOnNext(deleted -> {
+                    if (deleted > 0) {
+                        log.info("Deleted {} expired resumable upload(s)", deleted);
+                    }
+                })
+                .then();
+    }
+
+    private Mono<Void> deleteRows(MediaUploadSession session) {
+        return sessionRepository.deleteChunks(session.getId())
+                .then(sessionRepository.deleteById(session.getId()));
+    }
+
+    // Someone else's upload is reported as not found, like one that does not exist
+    private Mono<MediaUploadSession> findSession(String uploadId, String owner) {
+        return sessionRepository.findByUploadId(uploadId)
+                .filter(session -> Objects.equals(session.getOwner(), owner))
+                .switchIfEmpty(Mono.error(() -> new MediaAssetNotFoundException(ApiResponseMessages.UPLOAD_SESSION_NOT_FOUND + uploadId)));
+    }
+
+    // The upload, if its chunks are on this node
+    private Mono<MediaUploadSession> findLocalSession(String uploadId, String owner) {
+        return findSession(uploadId, owner)
+                .flatMap(session -> chunkStore.holds(session.getNodeId())
+                        ? Mono.just(session)
+                        : Mono.error(new InvalidMediaDataException(ApiResponseMessages.UPLOAD_ON_OTHER_NODE + session.getNodeId())));
+    }
+
+    private Mono<ResumableUploadStatus> status(MediaUploadSession session) {
+        Mono<Optional<MediaAsset>> asset = session.getMediaAssetId() != null
+                ? mediaService.getMediaAssetById(session.getMediaAssetId()).map(Optional::of).defaultIfEmpty(Optional.empty())
+                : Mono.just(Optional.empty());
+        return Mono.zip(sessionRepository.findReceivedChunks(session.getId()).collectList(), asset)
+                .map(tuple -> toStatus(session, tuple.getT1(), tuple.getT2().orElse(null)));
+    }
+
+    private static ResumableUploadStatus toStatus(MediaUploadSession session, List<Integer> receivedChunks, MediaAsset asset) {
+        return ResumableUploadStatus.builder()
+                .uploadId(session.getUploadId())
+                .status(session.getStatus())
+                .totalSize(session.getTotalSize())
+                .chunkSize(session.getChunkSize())
+                .totalChunks(session.getTotalChunks())
+                .receivedChunks(receivedChunks)
+                .expiresAt(session.getExpiresAt())
+                .asset(asset)
+                .build();
+    }
+}
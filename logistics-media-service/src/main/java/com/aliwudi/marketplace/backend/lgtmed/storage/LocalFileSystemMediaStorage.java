@@ -0,0 +1,154 @@
+package com.aliwudi.marketplace.backend.lgtmed.storage;
+
+import com.aliwudi.marketplace.backend.common.exception.InvalidMediaDataException;
+import com.aliwudi.marketplace.backend.common.exception.MediaAssetNotFoundException;
+import com.aliwudi.marketplace.backend.common.exception.ServiceException;
+import com.aliwudi.marketplace.backend.common.response.ApiResponseMessages;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.UUID;
+
+/**
+ * Stores media as files under a root directory, spread over subdirectories
+ * named after the first two characters of the key (keys are content hashes).
+ *
+ * Content is staged with an AsynchronousFileChannel in a staging directory
+ * under the root (same file system), then renamed into place, so readers
+ * never see a partially written file. Committing content that is already
+ * stored only removes the staging file.
+ */
+@Component
+@ConditionalOnProperty(name = "media.storage.type", havingValue = "local", matchIfMissing = true)
+@Slf4j
+public class LocalFileSystemMediaStorage implements MediaStorage {
+
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final String STAGING_DIRECTORY = ".staging";
+
+    private final Path root;
+    private final Path staging;
+
+    public LocalFileSystemMediaStorage(@Value("${media.storage.local.root:./media-storage}") String root) throws IOException {
+        this.root = Paths.get(root).toAbsolutePath().normalize();
+        this.staging = this.root.resolve(STAGING_DIRECTORY);
+        Files.createDirectories(this.staging);
+        log.info("Storing media on the local file system under {}", this.root);
+    }
+
+    @Override
+    public Mono<StagedMedia> stage(Flux<DataBuffer> content) {
+        return Mono.defer(() -> {
+            Path file = staging.resolve(UUID.randomUUID() + ".part");
+            return MediaFiles.write(content, file)
+                    .map(written -> new StagedMedia(file, written.size(), written.sha256()));
+        }).onErrorMap(e -> e instanceof IOException || e instanceof UncheckedIOException,
+                e -> new ServiceException(ApiResponseMessages.ERROR_STORING_MEDIA, e));
+    }
+
+    @Override
+    public Mono<StoredMedia> commit(StagedMedia staged, String contentType) {
+        return Mono.fromCallable(() -> {
+                    Path target = resolve(staged.contentHash());
+                    if (Files.exists(target)) {
+                        Files.delete(staged.file()); // Same content is already stored
+                    } else {
+                        Files.createDirectories(target.getParent());
+                        moveIntoPlace(staged.file(), target);
+                    }
+                    return new StoredMedia(staged.contentHash(), staged.size(), target.toString(), staged.contentHash());
+                })
+                .subscribeOn(Schedulers.boundedElastic())
+                .onErrorResume(e -> discard(staged).then(Mono.error(e)))
+                .onErrorMap(e -> e instanceof IOException || e instanceof UncheckedIOException,
+                        e -> new ServiceException(ApiResponseMessages.ERROR_STORING_MEDIA, e));
+    }
+
+    // Staged files on another file system (e.g. assembled chunked uploads) are copied next to the target first
+    private static void moveIntoPlace(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Path copy = target.resolveSibling(target.getFileName() + "." + UUID.randomUUID() + ".part");
+            try {
+                Files.copy(source, copy);
+                Files.move(copy, target, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(copy);
+            }
+            Files.delete(source);
+        }
+    }
+
+    @Override
+    public Mono<Void> discard(StagedMedia staged) {
+        return MediaFiles.deleteQuietly(staged.file());
+    }
+
+    @Override
+    public Flux<DataBuffer> read(String key) {
+        return Flux.defer(() -> DataBufferUtils.read(resolve(key), DefaultDataBufferFactory.sharedInstance, READ_BUFFER_SIZE))
+                .onErrorMap(NoSuchFileException.class, e -> new MediaAssetNotFoundException(ApiResponseMessages.MEDIA_CONTENT_NOT_FOUND + key));
+    }
+
+    /**
+     * Emits the file itself, which lets the web server send it with zero-copy
+     * file transfer (sendfile) instead of reading it through the heap.
+     */
+    @Override
+    public Mono<Resource> load(String key) {
+        return Mono.fromCallable(() -> resolve(key))
+                .subscribeOn(Schedulers.boundedElastic())
+                .filter(Files::isRegularFile)
+                .switchIfEmpty(Mono.error(() -> new MediaAssetNotFoundException(ApiResponseMessages.MEDIA_CONTENT_NOT_FOUND + key)))
+                .map(FileSystemResource::new);
+    }
+
+    @Override
+    public Mono<Void> delete(String key) {
+        return Mono.fromCallable(() -> Files.deleteIfExists(resolve(key)))
+                .subscribeOn(Schedulers.boundedElastic())
+                .onErrorMap(IOException.class, e -> new ServiceException(ApiResponseMessages.ERROR_DELETING_MEDIA, e))
+                .then();
+    }
+
+    /**
+     * Files are served by the download endpoint.
+     */
+    @Override
+    public String publicUrl(String key) {
+        return null;
+    }
+
+    /**
+     * The file of a key; never outside the root directory.
+     */
+    Path resolve(String key) {
+        if (key == null || key.length() < 2) {
+            throw new InvalidMediaDataException(ApiResponseMessages.INVALID_UNIQUE_FILE_NAME);
+        }
+        Path file = root.resolve(key.substring(0, 2)).resolve(key).normalize();
+        if (!file.startsWith(root) || !file.getParent().getParent().equals(root)) {
+            throw new InvalidMediaDataException(ApiResponseMessages.INVALID_UNIQUE_FILE_NAME);
+        }
+        return file;
+    }
+}
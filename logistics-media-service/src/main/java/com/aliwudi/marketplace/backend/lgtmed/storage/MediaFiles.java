@@ -0,0 +1,105 @@
+package com.aliwudi.marketplace.backend.lgtmed.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * File helpers shared by the storage backends.
+ */
+@Slf4j
+final class MediaFiles {
+
+    private MediaFiles() {
+    }
+
+    /**
+     * Writes a stream of buffers to a new file with an AsynchronousFileChannel,
+     * releasing each buffer once written, so only the buffers in flight are
+     * held in memory. The SHA-256 of the content is computed on the way. The
+     * file is deleted if writing fails or is cancelled.
+     *
+     * @param content The content.
+     * @param target The file to create; must not exist.
+     * @return A Mono emitting the size and hash of what was written.
+     */
+    static Mono<WrittenFile> write(Flux<DataBuffer> content, Path target) {
+        return Mono.defer(() -> {
+            AtomicLong size = new AtomicLong();
+            MessageDigest digest = sha256();
+            Flux<DataBuffer> hashed = content.doOnNext(buffer -> {
+                // The views share the buffer's memory but not its read position, which the write still needs
+                try (DataBuffer.ByteBufferIterator views = buffer.readableByteBuffers()) {
+                    views.forEachRemaining(digest::update);
+                }
+            });
+            return Flux.using(
+                            () -> AsynchronousFileChannel.open(target, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE),
+                            channel -> DataBufferUtils.write(hashed, channel),
+                            MediaFiles::close)
+                    .doOnNext(buffer -> {
+                        size.addAndGet(buffer.readableByteCount());
+                        DataBufferUtils.release(buffer); // Written buffers are handed back, not released
+                    })
+                    .then(Mono.fromSupplier(() -> new WrittenFile(size.get(), HexFormat.of().formatHex(digest.digest()))))
+                    .onErrorResume(e -> deleteQuietly(target).then(Mono.error(e)))
+                    .doOnCancel(() -> deleteQuietly(target).subscribe());
+        });
+    }
+
+    /**
+     * Deletes a file if it exists, logging instead of failing.
+     *
+     * @param file The file.
+     * @return A Mono completing once the file is gone.
+     */
+    static Mono<Void> deleteQuietly(Path file) {
+        return Mono.fromRunnable(() -> {
+                    try {
+                        Files.deleteIfExists(file);
+                    } catch (IOException e) {
+                        log.warn("Failed to delete {}: {}", file, e.getMessage());
+                    }
+                })
+                .subscribeOn(Schedulers.boundedElastic())
+                .then();
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void close(AsynchronousFileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.debug("Failed to close file channel: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * A file written by write.
+     *
+     * @param size The number of bytes written.
+     * @param sha256 The hex-encoded SHA-256 of the content.
+     */
+    record WrittenFile(long size, String sha256) {
+    }
+}
@@ -0,0 +1,111 @@
+package com.aliwudi.marketplace.backend.lgtmed.storage;
+
+import com.aliwudi.marketplace.backend.common.exception.MediaAssetNotFoundException;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.buffer.DataBuffer;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.file.Path;
+
+/**
+ * Where media content is kept. Implementations write the content as it
+ * streams in, chunk by chunk, so memory use per upload does not depend on the
+ * size of the file.
+ *
+ * Content is addressed by its SHA-256: identical uploads share one stored
+ * object, whose references are counted in media_blobs by MediaService.
+ * Content stored before content addressing lives under its asset's unique
+ * file name until LegacyMediaMigration moves it to its hash.
+ * Storing is done in two steps, because the key is only known once all
+ * content has been received: the content is first staged (and hashed), then
+ * committed under its hash.
+ *
+ * The active implementation is selected with media.storage.type.
+ */
+public interface MediaStorage {
+
+    /**
+     * Writes content to a staging file, computing its hash on the way. On
+     * error or cancellation nothing is left behind.
+     *
+     * @param content The content. Every buffer is released by the storage.
+     * @return A Mono emitting the staged content.
+     */
+    Mono<StagedMedia> stage(Flux<DataBuffer> content);
+
+    /**
+     * Stores staged content under its content hash, unless an object with
+     * that hash is already stored, and removes the staging file. The object
+     * only becomes visible under the key once all of it has been written.
+     *
+     * @param staged The staged content.
+     * @param contentType The MIME type of the content.
+     * @return A Mono emitting what was stored.
+     */
+    Mono<StoredMedia> commit(StagedMedia staged, String contentType);
+
+    /**
+     * Removes staged content that will not be committed.
+     *
+     * @param staged The staged content.
+     * @return A Mono completing once the staging file is gone.
+     */
+    Mono<Void> discard(StagedMedia staged);
+
+    /**
+     * Reads the object stored under a key as a stream of buffers, for
+     * processing it in the service (e.g. generating image variants).
+     *
+     * @param key The storage key.
+     * @return A Flux emitting the content; the caller releases the buffers.
+     * @throws MediaAssetNotFoundException if there is no object under the key.
+     */
+    Flux<DataBuffer> read(String key);
+
+    /**
+     * Opens the object stored under a key so that it can be served over HTTP.
+     * Backends that serve objects themselves, at publicUrl, emit nothing.
+     *
+     * @param key The storage key.
+     * @return A Mono emitting the object as a Resource, or empty.
+     * @throws MediaAssetNotFoundException if there is no object under the key.
+     */
+    Mono<Resource> load(String key);
+
+    /**
+     * Deletes the object stored under a key, if any.
+     *
+     * @param key The storage key.
+     * @return A Mono completing once the object is gone.
+     */
+    Mono<Void> delete(String key);
+
+    /**
+     * @param key The storage key.
+     * @return The URL clients fetch the object from, or null if it is served
+     *         by this service's download endpoint.
+     */
+    String publicUrl(String key);
+
+    /**
+     * Content written to a staging file.
+     *
+     * @param file The staging file.
+     * @param size The number of bytes.
+     * @param contentHash The hex-encoded SHA-256 of the content, its future key.
+     */
+    record StagedMedia(Path file, long size, String contentHash) {
+    }
+
+    /**
+     * The result of storing an object.
+     *
+     * @param key The storage key.
+     * @param size The number of bytes stored.
+     * @param storagePath Where the object lives in the backend (file path or object URI).
+     * @param contentHash The hex-encoded SHA-256 of the content.
+     */
+    record StoredMedia(String key, long size, String storagePath, String contentHash) {
+    }
+}
@@ -0,0 +1,166 @@
+package com.aliwudi.marketplace.backend.lgtmed.storage;
+
+import com.aliwudi.marketplace.backend.common.exception.MediaAssetNotFoundException;
+import com.aliwudi.marketplace.backend.common.exception.ServiceException;
+import com.aliwudi.marketplace.backend.common.response.ApiResponseMessages;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.UUID;
+
+/**
+ * Stores media in a bucket of an S3-compatible object store, e.g. a local
+ * MinIO or LocalStack instance standing in for S3.
+ *
+ * Content is staged in a local spool file (written asynchronously, like the
+ * local backend), which also gives the content length an S3 PUT needs up
+ * front. On commit it is streamed from there to the store, unless an object
+ * with the same content hash exists already, and deleted.
+ * Requests use path-style URLs (endpoint/bucket/key) and are signed with AWS
+ * Signature Version 4.
+ */
+@Component
+@ConditionalOnProperty(name = "media.storage.type", havingValue = "s3")
+@Slf4j
+public class S3CompatibleMediaStorage implements MediaStorage {
+
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    private final WebClient webClient;
+    private final S3RequestSigner signer;
+    private final String bucketUrl;
+    private final String publicBaseUrl;
+    private final Path spoolDirectory;
+
+    public S3CompatibleMediaStorage(WebClient.Builder webClientBuilder,
+                                    @Value("${media.storage.s3.endpoint}") String endpoint,
+                                    @Value("${media.storage.s3.bucket}") String bucket,
+                                    @Value("${media.storage.s3.region:us-east-1}") String region,
+                                    @Value("${media.storage.s3.access-key}") String accessKey,
+                                    @Value("${media.storage.s3.secret-key}") String secretKey,
+                                    @Value("${media.storage.public-base-url:}") String publicBaseUrl,
+                                    @Value("${media.storage.s3.spool-directory:${java.io.tmpdir}}") String spoolDirectory) throws IOException {
+        this.webClient = webClientBuilder.build();
+        this.signer = new S3RequestSigner(accessKey, secretKey, region);
+        this.bucketUrl = endpoint.replaceAll("/+$", "") + "/" + bucket;
+        this.publicBaseUrl = publicBaseUrl.isBlank() ? bucketUrl : publicBaseUrl;
+        this.spoolDirectory = Paths.get(spoolDirectory).toAbsolutePath();
+        Files.createDirectories(this.spoolDirectory);
+        log.info("Storing media in S3-compatible bucket {}", bucketUrl);
+    }
+
+    @Override
+    public Mono<StagedMedia> stage(Flux<DataBuffer> content) {
+        return Mono.defer(() -> {
+            Path spool = spoolDirectory.resolve("media-upload-" + UUID.randomUUID() + ".part");
+            return MediaFiles.write(content, spool)
+                    .map(written -> new StagedMedia(spool, written.size(), written.sha256()));
+        }).onErrorMap(e -> !(e instanceof RuntimeException), e -> new ServiceException(ApiResponseMessages.ERROR_STORING_MEDIA, e));
+    }
+
+    @Override
+    public Mono<StoredMedia> commit(StagedMedia staged, String contentType) {
+        return Mono.defer(() -> {
+            URI uri = objectUri(staged.contentHash());
+            StoredMedia stored = new StoredMedia(staged.contentHash(), staged.size(), uri.toString(), staged.contentHash());
+            return exists(uri)
+                    .flatMap(exists -> exists
+                            ? Mono.just(stored) // Same content is already stored; skip the upload
+                            : webClient.put()
+                                    .uri(uri)
+                                    .headers(headers -> headers.addAll(signer.sign(HttpMethod.PUT, uri)))
+                                    .contentType(MediaType.parseMediaType(contentType))
+                                    .contentLength(staged.size())
+                                    .body(BodyInserters.fromDataBuffers(
+                                            DataBufferUtils.read(staged.file(), DefaultDataBufferFactory.sharedInstance, READ_BUFFER_SIZE)))
+                                    .retrieve()
+                                    .toBodilessEntity()
+                                    .thenReturn(stored))
+                    .onErrorMap(e -> !(e instanceof RuntimeException) || e instanceof WebClientResponseException,
+                            e -> new ServiceException(ApiResponseMessages.ERROR_STORING_MEDIA, e))
+                    .doFinally(signal -> discard(staged).subscribe());
+        });
+    }
+
+    @Override
+    public Mono<Void> discard(StagedMedia staged) {
+        return MediaFiles.deleteQuietly(staged.file());
+    }
+
+    private Mono<Boolean> exists(URI uri) {
+        return webClient.head()
+                .uri(uri)
+                .headers(headers -> headers.addAll(signer.sign(HttpMethod.HEAD, uri)))
+                .retrieve()
+                .toBodilessEntity()
+                .thenReturn(true)
+                .onErrorResume(WebClientResponseException.NotFound.class, e -> Mono.just(false));
+    }
+
+    @Override
+    public Flux<DataBuffer> read(String key) {
+        return Flux.defer(() -> {
+            URI uri = objectUri(key);
+            return webClient.get()
+                    .uri(uri)
+                    .headers(headers -> headers.addAll(signer.sign(HttpMethod.GET, uri)))
+                    .retrieve()
+                    .bodyToFlux(DataBuffer.class)
+                    .onErrorMap(WebClientResponseException.NotFound.class,
+                            e -> new MediaAssetNotFoundException(ApiResponseMessages.MEDIA_CONTENT_NOT_FOUND + key));
+        });
+    }
+
+    /**
+     * Objects are served by the store (or a CDN in front of it) at publicUrl.
+     */
+    @Override
+    public Mono<Resource> load(String key) {
+        return Mono.empty();
+    }
+
+    @Override
+    public Mono<Void> delete(String key) {
+        return Mono.defer(() -> {
+            URI uri = objectUri(key);
+            return webClient.delete()
+                    .uri(uri)
+                    .headers(headers -> headers.addAll(signer.sign(HttpMethod.DELETE, uri)))
+                    .retrieve()
+                    .toBodilessEntity()
+                    .onErrorResume(WebClientResponseException.class,
+                            e -> e.getStatusCode() == HttpStatus.NOT_FOUND ? Mono.empty() : Mono.error(e))
+                    .onErrorMap(WebClientResponseException.class, e -> new ServiceException(ApiResponseMessages.ERROR_DELETING_MEDIA, e))
+                    .then();
+        });
+    }
+
+    @Override
+    public String publicUrl(String key) {
+        return publicBaseUrl + "/" + key;
+    }
+
+    // Keys are restricted to URL-safe characters by MediaService, so they need no encoding
+    private URI objectUri(String key) {
+        return URI.create(bucketUrl + "/" + key);
+    }
+}
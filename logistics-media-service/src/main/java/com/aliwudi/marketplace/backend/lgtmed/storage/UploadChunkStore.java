@@ -0,0 +1,246 @@
+package com.aliwudi.marketplace.backend.lgtmed.storage;
+
+import com.aliwudi.marketplace.backend.common.exception.InvalidMediaDataException;
+import com.aliwudi.marketplace.backend.common.exception.ServiceException;
+import com.aliwudi.marketplace.backend.common.response.ApiResponseMessages;
+import com.aliwudi.marketplace.backend.lgtmed.storage.MediaStorage.StagedMedia;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.StringUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the chunks of resumable uploads on local disk, one directory per
+ * upload, until they are assembled into a staged file for MediaStorage.
+ *
+ * A chunk is received into a temporary file and only renamed into place by
+ * commitChunk, which ResumableUploadService calls while it holds the upload's
+ * row lock, so sending the same chunk again simply replaces it, an
+ * interrupted chunk never counts as received, and no chunk lands after the
+ * upload was completed or aborted.
+ *
+ * The directory is local to this node: every request for an upload must
+ * reach the node that started it (sticky routing on the upload ID in the
+ * gateway), which ResumableUploadService enforces by comparing the upload's
+ * node with nodeId. With media.upload.chunks.shared=true the directory is
+ * taken to be one volume mounted by every node, and any node may serve any
+ * upload.
+ */
+@Component
+@Slf4j
+public class UploadChunkStore {
+
+    private static final int ASSEMBLY_BUFFER_SIZE = 1024 * 1024;
+
+    private final Path root;
+    private final boolean shared;
+    private final String nodeId;
+
+    public UploadChunkStore(@Value("${media.upload.chunks.directory:./media-uploads}") String directory,
+                            @Value("${media.upload.chunks.shared:false}") boolean shared,
+                            @Value("${media.upload.node-id:}") String nodeId) throws IOException {
+        this.root = Paths.get(directory).toAbsolutePath().normalize();
+        this.shared = shared;
+        this.nodeId = StringUtils.hasText(nodeId) ? nodeId : InetAddress.getLocalHost().getHostName();
+        Files.createDirectories(this.root);
+    }
+
+    /**
+     * @return The name of this node, recorded with the uploads it starts.
+     */
+    public String nodeId() {
+        return nodeId;
+    }
+
+    /**
+     * @return True if the chunk directory is shared by every node.
+     */
+    public boolean isShared() {
+        return shared;
+    }
+
+    /**
+     * @param uploadNodeId The node that started an upload; null for uploads
+     *                     started before nodes were recorded.
+     * @return True if this node can read and write the upload's chunks.
+     */
+    public boolean holds(String uploadNodeId) {
+        return shared || uploadNodeId == null || uploadNodeId.equals(nodeId);
+    }
+
+    /**
+     * Receives one chunk of an upload into a temporary file. A chunk of the
+     * wrong size is rejected and deleted. Nothing replaces the upload's copy
+     * of the chunk until commitChunk.
+     *
+     * @param uploadId The upload ID (a UUID).
+     * @param chunkIndex The chunk number, from 0.
+     * @param expectedSize The size the chunk must have.
+     * @param content The chunk content. Every buffer is released.
+     * @return A Mono emitting the received chunk, to commit or discard.
+     * @throws InvalidMediaDataException if the chunk does not have the expected size.
+     */
+    public Mono<ReceivedChunk> receiveChunk(String uploadId, int chunkIndex, long expectedSize, Flux<DataBuffer> content) {
+        return Mono.defer(() -> {
+            Path directory = directory(uploadId);
+            Path partial = directory.resolve(chunkIndex + "." + UUID.randomUUID() + ".part");
+            AtomicLong received = new AtomicLong();
+            Flux<DataBuffer> limited = content.handle((buffer, sink) -> {
+                if (received.addAndGet(buffer.readableByteCount()) > expectedSize) {
+                    DataBufferUtils.release(buffer);
+                    sink.error(new InvalidMediaDataException(ApiResponseMessages.INVALID_CHUNK_SIZE + expectedSize));
+                } else {
+                    sink.next(buffer);
+                }
+            });
+            return Mono.fromCallable(() -> Files.createDirectories(directory))
+                    .subscribeOn(Schedulers.boundedElastic())
+                    .then(MediaFiles.write(limited, partial))
+                    .flatMap(written -> written.size() != expectedSize
+                            ? Mono.error(new InvalidMediaDataException(ApiResponseMessages.INVALID_CHUNK_SIZE + expectedSize))
+                            : Mono.just(new ReceivedChunk(partial, directory.resolve(String.valueOf(chunkIndex)), written.size())))
+                    .onErrorResume(e -> MediaFiles.deleteQuietly(partial).then(Mono.error(e)));
+        }).onErrorMap(e -> e instanceof IOException || e instanceof UncheckedIOException,
+                e -> new ServiceException(ApiResponseMessages.ERROR_STORING_MEDIA, e));
+    }
+
+    /**
+     * Moves a received chunk into place, replacing any earlier copy of it.
+     *
+     * @param chunk The received chunk.
+     * @return A Mono completing once the chunk is in place.
+     */
+    public Mono<Void> commitChunk(ReceivedChunk chunk) {
+        return Mono.fromCallable(() -> Files.move(chunk.partial(), chunk.target(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING))
+                .subscribeOn(Schedulers.boundedElastic())
+                .onErrorMap(IOException.class, e -> new ServiceException(ApiResponseMessages.ERROR_STORING_MEDIA, e))
+                .then();
+    }
+
+    /**
+     * Deletes a received chunk that will not be committed, and the upload's
+     * directory with it if the upload was deleted in the meantime.
+     *
+     * @param chunk The received chunk.
+     * @return A Mono completing once it is deleted.
+     */
+    public Mono<Void> discardChunk(ReceivedChunk chunk) {
+        return MediaFiles.deleteQuietly(chunk.partial())
+                .then(Mono.fromRunnable(() -> {
+                            try {
+                                Files.deleteIfExists(chunk.target().getParent());
+                            } catch (DirectoryNotEmptyException e) {
+                                // The upload still exists
+                            } catch (IOException e) {
+                                log.warn("Failed to delete directory of upload {}: {}", chunk.target().getParent(), e.getMessage());
+                            }
+                        })
+                        .subscribeOn(Schedulers.boundedElastic()))
+                .then();
+    }
+
+    /**
+     * Concatenates the chunks of an upload into one staged file, computing
+     * its hash on the way.
+     *
+     * Chunks are copied with FileChannel reads and writes through one direct
+     * buffer, which the digest reads as well: the content hash is needed for
+     * content addressing, so a transferTo that skips user space would only
+     * cost a second pass over the file.
+     *
+     * @param uploadId The upload ID.
+     * @param totalChunks The number of chunks.
+     * @return A Mono emitting the assembled file.
+     */
+    public Mono<StagedMedia> assemble(String uploadId, int totalChunks) {
+        return Mono.fromCallable(() -> {
+                    Path directory = directory(uploadId);
+                    Path assembled = directory.resolve("assembled." + UUID.randomUUID() + ".part");
+                    MessageDigest digest = sha256();
+                    ByteBuffer buffer = ByteBuffer.allocateDirect(ASSEMBLY_BUFFER_SIZE);
+                    long size = 0;
+                    try (FileChannel out = FileChannel.open(assembled, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                        for (int index = 0; index < totalChunks; index++) {
+                            try (FileChannel in = FileChannel.open(directory.resolve(String.valueOf(index)), StandardOpenOption.READ)) {
+                                while (in.read(buffer) >= 0 || buffer.position() > 0) {
+                                    buffer.flip();
+                                    digest.update(buffer.duplicate());
+                                    size += buffer.remaining();
+                                    while (buffer.hasRemaining()) {
+                                        out.write(buffer);
+                                    }
+                                    buffer.clear();
+                                }
+                            }
+                        }
+                        out.force(false);
+                    } catch (IOException | RuntimeException e) {
+                        Files.deleteIfExists(assembled);
+                        throw e;
+                    }
+                    return new StagedMedia(assembled, size, HexFormat.of().formatHex(digest.digest()));
+                })
+                .subscribeOn(Schedulers.boundedElastic())
+                .onErrorMap(IOException.class, e -> new ServiceException(ApiResponseMessages.ERROR_STORING_MEDIA, e));
+    }
+
+    /**
+     * Deletes all chunks (and leftovers) of an upload.
+     *
+     * @param uploadId The upload ID.
+     * @return A Mono completing once they are gone.
+     */
+    public Mono<Void> delete(String uploadId) {
+        return Mono.fromRunnable(() -> {
+                    try {
+                        FileSystemUtils.deleteRecursively(directory(uploadId));
+                    } catch (IOException e) {
+                        log.warn("Failed to delete chunks of upload {}: {}", uploadId, e.getMessage());
+                    }
+                })
+                .subscribeOn(Schedulers.boundedElastic())
+                .then();
+    }
+
+    /**
+     * A chunk received into its temporary file, and where it goes once committed.
+     */
+    public record ReceivedChunk(Path partial, Path target, long size) {
+    }
+
+    // Upload IDs are generated UUIDs; anything else could escape the root directory
+    private Path directory(String uploadId) {
+        return root.resolve(UUID.fromString(uploadId).toString());
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+-- src/main/resources/schema.sql
+
+-- Create 'media_assets' table if it does not already exist
+CREATE TABLE IF NOT EXISTS media_assets (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    asset_name VARCHAR(255) NOT NULL,                     -- Original file name
+    unique_file_name VARCHAR(255) NOT NULL UNIQUE,        -- Identifies the asset in URLs
+    file_type VARCHAR(100) NOT NULL,                      -- MIME type
+    url VARCHAR(1024),
+    entity_id VARCHAR(100) NOT NULL,
+    entity_type VARCHAR(50) NOT NULL,
+    upload_time TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL,
+    file_size BIGINT,
+    storage_path VARCHAR(1024),
+    uploaded_by VARCHAR(100),
+    content_hash CHAR(64),                                -- Hex SHA-256 of the content (download ETag)
+    INDEX idx_media_assets_entity_type_entity_id (entity_type, entity_id, id) -- Assets of an entity, or of a batch of entities
+);
+
+-- Existing installations: add the content hash column and the entity index
+-- ALTER TABLE media_assets ADD COLUMN content_hash CHAR(64);
+-- CREATE INDEX idx_media_assets_entity_type_entity_id ON media_assets (entity_type, entity_id, id);
+
+-- Create 'media_blobs' table if it does not already exist
+CREATE TABLE IF NOT EXISTS media_blobs (
+    content_hash CHAR(64) PRIMARY KEY,                    -- Hex SHA-256 of the content; its storage key
+    size BIGINT NOT NULL,
+    ref_count BIGINT NOT NULL DEFAULT 0,                  -- Media assets referencing the content
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL
+);
+
+-- Existing installations: content stored before content addressing (under the asset's unique file name) is moved
+-- to its hash and counted here by LegacyMediaMigration, in the background on startup; no statement to run by hand
+
+-- Create 'media_upload_sessions' table if it does not already exist
+CREATE TABLE IF NOT EXISTS media_upload_sessions (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    upload_id CHAR(36) NOT NULL UNIQUE,                   -- Public identifier (UUID)
+    owner VARCHAR(255) NULL,                              -- Authenticated user who started the upload
+    node_id VARCHAR(255) NULL,                            -- Node whose local disk holds the chunks
+    asset_name VARCHAR(255) NOT NULL,
+    file_type VARCHAR(100) NOT NULL,
+    entity_id VARCHAR(100) NOT NULL,
+    entity_type VARCHAR(50) NOT NULL,
+    total_size BIGINT NOT NULL,
+    chunk_size BIGINT NOT NULL,
+    total_chunks INT NOT NULL,
+    status VARCHAR(20) NOT NULL DEFAULT 'ACTIVE',          -- MediaUploadStatus
+    media_asset_id BIGINT NULL,                           -- Set once completed
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL,
+    expires_at TIMESTAMP NOT NULL,
+    INDEX idx_media_upload_sessions_expires_at (expires_at) -- Cleanup of abandoned uploads
+);
+
+-- Existing installations: add the owner and node columns; uploads started before have neither and cannot be
+-- resumed, clients start them again
+-- ALTER TABLE media_upload_sessions ADD COLUMN owner VARCHAR(255) NULL, ADD COLUMN node_id VARCHAR(255) NULL;
+
+-- Create 'media_upload_chunks' table if it does not already exist
+CREATE TABLE IF NOT EXISTS media_upload_chunks (
+    session_id BIGINT NOT NULL,
+    chunk_index INT NOT NULL,
+    size BIGINT NOT NULL,
+    received_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL,
+    PRIMARY KEY (session_id, chunk_index)
+);
+
+-- Create 'delivery_events' table if it does not already exist
+-- Append-only tracking history; deliveries.notes and current_location only hold the latest values
+CREATE TABLE IF NOT EXISTS delivery_events (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    delivery_id BIGINT NOT NULL,
+    status VARCHAR(30) NOT NULL,                          -- Status after the event
+    location VARCHAR(255),
+    notes VARCHAR(1000),
+    source VARCHAR(20) NOT NULL,                          -- DeliveryEventSource
+    occurred_at TIMESTAMP NOT NULL,                       -- Reported by the source
+    recorded_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL,
+    insert_batch CHAR(36) NULL,                           -- Marks the rows of one multi-row INSERT, to read their IDs back
+    INDEX idx_delivery_events_delivery_id_occurred_at (delivery_id, occurred_at, id), -- Timeline of a delivery
+    INDEX idx_delivery_events_insert_batch (insert_batch)
+);
+
+-- Existing installations: add the insert batch column and its index
+-- ALTER TABLE delivery_events ADD COLUMN insert_batch CHAR(36) NULL;
+-- CREATE INDEX idx_delivery_events_insert_batch ON delivery_events (insert_batch);
+
+-- Create 'delivery_agents' table if it does not already exist
+CREATE TABLE IF NOT EXISTS delivery_agents (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    name VARCHAR(100) NOT NULL UNIQUE,                    -- Value of deliveries.delivery_agent
+    region VARCHAR(100),                                  -- Last part of recipient addresses served; NULL serves any region
+    daily_capacity INT NOT NULL,                          -- Maximum deliveries per day
+    active BOOLEAN NOT NULL DEFAULT TRUE
+);
+
+-- Delivery planning reads deliveries by status; on the deliveries table:
+-- CREATE INDEX idx_deliveries_status_id ON deliveries (status, id);
+-- CREATE INDEX idx_deliveries_status_delivery_agent ON deliveries (status, delivery_agent);
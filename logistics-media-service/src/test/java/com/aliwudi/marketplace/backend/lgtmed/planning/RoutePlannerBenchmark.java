@@ -0,0 +1,58 @@
+package com.aliwudi.marketplace.backend.lgtmed.planning;
+
+import com.aliwudi.marketplace.backend.lgtmed.planning.RoutePlanner.Plan;
+import com.aliwudi.marketplace.backend.lgtmed.planning.RoutePlannerTest.Scenario;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RoutePlanner on 100,000 synthetic deliveries (60 regions, 7 days, 606
+ * agents with random existing loads, see RoutePlannerTest.largeScenario):
+ * the whole run at once, and in chunks of 2,000 split by region and day, as
+ * DeliveryPlanningService plans it. Splitting itself is measured as well.
+ *
+ * Run with: gradle :logistics-media-service:jmh -Pjmh.includes=RoutePlannerBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RoutePlannerBenchmark {
+
+    private static final int CHUNK_SIZE = 2_000;
+
+    private final RoutePlanner planner = new RoutePlanner();
+    private Scenario scenario;
+
+    @Setup
+    public void buildScenario() {
+        scenario = RoutePlannerTest.largeScenario();
+    }
+
+    @Benchmark
+    public Plan planAtOnce() {
+        return planner.plan(scenario.stops(), scenario.agents(), scenario.loads());
+    }
+
+    @Benchmark
+    public Plan planInChunks() {
+        return RoutePlannerTest.planInChunks(planner, planner.chunks(scenario.stops(), CHUNK_SIZE), scenario);
+    }
+
+    @Benchmark
+    public Object chunks() {
+        return planner.chunks(scenario.stops(), CHUNK_SIZE);
+    }
+}
@@ -0,0 +1,272 @@
+package com.aliwudi.marketplace.backend.lgtmed.planning;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.aliwudi.marketplace.backend.lgtmed.planning.RoutePlanner.Agent;
+import com.aliwudi.marketplace.backend.lgtmed.planning.RoutePlanner.AgentLoad;
+import com.aliwudi.marketplace.backend.lgtmed.planning.RoutePlanner.Assignment;
+import com.aliwudi.marketplace.backend.lgtmed.planning.RoutePlanner.Plan;
+import com.aliwudi.marketplace.backend.lgtmed.planning.RoutePlanner.Stop;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * RoutePlanner on hand-written cases (capacity, regions, agents without a
+ * region) and on a synthetic run of 100,000 deliveries, planned at once and
+ * in chunks.
+ */
+class RoutePlannerTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2026, 3, 2);
+
+    private final RoutePlanner planner = new RoutePlanner();
+
+    /**
+     * Synthetic deliveries spread randomly over regions and days, regional
+     * agents and a few agents without a region, and random existing loads.
+     */
+    record Scenario(List<Stop> stops, List<Agent> agents, List<AgentLoad> loads) {
+    }
+
+    static Scenario scenario(int deliveries, int regions, int days, int agentsPerRegion, long seed) {
+        Random random = new Random(seed);
+        List<Agent> agents = new ArrayList<>();
+        List<AgentLoad> loads = new ArrayList<>();
+        for (int region = 0; region < regions; region++) {
+            for (int i = 0; i < agentsPerRegion; i++) {
+                agents.add(new Agent("agent-" + region + "-" + i, "region-" + region, 40 + random.nextInt(41)));
+            }
+        }
+        for (int i = 0; i < regions / 10; i++) {
+            agents.add(new Agent("roaming-" + i, RoutePlanner.region(null), 60));
+        }
+        for (Agent agent : agents) {
+            for (int day = 0; day < days; day++) {
+                loads.add(new AgentLoad(agent.name(), TODAY.plusDays(day), random.nextInt(agent.dailyCapacity() / 2 + 1)));
+            }
+        }
+        List<Stop> stops = new ArrayList<>(deliveries);
+        for (long id = 1; id <= deliveries; id++) {
+            // A few addresses have no region any regional agent serves
+            String region = random.nextInt(100) == 0 ? "unknown" : "region-" + random.nextInt(regions);
+            stops.add(new Stop(id, region, TODAY.plusDays(random.nextInt(days))));
+        }
+        return new Scenario(stops, agents, loads);
+    }
+
+    // 100k deliveries, 60 regions, 7 days, 600 regional agents and 6 without a region
+    static Scenario largeScenario() {
+        return scenario(100_000, 60, 7, 10, 42);
+    }
+
+    /**
+     * Plans chunk after chunk, each against the loads of the earlier ones
+     * (one per agent and day, as DeliveryRepository.findAgentLoads reads
+     * them), as DeliveryPlanningService does with one transaction per chunk.
+     */
+    static Plan planInChunks(RoutePlanner planner, List<List<Long>> chunks, Scenario scenario) {
+        Map<Long, Stop> byId = scenario.stops().stream().collect(Collectors.toMap(Stop::deliveryId, stop -> stop));
+        Map<String, AgentLoad> loads = new HashMap<>();
+        scenario.loads().forEach(load -> addLoad(loads, load));
+        List<Assignment> assignments = new ArrayList<>();
+        List<Long> unassigned = new ArrayList<>();
+        for (List<Long> chunk : chunks) {
+            Plan plan = planner.plan(chunk.stream().map(byId::get).toList(), scenario.agents(), List.copyOf(loads.values()));
+            for (Assignment assignment : plan.assignments()) {
+                addLoad(loads, new AgentLoad(assignment.agent(), byId.get(assignment.deliveryId()).day(), 1));
+            }
+            assignments.addAll(plan.assignments());
+            unassigned.addAll(plan.unassigned());
+        }
+        return new Plan(assignments, unassigned);
+    }
+
+    private static void addLoad(Map<String, AgentLoad> loads, AgentLoad load) {
+        loads.merge(load.agent() + "@" + load.day(), load,
+                (current, added) -> new AgentLoad(current.agent(), current.day(), current.deliveries() + added.deliveries()));
+    }
+
+    // The chunks the service used before grouping: consecutive IDs
+    static List<List<Long>> chunksInIdOrder(List<Stop> stops, int chunkSize) {
+        List<List<Long>> chunks = new ArrayList<>();
+        for (int i = 0; i < stops.size(); i += chunkSize) {
+            chunks.add(stops.subList(i, Math.min(i + chunkSize, stops.size())).stream().map(Stop::deliveryId).toList());
+        }
+        return chunks;
+    }
+
+    @Test
+    void regionIsTheLastPartOfTheAddress() {
+        assertThat(RoutePlanner.region("12 Main St, Ikeja, Lagos")).isEqualTo("lagos");
+        assertThat(RoutePlanner.region(" Abuja , ")).isEqualTo("abuja");
+        assertThat(RoutePlanner.region("")).isEmpty();
+        assertThat(RoutePlanner.region(null)).isEmpty();
+    }
+
+    @Test
+    void batchGoesToTheAgentWithMostCapacityAndOnlyTheOverflowToTheNext() {
+        List<Stop> stops = stops("lagos", TODAY, 1, 7);
+        List<Agent> agents = List.of(new Agent("small", "lagos", 3), new Agent("large", "lagos", 5));
+
+        Plan plan = planner.plan(stops, agents, List.of());
+
+        assertThat(countByAgent(plan)).containsExactlyInAnyOrderEntriesOf(Map.of("large", 5, "small", 2));
+        assertThat(plan.unassigned()).isEmpty();
+    }
+
+    @Test
+    void existingLoadsCountAgainstCapacity() {
+        List<Stop> stops = stops("lagos", TODAY, 1, 5);
+        List<Agent> agents = List.of(new Agent("ade", "lagos", 4));
+        List<AgentLoad> loads = List.of(new AgentLoad("ade", TODAY, 3), new AgentLoad("ade", TODAY.plusDays(1), 4));
+
+        Plan plan = planner.plan(stops, agents, loads);
+
+        assertThat(plan.assignments()).extracting(Assignment::deliveryId).containsExactly(1L);
+        assertThat(plan.unassigned()).containsExactly(2L, 3L, 4L, 5L);
+    }
+
+    @Test
+    void capacityIsPerDay() {
+        List<Stop> stops = new ArrayList<>(stops("lagos", TODAY, 1, 2));
+        stops.addAll(stops("lagos", TODAY.plusDays(1), 3, 2));
+        List<Agent> agents = List.of(new Agent("ade", "lagos", 2));
+
+        Plan plan = planner.plan(stops, agents, List.of());
+
+        assertThat(plan.assignments()).hasSize(4);
+        assertThat(plan.unassigned()).isEmpty();
+    }
+
+    @Test
+    void agentsOnlyServeTheirRegion() {
+        List<Stop> stops = new ArrayList<>(stops("lagos", TODAY, 1, 2));
+        stops.addAll(stops("abuja", TODAY, 3, 2));
+        List<Agent> agents = List.of(new Agent("ade", "lagos", 10));
+
+        Plan plan = planner.plan(stops, agents, List.of());
+
+        assertThat(plan.assignments()).extracting(Assignment::deliveryId).containsExactlyInAnyOrder(1L, 2L);
+        assertThat(plan.unassigned()).containsExactlyInAnyOrder(3L, 4L);
+    }
+
+    @Test
+    void agentsWithoutRegionTakeWhatRegionalAgentsCannot() {
+        List<Stop> stops = new ArrayList<>(stops("lagos", TODAY, 1, 3));
+        stops.addAll(stops("abuja", TODAY, 4, 2));
+        stops.addAll(stops(RoutePlanner.region(null), TODAY, 6, 1)); // An address without a region
+        List<Agent> agents = List.of(
+                new Agent("ade", "lagos", 2),
+                new Agent("roaming", RoutePlanner.region(null), 10));
+
+        Plan plan = planner.plan(stops, agents, List.of());
+
+        Map<Long, String> agentByDelivery = plan.assignments().stream()
+                .collect(Collectors.toMap(Assignment::deliveryId, Assignment::agent));
+        assertThat(agentByDelivery).containsEntry(1L, "ade").containsEntry(2L, "ade").containsEntry(3L, "roaming")
+                .containsEntry(4L, "roaming").containsEntry(5L, "roaming").containsEntry(6L, "roaming");
+        assertThat(plan.unassigned()).isEmpty();
+    }
+
+    @Test
+    void agentsWithoutCapacityAreSkipped() {
+        List<Agent> agents = List.of(new Agent("off", "lagos", 0), new Agent("ade", "lagos", 1));
+
+        Plan plan = planner.plan(stops("lagos", TODAY, 1, 2), agents, List.of());
+
+        assertThat(countByAgent(plan)).containsExactly(Map.entry("ade", 1));
+        assertThat(plan.unassigned()).containsExactly(2L);
+    }
+
+    @Test
+    void chunksKeepRegionsAndDaysTogether() {
+        // Interleaved IDs, as deliveries arrive: chunks in ID order would split every batch
+        List<Stop> stops = new ArrayList<>();
+        for (long id = 1; id <= 9; id++) {
+            stops.add(new Stop(id, List.of("lagos", "abuja", "kano").get((int) (id % 3)), TODAY));
+        }
+
+        List<List<Long>> chunks = planner.chunks(stops, 5);
+
+        assertThat(chunks).containsExactly(List.of(1L, 4L, 7L), List.of(2L, 5L, 8L), List.of(3L, 6L, 9L));
+    }
+
+    @Test
+    void batchLargerThanAChunkIsSplitAndTheLastPartToppedUp() {
+        List<Stop> stops = new ArrayList<>(stops("lagos", TODAY, 1, 7));
+        stops.addAll(stops("abuja", TODAY, 8, 2));
+
+        List<List<Long>> chunks = planner.chunks(stops, 5);
+
+        assertThat(chunks).containsExactly(List.of(1L, 2L, 3L, 4L, 5L), List.of(6L, 7L, 8L, 9L));
+    }
+
+    @Test
+    void largeRunIsPlannedWithinCapacity() {
+        Scenario scenario = largeScenario();
+
+        Plan plan = planner.plan(scenario.stops(), scenario.agents(), scenario.loads());
+
+        assertThat(plan.assignments().size() + plan.unassigned().size()).isEqualTo(scenario.stops().size());
+        assertThat(plan.unassigned()).isEmpty();
+        assertWithinCapacity(scenario, plan);
+    }
+
+    @Test
+    void chunkedRunMatchesPlanningAtOnce() {
+        Scenario scenario = largeScenario();
+
+        Plan atOnce = planner.plan(scenario.stops(), scenario.agents(), scenario.loads());
+        Plan chunked = planInChunks(planner, planner.chunks(scenario.stops(), 2_000), scenario);
+        Plan inIdOrder = planInChunks(planner, chunksInIdOrder(scenario.stops(), 2_000), scenario);
+
+        assertThat(toMap(chunked)).isEqualTo(toMap(atOnce));
+        assertWithinCapacity(scenario, chunked);
+        // Chunks in ID order spread each region and day over more agents
+        assertThat(routes(scenario, inIdOrder)).isGreaterThan(routes(scenario, chunked));
+    }
+
+    private static void assertWithinCapacity(Scenario scenario, Plan plan) {
+        Map<Long, Stop> byId = scenario.stops().stream().collect(Collectors.toMap(Stop::deliveryId, stop -> stop));
+        Map<String, Integer> capacity = scenario.agents().stream().collect(Collectors.toMap(Agent::name, Agent::dailyCapacity));
+        Map<String, Integer> used = new HashMap<>();
+        scenario.loads().forEach(load -> used.merge(load.agent() + "@" + load.day(), load.deliveries(), Integer::sum));
+        for (Assignment assignment : plan.assignments()) {
+            String slot = assignment.agent() + "@" + byId.get(assignment.deliveryId()).day();
+            assertThat(used.merge(slot, 1, Integer::sum)).isLessThanOrEqualTo(capacity.get(assignment.agent()));
+        }
+    }
+
+    // Agent-days with at least one new delivery, i.e. routes
+    private static int routes(Scenario scenario, Plan plan) {
+        Map<Long, Stop> byId = scenario.stops().stream().collect(Collectors.toMap(Stop::deliveryId, stop -> stop));
+        Set<String> routes = new HashSet<>();
+        plan.assignments().forEach(assignment -> routes.add(assignment.agent() + "@" + byId.get(assignment.deliveryId()).day()));
+        return routes.size();
+    }
+
+    private static Map<Long, String> toMap(Plan plan) {
+        return plan.assignments().stream().collect(Collectors.toMap(Assignment::deliveryId, Assignment::agent));
+    }
+
+    private static Map<String, Integer> countByAgent(Plan plan) {
+        return plan.assignments().stream().collect(Collectors.toMap(Assignment::agent, assignment -> 1, Integer::sum));
+    }
+
+    private static List<Stop> stops(String region, LocalDate day, long firstId, int count) {
+        List<Stop> stops = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            stops.add(new Stop(firstId + i, region, day));
+        }
+        return stops;
+    }
+}
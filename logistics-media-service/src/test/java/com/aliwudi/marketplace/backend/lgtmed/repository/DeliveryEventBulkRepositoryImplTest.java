@@ -0,0 +1,86 @@
+package com.aliwudi.marketplace.backend.lgtmed.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.aliwudi.marketplace.backend.common.enumeration.DeliveryEventSource;
+import com.aliwudi.marketplace.backend.common.model.DeliveryEvent;
+import com.aliwudi.marketplace.backend.common.status.DeliveryStatus;
+import io.r2dbc.spi.ConnectionFactories;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.r2dbc.core.DatabaseClient;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * DeliveryEventBulkRepositoryImpl against an in-memory H2 database: events
+ * inserted in bulk get the IDs of their own rows, so tracking streams can
+ * push them with their SSE event IDs.
+ */
+class DeliveryEventBulkRepositoryImplTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    private DatabaseClient databaseClient;
+    private DeliveryEventBulkRepositoryImpl repository;
+
+    @BeforeEach
+    void setUp() {
+        databaseClient = DatabaseClient.create(ConnectionFactories.get("r2dbc:h2:mem:///" + UUID.randomUUID() + "?options=DB_CLOSE_DELAY=-1;MODE=MySQL"));
+        databaseClient.sql("CREATE TABLE delivery_events (id BIGINT AUTO_INCREMENT PRIMARY KEY, delivery_id BIGINT NOT NULL, "
+                        + "status VARCHAR(30) NOT NULL, location VARCHAR(255), notes VARCHAR(1000), source VARCHAR(20) NOT NULL, "
+                        + "occurred_at TIMESTAMP NOT NULL, recorded_at TIMESTAMP NOT NULL, insert_batch CHAR(36) NULL)")
+                .then()
+                .block(TIMEOUT);
+        repository = new DeliveryEventBulkRepositoryImpl(databaseClient);
+    }
+
+    @Test
+    void insertedEventsGetTheIdsOfTheirRows() {
+        insert(List.of(event(99L, DeliveryStatus.PENDING, "Earlier event")));
+        List<DeliveryEvent> events = List.of(
+                event(1L, DeliveryStatus.IN_TRANSIT, "Left Lagos hub"),
+                event(2L, DeliveryStatus.OUT_FOR_DELIVERY, null),
+                event(3L, DeliveryStatus.DELIVERED, "Signed by recipient"));
+
+        assertThat(insert(events)).isEqualTo(3L);
+
+        Map<Long, Long> deliveryByEventId = databaseClient.sql("SELECT id, delivery_id FROM delivery_events")
+                .map(row -> Map.entry(row.get("id", Long.class), row.get("delivery_id", Long.class)))
+                .all()
+                .collectList()
+                .block(TIMEOUT)
+                .stream()
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+        assertThat(events).allSatisfy(event -> {
+            assertThat(event.getId()).isNotNull();
+            assertThat(deliveryByEventId.get(event.getId())).isEqualTo(event.getDeliveryId());
+        });
+    }
+
+    @Test
+    void nothingToInsert() {
+        assertThat(insert(List.of())).isZero();
+    }
+
+    private Long insert(List<DeliveryEvent> events) {
+        return repository.insertAll(events).block(TIMEOUT);
+    }
+
+    private static DeliveryEvent event(Long deliveryId, DeliveryStatus status, String notes) {
+        LocalDateTime now = LocalDateTime.now();
+        return DeliveryEvent.builder()
+                .deliveryId(deliveryId)
+                .status(status)
+                .notes(notes)
+                .source(DeliveryEventSource.CARRIER_SCAN)
+                .occurredAt(now)
+                .recordedAt(now)
+                .build();
+    }
+}
@@ -0,0 +1,177 @@
+package com.aliwudi.marketplace.backend.lgtmed.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.aliwudi.marketplace.backend.common.model.Delivery;
+import com.aliwudi.marketplace.backend.common.model.DeliveryEvent;
+import com.aliwudi.marketplace.backend.common.status.DeliveryStatus;
+import com.aliwudi.marketplace.backend.lgtmed.dto.CarrierScan;
+import com.aliwudi.marketplace.backend.lgtmed.dto.CarrierScanResult;
+import com.aliwudi.marketplace.backend.lgtmed.dto.CarrierScanResult.Outcome;
+import com.aliwudi.marketplace.backend.lgtmed.repository.DeliveryEventRepository;
+import com.aliwudi.marketplace.backend.lgtmed.repository.DeliveryRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.reactive.TransactionCallback;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * DeliveryScanIngestionService against mocked repositories: scans are
+ * validated in feed order, and a batch that cannot be written is retried if
+ * the error is transient, then reported FAILED without stopping the feed.
+ */
+class DeliveryScanIngestionServiceTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    // Runs everything as is: the repositories are mocks
+    private static final TransactionalOperator NO_TRANSACTION = new TransactionalOperator() {
+        @Override
+        public <T> Flux<T> execute(TransactionCallback<T> action) {
+            return Flux.from(action.doInTransaction(null));
+        }
+
+        @Override
+        public <T> Mono<T> transactional(Mono<T> mono) {
+            return mono;
+        }
+    };
+
+    private final Map<String, DeliveryStatus> statuses = new ConcurrentHashMap<>();
+    private DeliveryRepository deliveryRepository;
+    private DeliveryEventRepository deliveryEventRepository;
+    private DeliveryScanIngestionService service;
+
+    @BeforeEach
+    void setUp() {
+        deliveryRepository = mock(DeliveryRepository.class);
+        deliveryEventRepository = mock(DeliveryEventRepository.class);
+        // Every attempt reads the deliveries afresh, as a new transaction would
+        when(deliveryRepository.findAllByTrackingNumberForUpdate(any())).thenAnswer(invocation -> deliveries());
+        when(deliveryRepository.updateTrackingState(anyList()))
+                .thenAnswer(invocation -> Mono.just((long) invocation.<List<Delivery>>getArgument(0).size()));
+        when(deliveryEventRepository.retainDeliveriesWithoutEvents(anyList())).thenReturn(Mono.just(List.of()));
+        when(deliveryEventRepository.insertAll(anyList()))
+                .thenAnswer(invocation -> Mono.just((long) invocation.<List<DeliveryEvent>>getArgument(0).size()));
+
+        service = new DeliveryScanIngestionService(deliveryRepository, deliveryEventRepository, NO_TRANSACTION,
+                mock(DeliveryTrackingStreamRegistry.class));
+        ReflectionTestUtils.setField(service, "batchSize", 2);
+        ReflectionTestUtils.setField(service, "batchMaxWait", Duration.ofSeconds(1));
+        ReflectionTestUtils.setField(service, "retries", 2);
+    }
+
+    @Test
+    void scansAreValidatedInFeedOrder() {
+        statuses.put("TRK-1", DeliveryStatus.IN_TRANSIT);
+        ReflectionTestUtils.setField(service, "batchSize", 10);
+
+        List<CarrierScanResult> results = ingest(
+                scan("TRK-1", DeliveryStatus.DELIVERED),
+                scan("TRK-1", DeliveryStatus.IN_TRANSIT), // Delivered by the scan before
+                scan("TRK-404", DeliveryStatus.IN_TRANSIT),
+                scan(" ", DeliveryStatus.IN_TRANSIT));
+
+        assertThat(results).extracting(CarrierScanResult::getOutcome)
+                .containsExactly(Outcome.APPLIED, Outcome.REJECTED, Outcome.NOT_FOUND, Outcome.REJECTED);
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Delivery>> updated = ArgumentCaptor.forClass(List.class);
+        verify(deliveryRepository).updateTrackingState(updated.capture());
+        assertThat(updated.getValue()).singleElement().satisfies(delivery -> {
+            assertThat(delivery.getStatus()).isEqualTo(DeliveryStatus.DELIVERED);
+            assertThat(delivery.getActualDeliveryDate()).isNotNull();
+        });
+    }
+
+    @Test
+    void finalStatusRejectsEveryOtherStatus() {
+        statuses.put("TRK-1", DeliveryStatus.CANCELLED);
+
+        List<CarrierScanResult> results = ingest(scan("TRK-1", DeliveryStatus.OUT_FOR_DELIVERY), scan("TRK-1", DeliveryStatus.CANCELLED));
+
+        assertThat(results).extracting(CarrierScanResult::getOutcome).containsExactly(Outcome.REJECTED, Outcome.APPLIED);
+    }
+
+    @Test
+    void failedBatchIsReportedAndTheFeedGoesOn() {
+        statuses.put("TRK-1", DeliveryStatus.IN_TRANSIT);
+        statuses.put("TRK-2", DeliveryStatus.IN_TRANSIT);
+        when(deliveryRepository.findAllByTrackingNumberForUpdate(any()))
+                .thenReturn(Flux.error(new DataIntegrityViolationException("Data too long for column 'notes'")))
+                .thenAnswer(invocation -> deliveries());
+
+        List<CarrierScanResult> results = ingest(
+                scan("TRK-1", DeliveryStatus.OUT_FOR_DELIVERY), scan("TRK-2", DeliveryStatus.OUT_FOR_DELIVERY), // First batch
+                scan("TRK-1", DeliveryStatus.DELIVERED), scan("TRK-2", DeliveryStatus.DELIVERED));
+
+        assertThat(results).extracting(CarrierScanResult::getIndex).containsExactly(0L, 1L, 2L, 3L);
+        assertThat(results).extracting(CarrierScanResult::getOutcome)
+                .containsExactly(Outcome.FAILED, Outcome.FAILED, Outcome.APPLIED, Outcome.APPLIED);
+        verify(deliveryRepository, times(2)).findAllByTrackingNumberForUpdate(any()); // Not retried
+    }
+
+    @Test
+    void transientFailureIsRetried() {
+        statuses.put("TRK-1", DeliveryStatus.IN_TRANSIT);
+        when(deliveryRepository.findAllByTrackingNumberForUpdate(any()))
+                .thenReturn(Flux.error(new CannotAcquireLockException("Deadlock found when trying to get lock")))
+                .thenAnswer(invocation -> deliveries());
+
+        List<CarrierScanResult> results = ingest(scan("TRK-1", DeliveryStatus.DELIVERED));
+
+        assertThat(results).extracting(CarrierScanResult::getOutcome).containsExactly(Outcome.APPLIED);
+        verify(deliveryRepository, times(1)).updateTrackingState(anyList());
+    }
+
+    @Test
+    void batchStillFailingAfterRetriesIsReported() {
+        statuses.put("TRK-1", DeliveryStatus.IN_TRANSIT);
+        when(deliveryRepository.findAllByTrackingNumberForUpdate(any()))
+                .thenReturn(Flux.error(new CannotAcquireLockException("Lock wait timeout exceeded")));
+
+        List<CarrierScanResult> results = ingest(scan("TRK-1", DeliveryStatus.DELIVERED));
+
+        assertThat(results).extracting(CarrierScanResult::getOutcome).containsExactly(Outcome.FAILED);
+        verify(deliveryRepository, never()).updateTrackingState(anyList());
+    }
+
+    private List<CarrierScanResult> ingest(CarrierScan... scans) {
+        return service.ingest(Flux.just(scans)).collectList().block(TIMEOUT);
+    }
+
+    private Flux<Delivery> deliveries() {
+        long[] id = {0};
+        return Flux.fromIterable(statuses.entrySet())
+                .map(entry -> Delivery.builder()
+                        .id(++id[0])
+                        .trackingNumber(entry.getKey())
+                        .status(entry.getValue())
+                        .build());
+    }
+
+    private static CarrierScan scan(String trackingNumber, DeliveryStatus status) {
+        return CarrierScan.builder()
+                .trackingNumber(trackingNumber)
+                .status(status)
+                .location("Lagos hub")
+                .build();
+    }
+}
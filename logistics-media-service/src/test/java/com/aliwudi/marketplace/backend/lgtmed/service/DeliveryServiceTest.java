@@ -0,0 +1,132 @@
+package com.aliwudi.marketplace.backend.lgtmed.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.aliwudi.marketplace.backend.common.enumeration.DeliveryEventSource;
+import com.aliwudi.marketplace.backend.common.interservice.OrderIntegrationService;
+import com.aliwudi.marketplace.backend.common.model.Delivery;
+import com.aliwudi.marketplace.backend.common.model.DeliveryEvent;
+import com.aliwudi.marketplace.backend.common.response.ApiResponseMessages;
+import com.aliwudi.marketplace.backend.common.status.DeliveryStatus;
+import com.aliwudi.marketplace.backend.lgtmed.repository.DeliveryEventRepository;
+import com.aliwudi.marketplace.backend.lgtmed.repository.DeliveryRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.transaction.reactive.TransactionCallback;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The delivery status transitions shared by the status update endpoint and
+ * carrier scan ingestion: DELIVERED, CANCELLED and FAILED are final. Single
+ * updates lock the delivery before recording its legacy notes.
+ */
+class DeliveryServiceTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    @ParameterizedTest
+    @EnumSource(value = DeliveryStatus.class, names = {"DELIVERED", "CANCELLED", "FAILED"}, mode = EnumSource.Mode.EXCLUDE)
+    void openStatusCanMoveToAnyStatus(DeliveryStatus current) {
+        for (DeliveryStatus next : DeliveryStatus.values()) {
+            assertThat(DeliveryService.transitionError(current, next)).as("%s -> %s", current, next).isNull();
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = DeliveryStatus.class, names = {"DELIVERED", "CANCELLED", "FAILED"})
+    void finalStatusOnlyMovesToItself(DeliveryStatus current) {
+        for (DeliveryStatus next : DeliveryStatus.values()) {
+            String error = DeliveryService.transitionError(current, next);
+            if (next == current) {
+                assertThat(error).as("%s -> %s", current, next).isNull();
+            } else {
+                assertThat(error).as("%s -> %s", current, next).isNotNull();
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(DeliveryStatus.class)
+    void deliveryWithoutStatusCanTakeAnyStatus(DeliveryStatus next) {
+        assertThat(DeliveryService.transitionError(null, next)).isNull();
+    }
+
+    @Test
+    void errorNamesTheFinalStatus() {
+        assertThat(DeliveryService.transitionError(DeliveryStatus.DELIVERED, DeliveryStatus.IN_TRANSIT))
+                .isEqualTo(ApiResponseMessages.INVALID_DELIVERY_STATUS_TRANSITION_FROM_DELIVERED);
+        assertThat(DeliveryService.transitionError(DeliveryStatus.CANCELLED, DeliveryStatus.PENDING))
+                .isEqualTo(ApiResponseMessages.INVALID_DELIVERY_STATUS_TRANSITION_FROM_CANCELED);
+        assertThat(DeliveryService.transitionError(DeliveryStatus.FAILED, DeliveryStatus.DELIVERED))
+                .isEqualTo(ApiResponseMessages.INVALID_DELIVERY_STATUS_TRANSITION_FROM_FAILED);
+    }
+
+    @Test
+    void updateLocksTheDeliveryBeforeRecordingItsLegacyNotes() {
+        List<String> steps = new ArrayList<>();
+        // Records where the transaction starts and commits; the repositories are mocks
+        TransactionalOperator transactionalOperator = new TransactionalOperator() {
+            @Override
+            public <T> Flux<T> execute(TransactionCallback<T> action) {
+                return Flux.from(action.doInTransaction(null));
+            }
+
+            @Override
+            public <T> Mono<T> transactional(Mono<T> mono) {
+                return Mono.defer(() -> {
+                    steps.add("begin");
+                    return mono;
+                }).doOnSuccess(value -> steps.add("commit"));
+            }
+        };
+        Delivery delivery = Delivery.builder()
+                .id(1L)
+                .trackingNumber("TRK-1")
+                .status(DeliveryStatus.IN_TRANSIT)
+                .notes("Left Lagos hub\nArrived Ibadan hub")
+                .updatedAt(LocalDateTime.now().minusDays(1))
+                .build();
+        DeliveryRepository deliveryRepository = mock(DeliveryRepository.class);
+        DeliveryEventRepository deliveryEventRepository = mock(DeliveryEventRepository.class);
+        DeliveryTrackingStreamRegistry trackingStreamRegistry = mock(DeliveryTrackingStreamRegistry.class);
+        // Like the real query, the row is only read (and locked) on subscription
+        when(deliveryRepository.findByTrackingNumberForUpdate("TRK-1")).thenReturn(Mono.fromSupplier(() -> {
+            steps.add("lock");
+            return delivery;
+        }));
+        when(deliveryRepository.save(any(Delivery.class))).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+        when(deliveryEventRepository.retainDeliveriesWithoutEvents(anyList()))
+                .thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+        when(deliveryEventRepository.insertAll(anyList())).thenAnswer(invocation -> {
+            steps.add("legacy " + invocation.<List<DeliveryEvent>>getArgument(0).size());
+            return Mono.just((long) invocation.<List<DeliveryEvent>>getArgument(0).size());
+        });
+        when(deliveryEventRepository.save(any(DeliveryEvent.class))).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+        doAnswer(invocation -> steps.add("publish")).when(trackingStreamRegistry).publish(anyString(), any());
+        DeliveryService service = new DeliveryService(deliveryRepository, deliveryEventRepository,
+                mock(OrderIntegrationService.class), transactionalOperator, trackingStreamRegistry);
+
+        Delivery updated = service.updateDeliveryStatus("TRK-1", "OUT_FOR_DELIVERY", "Ibadan", "Out with agent").block(TIMEOUT);
+
+        assertThat(updated.getStatus()).isEqualTo(DeliveryStatus.OUT_FOR_DELIVERY);
+        assertThat(updated.getNotes()).isEqualTo("Out with agent");
+        assertThat(steps).containsExactly("begin", "lock", "legacy 2", "commit", "publish");
+        verify(deliveryRepository, never()).findByTrackingNumber(anyString());
+    }
+}
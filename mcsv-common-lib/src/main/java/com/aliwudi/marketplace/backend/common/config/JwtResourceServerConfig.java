@@ -0,0 +1,71 @@
+package com.aliwudi.marketplace.backend.common.config;
+
+import com.aliwudi.marketplace.backend.common.util.CachedJwkSetSource;
+import com.aliwudi.marketplace.backend.common.util.CachingJwtAuthenticationManager;
+import com.aliwudi.marketplace.backend.common.util.JwtAuthConverter;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.security.oauth2.resource.OAuth2ResourceServerProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.security.authentication.AbstractAuthenticationToken;
+import org.springframework.security.authentication.ReactiveAuthenticationManager;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+/**
+ * JWT resource server beans shared by the microservices: the cached JWK
+ * source, the decoder (signature, expiry and issuer validation), the
+ * Keycloak role converter and the caching authentication manager.
+ *
+ * Imported by each service's security configuration, which only defines its
+ * own SecurityWebFilterChain on top of jwtAuthenticationManager. A service
+ * that needs a dedicated client for the JWKS endpoint (e.g. with its own
+ * truststore) defines it as a WebClient bean named "jwkSetWebClient".
+ */
+@Configuration
+public class JwtResourceServerConfig {
+
+    @Value("${jwt.auth.converter.principle-attribute}")
+    private String principleAttribute;
+
+    @Value("${jwt.auth.converter.resource-id}")
+    private String resourceId;
+
+    @Value("${jwt.jwks.refresh-interval:5m}")
+    private Duration jwksRefreshInterval;
+
+    @Value("${jwt.auth.cache.max-entries:10000}")
+    private int authCacheMaxEntries;
+
+    @Bean
+    public Converter<Jwt, Mono<AbstractAuthenticationToken>> jwtAuthConverter() {
+        return new JwtAuthConverter(principleAttribute, resourceId);
+    }
+
+    @Bean
+    public CachedJwkSetSource jwkSetSource(OAuth2ResourceServerProperties properties,
+                                           WebClient.Builder webClientBuilder,
+                                           @Qualifier("jwkSetWebClient") ObjectProvider<WebClient> jwkSetWebClient) {
+        return new CachedJwkSetSource(properties.getJwt().getJwkSetUri(),
+                jwkSetWebClient.getIfAvailable(webClientBuilder::build), jwksRefreshInterval);
+    }
+
+    @Bean
+    public ReactiveJwtDecoder reactiveJwtDecoder(CachedJwkSetSource jwkSetSource, OAuth2ResourceServerProperties properties) {
+        return CachedJwkSetSource.jwtDecoder(jwkSetSource, properties.getJwt().getIssuerUri());
+    }
+
+    @Bean
+    public ReactiveAuthenticationManager jwtAuthenticationManager(ReactiveJwtDecoder reactiveJwtDecoder,
+                                                                  Converter<Jwt, Mono<AbstractAuthenticationToken>> jwtAuthConverter) {
+        // Memoizes decoded + converted tokens so repeated requests skip signature checks and role mapping
+        return new CachingJwtAuthenticationManager(reactiveJwtDecoder, jwtAuthConverter, authCacheMaxEntries);
+    }
+}
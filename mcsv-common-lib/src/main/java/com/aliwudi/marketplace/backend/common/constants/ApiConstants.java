@@ -52,6 +52,7 @@ public final class ApiConstants {
     public static final String USER_PROFILES_DELETE = "/profiles/delete/{id}";
     public static final String USER_PROFILES_DELETE_ROLLBACK = "/profiles/delete-to-rollback/{authId}";
     public static final String USER_GET_BY_ID = "userId/{id}";
+    public static final String USER_GET_BY_IDS = "/byIds"; // Bulk lookup, user IDs in the request body
     public static final String USER_BY_AUTH_ID = "/authId/{id}";    
     public static final String USER_GET_BY_EMAIL = "/byEmail/{email}";
     public static final String USER_GET_BY_PHONE_NUMBER = "/byPhoneNumber/{phoneNumber}"; // NEW
@@ -67,6 +68,8 @@ public final class ApiConstants {
     public static final String USER_ADMIN_COUNT_BY_CREATED_AT_AFTER = "/admin/countByCreatedAtAfter";
     public static final String USER_ADMIN_BY_SHIPPING_ADDRESS = "/admin/byShippingAddress";
     public static final String USER_ADMIN_COUNT_BY_SHIPPING_ADDRESS = "/admin/countByShippingAddress";
+    public static final String USER_ADMIN_SEARCH = "/admin/search";
+    public static final String USER_ADMIN_IDS = "/admin/ids"; // Keyset-paged user IDs: ?afterId=&limit=
     public static final String USER_EXISTS_BY_USER_ID = "/exists/user-id/{userId}";
     public static final String USER_EXISTS_BY_AUTH_ID = "/exists/auth-id/{authId}";
     public static final String USER_EXISTS_BY_EMAIL = "/exists/email/{email}";
@@ -230,6 +233,8 @@ public final class ApiConstants {
     // --- Notification Endpoints ---
     public static final String NOTIFICATION_CREATE = ""; // PostMapping on base
     public static final String NOTIFICATION_STREAM = "/stream";
+    public static final String NOTIFICATION_BROADCAST = "/broadcast";
+    public static final String NOTIFICATION_BROADCAST_STATUS = "/broadcast/{id}";
     public static final String NOTIFICATION_ME_ALL = "/me";
     public static final String NOTIFICATION_ME_BY_STATUS = "/me/status/{status}";
     public static final String NOTIFICATION_ME_BY_TYPE = "/me/type/{type}";
@@ -237,16 +242,21 @@ public final class ApiConstants {
     public static final String NOTIFICATION_ME_DELETE = "/me/{id}";
     public static final String NOTIFICATION_ME_COUNT_ALL = "/me/count";
     public static final String NOTIFICATION_ME_COUNT_BY_STATUS = "/me/count/status/{status}";
+    public static final String NOTIFICATION_ME_BADGE = "/me/badge";
 
 
     // --- Delivery Endpoints ---
     public static final String DELIVERY_CREATE = ""; // PostMapping on base
     public static final String DELIVERY_GET_BY_ORDER_ID = "/order/{orderId}";
     public static final String DELIVERY_GET_BY_TRACKING_NUMBER = "/track/{trackingNumber}";
+    public static final String DELIVERY_GET_TIMELINE = "/track/{trackingNumber}/events";
+    public static final String DELIVERY_TRACK_STREAM = "/track/{trackingNumber}/stream"; // SSE
     public static final String DELIVERY_UPDATE_STATUS = "/update-status";
+    public static final String DELIVERY_INGEST_SCANS = "/scans"; // Bulk carrier scan feed (NDJSON)
     public static final String DELIVERY_CANCEL = "/cancel/{trackingNumber}";
     public static final String DELIVERY_ADMIN_DELETE = "/admin/{trackingNumber}";
     public static final String DELIVERY_ADMIN_GET_ALL = "/admin/all";
+    public static final String DELIVERY_ADMIN_PLAN = "/admin/plan"; // Run delivery planning now
     public static final String DELIVERY_ADMIN_GET_BY_STATUS = "/admin/byStatus/{status}";
     public static final String DELIVERY_ADMIN_GET_BY_AGENT = "/admin/byAgent/{deliveryAgent}";
     public static final String DELIVERY_ADMIN_GET_ESTIMATED_BEFORE = "/admin/estimatedBefore";
@@ -261,9 +271,16 @@ public final class ApiConstants {
 
     // --- Media Endpoints ---
     public static final String MEDIA_UPLOAD = "/upload";
+    public static final String MEDIA_UPLOADS = "/uploads"; // Resumable uploads: initiate
+    public static final String MEDIA_UPLOAD_SESSION = "/uploads/{uploadId}"; // Progress, abort
+    public static final String MEDIA_UPLOAD_CHUNK = "/uploads/{uploadId}/chunks/{chunkIndex}"; // PUT raw chunk bytes
+    public static final String MEDIA_UPLOAD_COMPLETE = "/uploads/{uploadId}/complete";
     public static final String MEDIA_GET_BY_UNIQUE_FILE_NAME = "/{uniqueFileName}";
+    public static final String MEDIA_DOWNLOAD = "/files/{uniqueFileName}";
+    public static final String MEDIA_DOWNLOAD_VARIANT = "/files/{uniqueFileName}/{variant}"; // thumbnail, card or full
     public static final String MEDIA_GET_FOR_ENTITY = "/entity/{entityId}/{entityType}";
     public static final String MEDIA_COUNT_FOR_ENTITY = "/entity/{entityId}/{entityType}/count";
+    public static final String MEDIA_GET_FOR_ENTITIES = "/entities"; // Batch lookup, (entityType, entityId) pairs in the request body
     public static final String MEDIA_ADMIN_DELETE = "/admin/{uniqueFileName}";
     public static final String MEDIA_ADMIN_GET_ALL = "/admin/all";
     public static final String MEDIA_ADMIN_GET_BY_ENTITY_TYPE = "/admin/byEntityType/{entityType}";
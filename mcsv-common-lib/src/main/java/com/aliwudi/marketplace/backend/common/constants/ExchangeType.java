@@ -10,5 +10,9 @@ package com.aliwudi.marketplace.backend.common.constants;
  */
 public class ExchangeType {
     public static final String USER_EVENTS_EXCHANGE = "user.events.exchange";
+    public static final String NOTIFICATION_STREAM_EXCHANGE = "notification.stream.exchange"; // Routes live notifications to the nodes holding the user's SSE connections
+    public static final String USER_EVENTS_RETRY_EXCHANGE = "user.events.retry.exchange"; // Failed user event deliveries wait here before being retried
+    public static final String USER_EVENTS_DEAD_LETTER_EXCHANGE = "user.events.dlx"; // User events that exhausted their retries are parked here
+    public static final String USER_SEARCH_EXCHANGE = "user.search.exchange"; // Fans user writes out to the search index of every user-service node
     
 }
@@ -16,4 +16,8 @@ public class QueueType {
     public static final String PHONE_CALL_VERIFICATION_QUEUE = "phonecall.verification.queue";
     public static final String REGISTRATION_ONBOARDING_QUEUE = "registration.onboarding.queue";
     public static final String PASSWORD_RESET_QUEUE = "password.reset.queue";
+    public static final String NOTIFICATION_NODE_QUEUE_PREFIX = "notification.stream.node."; // One exclusive queue per notification-service node
+    public static final String USER_SEARCH_NODE_QUEUE_PREFIX = "user.search.node."; // One exclusive queue per user-service node
+    public static final String RETRY_QUEUE_SUFFIX = ".retry"; // <queue>.retry holds failed messages of <queue> until their retry delay expires
+    public static final String DEAD_LETTER_QUEUE_SUFFIX = ".dlq"; // <queue>.dlq holds messages of <queue> that exhausted their retries
 }
@@ -11,5 +11,7 @@ package com.aliwudi.marketplace.backend.common.constants;
 public class RedisConstants {
         
     public static final String OTP_PREFIX = "user_otp:"; // Key prefix for Redis
+    public static final String OTP_ATTEMPTS_PREFIX = "user_otp_attempts:"; // Failed verification attempts per active OTP
+    public static final String OTP_LOCK_PREFIX = "user_otp_lock:"; // Present while a user is locked out of OTP verification
 
 }
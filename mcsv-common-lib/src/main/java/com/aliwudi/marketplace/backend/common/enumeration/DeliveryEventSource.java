@@ -0,0 +1,11 @@
+package com.aliwudi.marketplace.backend.common.enumeration;
+
+/**
+ * Enumeration of where a delivery tracking event came from.
+ */
+public enum DeliveryEventSource {
+    SYSTEM, // Recorded by the logistics service itself (e.g., delivery created)
+    API, // Status update by a delivery agent or an administrator
+    CARRIER_SCAN, // Scan reported by a carrier
+    LEGACY // Notes history of a delivery from before events were recorded
+}
@@ -0,0 +1,10 @@
+package com.aliwudi.marketplace.backend.common.enumeration;
+
+/**
+ * Enumeration of the external channels a notification can be delivered on,
+ * besides the in-app (SSE) stream.
+ */
+public enum NotificationChannel {
+    EMAIL,
+    SMS
+}
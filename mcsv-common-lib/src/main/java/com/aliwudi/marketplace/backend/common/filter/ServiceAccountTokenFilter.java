@@ -0,0 +1,44 @@
+package com.aliwudi.marketplace.backend.common.filter;
+
+import com.aliwudi.marketplace.backend.common.interservice.ServiceAccountTokenProvider;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.publisher.Mono;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A WebClient filter that authenticates outgoing requests as this service
+ * when they carry no Authorization header yet. Applied after
+ * JwtPropagationFilter, it covers calls made outside of a user request
+ * (e.g. by background pollers), which have no caller JWT to propagate.
+ */
+@Component
+public class ServiceAccountTokenFilter implements ExchangeFilterFunction {
+
+    private static final Logger log = LoggerFactory.getLogger(ServiceAccountTokenFilter.class);
+
+    private final ServiceAccountTokenProvider tokenProvider;
+
+    public ServiceAccountTokenFilter(ServiceAccountTokenProvider tokenProvider) {
+        this.tokenProvider = tokenProvider;
+    }
+
+    @Override
+    public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+        if (request.headers().containsKey(HttpHeaders.AUTHORIZATION) || !tokenProvider.isEnabled()) {
+            return next.exchange(request); // Caller's JWT already propagated, or no service account configured
+        }
+        return tokenProvider.getAccessToken()
+                .flatMap(token -> {
+                    log.debug("No caller JWT, authenticating {} {} with the service account token", request.method(), request.url());
+                    return next.exchange(ClientRequest.from(request)
+                            .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                            .build());
+                });
+    }
+}
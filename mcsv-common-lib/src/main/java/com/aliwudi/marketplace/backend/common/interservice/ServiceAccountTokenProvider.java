@@ -0,0 +1,245 @@
+package com.aliwudi.marketplace.backend.common.interservice;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ClientHttpConnector;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Obtains this service's own access token (OAuth2 client_credentials grant)
+ * for calls made outside of a user request, e.g. by background pollers or
+ * the Authorization Server admin client, where there is no caller token to
+ * propagate.
+ *
+ * The token is cached and refreshed in the background after refresh-ratio
+ * of its lifetime, so callers normally get it without a network round trip.
+ * Concurrent refreshes are single-flighted: while a token request is in
+ * progress every caller shares its result. Token requests go through the
+ * application's ClientHttpConnector, if it has one (e.g. with a custom
+ * truststore). Unless service-account.client-id is set, the provider is
+ * disabled and emits nothing.
+ */
+@Component
+public class ServiceAccountTokenProvider {
+
+    private static final Logger log = LoggerFactory.getLogger(ServiceAccountTokenProvider.class);
+
+    private static final String METRIC_TOKEN_FETCH = "auth.service_account.token.fetch";
+    private static final String METRIC_TOKEN_REFRESH = "auth.service_account.token.refresh";
+
+    private final WebClient webClient;
+    private final String tokenUri;
+    private final String clientId;
+    private final String clientSecret;
+    private final Timer fetchTimer;
+    private final Counter proactiveRefreshCounter;
+    private final Counter onDemandRefreshCounter;
+    private final Counter failedRefreshCounter;
+
+    // A cached token expiring sooner than this is treated as already expired
+    @Value("${service-account.min-validity:30s}")
+    private Duration minValidity;
+
+    // Fraction of the token lifetime after which a background refresh is scheduled
+    @Value("${service-account.refresh-ratio:0.75}")
+    private double refreshRatio;
+
+    // Delay before retrying a failed background refresh
+    @Value("${service-account.retry-delay:5s}")
+    private Duration retryDelay;
+
+    private final AtomicReference<CachedToken> currentToken = new AtomicReference<>();
+    private final AtomicReference<Mono<CachedToken>> inFlightRefresh = new AtomicReference<>();
+    private final AtomicReference<Disposable> scheduledRefresh = new AtomicReference<>();
+
+    public ServiceAccountTokenProvider(WebClient.Builder webClientBuilder,
+                                       ObjectProvider<ClientHttpConnector> connector,
+                                       ObjectProvider<MeterRegistry> meterRegistry,
+                                       @Value("${service-account.token-uri:}") String tokenUri,
+                                       @Value("${service-account.client-id:}") String clientId,
+                                       @Value("${service-account.client-secret:}") String clientSecret) {
+        WebClient.Builder builder = webClientBuilder.clone();
+        connector.ifUnique(builder::clientConnector);
+        this.webClient = builder.build();
+        this.tokenUri = tokenUri;
+        this.clientId = clientId;
+        this.clientSecret = clientSecret;
+
+        MeterRegistry registry = meterRegistry.getIfUnique(SimpleMeterRegistry::new);
+        this.fetchTimer = Timer.builder(METRIC_TOKEN_FETCH)
+                .description("Latency of service account token requests to the authorization server")
+                .register(registry);
+        this.proactiveRefreshCounter = Counter.builder(METRIC_TOKEN_REFRESH)
+                .tag("trigger", "proactive")
+                .tag("outcome", "success")
+                .register(registry);
+        this.onDemandRefreshCounter = Counter.builder(METRIC_TOKEN_REFRESH)
+                .tag("trigger", "on-demand")
+                .tag("outcome", "success")
+                .register(registry);
+        this.failedRefreshCounter = Counter.builder(METRIC_TOKEN_REFRESH)
+                .tag("outcome", "failure")
+                .register(registry);
+    }
+
+    /**
+     * Fetches a first token as soon as the application is ready so the first
+     * call does not pay the token request latency.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (!isEnabled()) {
+            return;
+        }
+        refresh(false).subscribe(
+                token -> log.debug("Service account token warmed up, expires at {}", token.expiresAt()),
+                e -> log.warn("Initial service account token fetch failed: {}", e.getMessage()));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        Disposable pending = scheduledRefresh.getAndSet(null);
+        if (pending != null) {
+            pending.dispose();
+        }
+    }
+
+    /**
+     * @return true if a service account is configured.
+     */
+    public boolean isEnabled() {
+        return clientId != null && !clientId.isBlank();
+    }
+
+    /**
+     * Returns a valid access token of the service account, from the cache
+     * unless it is missing or about to expire.
+     *
+     * @return A Mono emitting the raw access token, or empty if no service
+     * account is configured.
+     */
+    public Mono<String> getAccessToken() {
+        if (!isEnabled()) {
+            return Mono.empty();
+        }
+        CachedToken token = currentToken.get();
+        if (token != null && token.isValidFor(minValidity)) {
+            return Mono.just(token.accessToken());
+        }
+        return refresh(false).map(CachedToken::accessToken);
+    }
+
+    /**
+     * Starts a token refresh, or joins the one already in progress.
+     */
+    private Mono<CachedToken> refresh(boolean proactive) {
+        while (true) {
+            Mono<CachedToken> existing = inFlightRefresh.get();
+            if (existing != null) {
+                return existing;
+            }
+
+            Sinks.One<CachedToken> sink = Sinks.one();
+            Mono<CachedToken> shared = sink.asMono();
+            if (!inFlightRefresh.compareAndSet(null, shared)) {
+                continue; // Another caller won the race, join its refresh
+            }
+
+            fetchToken()
+                    .doOnNext(token -> {
+                        currentToken.set(token);
+                        (proactive ? proactiveRefreshCounter : onDemandRefreshCounter).increment();
+                        scheduleRefresh(token);
+                    })
+                    .doOnError(e -> {
+                        failedRefreshCounter.increment();
+                        scheduleRetry();
+                    })
+                    .doFinally(signal -> inFlightRefresh.compareAndSet(shared, null))
+                    .subscribe(sink::tryEmitValue, sink::tryEmitError);
+            return shared;
+        }
+    }
+
+    private Mono<CachedToken> fetchToken() {
+        BodyInserters.FormInserter<String> formData = BodyInserters
+                .fromFormData("grant_type", "client_credentials")
+                .with("client_id", clientId);
+        // Only add client_secret if it's present (for confidential clients)
+        if (clientSecret != null && !clientSecret.isBlank()) {
+            formData = formData.with("client_secret", clientSecret);
+        }
+        Timer.Sample sample = Timer.start();
+        return webClient.post()
+                .uri(tokenUri)
+                .contentType(MediaType.APPLICATION_FORM_URLENCODED)
+                .body(formData)
+                .retrieve()
+                .bodyToMono(new ParameterizedTypeReference<Map<String, Object>>() {})
+                .map(response -> {
+                    if (!(response.get("access_token") instanceof String accessToken)) {
+                        throw new IllegalStateException("Token response did not contain an access_token");
+                    }
+                    long lifetimeSeconds = response.get("expires_in") instanceof Number expiresIn ? expiresIn.longValue() : 60L;
+                    Instant issuedAt = Instant.now();
+                    return new CachedToken(accessToken, issuedAt, issuedAt.plusSeconds(lifetimeSeconds));
+                })
+                .doFinally(signal -> sample.stop(fetchTimer))
+                .doOnSuccess(cached -> log.debug("Fetched service account token for client {}, expires at {}", clientId, cached.expiresAt()))
+                .doOnError(e -> log.error("Failed to fetch service account token for client {}: {}", clientId, e.getMessage()));
+    }
+
+    private void scheduleRefresh(CachedToken token) {
+        long lifetimeMillis = Duration.between(token.issuedAt(), token.expiresAt()).toMillis();
+        Duration delay = Duration.ofMillis(Math.max(1000L, (long) (lifetimeMillis * refreshRatio)));
+        replaceScheduledRefresh(delay);
+    }
+
+    private void scheduleRetry() {
+        CachedToken token = currentToken.get();
+        if (token != null && token.isValidFor(Duration.ZERO)) {
+            replaceScheduledRefresh(retryDelay); // Keep trying while the current token still works
+        }
+    }
+
+    private void replaceScheduledRefresh(Duration delay) {
+        Disposable next = Mono.delay(delay)
+                .flatMap(tick -> refresh(true))
+                .subscribe(token -> { }, e -> log.warn("Background service account token refresh failed: {}", e.getMessage()));
+        Disposable previous = scheduledRefresh.getAndSet(next);
+        if (previous != null) {
+            previous.dispose();
+        }
+    }
+
+    /**
+     * An access token together with its validity window.
+     */
+    private record CachedToken(String accessToken, Instant issuedAt, Instant expiresAt) {
+
+        boolean isValidFor(Duration margin) {
+            return Instant.now().plus(margin).isBefore(expiresAt);
+        }
+    }
+}
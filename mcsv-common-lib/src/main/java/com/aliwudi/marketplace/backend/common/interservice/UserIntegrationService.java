@@ -4,15 +4,19 @@ import static com.aliwudi.marketplace.backend.common.constants.ApiConstants.*;
 import com.aliwudi.marketplace.backend.common.model.User;
 import com.aliwudi.marketplace.backend.common.exception.ServiceUnavailableException;
 import com.aliwudi.marketplace.backend.common.filter.JwtPropagationFilter;
+import com.aliwudi.marketplace.backend.common.filter.ServiceAccountTokenFilter;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import java.net.ConnectException;
 import java.net.NoRouteToHostException;
 import java.net.UnknownHostException;
+import java.util.Collection;
+import java.util.List;
 import java.util.concurrent.TimeoutException;
 import org.slf4j.Logger; // For logging
 import org.slf4j.LoggerFactory; // For logging
@@ -25,14 +29,16 @@ public class UserIntegrationService {
     private final WebClient webClient;
     private final String path = "lb://user-service"+USER_CONTROLLER_BASE;
 
-    // Constructor injection for WebClient.Builder and JwtPropagationFilter
+    // Constructor injection for WebClient.Builder and the authentication filters
     public UserIntegrationService(WebClient.Builder webClientBuilder,
-                                     JwtPropagationFilter jwtPropagationFilter) { // INJECT THE FILTER
+                                     JwtPropagationFilter jwtPropagationFilter, // INJECT THE FILTER
+                                     ServiceAccountTokenFilter serviceAccountTokenFilter) {
         // Build WebClient instance. The base URL uses the Eureka service ID.
         // 'lb://' prefix indicates client-side load balancing via Eureka.        
         this.webClient = WebClient.builder()
                 .baseUrl(path)
                 .filter(jwtPropagationFilter) // APPLY THE FILTER HERE!
+                .filter(serviceAccountTokenFilter) // Calls without a caller JWT (e.g. background jobs) authenticate as this service
                 .build();
     }
 
@@ -94,6 +100,45 @@ public class UserIntegrationService {
         return handleUserServiceErrors(responseMono, "fetching user", userId);
     }
 
+    /**
+     * Retrieves several users by their IDs with one call to the User Service.
+     * Unknown IDs are skipped. Callers must keep the list within the User
+     * Service's bulk limit (1000 IDs). Requires an admin caller, or the
+     * service account when called outside of a request.
+     * @param userIds The IDs of the users to retrieve.
+     * @return Flux<User> emitting the users found, Flux.error() on service errors.
+     */
+    public Flux<User> getUsersByIds(Collection<Long> userIds) {
+        Mono<List<User>> responseMono = webClient.post()
+                .uri(USER_GET_BY_IDS)
+                .bodyValue(userIds)
+                .retrieve()
+                .bodyToFlux(User.class)
+                .collectList();
+
+        return handleUserServiceErrors(responseMono, "fetching users in bulk", userIds.size() + " users")
+                .flatMapMany(Flux::fromIterable);
+    }
+
+    /**
+     * Retrieves a page of user IDs in ascending order, following afterId.
+     * @param afterId The last ID of the previous page (0 for the first page).
+     * @param limit The maximum number of IDs (at most 1000).
+     * @return Mono<List<Long>> with the IDs, empty list after the last page.
+     */
+    public Mono<List<Long>> getUserIdsAfter(Long afterId, int limit) {
+        Mono<List<Long>> responseMono = webClient.get()
+                .uri(uriBuilder -> uriBuilder.path(USER_ADMIN_IDS)
+                        .queryParam("afterId", afterId)
+                        .queryParam("limit", limit)
+                        .build())
+                .retrieve()
+                .bodyToFlux(Long.class)
+                .collectList();
+
+        return handleUserServiceErrors(responseMono, "fetching user IDs", "after " + afterId);
+    }
+
     /**
      * Checks if a user exists by their user ID.
      * @param userId The user ID of the user to check.
@@ -38,10 +38,10 @@ public class Delivery {
     private String recipientAddress;
     private String deliveryAgent; // e.g., "DHL", "FedEx", "Local Courier"
     private DeliveryStatus status; // Enum: PENDING, SHIPPED, IN_TRANSIT, DELIVERED, FAILED, CANCELED
-    private String currentLocation; // Latest known location
+    private String currentLocation; // Latest known location; the full history is in delivery_events
     private LocalDateTime estimatedDeliveryDate;
     private LocalDateTime actualDeliveryDate; // Null until delivered
-    private String notes; // Any additional notes or updates
+    private String notes; // Latest note; earlier ones are in delivery_events
     
     @CreatedDate // Automatically populated with creation timestamp
     private LocalDateTime createdAt;
@@ -0,0 +1,31 @@
+package com.aliwudi.marketplace.backend.common.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Table;
+
+/**
+ * A delivery agent that the delivery planner can assign deliveries to.
+ * Deliveries reference agents by name (Delivery.deliveryAgent).
+ * Stored in the 'delivery_agents' table.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Table("delivery_agents")
+public class DeliveryAgent {
+
+    @Id
+    private Long id;
+
+    private String name; // Unique; the value of Delivery.deliveryAgent
+    private String region; // Region served, matched against the last part of recipient addresses; null serves any region
+    private int dailyCapacity; // Maximum deliveries per day
+
+    @Builder.Default
+    private boolean active = true; // Inactive agents are not assigned new deliveries
+}
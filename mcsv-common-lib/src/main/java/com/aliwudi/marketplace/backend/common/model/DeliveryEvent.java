@@ -0,0 +1,36 @@
+package com.aliwudi.marketplace.backend.common.model;
+
+import com.aliwudi.marketplace.backend.common.enumeration.DeliveryEventSource;
+import com.aliwudi.marketplace.backend.common.status.DeliveryStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.time.LocalDateTime;
+
+/**
+ * One entry of the tracking history of a delivery: a status update or a scan.
+ * Events are only ever inserted; the Delivery row holds the latest state.
+ * Stored in the 'delivery_events' table.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Table("delivery_events")
+public class DeliveryEvent {
+
+    @Id
+    private Long id;
+
+    private Long deliveryId;
+    private DeliveryStatus status; // Status of the delivery after this event
+    private String location; // Where it happened, if known
+    private String notes;
+    private DeliveryEventSource source;
+    private LocalDateTime occurredAt; // When it happened, as reported by its source
+    private LocalDateTime recordedAt; // When it was stored
+}
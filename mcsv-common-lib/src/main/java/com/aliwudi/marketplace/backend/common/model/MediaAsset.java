@@ -31,4 +31,5 @@ public class MediaAsset {
     private Long fileSize; // Optional: Store file size
     private String storagePath; // Optional: Internal path in storage system
     private String uploadedBy; // Optional: User who uploaded this asset    
+    private String contentHash; // Hex SHA-256 of the content; the download ETag
 }
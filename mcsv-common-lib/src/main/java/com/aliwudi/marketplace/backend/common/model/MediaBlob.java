@@ -0,0 +1,31 @@
+package com.aliwudi.marketplace.backend.common.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.time.LocalDateTime;
+
+/**
+ * A stored media object, shared by every MediaAsset with the same content.
+ * Media content is stored under its SHA-256, and the object is deleted when
+ * the last asset referencing it is.
+ * Stored in the 'media_blobs' table.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Table("media_blobs")
+public class MediaBlob {
+
+    @Id
+    private String contentHash; // Hex SHA-256 of the content; its storage key
+
+    private long size;
+    private long refCount; // Media assets referencing the content
+    private LocalDateTime createdAt;
+}
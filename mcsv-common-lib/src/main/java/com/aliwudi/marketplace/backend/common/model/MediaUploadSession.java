@@ -0,0 +1,48 @@
+package com.aliwudi.marketplace.backend.common.model;
+
+import com.aliwudi.marketplace.backend.common.status.MediaUploadStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.time.LocalDateTime;
+
+/**
+ * A resumable media upload: the file is sent as numbered chunks of chunkSize
+ * bytes (the last one may be shorter), in any order and as many times as
+ * needed, then assembled into a MediaAsset. Received chunks are recorded in
+ * the 'media_upload_chunks' table.
+ * Stored in the 'media_upload_sessions' table.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Table("media_upload_sessions")
+public class MediaUploadSession {
+
+    @Id
+    private Long id;
+
+    private String uploadId; // Public, unguessable identifier of the upload
+    private String owner; // Name of the authenticated user who started it; nobody else can see or change it
+    private String nodeId; // Node holding the chunks (UploadChunkStore.nodeId), unless the chunk directory is shared
+    private String assetName;
+    private String fileType;
+    private String entityId;
+    private String entityType;
+    private long totalSize;
+    private long chunkSize;
+    private int totalChunks;
+
+    @Builder.Default
+    private MediaUploadStatus status = MediaUploadStatus.ACTIVE;
+
+    private Long mediaAssetId; // Set once completed
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+    private LocalDateTime expiresAt; // Abandoned uploads are deleted after this; extended by every chunk
+}
@@ -7,8 +7,10 @@ package com.aliwudi.marketplace.backend.common.model;
 
 import com.aliwudi.marketplace.backend.common.enumeration.NotificationType;
 import com.aliwudi.marketplace.backend.common.status.NotificationStatus;
+import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.relational.core.mapping.Table;
 
@@ -20,6 +22,8 @@ import java.time.LocalDateTime;
  */
 @Data // Generates getters, setters, equals, hashCode, and toString
 @Builder // Provides a builder pattern for object creation
+@NoArgsConstructor // Needed to deserialize notifications relayed between nodes
+@AllArgsConstructor
 @Table("notifications") // Maps this entity to the 'notifications' table in the database
 public class Notification {
 
@@ -0,0 +1,36 @@
+package com.aliwudi.marketplace.backend.common.model;
+
+import com.aliwudi.marketplace.backend.common.status.NotificationBroadcastStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.time.LocalDateTime;
+
+/**
+ * Progress of a notification broadcast, updated by the node running it after
+ * every chunk, so that any node can report it.
+ * Stored in the 'notification_broadcasts' table.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Table("notification_broadcasts")
+public class NotificationBroadcast {
+
+    @Id
+    private String id; // UUID
+
+    private NotificationBroadcastStatus state;
+    private Long totalUsers; // Null when sending to all users, as the total is not known upfront
+    private long notifiedUsers;
+    private long failedUsers; // Users of chunks that could not be stored
+    private LocalDateTime startedAt;
+    private LocalDateTime updatedAt; // Last progress; stops moving if the node running the broadcast stops
+    private LocalDateTime completedAt;
+    private String error; // Why the broadcast stopped, if it FAILED
+}
@@ -0,0 +1,31 @@
+package com.aliwudi.marketplace.backend.common.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.time.LocalDateTime;
+
+/**
+ * Per-user notification counters, maintained in the same transactions that
+ * create, read and delete notifications, so that the unread badge is a
+ * primary-key lookup instead of a COUNT over the user's history.
+ * Stored in the 'notification_counters' table.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Table("notification_counters")
+public class NotificationCounter {
+
+    @Id
+    private Long userId;
+
+    private long unreadCount; // Notifications of the user in status UNREAD
+    private long revision; // Incremented by every change; orders badge updates that arrive out of order
+    private LocalDateTime updatedAt;
+}
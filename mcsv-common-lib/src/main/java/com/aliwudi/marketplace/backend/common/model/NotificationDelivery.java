@@ -0,0 +1,44 @@
+package com.aliwudi.marketplace.backend.common.model;
+
+import com.aliwudi.marketplace.backend.common.enumeration.NotificationChannel;
+import com.aliwudi.marketplace.backend.common.status.NotificationDeliveryStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.time.LocalDateTime;
+
+/**
+ * A pending or completed delivery of a notification on an external channel
+ * (email, SMS). Deliveries of the same user and channel that are pending at
+ * the same time are sent together as one digest.
+ * Stored in the 'notification_deliveries' table.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Table("notification_deliveries")
+public class NotificationDelivery {
+
+    @Id
+    private Long id;
+
+    private Long notificationId; // The notification to deliver
+    private Long userId; // Its recipient
+    private NotificationChannel channel;
+
+    @Builder.Default
+    private NotificationDeliveryStatus status = NotificationDeliveryStatus.PENDING;
+
+    private LocalDateTime dispatchAfter; // End of the digest window; not sent before this
+    private int attempts; // Failed delivery attempts so far
+    private String claimToken; // Set while a node is dispatching it
+    private LocalDateTime claimedAt;
+    private LocalDateTime createdAt;
+    private LocalDateTime sentAt;
+    private String lastError;
+}
@@ -21,6 +21,8 @@ public interface ApiResponseMessages {
     public String INVALID_NOTIFICATION_TYPE = "Invalid notification type";
     public String INVALID_NOTIFICATION_ID = "Invalid notification id";
     public String NOTIFICATION_NOT_FOUND_FOR_USER = "Notification not found for user";
+    public String INVALID_NOTIFICATION_BROADCAST_REQUEST = "Invalid broadcast request: provide either userIds or allUsers";
+    public String NOTIFICATION_BROADCAST_NOT_FOUND = "Notification broadcast not found on this node: ";
     
 
     String INVALID_USER_CREATION_REQUEST = "Invalid user creation request";
@@ -46,6 +48,7 @@ public interface ApiResponseMessages {
     String UNAUTHENTICATED_USER = "User is not authenticated";
     String INVALID_USER_ID_FORMAT = "Authenticated principal is not a valid user ID format";
     String INVALID_USER_ID = "Invalid user ID"; 
+    String TOO_MANY_USER_IDS = "Too many user IDs in one request, the maximum is ";
     String INVALID_AUTHORIZATION_ID = "Invalid authorization ID"; 
     String SECURITY_CONTEXT_NOT_FOUND = "Security context not found";
     String USERNAME_ALREADY_EXISTS_IN_AUTHORIZATION_SERVER = "Error: Username already exists in authorization server!";
@@ -304,6 +307,8 @@ public interface ApiResponseMessages {
     String INVALID_DELIVERY_CREATION_REQUEST = "Invalid delivery creation request: Order ID, recipient name, address, delivery agent, and estimated delivery date are required";
     String INVALID_TRACKING_NUMBER = "Invalid tracking number provided";
     String INVALID_DELIVERY_STATUS_UPDATE_REQUEST = "Invalid delivery status update request: Tracking number and new status are required";
+    String INVALID_CARRIER_SCAN = "Invalid carrier scan: Tracking number and status are required";
+    String CARRIER_SCAN_BATCH_FAILED = "Carrier scan not applied: its batch could not be written, send it again";
     String INVALID_DELIVERY_STATUS = "Invalid delivery status"; // Append status
     String DELIVERY_NOT_FOUND_FOR_ORDER = "Delivery not found for order"; // Append orderId
     String DELIVERY_NOT_FOUND_FOR_TRACKING = "Delivery not found for tracking number"; // Append trackingNumber
@@ -346,6 +351,16 @@ public interface ApiResponseMessages {
 
     // Error
     String MEDIA_NOT_FOUND = "Media asset not found with unique file name"; // Append uniqueFileName
+    String MEDIA_CONTENT_NOT_FOUND = "Media content not found in storage for unique file name "; // Append uniqueFileName
+    String INVALID_IMAGE_VARIANT = "Invalid image variant (expected thumbnail, card or full): "; // Append variant
+    String UPLOAD_SESSION_NOT_FOUND = "Resumable upload not found with ID "; // Append uploadId
+    String INVALID_UPLOAD_SIZE = "Invalid upload size, it must be positive and at most "; // Append size
+    String INVALID_CHUNK_INDEX = "Invalid chunk index, the upload has chunks 0 to "; // Append last index
+    String INVALID_CHUNK_SIZE = "Invalid chunk size, expected bytes: "; // Append size
+    String UPLOAD_NOT_ACTIVE = "Resumable upload no longer accepts chunks, its status is "; // Append status
+    String UPLOAD_INCOMPLETE = "Resumable upload cannot be completed, missing chunks: "; // Append count
+    String UPLOAD_IN_PROGRESS = "Resumable upload is already being completed";
+    String UPLOAD_ON_OTHER_NODE = "Resumable upload chunks are held by another node, requests for the upload must be routed to node "; // Append nodeId
     String MEDIA_NOT_FOUND_FOR_DELETE = "Media asset not found for deletion with unique file name"; // Append uniqueFileName
     String INVALID_MEDIA_UPLOAD_REQUEST = "Invalid media upload request: assetName, fileContent, fileType, entityId, and entityType are required";
     String INVALID_UNIQUE_FILE_NAME = "Invalid unique file name provided";
@@ -355,6 +370,10 @@ public interface ApiResponseMessages {
     String INVALID_ASSET_NAME = "Invalid asset name provided"; // General invalid asset name
     String INVALID_FILE_TYPE = "Invalid file type provided"; // General invalid file type
     String DUPLICATE_MEDIA_UNIQUE_FILE_NAME = "Duplicate Media unique file name";
+    String INVALID_MEDIA_MULTIPART_UPLOAD = "Invalid media upload: entityId and entityType form fields are required, before the file part";
+    String MISSING_MEDIA_FILE_PART = "Multipart media upload must contain a file part";
+    String MEDIA_FILE_TOO_LARGE = "File exceeds the maximum upload size of "; // Append size
+    String ERROR_STORING_MEDIA = "An error occurred while storing media content";
 
     String ERROR_UPLOADING_MEDIA = "An error occurred while uploading media";
     String ERROR_RETRIEVING_MEDIA = "An error occurred while retrieving the media asset";
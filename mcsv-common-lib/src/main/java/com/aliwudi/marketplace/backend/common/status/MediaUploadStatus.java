@@ -0,0 +1,10 @@
+package com.aliwudi.marketplace.backend.common.status;
+
+/**
+ * Enumeration for the state of a resumable (chunked) media upload.
+ */
+public enum MediaUploadStatus {
+    ACTIVE,     // Receiving chunks
+    ASSEMBLING, // All chunks received, being assembled and stored
+    COMPLETED   // Stored as a media asset
+}
@@ -0,0 +1,10 @@
+package com.aliwudi.marketplace.backend.common.status;
+
+/**
+ * Enumeration for the state of a notification broadcast.
+ */
+public enum NotificationBroadcastStatus {
+    RUNNING,
+    COMPLETED,
+    FAILED // Stopped before every recipient was reached
+}
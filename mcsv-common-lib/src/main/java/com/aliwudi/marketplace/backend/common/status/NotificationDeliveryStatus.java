@@ -0,0 +1,13 @@
+package com.aliwudi.marketplace.backend.common.status;
+
+/**
+ * Enumeration for the state of an external notification delivery.
+ */
+public enum NotificationDeliveryStatus {
+    PENDING,     // Waiting for its digest window to close
+    DISPATCHING, // Claimed by a notification-service node, being prepared
+    SENDING,     // Handed to the transport; never sent again, it may have gone out
+    SENT,
+    SKIPPED,     // Recipient unknown or without an address on the channel
+    FAILED       // Gave up after the maximum number of attempts
+}
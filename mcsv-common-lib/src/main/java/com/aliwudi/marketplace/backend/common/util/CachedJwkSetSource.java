@@ -0,0 +1,143 @@
+package com.aliwudi.marketplace.backend.common.util;
+
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKMatcher;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jwt.SignedJWT;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.oauth2.jwt.JwtValidators;
+import org.springframework.security.oauth2.jwt.NimbusReactiveJwtDecoder;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * JWK source for {@link NimbusReactiveJwtDecoder} that keeps the Authorization
+ * Server's signing keys in memory and refreshes them in the background.
+ *
+ * Signature verification therefore never waits on the JWKS endpoint, except
+ * when a token carries a key id that is not cached yet (key rotation). Such
+ * refreshes are single-flighted and rate limited so a flood of tokens with an
+ * unknown kid cannot hammer the Authorization Server.
+ */
+@Slf4j
+public class CachedJwkSetSource implements Function<SignedJWT, Flux<JWK>>, AutoCloseable {
+
+    // Minimum gap between two on-demand refreshes triggered by unknown key ids
+    private static final Duration MIN_ON_DEMAND_REFRESH_GAP = Duration.ofSeconds(30);
+
+    private final String jwkSetUri;
+    private final WebClient webClient;
+
+    private final AtomicReference<JWKSet> jwkSet = new AtomicReference<>(new JWKSet());
+    private final AtomicReference<Mono<JWKSet>> inFlightRefresh = new AtomicReference<>();
+    private volatile Instant lastRefresh = Instant.EPOCH;
+
+    private final Disposable backgroundRefresh;
+
+    public CachedJwkSetSource(String jwkSetUri, WebClient webClient, Duration refreshInterval) {
+        if (jwkSetUri == null || jwkSetUri.isEmpty()) {
+            throw new IllegalArgumentException("spring.security.oauth2.resourceserver.jwt.jwk-set-uri must be configured.");
+        }
+        this.jwkSetUri = jwkSetUri;
+        this.webClient = webClient;
+        this.backgroundRefresh = Flux.interval(Duration.ZERO, refreshInterval)
+                .onBackpressureDrop()
+                .concatMap(tick -> refresh()
+                        .onErrorResume(e -> {
+                            log.warn("Background JWK Set refresh from {} failed: {}", jwkSetUri, e.getMessage());
+                            return Mono.empty(); // Keep serving the keys we already have
+                        }))
+                .subscribe();
+    }
+
+    /**
+     * Builds a decoder that verifies signatures against the given cached key
+     * source, and validates the token's timestamps and issuer.
+     *
+     * @param jwkSource The cached JWK source.
+     * @param issuerUri The expected iss claim (the realm URL).
+     * @return A ReactiveJwtDecoder backed by the cached keys.
+     */
+    public static ReactiveJwtDecoder jwtDecoder(CachedJwkSetSource jwkSource, String issuerUri) {
+        if (issuerUri == null || issuerUri.isEmpty()) {
+            throw new IllegalArgumentException("spring.security.oauth2.resourceserver.jwt.issuer-uri must be configured.");
+        }
+        NimbusReactiveJwtDecoder decoder = NimbusReactiveJwtDecoder.withJwkSource(jwkSource).build();
+        decoder.setJwtValidator(JwtValidators.createDefaultWithIssuer(issuerUri));
+        return decoder;
+    }
+
+    @Override
+    public Flux<JWK> apply(SignedJWT jwt) {
+        JWKSelector selector = new JWKSelector(JWKMatcher.forJWSHeader(jwt.getHeader()));
+        List<JWK> keys = selector.select(jwkSet.get());
+        if (!keys.isEmpty()) {
+            return Flux.fromIterable(keys);
+        }
+
+        // Unknown key id: the Authorization Server may have rotated its keys
+        if (Instant.now().isBefore(lastRefresh.plus(MIN_ON_DEMAND_REFRESH_GAP))) {
+            return Flux.empty();
+        }
+        return refresh().flatMapIterable(selector::select);
+    }
+
+    /**
+     * Reloads the JWK Set, or joins the reload already in progress.
+     */
+    private Mono<JWKSet> refresh() {
+        while (true) {
+            Mono<JWKSet> existing = inFlightRefresh.get();
+            if (existing != null) {
+                return existing;
+            }
+
+            Sinks.One<JWKSet> sink = Sinks.one();
+            Mono<JWKSet> shared = sink.asMono();
+            if (!inFlightRefresh.compareAndSet(null, shared)) {
+                continue; // Another caller won the race, join its refresh
+            }
+
+            fetchJwkSet()
+                    .doOnNext(keys -> {
+                        jwkSet.set(keys);
+                        lastRefresh = Instant.now();
+                        log.debug("Loaded {} signing key(s) from {}", keys.getKeys().size(), jwkSetUri);
+                    })
+                    .doFinally(signal -> inFlightRefresh.compareAndSet(shared, null))
+                    .subscribe(sink::tryEmitValue, sink::tryEmitError);
+            return shared;
+        }
+    }
+
+    private Mono<JWKSet> fetchJwkSet() {
+        return webClient.get()
+                .uri(jwkSetUri)
+                .retrieve()
+                .bodyToMono(String.class)
+                .handle((body, sink) -> {
+                    try {
+                        sink.next(JWKSet.parse(body));
+                    } catch (ParseException e) {
+                        sink.error(new IllegalStateException("Malformed JWK Set from " + jwkSetUri, e));
+                    }
+                });
+    }
+
+    @Override
+    public void close() {
+        backgroundRefresh.dispose();
+    }
+}
@@ -0,0 +1,138 @@
+package com.aliwudi.marketplace.backend.common.util;
+
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.security.authentication.AbstractAuthenticationToken;
+import org.springframework.security.authentication.AuthenticationServiceException;
+import org.springframework.security.authentication.ReactiveAuthenticationManager;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.oauth2.jwt.BadJwtException;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+import org.springframework.security.oauth2.server.resource.InvalidBearerTokenException;
+import org.springframework.security.oauth2.server.resource.authentication.AbstractOAuth2TokenAuthenticationToken;
+import org.springframework.security.oauth2.server.resource.authentication.BearerTokenAuthenticationToken;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Reactive authentication manager for bearer JWTs that memoizes the decoded
+ * and converted Authentication per token until the token expires.
+ *
+ * The first request with a given token goes through the regular decoder
+ * (signature and claim validation) and authority conversion; repeated requests
+ * with the same token are served from a bounded in-memory cache keyed by the
+ * token's SHA-256 hash, so the raw token is never kept as a map key.
+ * Tokens without an exp claim are never cached.
+ */
+public class CachingJwtAuthenticationManager implements ReactiveAuthenticationManager {
+
+    private final ReactiveJwtDecoder jwtDecoder;
+    private final Converter<Jwt, ? extends Mono<? extends AbstractAuthenticationToken>> jwtAuthenticationConverter;
+    private final int maxEntries;
+
+    private final Map<String, CachedAuthentication> cache = new ConcurrentHashMap<>();
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
+    public CachingJwtAuthenticationManager(ReactiveJwtDecoder jwtDecoder,
+                                           Converter<Jwt, ? extends Mono<? extends AbstractAuthenticationToken>> jwtAuthenticationConverter,
+                                           int maxEntries) {
+        this.jwtDecoder = jwtDecoder;
+        this.jwtAuthenticationConverter = jwtAuthenticationConverter;
+        this.maxEntries = maxEntries;
+    }
+
+    @Override
+    public Mono<Authentication> authenticate(Authentication authentication) {
+        return Mono.justOrEmpty(authentication)
+                .filter(BearerTokenAuthenticationToken.class::isInstance)
+                .cast(BearerTokenAuthenticationToken.class)
+                .map(BearerTokenAuthenticationToken::getToken)
+                .flatMap(token -> {
+                    String key = hash(token);
+                    CachedAuthentication cached = cache.get(key);
+                    if (cached != null) {
+                        if (cached.isValid()) {
+                            return Mono.just(cached.authentication());
+                        }
+                        cache.remove(key, cached);
+                    }
+                    return jwtDecoder.decode(token)
+                            .flatMap(jwtAuthenticationConverter::convert)
+                            .cast(Authentication.class)
+                            .doOnNext(converted -> remember(key, converted));
+                })
+                .onErrorMap(JwtException.class, this::onError);
+    }
+
+    private void remember(String key, Authentication authentication) {
+        if (!(authentication instanceof AbstractOAuth2TokenAuthenticationToken<?> tokenAuthentication)) {
+            return;
+        }
+        Instant expiresAt = tokenAuthentication.getToken().getExpiresAt();
+        if (expiresAt == null) {
+            return;
+        }
+        if (cache.size() >= maxEntries) {
+            evict();
+        }
+        cache.put(key, new CachedAuthentication(authentication, expiresAt));
+    }
+
+    /**
+     * Drops expired entries first; if the cache is still full, drops an
+     * arbitrary tenth of it. Only one caller evicts at a time.
+     */
+    private void evict() {
+        if (!evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            cache.values().removeIf(entry -> !entry.isValid());
+            int excess = cache.size() - maxEntries + Math.max(1, maxEntries / 10);
+            Iterator<String> keys = cache.keySet().iterator();
+            while (excess-- > 0 && keys.hasNext()) {
+                keys.next();
+                keys.remove();
+            }
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    private AuthenticationException onError(JwtException ex) {
+        if (ex instanceof BadJwtException) {
+            return new InvalidBearerTokenException(ex.getMessage(), ex);
+        }
+        return new AuthenticationServiceException(ex.getMessage(), ex);
+    }
+
+    private static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * A converted Authentication together with the expiry of its token.
+     */
+    private record CachedAuthentication(Authentication authentication, Instant expiresAt) {
+
+        boolean isValid() {
+            return Instant.now().isBefore(expiresAt);
+        }
+    }
+}
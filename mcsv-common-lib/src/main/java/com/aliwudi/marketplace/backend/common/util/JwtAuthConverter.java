@@ -22,7 +22,7 @@ import java.util.stream.Stream;
  * This converter extracts authorities and principle name from a JWT and returns
  * a Mono containing a JwtAuthenticationToken, as required by reactive security flows.
  */
-public class JwtAuthConverter implements Converter<Jwt, Mono<? extends AbstractAuthenticationToken>> { // CHANGED return type
+public class JwtAuthConverter implements Converter<Jwt, Mono<AbstractAuthenticationToken>> { // CHANGED return type
 
     private final JwtGrantedAuthoritiesConverter jwtGrantedAuthoritiesConverter =
             new JwtGrantedAuthoritiesConverter();
@@ -37,7 +37,7 @@ public class JwtAuthConverter implements Converter<Jwt, Mono<? extends AbstractA
     }
 
     @Override
-    public Mono<? extends AbstractAuthenticationToken> convert(@NonNull Jwt jwt) { // CHANGED return type
+    public Mono<AbstractAuthenticationToken> convert(@NonNull Jwt jwt) { // CHANGED return type
         Collection<GrantedAuthority> authorities = Stream.concat(
                 jwtGrantedAuthoritiesConverter.convert(jwt).stream(),
                 extractResourceRoles(jwt).stream()
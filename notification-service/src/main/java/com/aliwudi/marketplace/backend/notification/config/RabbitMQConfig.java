@@ -4,13 +4,21 @@ import static com.aliwudi.marketplace.backend.common.constants.ExchangeType.*;
 import static com.aliwudi.marketplace.backend.common.constants.EventRoutingKey.*;
 import static com.aliwudi.marketplace.backend.common.constants.QueueType.*;
 import org.springframework.amqp.core.*;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
 import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
 import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.amqp.SimpleRabbitListenerContainerFactoryConfigurer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
 @Configuration
 public class RabbitMQConfig {
 
@@ -19,32 +27,48 @@ public class RabbitMQConfig {
         return new TopicExchange(USER_EVENTS_EXCHANGE, true, false); // Durable, not auto-delete
     }
 
+    // Queues consumed by UserEventListener, each with its own retry queue and dead-letter queue
+    private static final List<String> USER_EVENT_QUEUES = List.of(
+            EMAIL_VERIFICATION_QUEUE,
+            REGISTRATION_ONBOARDING_QUEUE,
+            PASSWORD_RESET_QUEUE,
+            SMS_VERIFICATION_QUEUE,
+            PHONE_CALL_VERIFICATION_QUEUE);
+
     // --- Queue Declarations ---
     @Bean
     public Queue emailVerificationQueue() {
-        return new Queue(EMAIL_VERIFICATION_QUEUE, true); // Durable
+        return userEventQueue(EMAIL_VERIFICATION_QUEUE);
     }
 
     @Bean
     public Queue registrationOnboardingQueue() {
-        return new Queue(REGISTRATION_ONBOARDING_QUEUE, true); // Durable
+        return userEventQueue(REGISTRATION_ONBOARDING_QUEUE);
     }
 
     @Bean
     public Queue passwordResetQueue() {
-        return new Queue(PASSWORD_RESET_QUEUE, true); // Durable
+        return userEventQueue(PASSWORD_RESET_QUEUE);
     }
 
     // NEW: SMS Verification Queue
     @Bean
     public Queue smsVerificationQueue() {
-        return new Queue(SMS_VERIFICATION_QUEUE, true); // Durable
+        return userEventQueue(SMS_VERIFICATION_QUEUE);
     }
 
     // NEW: Phone Call Verification Queue
     @Bean
     public Queue phoneCallVerificationQueue() {
-        return new Queue(PHONE_CALL_VERIFICATION_QUEUE, true); // Durable
+        return userEventQueue(PHONE_CALL_VERIFICATION_QUEUE);
+    }
+
+    // Durable; rejected messages are dead-lettered to the retry exchange under the queue's own name
+    private static Queue userEventQueue(String name) {
+        return QueueBuilder.durable(name)
+                .deadLetterExchange(USER_EVENTS_RETRY_EXCHANGE)
+                .deadLetterRoutingKey(name)
+                .build();
     }
 
     // --- Binding Declarations ---
@@ -85,6 +109,46 @@ public class RabbitMQConfig {
                              .with(PHONE_CALL_VERIFICATION_ROUTING_KEY);
     }
 
+    // --- Retry / Dead-letter Topology ---
+    // A failed delivery is rejected into <queue>.retry, which has no consumer: the message
+    // expires there after the retry delay and is dead-lettered straight back into <queue>.
+    // Once the retries are exhausted, UserEventListener parks the message in <queue>.dlq.
+    @Bean
+    public Declarables userEventsRetryTopology(@Value("${notification.listener.retry.delay:30s}") Duration retryDelay) {
+        DirectExchange retryExchange = new DirectExchange(USER_EVENTS_RETRY_EXCHANGE, true, false);
+        DirectExchange deadLetterExchange = new DirectExchange(USER_EVENTS_DEAD_LETTER_EXCHANGE, true, false);
+
+        List<Declarable> declarables = new ArrayList<>(List.of(retryExchange, deadLetterExchange));
+        for (String queue : USER_EVENT_QUEUES) {
+            Queue retryQueue = QueueBuilder.durable(queue + RETRY_QUEUE_SUFFIX)
+                    .ttl((int) retryDelay.toMillis())
+                    .deadLetterExchange("") // Default exchange: routes by queue name
+                    .deadLetterRoutingKey(queue)
+                    .build();
+            Queue deadLetterQueue = QueueBuilder.durable(queue + DEAD_LETTER_QUEUE_SUFFIX).build();
+
+            declarables.add(retryQueue);
+            declarables.add(BindingBuilder.bind(retryQueue).to(retryExchange).with(queue));
+            declarables.add(deadLetterQueue);
+            declarables.add(BindingBuilder.bind(deadLetterQueue).to(deadLetterExchange).with(queue));
+        }
+        return new Declarables(declarables);
+    }
+
+    // --- Live Notification Fan-out ---
+    // Each node binds its own exclusive queue with routing key = userId while
+    // that user has an SSE connection on the node (see ClusterNotificationRelay)
+    @Bean
+    public DirectExchange notificationStreamExchange() {
+        return new DirectExchange(NOTIFICATION_STREAM_EXCHANGE, true, false); // Durable, not auto-delete
+    }
+
+    @Bean
+    public Queue notificationNodeQueue() {
+        // Non-durable, exclusive, auto-delete: disappears with this node
+        return new Queue(NOTIFICATION_NODE_QUEUE_PREFIX + UUID.randomUUID(), false, true, true);
+    }
+
     // --- Message Converter ---
     @Bean
     public MessageConverter jsonMessageConverter() {
@@ -98,4 +162,24 @@ public class RabbitMQConfig {
         rabbitTemplate.setMessageConverter(jsonMessageConverter());
         return rabbitTemplate;
     }
+
+    // Container factory for UserEventListener. Its handlers return the send Mono, and the
+    // message is acked only when that completes, so prefetch bounds the sends in flight
+    // per consumer (channel) and concurrency bounds the number of consumers per queue.
+    @Bean
+    public SimpleRabbitListenerContainerFactory userEventListenerContainerFactory(
+            SimpleRabbitListenerContainerFactoryConfigurer configurer,
+            ConnectionFactory connectionFactory,
+            @Value("${notification.listener.prefetch:10}") int prefetch,
+            @Value("${notification.listener.concurrency:1}") int concurrency,
+            @Value("${notification.listener.max-concurrency:4}") int maxConcurrency) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setAcknowledgeMode(AcknowledgeMode.MANUAL);
+        factory.setPrefetchCount(prefetch);
+        factory.setConcurrentConsumers(concurrency);
+        factory.setMaxConcurrentConsumers(maxConcurrency);
+        factory.setDefaultRequeueRejected(false); // Failures go through the retry queue, never straight back
+        return factory;
+    }
 }
\ No newline at end of file
@@ -26,6 +26,8 @@ public class ThymeleafConfig {
         templateResolver.setCharacterEncoding("UTF-8");
         templateResolver.setOrder(1); // Set order if multiple resolvers are present
         templateResolver.setCheckExistence(true); // Ensure template files exist
+        templateResolver.setCacheable(true); // Parse each template once and keep it for the life of the application
+        templateResolver.setCacheTTLMs(null); // No expiry: templates are classpath resources and never change at runtime
         return templateResolver;
     }
 }
\ No newline at end of file
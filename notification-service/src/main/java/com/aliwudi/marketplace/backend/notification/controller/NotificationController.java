@@ -1,7 +1,11 @@
 package com.aliwudi.marketplace.backend.notification.controller;
 
 import com.aliwudi.marketplace.backend.common.model.Notification;
+import com.aliwudi.marketplace.backend.notification.dto.BroadcastNotificationRequest;
+import com.aliwudi.marketplace.backend.notification.dto.BroadcastStatus;
+import com.aliwudi.marketplace.backend.notification.dto.NotificationBadge;
 import com.aliwudi.marketplace.backend.notification.dto.NotificationRequest;
+import com.aliwudi.marketplace.backend.notification.service.NotificationBroadcastService;
 import com.aliwudi.marketplace.backend.notification.service.NotificationService;
 import com.aliwudi.marketplace.backend.common.exception.NotificationNotFoundException;
 import com.aliwudi.marketplace.backend.common.enumeration.NotificationType;
@@ -16,6 +20,7 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType; // For MediaType.TEXT_EVENT_STREAM
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.security.access.prepost.PreAuthorize; // For role-based authorization
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ServerWebExchange;
@@ -31,8 +36,12 @@ import static com.aliwudi.marketplace.backend.common.constants.ApiConstants.*;
 public class NotificationController {
 
     private final NotificationService notificationService;
+    private final NotificationBroadcastService notificationBroadcastService;
     private final AuthUtil authUtil;
 
+    // Sent by SSE clients on reconnect
+    private static final String LAST_EVENT_ID_HEADER = "Last-Event-ID";
+
     /**
      * Endpoint for creating a new notification.
      * This endpoint would typically be called by other internal microservices
@@ -58,20 +67,64 @@ public class NotificationController {
         // Exceptions (IllegalArgumentException) are handled by GlobalExceptionHandler.
     }
 
+    /**
+     * Endpoint for sending the same notification to many users, or to all
+     * users. The broadcast runs in the background; its progress can be
+     * followed with the returned ID.
+     *
+     * @param request The DTO containing the notification and its recipients.
+     * @return A Mono emitting the initial status of the broadcast (HTTP 202 Accepted).
+     * @throws IllegalArgumentException if input validation fails.
+     */
+    @PostMapping(NOTIFICATION_BROADCAST)
+    @ResponseStatus(HttpStatus.ACCEPTED) // HTTP 202 Accepted
+    @PreAuthorize("hasRole('" + ROLE_ADMIN + "') or hasRole('" + ROLE_SERVICE + "')")
+    public Mono<BroadcastStatus> broadcastNotification(@Valid @RequestBody BroadcastNotificationRequest request) {
+        boolean hasUserIds = request.getUserIds() != null && !request.getUserIds().isEmpty();
+        // Exactly one of userIds and allUsers must be given
+        if (request.getTitle() == null || request.getTitle().isBlank() ||
+            request.getMessage() == null || request.getMessage().isBlank() ||
+            request.getType() == null ||
+            hasUserIds == request.isAllUsers()) {
+            throw new IllegalArgumentException(ApiResponseMessages.INVALID_NOTIFICATION_BROADCAST_REQUEST);
+        }
+        return notificationBroadcastService.startBroadcast(request);
+        // Exceptions (IllegalArgumentException) are handled by GlobalExceptionHandler.
+    }
+
+    /**
+     * Endpoint to follow the progress of a broadcast, from any node.
+     *
+     * @param id The ID of the broadcast.
+     * @return A Mono emitting the status of the broadcast.
+     * @throws NotificationNotFoundException if the broadcast is unknown.
+     */
+    @GetMapping(NOTIFICATION_BROADCAST_STATUS)
+    @ResponseStatus(HttpStatus.OK)
+    @PreAuthorize("hasRole('" + ROLE_ADMIN + "') or hasRole('" + ROLE_SERVICE + "')")
+    public Mono<BroadcastStatus> getBroadcastStatus(@PathVariable String id) {
+        return notificationBroadcastService.getBroadcastStatus(id)
+                .switchIfEmpty(Mono.error(new NotificationNotFoundException(ApiResponseMessages.NOTIFICATION_BROADCAST_NOT_FOUND + id)));
+        // Exceptions (NotificationNotFoundException) are handled by GlobalExceptionHandler.
+    }
+
     /**
      * SSE endpoint to stream real-time notifications for the authenticated user.
      * Clients will subscribe to this endpoint to receive immediate updates.
      *
      * @param exchange
-     * @return A Flux emitting Notification objects as server-sent events.
+     * @param lastEventId The ID of the last event received, sent by reconnecting clients.
+     * @return A Flux emitting Notification objects and unread badge updates (plus heartbeats) as server-sent events.
      * @throws IllegalArgumentException if authenticated user ID cannot be determined.
      */
     @GetMapping(value = NOTIFICATION_STREAM, produces = MediaType.TEXT_EVENT_STREAM_VALUE) // MODIFIED
     @ResponseStatus(HttpStatus.OK)
     @PreAuthorize("hasRole('" + ROLE_USER + "') or hasRole('" + ROLE_ADMIN + "') or hasRole('" + ROLE_SELLER + "') or hasRole('" + ROLE_DELIVERY_AGENT + "')") // MODIFIED
-    public Flux<Notification> getRealTimeNotifications(ServerWebExchange exchange) {
+    public Flux<ServerSentEvent<Object>> getRealTimeNotifications(
+            ServerWebExchange exchange,
+            @RequestHeader(value = LAST_EVENT_ID_HEADER, required = false) String lastEventId) {
         return authUtil.getAuthenticatedUserId(exchange)
-                .flatMapMany(notificationService::getRealTimeNotificationsStream)
+                .flatMapMany(userId -> notificationService.getRealTimeNotificationsStream(userId, lastEventId))
                 .switchIfEmpty(Flux.error(new IllegalArgumentException(ApiResponseMessages.UNAUTHENTICATED_USER)));
         // Error handling for authentication failure handled by GlobalExceptionHandler.
     }
@@ -283,4 +336,23 @@ public class NotificationController {
                 .switchIfEmpty(Mono.error(new IllegalArgumentException(ApiResponseMessages.UNAUTHENTICATED_USER)));
         // Errors are handled by GlobalExceptionHandler.
     }
+
+    /**
+     * Endpoint for the unread badge of the authenticated user. Served from a
+     * maintained per-user counter, so it is cheap enough to poll; connected
+     * clients also receive badge events on the SSE stream.
+     *
+     * @param exchange
+     * @return A Mono emitting the badge.
+     * @throws IllegalArgumentException if user not authenticated.
+     */
+    @GetMapping(NOTIFICATION_ME_BADGE)
+    @ResponseStatus(HttpStatus.OK)
+    @PreAuthorize("hasRole('" + ROLE_USER + "') or hasRole('" + ROLE_ADMIN + "') or hasRole('" + ROLE_SELLER + "') or hasRole('" + ROLE_DELIVERY_AGENT + "')")
+    public Mono<NotificationBadge> getMyBadge(ServerWebExchange exchange) {
+        return authUtil.getAuthenticatedUserId(exchange)
+                .flatMap(notificationService::getBadge)
+                .switchIfEmpty(Mono.error(new IllegalArgumentException(ApiResponseMessages.UNAUTHENTICATED_USER)));
+        // Errors are handled by GlobalExceptionHandler.
+    }
 }
\ No newline at end of file
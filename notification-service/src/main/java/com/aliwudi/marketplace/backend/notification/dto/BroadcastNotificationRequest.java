@@ -0,0 +1,43 @@
+package com.aliwudi.marketplace.backend.notification.dto;
+
+import com.aliwudi.marketplace.backend.common.enumeration.NotificationType;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * DTO for sending the same notification to many users: either the given
+ * users, or every user when allUsers is set.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BroadcastNotificationRequest {
+
+    @NotBlank(message = "Notification title cannot be empty")
+    @Size(max = 100, message = "Title cannot exceed 100 characters")
+    private String title;
+
+    @NotBlank(message = "Notification message cannot be empty")
+    @Size(max = 500, message = "Message cannot exceed 500 characters")
+    private String message;
+
+    @NotNull(message = "Notification type cannot be null")
+    private NotificationType type;
+
+    @Size(max = 255, message = "Target entity ID cannot exceed 255 characters")
+    private String targetEntityId; // Optional: ID of the related entity (e.g., promotionId)
+
+    @Size(max = 100, message = "Target entity type cannot exceed 100 characters")
+    private String targetEntityType; // Optional: Type of the related entity (e.g., "promotion")
+
+    @Size(max = 100000, message = "A broadcast cannot list more than 100000 users; use allUsers instead")
+    private List<Long> userIds; // Explicit recipients; mutually exclusive with allUsers
+
+    private boolean allUsers; // Send to every user
+}
@@ -0,0 +1,44 @@
+package com.aliwudi.marketplace.backend.notification.dto;
+
+import com.aliwudi.marketplace.backend.common.model.NotificationBroadcast;
+import com.aliwudi.marketplace.backend.common.status.NotificationBroadcastStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * DTO reporting the progress of a notification broadcast.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BroadcastStatus {
+
+    private String id;
+    private NotificationBroadcastStatus state;
+    private Long totalUsers; // Null when sending to all users, as the total is not known upfront
+    private long notifiedUsers;
+    private long failedUsers; // Users of chunks that could not be stored
+    private LocalDateTime startedAt;
+    private LocalDateTime updatedAt; // Last progress of the broadcast
+    private LocalDateTime completedAt;
+    private String error; // Why the broadcast stopped, if it FAILED
+
+    public static BroadcastStatus of(NotificationBroadcast broadcast) {
+        return BroadcastStatus.builder()
+                .id(broadcast.getId())
+                .state(broadcast.getState())
+                .totalUsers(broadcast.getTotalUsers())
+                .notifiedUsers(broadcast.getNotifiedUsers())
+                .failedUsers(broadcast.getFailedUsers())
+                .startedAt(broadcast.getStartedAt())
+                .updatedAt(broadcast.getUpdatedAt())
+                .completedAt(broadcast.getCompletedAt())
+                .error(broadcast.getError())
+                .build();
+    }
+}
@@ -0,0 +1,19 @@
+package com.aliwudi.marketplace.backend.notification.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO for the unread-notification badge of a user. Returned by the badge
+ * endpoint and pushed to the user's SSE connections whenever it changes.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class NotificationBadge {
+
+    private Long userId;
+    private long unreadCount;
+    private long revision; // Of the counter; a badge with a lower revision than one already shown is stale
+}
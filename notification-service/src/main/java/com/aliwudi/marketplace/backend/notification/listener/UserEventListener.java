@@ -1,5 +1,6 @@
 package com.aliwudi.marketplace.backend.notification.listener;
 
+import static com.aliwudi.marketplace.backend.common.constants.ExchangeType.*;
 import static com.aliwudi.marketplace.backend.common.constants.QueueType.*;
 import com.aliwudi.marketplace.backend.common.dto.event.PasswordResetRequestedEvent;
 import com.aliwudi.marketplace.backend.common.dto.event.UserRegisteredEvent;
@@ -13,24 +14,44 @@ import com.aliwudi.marketplace.backend.notification.service.PhoneCallService; //
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.AmqpRejectAndDontRequeueException;
+import org.springframework.amqp.core.AmqpTemplate;
+import org.springframework.amqp.core.Message;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 import java.time.Duration;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
  * Listener for user-related events from RabbitMQ, triggering email, SMS, and Phone Call notifications.
+ *
+ * Each handler returns its send pipeline instead of subscribing to it, so the
+ * message is acked only once the email/SMS/call has actually gone out (see
+ * RabbitMQConfig.userEventListenerContainerFactory). A failed send is rejected
+ * into the queue's retry queue and redelivered after the retry delay; after the
+ * last attempt the message is parked in the queue's dead-letter queue.
  */
 @Component
 @RequiredArgsConstructor
 @Slf4j
 public class UserEventListener {
 
+    private static final String LISTENER_CONTAINER_FACTORY = "userEventListenerContainerFactory";
+
     private final EmailNotificationService emailNotificationService;
     private final SmsSenderService smsSenderService; // NEW INJECTION
     private final PhoneCallService phoneCallService; // NEW INJECTION
+    private final AmqpTemplate amqpTemplate;
+
+    // Total delivery attempts of one message, including the first
+    @Value("${notification.listener.retry.max-attempts:4}")
+    private int maxAttempts;
 
     // Define OTP validity for template variable (should match EmailVerificationService)
     private static final Duration OTP_VALIDITY = Duration.ofMinutes(5);
@@ -40,9 +61,11 @@ public class UserEventListener {
      * Listens for EmailVerificationRequestedEvent messages and sends an OTP email.
      *
      * @param event The EmailVerificationRequestedEvent message received from the queue.
+     * @param message The raw message, for retry bookkeeping.
+     * @return A Mono completing when the notification has been sent.
      */
-    @RabbitListener(queues = EMAIL_VERIFICATION_QUEUE)
-    public void handleEmailVerificationRequest(EmailVerificationRequestedEvent event) {
+    @RabbitListener(queues = EMAIL_VERIFICATION_QUEUE, containerFactory = LISTENER_CONTAINER_FACTORY)
+    public Mono<Void> handleEmailVerificationRequest(EmailVerificationRequestedEvent event, Message message) {
         log.info("Received EmailVerificationRequestedEvent for user: {} ({})", event.getName(), event.getEmail());
 
         String subject = "Email Verification OTP"; // Can be externalized
@@ -55,24 +78,25 @@ public class UserEventListener {
         templateVariables.put("otpValidityMinutes", OTP_VALIDITY.toMinutes());
         // Add other common variables if needed
 
-        emailNotificationService.sendTemplatedEmail(
+        return emailNotificationService.sendTemplatedEmail(
             event.getEmail(), // This is the email address
             subject,
             templateName,
             templateVariables
-        ).subscribe(
-            v -> log.info("Email verification OTP successfully sent to {}", event.getEmail()),
-            e -> log.error("Failed to send email verification OTP to {}: {}", event.getEmail(), e.getMessage(), e)
-        );
+        )
+        .doOnSuccess(v -> log.info("Email verification OTP successfully sent to {}", event.getEmail()))
+        .transform(delivery -> acknowledgeAfter(delivery, message));
     }
 
     /**
      * Listens for UserRegisteredEvent messages and sends a welcome/onboarding email.
      *
      * @param event The UserRegisteredEvent message received from the queue.
+     * @param message The raw message, for retry bookkeeping.
+     * @return A Mono completing when the notification has been sent.
      */
-    @RabbitListener(queues = REGISTRATION_ONBOARDING_QUEUE)
-    public void handleUserRegistration(UserRegisteredEvent event) {
+    @RabbitListener(queues = REGISTRATION_ONBOARDING_QUEUE, containerFactory = LISTENER_CONTAINER_FACTORY)
+    public Mono<Void> handleUserRegistration(UserRegisteredEvent event, Message message) {
         log.info("Received UserRegisteredEvent for user: {} ({})", event.getName(), event.getPrimaryIdentifier());
 
         String subject = "Welcome to Our Marketplace!"; // Can be externalized
@@ -83,24 +107,25 @@ public class UserEventListener {
         templateVariables.put("loginUrl", "https://your-marketplace.com/login"); // Example login URL
         // Add other variables like initial steps, features etc.
 
-        emailNotificationService.sendTemplatedEmail(
+        return emailNotificationService.sendTemplatedEmail(
             event.getPrimaryIdentifier(), // This is the email address
             subject,
             templateName,
             templateVariables
-        ).subscribe(
-            v -> log.info("Welcome email successfully sent to {}", event.getPrimaryIdentifier()),
-            e -> log.error("Failed to send welcome email to {}: {}", event.getPrimaryIdentifier(), e.getMessage(), e)
-        );
+        )
+        .doOnSuccess(v -> log.info("Welcome email successfully sent to {}", event.getPrimaryIdentifier()))
+        .transform(delivery -> acknowledgeAfter(delivery, message));
     }
 
     /**
      * Listens for PasswordResetRequestedEvent messages and sends a password reset email.
      *
      * @param event The PasswordResetRequestedEvent message received from the queue.
+     * @param message The raw message, for retry bookkeeping.
+     * @return A Mono completing when the notification has been sent.
      */
-    @RabbitListener(queues = PASSWORD_RESET_QUEUE)
-    public void handlePasswordResetRequest(PasswordResetRequestedEvent event) {
+    @RabbitListener(queues = PASSWORD_RESET_QUEUE, containerFactory = LISTENER_CONTAINER_FACTORY)
+    public Mono<Void> handlePasswordResetRequest(PasswordResetRequestedEvent event, Message message) {
         log.info("Received PasswordResetRequestedEvent for user: {} ({})", event.getName(), event.getPrimaryIdentifier());
 
         String subject = "Password Reset Request"; // Can be externalized
@@ -112,15 +137,14 @@ public class UserEventListener {
         templateVariables.put("tokenValidityHours", PASSWORD_RESET_TOKEN_VALIDITY.toHours());
         // Add other common variables if needed
 
-        emailNotificationService.sendTemplatedEmail(
+        return emailNotificationService.sendTemplatedEmail(
             event.getPrimaryIdentifier(),
             subject,
             templateName,
             templateVariables
-        ).subscribe(
-            v -> log.info("Password reset email successfully sent to {}", event.getPrimaryIdentifier()),
-            e -> log.error("Failed to send password reset email to {}: {}", event.getPrimaryIdentifier(), e.getMessage(), e)
-        );
+        )
+        .doOnSuccess(v -> log.info("Password reset email successfully sent to {}", event.getPrimaryIdentifier()))
+        .transform(delivery -> acknowledgeAfter(delivery, message));
     }
 
     // --- NEW SMS NOTIFICATION HANDLER ---
@@ -128,21 +152,22 @@ public class UserEventListener {
      * Listens for SmsVerificationRequestedEvent messages and sends an OTP SMS.
      *
      * @param event The SmsVerificationRequestedEvent message received from the queue.
+     * @param message The raw message, for retry bookkeeping.
+     * @return A Mono completing when the notification has been sent.
      */
-    @RabbitListener(queues = SMS_VERIFICATION_QUEUE) // Assumes SMS_VERIFICATION_QUEUE exists
-    public void handleSmsVerificationRequest(SmsVerificationRequestedEvent event) {
+    @RabbitListener(queues = SMS_VERIFICATION_QUEUE, containerFactory = LISTENER_CONTAINER_FACTORY) // Assumes SMS_VERIFICATION_QUEUE exists
+    public Mono<Void> handleSmsVerificationRequest(SmsVerificationRequestedEvent event, Message message) {
         log.info("Received SmsVerificationRequestedEvent for user: {} ({})", event.getName(), event.getPhoneNumber());
 
         String smsMessage = String.format("Your verification code is %s. It is valid for %d minutes.",
             event.getOtpCode(), OTP_VALIDITY.toMinutes()); // Assuming OTP is in event DTO
 
-        smsSenderService.sendSms(
+        return smsSenderService.sendSms(
             event.getPhoneNumber(),
             smsMessage
-        ).subscribe(
-            v -> log.info("SMS verification OTP successfully sent to {}", event.getPhoneNumber()),
-            e -> log.error("Failed to send SMS verification OTP to {}: {}", event.getPhoneNumber(), e.getMessage(), e)
-        );
+        )
+        .doOnSuccess(v -> log.info("SMS verification OTP successfully sent to {}", event.getPhoneNumber()))
+        .transform(delivery -> acknowledgeAfter(delivery, message));
     }
 
     // --- NEW PHONE CALL NOTIFICATION HANDLER ---
@@ -150,20 +175,57 @@ public class UserEventListener {
      * Listens for PhoneCallVerificationRequestedEvent messages and initiates a voice call with OTP.
      *
      * @param event The PhoneCallVerificationRequestedEvent message received from the queue.
+     * @param message The raw message, for retry bookkeeping.
+     * @return A Mono completing when the notification has been sent.
      */
-    @RabbitListener(queues = PHONE_CALL_VERIFICATION_QUEUE) // Assumes PHONE_CALL_VERIFICATION_QUEUE exists
-    public void handlePhoneCallVerificationRequest(PhoneCallVerificationRequestedEvent event) {
+    @RabbitListener(queues = PHONE_CALL_VERIFICATION_QUEUE, containerFactory = LISTENER_CONTAINER_FACTORY) // Assumes PHONE_CALL_VERIFICATION_QUEUE exists
+    public Mono<Void> handlePhoneCallVerificationRequest(PhoneCallVerificationRequestedEvent event, Message message) {
         log.info("Received PhoneCallVerificationRequestedEvent for user: {} ({})", event.getName(), event.getPhoneNumber());
 
         String voiceMessage = String.format("Hello %s. Your verification code is %s. Please enter this code on the verification screen. This code is valid for %d minutes. Thank you.",
             event.getName(), event.getOtpCode(), OTP_VALIDITY.toMinutes());
 
-        phoneCallService.initiateCall(
+        return phoneCallService.initiateCall(
             event.getPhoneNumber(),
             voiceMessage
-        ).subscribe(
-            v -> log.info("Voice call verification OTP successfully initiated for {}", event.getPhoneNumber()),
-            e -> log.error("Failed to initiate voice call verification OTP for {}: {}", event.getPhoneNumber(), e.getMessage(), e)
-        );
+        )
+        .doOnSuccess(v -> log.info("Voice call verification OTP successfully initiated for {}", event.getPhoneNumber()))
+        .transform(delivery -> acknowledgeAfter(delivery, message));
+    }
+
+    /**
+     * Decides what happens to a message once its send pipeline terminates: a
+     * successful send completes (and the container acks the message); a failed
+     * one is rejected into the retry queue, or parked in the dead-letter queue
+     * when this was its last attempt.
+     */
+    private Mono<Void> acknowledgeAfter(Mono<Void> delivery, Message message) {
+        return delivery.onErrorResume(e -> {
+            String queue = message.getMessageProperties().getConsumerQueue();
+            long attempt = failedAttempts(message, queue) + 1;
+            if (attempt < maxAttempts) {
+                log.warn("Delivery attempt {}/{} of message from {} failed, will retry: {}", attempt, maxAttempts, queue, e.getMessage());
+                return Mono.error(new AmqpRejectAndDontRequeueException("Delivery failed, retrying later", e));
+            }
+            log.error("Delivery of message from {} failed after {} attempts, moving it to the dead-letter queue: {}", queue, attempt, e.getMessage(), e);
+            // If parking fails too, the error rejects the message into another retry round
+            return Mono.fromRunnable(() -> amqpTemplate.send(USER_EVENTS_DEAD_LETTER_EXCHANGE, queue, message))
+                    .subscribeOn(Schedulers.boundedElastic()) // Use a separate scheduler for blocking RabbitMQ send
+                    .then();
+        });
+    }
+
+    // Number of times the broker dead-lettered this message out of the queue, i.e. earlier failed attempts
+    private static long failedAttempts(Message message, String queue) {
+        List<Map<String, ?>> deaths = message.getMessageProperties().getXDeathHeader();
+        if (deaths == null) {
+            return 0;
+        }
+        return deaths.stream()
+                .filter(death -> queue.equals(death.get("queue")) && "rejected".equals(death.get("reason")))
+                .map(death -> death.get("count"))
+                .filter(Number.class::isInstance)
+                .mapToLong(count -> ((Number) count).longValue())
+                .sum();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,78 @@
+package com.aliwudi.marketplace.backend.notification.repository;
+
+import com.aliwudi.marketplace.backend.common.model.NotificationBroadcast;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+
+/**
+ * Reactive Repository for NotificationBroadcast entities.
+ *
+ * Progress is added with relative single-statement updates, so the chunks of
+ * a broadcast, stored concurrently, cannot overwrite each other's counts.
+ */
+public interface NotificationBroadcastRepository extends R2dbcRepository<NotificationBroadcast, String> {
+
+    /**
+     * Records a new broadcast as RUNNING, with nothing sent yet.
+     *
+     * @param id The ID of the broadcast.
+     * @param totalUsers The number of recipients, or null if not known upfront.
+     * @param startedAt When the broadcast started.
+     * @return A Mono emitting the number of rows inserted.
+     */
+    @Modifying
+    @Query("INSERT INTO notification_broadcasts (id, state, total_users, notified_users, failed_users, started_at, updated_at) " +
+           "VALUES (:id, 'RUNNING', :totalUsers, 0, 0, :startedAt, :startedAt)")
+    Mono<Integer> insertRunning(String id, Long totalUsers, LocalDateTime startedAt);
+
+    /**
+     * Adds the outcome of one chunk to the progress of a broadcast.
+     *
+     * @param id The ID of the broadcast.
+     * @param notified The number of users notified by the chunk.
+     * @param failed The number of users of the chunk that could not be stored.
+     * @param now The current time.
+     * @return A Mono emitting the number of rows updated (0 or 1).
+     */
+    @Modifying
+    @Query("UPDATE notification_broadcasts SET notified_users = notified_users + :notified, failed_users = failed_users + :failed, " +
+           "updated_at = :now WHERE id = :id")
+    Mono<Integer> addProgress(String id, long notified, long failed, LocalDateTime now);
+
+    /**
+     * Marks a broadcast COMPLETED.
+     *
+     * @param id The ID of the broadcast.
+     * @param now The current time.
+     * @return A Mono emitting the number of rows updated (0 or 1).
+     */
+    @Modifying
+    @Query("UPDATE notification_broadcasts SET state = 'COMPLETED', updated_at = :now, completed_at = :now WHERE id = :id")
+    Mono<Integer> complete(String id, LocalDateTime now);
+
+    /**
+     * Marks a broadcast FAILED.
+     *
+     * @param id The ID of the broadcast.
+     * @param error Why it stopped.
+     * @param now The current time.
+     * @return A Mono emitting the number of rows updated (0 or 1).
+     */
+    @Modifying
+    @Query("UPDATE notification_broadcasts SET state = 'FAILED', error = :error, updated_at = :now, completed_at = :now WHERE id = :id")
+    Mono<Integer> fail(String id, String error, LocalDateTime now);
+
+    /**
+     * Deletes the broadcasts that finished before the cutoff.
+     *
+     * @param cutoff Broadcasts completed before this time are deleted.
+     * @return A Mono emitting the number of rows deleted.
+     */
+    @Modifying
+    @Query("DELETE FROM notification_broadcasts WHERE completed_at < :cutoff")
+    Mono<Integer> deleteFinishedBefore(LocalDateTime cutoff);
+}
@@ -0,0 +1,23 @@
+package com.aliwudi.marketplace.backend.notification.repository;
+
+import com.aliwudi.marketplace.backend.common.model.Notification;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+
+/**
+ * Bulk write operations on notifications, mixed into NotificationRepository.
+ */
+public interface NotificationBulkRepository {
+
+    /**
+     * Inserts notifications with a single multi-row INSERT statement. The
+     * generated IDs are derived from the ID of the first row, which requires
+     * consecutive auto-increment IDs within one statement (the InnoDB
+     * behaviour for multi-row INSERT ... VALUES).
+     *
+     * @param notifications The notifications to insert (without IDs).
+     * @return A Flux emitting the same notifications, in order, with their generated IDs set.
+     */
+    Flux<Notification> insertAll(List<Notification> notifications);
+}
@@ -0,0 +1,84 @@
+package com.aliwudi.marketplace.backend.notification.repository;
+
+import com.aliwudi.marketplace.backend.common.model.Notification;
+import lombok.RequiredArgsConstructor;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Flux;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Builds one portable (MySQL/H2) INSERT ... VALUES (...), (...) statement for
+ * the whole chunk instead of one INSERT per notification.
+ *
+ * The generated IDs are read back by a random marker written to every row of
+ * the statement (insert_batch), in ID order: InnoDB only guarantees that the
+ * IDs of one statement increase in row order, not that they are consecutive
+ * (innodb_autoinc_lock_mode 2 interleaves concurrent inserts), so the first
+ * ID alone does not tell the others.
+ */
+@RequiredArgsConstructor
+public class NotificationBulkRepositoryImpl implements NotificationBulkRepository {
+
+    private static final String[] COLUMNS = {
+        "user_id", "title", "message", "type", "status", "created_at", "target_entity_id", "target_entity_type"
+    };
+
+    private final DatabaseClient databaseClient;
+
+    @Override
+    public Flux<Notification> insertAll(List<Notification> notifications) {
+        if (notifications.isEmpty()) {
+            return Flux.empty();
+        }
+
+        List<String> rows = new ArrayList<>(notifications.size());
+        for (int i = 0; i < notifications.size(); i++) {
+            List<String> params = new ArrayList<>(COLUMNS.length);
+            for (int c = 0; c < COLUMNS.length; c++) {
+                params.add(":p" + i + "_" + c);
+            }
+            params.add(":batch");
+            rows.add("(" + String.join(", ", params) + ")");
+        }
+        String sql = "INSERT INTO notifications (" + String.join(", ", COLUMNS) + ", insert_batch) VALUES " + String.join(", ", rows);
+
+        String batch = UUID.randomUUID().toString();
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(sql).bind("batch", batch);
+        for (int i = 0; i < notifications.size(); i++) {
+            Notification notification = notifications.get(i);
+            spec = bind(spec, i, 0, notification.getUserId(), Long.class);
+            spec = bind(spec, i, 1, notification.getTitle(), String.class);
+            spec = bind(spec, i, 2, notification.getMessage(), String.class);
+            spec = bind(spec, i, 3, notification.getType() != null ? notification.getType().name() : null, String.class);
+            spec = bind(spec, i, 4, notification.getStatus().name(), String.class);
+            spec = bind(spec, i, 5, notification.getCreatedAt(), LocalDateTime.class);
+            spec = bind(spec, i, 6, notification.getTargetEntityId(), String.class);
+            spec = bind(spec, i, 7, notification.getTargetEntityType(), String.class);
+        }
+
+        return spec.fetch().rowsUpdated()
+                .flatMap(inserted -> databaseClient.sql("SELECT id FROM notifications WHERE insert_batch = :batch ORDER BY id")
+                        .bind("batch", batch)
+                        .map(row -> row.get("id", Long.class))
+                        .all()
+                        .collectList())
+                .flatMapMany(ids -> {
+                    if (ids.size() != notifications.size()) {
+                        throw new IllegalStateException("Inserted " + notifications.size() + " notifications but read back " + ids.size() + " IDs");
+                    }
+                    for (int i = 0; i < notifications.size(); i++) {
+                        notifications.get(i).setId(ids.get(i));
+                    }
+                    return Flux.fromIterable(notifications);
+                });
+    }
+
+    private static <T> DatabaseClient.GenericExecuteSpec bind(DatabaseClient.GenericExecuteSpec spec, int row, int column, T value, Class<T> type) {
+        String name = "p" + row + "_" + column;
+        return value != null ? spec.bind(name, value) : spec.bindNull(name, type);
+    }
+}
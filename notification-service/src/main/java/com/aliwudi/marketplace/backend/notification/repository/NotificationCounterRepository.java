@@ -0,0 +1,92 @@
+package com.aliwudi.marketplace.backend.notification.repository;
+
+import com.aliwudi.marketplace.backend.common.model.NotificationCounter;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+/**
+ * Reactive Repository for NotificationCounter entities.
+ *
+ * Counters are changed with relative single-statement updates, never read,
+ * modified and saved, so concurrent changes cannot overwrite each other.
+ * A user without a counter row (e.g. one whose notifications predate the
+ * counters) gets one seeded from a COUNT of their notifications, once.
+ */
+public interface NotificationCounterRepository extends R2dbcRepository<NotificationCounter, Long> {
+
+    /**
+     * Adds delta to the unread count of a user, if the user has a counter.
+     *
+     * @param userId The ID of the user.
+     * @param delta The change (negative to decrement).
+     * @param now The current time.
+     * @return A Mono emitting the number of counters updated (0 or 1).
+     */
+    @Modifying
+    @Query("UPDATE notification_counters SET unread_count = GREATEST(unread_count + :delta, 0), revision = revision + 1, updated_at = :now " +
+           "WHERE user_id = :userId")
+    Mono<Integer> adjustUnread(Long userId, long delta, LocalDateTime now);
+
+    /**
+     * Adds delta to the unread count of each of the given users that has a
+     * counter.
+     *
+     * @param userIds The IDs of the users.
+     * @param delta The change (negative to decrement).
+     * @param now The current time.
+     * @return A Mono emitting the number of counters updated.
+     */
+    @Modifying
+    @Query("UPDATE notification_counters SET unread_count = GREATEST(unread_count + :delta, 0), revision = revision + 1, updated_at = :now " +
+           "WHERE user_id IN (:userIds)")
+    Mono<Integer> adjustUnreadAll(Collection<Long> userIds, long delta, LocalDateTime now);
+
+    /**
+     * Creates the counter of a user from their current notifications. Run in
+     * the transaction that changed them, the count already includes the
+     * change; if another transaction seeded the counter in the meantime (and
+     * could not see the change), delta is applied to it instead.
+     *
+     * @param userId The ID of the user.
+     * @param delta The change to apply if the counter already exists.
+     * @param now The current time.
+     * @return A Mono emitting the number of rows affected.
+     */
+    @Modifying
+    @Query("INSERT INTO notification_counters (user_id, unread_count, revision, updated_at) " +
+           "SELECT :userId, COUNT(*), 1, :now FROM notifications WHERE user_id = :userId AND status = 'UNREAD' " +
+           "ON DUPLICATE KEY UPDATE unread_count = GREATEST(unread_count + :delta, 0), revision = revision + 1, updated_at = :now")
+    Mono<Integer> seedUnread(Long userId, long delta, LocalDateTime now);
+
+    /**
+     * Creates the counters of those of the given users that have none, from
+     * their current notifications. Same semantics as seedUnread.
+     *
+     * @param userIds The IDs of the users.
+     * @param delta The change to apply to counters created in the meantime.
+     * @param now The current time.
+     * @return A Mono emitting the number of rows affected.
+     */
+    @Modifying
+    @Query("INSERT INTO notification_counters (user_id, unread_count, revision, updated_at) " +
+           "SELECT n.user_id, COUNT(*), 1, :now FROM notifications n " +
+           "WHERE n.user_id IN (:userIds) AND n.status = 'UNREAD' " +
+           "AND NOT EXISTS (SELECT 1 FROM notification_counters c WHERE c.user_id = n.user_id) " +
+           "GROUP BY n.user_id " +
+           "ON DUPLICATE KEY UPDATE unread_count = GREATEST(unread_count + :delta, 0), revision = revision + 1, updated_at = :now")
+    Mono<Integer> seedUnreadAll(Collection<Long> userIds, long delta, LocalDateTime now);
+
+    /**
+     * Finds the counters of the given users.
+     *
+     * @param userIds The IDs of the users.
+     * @return A Flux emitting the NotificationCounter entities that exist.
+     */
+    Flux<NotificationCounter> findByUserIdIn(Collection<Long> userIds);
+}
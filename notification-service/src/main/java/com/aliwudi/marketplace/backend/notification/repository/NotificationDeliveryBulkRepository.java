@@ -0,0 +1,21 @@
+package com.aliwudi.marketplace.backend.notification.repository;
+
+import com.aliwudi.marketplace.backend.common.model.NotificationDelivery;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * Bulk write operations on notification deliveries, mixed into
+ * NotificationDeliveryRepository.
+ */
+public interface NotificationDeliveryBulkRepository {
+
+    /**
+     * Inserts deliveries with a single multi-row INSERT statement.
+     *
+     * @param deliveries The deliveries to insert (without IDs).
+     * @return A Mono emitting the number of rows inserted.
+     */
+    Mono<Long> insertAll(List<NotificationDelivery> deliveries);
+}
@@ -0,0 +1,46 @@
+package com.aliwudi.marketplace.backend.notification.repository;
+
+import com.aliwudi.marketplace.backend.common.model.NotificationDelivery;
+import lombok.RequiredArgsConstructor;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds one portable (MySQL/H2) INSERT ... VALUES (...), (...) statement for
+ * the whole chunk instead of one INSERT per delivery.
+ */
+@RequiredArgsConstructor
+public class NotificationDeliveryBulkRepositoryImpl implements NotificationDeliveryBulkRepository {
+
+    private final DatabaseClient databaseClient;
+
+    @Override
+    public Mono<Long> insertAll(List<NotificationDelivery> deliveries) {
+        if (deliveries.isEmpty()) {
+            return Mono.just(0L);
+        }
+
+        List<String> rows = new ArrayList<>(deliveries.size());
+        for (int i = 0; i < deliveries.size(); i++) {
+            rows.add("(:notificationId" + i + ", :userId" + i + ", :channel" + i + ", :status" + i
+                    + ", :dispatchAfter" + i + ", 0, :createdAt" + i + ")");
+        }
+        String sql = "INSERT INTO notification_deliveries (notification_id, user_id, channel, status, dispatch_after, attempts, created_at) VALUES "
+                + String.join(", ", rows);
+
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(sql);
+        for (int i = 0; i < deliveries.size(); i++) {
+            NotificationDelivery delivery = deliveries.get(i);
+            spec = spec.bind("notificationId" + i, delivery.getNotificationId())
+                    .bind("userId" + i, delivery.getUserId())
+                    .bind("channel" + i, delivery.getChannel().name())
+                    .bind("status" + i, delivery.getStatus().name())
+                    .bind("dispatchAfter" + i, delivery.getDispatchAfter())
+                    .bind("createdAt" + i, delivery.getCreatedAt());
+        }
+        return spec.fetch().rowsUpdated();
+    }
+}
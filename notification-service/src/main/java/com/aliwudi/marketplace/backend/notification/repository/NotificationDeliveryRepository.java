@@ -0,0 +1,143 @@
+package com.aliwudi.marketplace.backend.notification.repository;
+
+import com.aliwudi.marketplace.backend.common.model.NotificationDelivery;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+/**
+ * Reactive Repository for NotificationDelivery entities, the outbox of
+ * external notification deliveries.
+ *
+ * Deliveries are claimed with a per-dispatch token in single UPDATE
+ * statements, so several notification-service nodes can poll the same table
+ * without sending anything twice. Every later update of a claimed delivery
+ * is fenced by that token: a dispatch whose claim was released and taken
+ * over by another node changes nothing.
+ */
+public interface NotificationDeliveryRepository extends R2dbcRepository<NotificationDelivery, Long>, NotificationDeliveryBulkRepository {
+
+    /**
+     * Claims up to limit pending deliveries whose digest window has closed.
+     *
+     * @param token The claim token of this dispatch.
+     * @param now The current time.
+     * @param limit The maximum number of deliveries to claim.
+     * @return A Mono emitting the number of deliveries claimed.
+     */
+    @Modifying
+    @Query("UPDATE notification_deliveries SET status = 'DISPATCHING', claim_token = :token, claimed_at = :now " +
+           "WHERE status = 'PENDING' AND dispatch_after <= :now ORDER BY dispatch_after LIMIT :limit")
+    Mono<Integer> claimDue(String token, LocalDateTime now, int limit);
+
+    /**
+     * Claims the other pending deliveries of the given users, whose windows
+     * are still open, so that they go out in the same digest.
+     *
+     * @param token The claim token of this dispatch.
+     * @param now The current time.
+     * @param userIds The users whose digests are being sent.
+     * @return A Mono emitting the number of deliveries claimed.
+     */
+    @Modifying
+    @Query("UPDATE notification_deliveries SET status = 'DISPATCHING', claim_token = :token, claimed_at = :now " +
+           "WHERE status = 'PENDING' AND user_id IN (:userIds)")
+    Mono<Integer> claimPendingOfUsers(String token, LocalDateTime now, Collection<Long> userIds);
+
+    /**
+     * Finds the deliveries claimed by a dispatch.
+     *
+     * @param claimToken The claim token of the dispatch.
+     * @return A Flux emitting NotificationDelivery entities.
+     */
+    Flux<NotificationDelivery> findByClaimToken(String claimToken);
+
+    /**
+     * Returns deliveries claimed by a node that stopped before finishing
+     * (e.g. crashed or was restarted) to the pending state.
+     *
+     * @param claimedBefore Claims older than this are considered abandoned.
+     * @return A Mono emitting the number of deliveries released.
+     */
+    @Modifying
+    @Query("UPDATE notification_deliveries SET status = 'PENDING', claim_token = NULL, claimed_at = NULL " +
+           "WHERE status = 'DISPATCHING' AND claimed_at < :claimedBefore")
+    Mono<Integer> releaseStaleClaims(LocalDateTime claimedBefore);
+
+    /**
+     * Keeps the claims of a dispatch that is still running from being
+     * released as abandoned.
+     *
+     * @param token The claim token of the dispatch.
+     * @param now The current time.
+     * @return A Mono emitting the number of claims renewed.
+     */
+    @Modifying
+    @Query("UPDATE notification_deliveries SET claimed_at = :now " +
+           "WHERE claim_token = :token AND status = 'DISPATCHING'")
+    Mono<Integer> renewClaims(String token, LocalDateTime now);
+
+    /**
+     * Marks claimed deliveries as handed to the transport. SENDING deliveries
+     * are never released, so a digest that may have gone out is not sent
+     * again.
+     *
+     * @param ids The IDs of the deliveries.
+     * @param token The claim token of the dispatch.
+     * @return A Mono emitting the number of deliveries still claimed by the
+     * dispatch, and now SENDING.
+     */
+    @Modifying
+    @Query("UPDATE notification_deliveries SET status = 'SENDING' " +
+           "WHERE id IN (:ids) AND claim_token = :token AND status = 'DISPATCHING'")
+    Mono<Integer> markSending(Collection<Long> ids, String token);
+
+    /**
+     * Marks deliveries as completed.
+     *
+     * @param ids The IDs of the deliveries.
+     * @param token The claim token of the dispatch.
+     * @param status The final status (SENT or SKIPPED).
+     * @param now The current time.
+     * @return A Mono emitting the number of deliveries updated.
+     */
+    @Modifying
+    @Query("UPDATE notification_deliveries SET status = :status, sent_at = :now, claim_token = NULL " +
+           "WHERE id IN (:ids) AND claim_token = :token")
+    Mono<Integer> markCompleted(Collection<Long> ids, String token, String status, LocalDateTime now);
+
+    /**
+     * Records a failed attempt: the deliveries become pending again until
+     * retryAt, or FAILED once they reach maxAttempts.
+     *
+     * @param ids The IDs of the deliveries.
+     * @param token The claim token of the dispatch.
+     * @param retryAt When to try again.
+     * @param maxAttempts The maximum number of attempts.
+     * @param error The failure reason.
+     * @return A Mono emitting the number of deliveries updated.
+     */
+    @Modifying
+    @Query("UPDATE notification_deliveries SET " +
+           "status = CASE WHEN attempts + 1 >= :maxAttempts THEN 'FAILED' ELSE 'PENDING' END, " +
+           "attempts = attempts + 1, dispatch_after = :retryAt, claim_token = NULL, claimed_at = NULL, last_error = :error " +
+           "WHERE id IN (:ids) AND claim_token = :token")
+    Mono<Integer> markFailedAttempt(Collection<Long> ids, String token, LocalDateTime retryAt, int maxAttempts, String error);
+
+    /**
+     * Deletes the finished deliveries of notifications that are being
+     * archived. Pending deliveries are kept.
+     *
+     * @param notificationIds The IDs of the notifications.
+     * @return A Mono emitting the number of deliveries deleted.
+     */
+    @Modifying
+    @Query("DELETE FROM notification_deliveries WHERE notification_id IN (:notificationIds) " +
+           "AND status NOT IN ('PENDING', 'DISPATCHING')")
+    Mono<Integer> deleteFinishedByNotificationIds(Collection<Long> notificationIds);
+}
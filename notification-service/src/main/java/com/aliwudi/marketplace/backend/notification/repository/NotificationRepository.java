@@ -8,15 +8,22 @@ import com.aliwudi.marketplace.backend.common.model.Notification;
 import com.aliwudi.marketplace.backend.common.enumeration.NotificationType;
 import com.aliwudi.marketplace.backend.common.status.NotificationStatus;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.r2dbc.repository.R2dbcRepository;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.LocalDateTime;
+
 /**
  * Reactive Repository for Notification entities.
  * Provides CRUD operations and custom queries for notifications.
+ *
+ * The per-user listings are served by (user_id, created_at) indexes, and read
+ * notifications past the retention period are moved to the archive, so these
+ * queries only ever scan a user's recent notifications (and unread ones).
  */
-public interface NotificationRepository extends R2dbcRepository<Notification, Long> {
+public interface NotificationRepository extends R2dbcRepository<Notification, Long>, NotificationBulkRepository {
 
     /**
      * Finds all notifications for a specific user, with pagination.
@@ -50,6 +57,18 @@ public interface NotificationRepository extends R2dbcRepository<Notification, Lo
      */
     Flux<Notification> findByUserIdAndType(Long userId, NotificationType type, Pageable pageable);
 
+    /**
+     * Finds the notifications of a user created after a given one, oldest
+     * first. Used to replay notifications an SSE client missed while
+     * disconnected; served by the (user_id, id) index.
+     *
+     * @param userId The ID of the user.
+     * @param id The ID of the last notification the client received.
+     * @param pageable Limits how many notifications are replayed.
+     * @return A Flux emitting Notification entities.
+     */
+    Flux<Notification> findByUserIdAndIdGreaterThanOrderByIdAsc(Long userId, Long id, Pageable pageable);
+
     /**
      * Counts all notifications for a specific user.
      *
@@ -75,5 +94,17 @@ public interface NotificationRepository extends R2dbcRepository<Notification, Lo
      * @return A Mono emitting true if it exists, false otherwise.
      */
     Mono<Boolean> existsByIdAndUserId(Long id, Long userId);
-}
 
+    /**
+     * Locks the oldest read notifications created before the cutoff, for
+     * archiving. Rows locked by another node's archiving run are skipped, so
+     * nodes never archive the same notifications. Must run in a transaction.
+     *
+     * @param cutoff Only notifications created before this are returned.
+     * @param limit The maximum number of notifications to return.
+     * @return A Flux emitting Notification entities, oldest first.
+     */
+    @Query("SELECT * FROM notifications WHERE status = 'READ' AND created_at < :cutoff " +
+           "ORDER BY created_at LIMIT :limit FOR UPDATE SKIP LOCKED")
+    Flux<Notification> lockArchivable(LocalDateTime cutoff, int limit);
+}
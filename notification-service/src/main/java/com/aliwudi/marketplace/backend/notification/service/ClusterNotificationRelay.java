@@ -0,0 +1,303 @@
+package com.aliwudi.marketplace.backend.notification.service;
+
+import static com.aliwudi.marketplace.backend.common.constants.ExchangeType.*;
+import com.aliwudi.marketplace.backend.common.model.Notification;
+import com.aliwudi.marketplace.backend.notification.dto.NotificationBadge;
+import com.rabbitmq.client.Channel;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.AmqpTemplate;
+import org.springframework.amqp.core.DirectExchange;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.rabbit.annotation.RabbitHandler;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.rabbit.connection.Connection;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Delivers live notifications to SSE connections on every notification-service
+ * node, not just the one that created the notification.
+ *
+ * Presence is tracked by RabbitMQ itself: while a user has at least one SSE
+ * connection on this node, this node's exclusive queue is bound to the
+ * notification stream exchange with the user's ID as routing key. Publishing
+ * a notification with routing key = userId therefore reaches exactly the nodes
+ * holding that user's connections, and is discarded by the broker when the
+ * user is not connected anywhere. Presence is kept for a grace period after
+ * the last connection closes so that a reconnecting client can be replayed
+ * what it missed. Unread badge updates take the same route. Binding changes
+ * are queued and applied in batches, so a burst of connections (or restoring
+ * every binding after a broker reconnect) costs one round trip per batch
+ * rather than one per user.
+ */
+@Component
+@RabbitListener(queues = "#{notificationNodeQueue.name}") // Dispatched by payload type to the @RabbitHandler methods
+@Slf4j
+public class ClusterNotificationRelay implements NotificationStreamRegistry.PresenceListener {
+
+    private static final String ORIGIN_NODE_HEADER = "x-origin-node";
+    private static final int BINDING_BATCH_SIZE = 1000; // No-wait bindings per confirming round trip
+
+    private final NotificationStreamRegistry streamRegistry;
+    private final NotificationReplayBuffer replayBuffer;
+    private final AmqpTemplate amqpTemplate;
+    private final ConnectionFactory connectionFactory;
+    private final DirectExchange notificationStreamExchange;
+    private final Queue notificationNodeQueue;
+    private final String nodeId;
+
+    // Presence outlives the last connection by this long, so notifications sent
+    // while a client reconnects still reach this node's replay buffer
+    @Value("${notification.sse.replay.grace-period:2m}")
+    private Duration presenceGracePeriod;
+
+    // Latest scheduled presence expiry per user; older ones are stale
+    private final Map<Long, Object> pendingExpiries = new ConcurrentHashMap<>();
+
+    // Presence changes not yet applied to the broker, flushed in batches (see flushPresence)
+    private final Set<Long> pendingBinds = ConcurrentHashMap.newKeySet();
+    private final Set<Long> pendingUnbinds = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+    // Binding changes are blocking broker calls; run them off the event loop, in order
+    private final Scheduler presenceScheduler = Schedulers.newSingle("sse-presence");
+
+    public ClusterNotificationRelay(NotificationStreamRegistry streamRegistry,
+                                    NotificationReplayBuffer replayBuffer,
+                                    AmqpTemplate amqpTemplate,
+                                    ConnectionFactory connectionFactory,
+                                    DirectExchange notificationStreamExchange,
+                                    @Qualifier("notificationNodeQueue") Queue notificationNodeQueue) {
+        this.streamRegistry = streamRegistry;
+        this.replayBuffer = replayBuffer;
+        this.amqpTemplate = amqpTemplate;
+        this.connectionFactory = connectionFactory;
+        this.notificationStreamExchange = notificationStreamExchange;
+        this.notificationNodeQueue = notificationNodeQueue;
+        this.nodeId = notificationNodeQueue.getName();
+    }
+
+    @PostConstruct
+    public void init() {
+        streamRegistry.setPresenceListener(this);
+        // Dynamic bindings do not survive a broker reconnect: restore them for everyone connected here
+        connectionFactory.addConnectionListener(connection -> presenceScheduler.schedule(this::rebindConnectedUsers));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        presenceScheduler.dispose();
+    }
+
+    /**
+     * Delivers a notification to the recipient's connections on this node
+     * directly, and to those on other nodes through the broker.
+     *
+     * @param notification The saved notification.
+     */
+    public void publish(Notification notification) {
+        if (streamRegistry.publish(notification)) {
+            log.debug("Notification ID {} delivered to local SSE connections of user {}.", notification.getId(), notification.getUserId());
+        }
+
+        Mono.fromRunnable(() -> relay(notification))
+                .subscribeOn(Schedulers.boundedElastic()) // Use a separate scheduler for blocking RabbitMQ send
+                .subscribe(
+                        v -> { },
+                        e -> log.error("Failed to relay notification ID {} to other nodes: {}", notification.getId(), e.getMessage(), e));
+    }
+
+    /**
+     * Same as publish, for a batch of notifications (e.g. a broadcast chunk):
+     * the broker sends of the whole batch run as one background task.
+     *
+     * @param notifications The saved notifications.
+     */
+    public void publishAll(List<Notification> notifications) {
+        notifications.forEach(streamRegistry::publish);
+
+        Mono.fromRunnable(() -> notifications.forEach(this::relay))
+                .subscribeOn(Schedulers.boundedElastic()) // Use a separate scheduler for blocking RabbitMQ sends
+                .subscribe(
+                        v -> { },
+                        e -> log.error("Failed to relay {} notification(s) to other nodes: {}", notifications.size(), e.getMessage(), e));
+    }
+
+    /**
+     * Delivers an unread badge update to the user's connections on this node
+     * directly, and to those on other nodes through the broker.
+     *
+     * @param badge The new badge.
+     */
+    public void publishBadge(NotificationBadge badge) {
+        publishBadges(List.of(badge));
+    }
+
+    /**
+     * Same as publishBadge, for a batch of badges; the broker sends run as one
+     * background task.
+     *
+     * @param badges The new badges.
+     */
+    public void publishBadges(List<NotificationBadge> badges) {
+        badges.forEach(streamRegistry::publishBadge);
+
+        Mono.fromRunnable(() -> badges.forEach(badge -> relay(badge.getUserId(), badge)))
+                .subscribeOn(Schedulers.boundedElastic()) // Use a separate scheduler for blocking RabbitMQ sends
+                .subscribe(
+                        v -> { },
+                        e -> log.error("Failed to relay {} badge update(s) to other nodes: {}", badges.size(), e.getMessage(), e));
+    }
+
+    private void relay(Notification notification) {
+        relay(notification.getUserId(), notification);
+    }
+
+    private void relay(Long userId, Object payload) {
+        amqpTemplate.convertAndSend(
+                NOTIFICATION_STREAM_EXCHANGE,
+                routingKey(userId),
+                payload,
+                message -> {
+                    message.getMessageProperties().setHeader(ORIGIN_NODE_HEADER, nodeId);
+                    return message;
+                });
+    }
+
+    /**
+     * Receives notifications routed to this node because one of its SSE
+     * connections belongs to the recipient.
+     *
+     * @param notification The notification.
+     * @param originNode The node that created it.
+     */
+    @RabbitHandler
+    public void handleRelayedNotification(Notification notification,
+                                          @Header(name = ORIGIN_NODE_HEADER, required = false) String originNode) {
+        if (nodeId.equals(originNode)) {
+            return; // Already delivered locally by publish()
+        }
+        streamRegistry.publish(notification);
+    }
+
+    /**
+     * Receives badge updates routed to this node because one of its SSE
+     * connections belongs to the user.
+     *
+     * @param badge The new badge.
+     * @param originNode The node that changed it.
+     */
+    @RabbitHandler
+    public void handleRelayedBadge(NotificationBadge badge,
+                                   @Header(name = ORIGIN_NODE_HEADER, required = false) String originNode) {
+        if (nodeId.equals(originNode)) {
+            return; // Already delivered locally by publishBadges()
+        }
+        streamRegistry.publishBadge(badge);
+    }
+
+    @Override
+    public void onUserConnected(Long userId) {
+        pendingUnbinds.remove(userId);
+        pendingBinds.add(userId);
+        scheduleFlush();
+    }
+
+    @Override
+    public void onUserDisconnected(Long userId) {
+        Object expiry = new Object();
+        pendingExpiries.put(userId, expiry);
+        presenceScheduler.schedule(() -> {
+            // The user may have reconnected (and maybe disconnected again) during the grace period
+            if (!pendingExpiries.remove(userId, expiry) || streamRegistry.isConnected(userId)) {
+                return;
+            }
+            replayBuffer.forget(userId);
+            pendingUnbinds.add(userId);
+            scheduleFlush();
+        }, presenceGracePeriod.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private void rebindConnectedUsers() {
+        List<Long> userIds = List.copyOf(streamRegistry.getConnectedUserIds());
+        if (!userIds.isEmpty()) {
+            log.info("Restoring SSE presence bindings for {} user(s) on node {}", userIds.size(), nodeId);
+        }
+        pendingBinds.addAll(userIds);
+        scheduleFlush();
+    }
+
+    // One flush at a time picks up every presence change made until it runs
+    private void scheduleFlush() {
+        if (flushScheduled.compareAndSet(false, true)) {
+            presenceScheduler.schedule(this::flushPresence);
+        }
+    }
+
+    /**
+     * Applies the pending presence changes to the broker over one channel.
+     * Bindings are declared with no-wait, in batches closed by a single
+     * synchronous call: the channel processes commands in order and is closed
+     * by the broker on the first failure, so that call succeeding confirms the
+     * whole batch. queue.unbind has no no-wait form, so removals still take a
+     * round trip each, but they trickle in one grace period after disconnects.
+     */
+    private void flushPresence() {
+        flushScheduled.set(false); // Changes arriving from now on schedule another flush
+        // Re-check presence now: a user may have come and gone while queued
+        List<Long> unbinds = drain(pendingUnbinds).stream().filter(userId -> !streamRegistry.isConnected(userId)).toList();
+        List<Long> binds = drain(pendingBinds).stream().filter(streamRegistry::isConnected).toList();
+        if (unbinds.isEmpty() && binds.isEmpty()) {
+            return;
+        }
+
+        String queue = notificationNodeQueue.getName();
+        String exchange = notificationStreamExchange.getName();
+        try (Connection connection = connectionFactory.createConnection();
+             Channel channel = connection.createChannel(false)) {
+            for (Long userId : unbinds) {
+                channel.queueUnbind(queue, exchange, routingKey(userId));
+            }
+            for (int from = 0; from < binds.size(); from += BINDING_BATCH_SIZE) {
+                for (Long userId : binds.subList(from, Math.min(from + BINDING_BATCH_SIZE, binds.size()))) {
+                    channel.queueBindNoWait(queue, exchange, routingKey(userId), null);
+                }
+                channel.queueDeclarePassive(queue); // Round trip confirming the batch
+            }
+            log.debug("Applied SSE presence changes on node {}: {} binding(s) added, {} removed", nodeId, binds.size(), unbinds.size());
+        } catch (Exception e) {
+            // Kept for the next flush; a lost connection also triggers rebindConnectedUsers once it is back
+            pendingBinds.addAll(binds);
+            pendingUnbinds.addAll(unbinds);
+            log.warn("Failed to apply SSE presence changes on node {} ({} binding(s) to add, {} to remove): {}",
+                    nodeId, binds.size(), unbinds.size(), e.getMessage());
+        }
+    }
+
+    private static List<Long> drain(Set<Long> pending) {
+        List<Long> userIds = new ArrayList<>(pending);
+        pending.removeAll(userIds);
+        return userIds;
+    }
+
+    private static String routingKey(Long userId) {
+        return String.valueOf(userId);
+    }
+}
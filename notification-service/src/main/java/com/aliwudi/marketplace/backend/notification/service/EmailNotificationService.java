@@ -3,11 +3,8 @@ package com.aliwudi.marketplace.backend.notification.service;
 import com.aliwudi.marketplace.backend.common.exception.NotificationException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.context.MessageSource; // For i18n in templates
 import org.springframework.context.i18n.LocaleContextHolder; // For locale resolution
 import org.springframework.stereotype.Service;
-import org.thymeleaf.TemplateEngine;
-import org.thymeleaf.context.Context;
 import reactor.core.publisher.Mono;
 import reactor.core.scheduler.Schedulers;
 
@@ -24,8 +21,7 @@ import java.util.Map;
 public class EmailNotificationService {
 
     private final EmailSenderService emailSenderService;
-    private final TemplateEngine templateEngine;
-    private final MessageSource messageSource; // Inject MessageSource for i18n in templates
+    private final EmailTemplateRenderer templateRenderer;
 
     // Define OTP validity for template variable
     private static final Duration OTP_VALIDITY = Duration.ofMinutes(5);
@@ -43,17 +39,8 @@ public class EmailNotificationService {
      */
     public Mono<Void> sendTemplatedEmail(String to, String subject, String templateName, Map<String, Object> templateVariables) {
         return Mono.fromCallable(() -> {
-            // Create Thymeleaf context and add variables
-            Context context = new Context(LocaleContextHolder.getLocale());
-            templateVariables.forEach(context::setVariable); // Add all provided variables
-
-            // Add common variables that all templates might need
-            context.setVariable("appName", messageSource.getMessage("app.name", null, LocaleContextHolder.getLocale()));
-            context.setVariable("currentYear", String.valueOf(java.time.Year.now().getValue()));
-
-
-            // Process the template to get the HTML body
-            String htmlBody = templateEngine.process(templateName, context);
+            // Render the template to get the HTML body; static parts are pre-rendered per locale
+            String htmlBody = templateRenderer.render(templateName, LocaleContextHolder.getLocale(), templateVariables);
             log.debug("Processed template '{}' for email to {}.", templateName, to);
 
             // Send the email
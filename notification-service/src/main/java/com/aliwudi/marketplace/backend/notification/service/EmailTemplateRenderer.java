@@ -0,0 +1,157 @@
+package com.aliwudi.marketplace.backend.notification.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.MessageSource;
+import org.springframework.stereotype.Component;
+import org.thymeleaf.TemplateEngine;
+import org.thymeleaf.context.Context;
+import org.unbescape.html.HtmlEscape;
+
+import java.time.Year;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Renders email templates with everything that does not depend on the
+ * recipient rendered only once per template and locale.
+ *
+ * The first time a template is rendered for a locale (and a given set of
+ * variable names), it is processed by Thymeleaf with a placeholder in place of
+ * every variable. Message lookups, the application name and the year end up
+ * as plain text in the result, which is split into literal segments and
+ * variable slots. Every later email is then a concatenation of those segments
+ * with the variable values escaped the way Thymeleaf escapes th:text / th:href
+ * output (unbescape's HTML4/XML escaping), i.e. exactly what processing the
+ * template would have produced.
+ *
+ * A template falls back to regular Thymeleaf processing when that equivalence
+ * cannot be guaranteed: when a variable is null (the template may supply a
+ * default, e.g. ${name ?: 'there'}), or when a variable is used for anything
+ * other than output (conditions, arithmetic) so that its placeholder does not
+ * come out verbatim.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class EmailTemplateRenderer {
+
+    private static final String PLACEHOLDER_MARK = "\u0001";
+    private static final Pattern PLACEHOLDER = Pattern.compile(PLACEHOLDER_MARK + "var:(\\w+)" + PLACEHOLDER_MARK);
+    private static final Set<String> COMMON_VARIABLES = Set.of("appName", "currentYear"); // Set for every template, never by callers
+
+    private final TemplateEngine templateEngine;
+    private final MessageSource messageSource;
+
+    private final Map<TemplateKey, PrerenderedTemplate> prerendered = new ConcurrentHashMap<>();
+
+    /**
+     * Renders a template to HTML.
+     *
+     * @param templateName The name of the Thymeleaf template (e.g., "email/welcome").
+     * @param locale The locale to render the template for.
+     * @param variables The template variables.
+     * @return The rendered HTML.
+     */
+    public String render(String templateName, Locale locale, Map<String, Object> variables) {
+        if (variables.containsValue(null)) {
+            return process(templateName, locale, variables);
+        }
+
+        Set<String> names = new TreeSet<>(variables.keySet());
+        names.removeAll(COMMON_VARIABLES);
+        TemplateKey key = new TemplateKey(templateName, locale, Year.now().getValue(), names);
+        PrerenderedTemplate template = prerendered.computeIfAbsent(key, this::prerender);
+        if (template.segments() == null) {
+            return process(templateName, locale, variables);
+        }
+
+        StringBuilder html = new StringBuilder(template.length());
+        for (Segment segment : template.segments()) {
+            if (segment.variable() == null) {
+                html.append(segment.text());
+            } else {
+                html.append(HtmlEscape.escapeHtml4Xml(String.valueOf(variables.get(segment.variable()))));
+            }
+        }
+        return html.toString();
+    }
+
+    private String process(String templateName, Locale locale, Map<String, Object> variables) {
+        Context context = new Context(locale);
+        variables.forEach(context::setVariable); // Add all provided variables
+        addCommonVariables(context, locale);
+        return templateEngine.process(templateName, context);
+    }
+
+    private PrerenderedTemplate prerender(TemplateKey key) {
+        Context context = new Context(key.locale());
+        key.variables().forEach(variable -> context.setVariable(variable, PLACEHOLDER_MARK + "var:" + variable + PLACEHOLDER_MARK));
+        addCommonVariables(context, key.locale());
+
+        String html;
+        try {
+            html = templateEngine.process(key.templateName(), context);
+        } catch (RuntimeException e) {
+            log.debug("Template {} cannot be pre-rendered, processing it per email: {}", key.templateName(), e.getMessage());
+            return PrerenderedTemplate.NOT_PRERENDERABLE;
+        }
+
+        List<Segment> segments = new ArrayList<>();
+        Set<String> output = new TreeSet<>();
+        Matcher matcher = PLACEHOLDER.matcher(html);
+        int start = 0;
+        while (matcher.find()) {
+            segments.add(new Segment(html.substring(start, matcher.start()), null));
+            segments.add(new Segment(null, matcher.group(1)));
+            output.add(matcher.group(1));
+            start = matcher.end();
+        }
+        segments.add(new Segment(html.substring(start), null));
+
+        // Every variable must come out verbatim; a missing or mangled placeholder means it was
+        // consumed by an expression, and substituting the real value would not be equivalent
+        boolean mangled = segments.stream().anyMatch(segment -> segment.text() != null && segment.text().contains(PLACEHOLDER_MARK));
+        if (mangled || !output.equals(key.variables())) {
+            log.debug("Template {} uses variables beyond plain output, processing it per email", key.templateName());
+            return PrerenderedTemplate.NOT_PRERENDERABLE;
+        }
+
+        log.debug("Pre-rendered template {} for locale {}", key.templateName(), key.locale());
+        return new PrerenderedTemplate(List.copyOf(segments), html.length());
+    }
+
+    // Add common variables that all templates might need
+    private void addCommonVariables(Context context, Locale locale) {
+        context.setVariable("appName", messageSource.getMessage("app.name", null, locale));
+        context.setVariable("currentYear", String.valueOf(Year.now().getValue()));
+    }
+
+    /**
+     * Cache key: the pre-rendered output depends on the template, the locale,
+     * the year (footer) and which variables are provided.
+     */
+    private record TemplateKey(String templateName, Locale locale, int year, Set<String> variables) {
+    }
+
+    /**
+     * Literal text (variable == null) or a variable slot.
+     */
+    private record Segment(String text, String variable) {
+    }
+
+    /**
+     * The segments of a pre-rendered template, or null if it must be processed per email.
+     */
+    private record PrerenderedTemplate(List<Segment> segments, int length) {
+
+        static final PrerenderedTemplate NOT_PRERENDERABLE = new PrerenderedTemplate(null, 0);
+    }
+}
@@ -0,0 +1,196 @@
+package com.aliwudi.marketplace.backend.notification.service;
+
+import com.aliwudi.marketplace.backend.common.model.Notification;
+import com.aliwudi.marketplace.backend.notification.repository.NotificationDeliveryRepository;
+import com.aliwudi.marketplace.backend.notification.repository.NotificationRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Moves read notifications older than the retention period out of the
+ * notifications table into compressed archive files.
+ *
+ * Keeping only recent (and unread) notifications in the table bounds its size,
+ * and with it the cost of every per-user query, however long the history.
+ * Archiving runs periodically in batches: each batch is locked in a
+ * transaction (rows locked by another node are skipped), written to a gzipped
+ * NDJSON file, synced to disk, and only then deleted. A batch whose delete
+ * fails is archived again by a later run, so a notification can appear in
+ * two files but is never lost.
+ *
+ * The archive directory must be an absolute path on storage shared by every
+ * node (and backed up with the database): any node may archive any batch, so
+ * a node-local directory would scatter the archive over the nodes' disks and
+ * lose part of it with each replaced node. Each line of an archive file is
+ * one notification as JSON, with its original ID. To restore notifications,
+ * decompress the files of the months wanted and insert their rows back into
+ * the notifications table (for example with jq, generating one INSERT per
+ * line); a notification archived twice has the same ID in both files, so
+ * INSERT IGNORE keeps one copy.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class NotificationArchiveService {
+
+    private static final DateTimeFormatter FILE_MONTH = DateTimeFormatter.ofPattern("yyyy/MM");
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    private final NotificationRepository notificationRepository;
+    private final NotificationDeliveryRepository deliveryRepository;
+    private final TransactionalOperator transactionalOperator;
+    private final ObjectMapper objectMapper;
+
+    @Value("${notification.archive.enabled:true}")
+    private boolean enabled;
+
+    // Read notifications older than this are archived; unread ones are kept
+    @Value("${notification.archive.retention:90d}")
+    private Duration retention;
+
+    @Value("${notification.archive.interval:1h}")
+    private Duration interval;
+
+    // Notifications per archive file, locked and deleted together
+    @Value("${notification.archive.batch-size:5000}")
+    private int batchSize;
+
+    // Pause between batches, to spread the load of a large backlog
+    @Value("${notification.archive.batch-pause:500ms}")
+    private Duration batchPause;
+
+    // Absolute, on storage shared by every node
+    @Value("${notification.archive.directory:}")
+    private String directory;
+
+    private Disposable archiveLoop;
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            log.info("Notification archiving is disabled");
+            return;
+        }
+        if (directory.isBlank() || !Paths.get(directory).isAbsolute()) {
+            throw new IllegalStateException("notification.archive.directory must be an absolute path on storage shared by every node, was '"
+                    + directory + "'");
+        }
+        archiveLoop = Flux.interval(interval)
+                .onBackpressureDrop() // Skip a tick if the previous run is still going
+                .concatMap(tick -> archiveExpired()
+                        .onErrorResume(e -> {
+                            log.error("Notification archiving failed: {}", e.getMessage(), e);
+                            return Mono.empty();
+                        }))
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (archiveLoop != null) {
+            archiveLoop.dispose();
+        }
+    }
+
+    /**
+     * Archives every read notification past the retention period, batch by
+     * batch.
+     *
+     * @return A Mono emitting the number of notifications archived.
+     */
+    Mono<Long> archiveExpired() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(retention);
+        return archiveBatch(cutoff)
+                .expand(archived -> archived < batchSize
+                        ? Mono.empty() // Nothing left
+                        : Mono.delay(batchPause).then(archiveBatch(cutoff)))
+                .reduce(0L, Long::sum)
+                .doOnNext(total -> {
+                    if (total > 0) {
+                        log.info("Archived {} read notification(s) created before {}", total, cutoff);
+                    }
+                });
+    }
+
+    private Mono<Integer> archiveBatch(LocalDateTime cutoff) {
+        return notificationRepository.lockArchivable(cutoff, batchSize)
+                .collectList()
+                .flatMap(notifications -> notifications.isEmpty()
+                        ? Mono.just(0)
+                        : Mono.fromCallable(() -> writeArchive(notifications))
+                                .subscribeOn(Schedulers.boundedElastic()) // Blocking file I/O
+                                .flatMap(file -> {
+                                    List<Long> ids = notifications.stream().map(Notification::getId).toList();
+                                    return deliveryRepository.deleteFinishedByNotificationIds(ids)
+                                            .then(notificationRepository.deleteAllById(ids))
+                                            .doOnSuccess(v -> log.debug("Archived {} notification(s) to {}", ids.size(), file))
+                                            .thenReturn(ids.size());
+                                }))
+                .as(transactionalOperator::transactional);
+    }
+
+    /**
+     * Writes the notifications as gzipped NDJSON, under a directory per month
+     * of the oldest one. The file only appears under its final name once fully
+     * written and synced.
+     */
+    private Path writeArchive(List<Notification> notifications) {
+        Notification first = notifications.get(0);
+        Notification last = notifications.get(notifications.size() - 1);
+        Path dir = Paths.get(directory, first.getCreatedAt().format(FILE_MONTH));
+        Path file = dir.resolve("notifications-" + first.getId() + "-" + last.getId() + ".ndjson.gz");
+        Path tmp = null;
+        try {
+            Files.createDirectories(dir);
+            tmp = Files.createTempFile(dir, "notifications-", ".tmp");
+            try (FileOutputStream out = new FileOutputStream(tmp.toFile());
+                 GZIPOutputStream gzip = new GZIPOutputStream(out, WRITE_BUFFER_SIZE);
+                 BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(gzip, StandardCharsets.UTF_8), WRITE_BUFFER_SIZE)) {
+                for (Notification notification : notifications) {
+                    writer.write(objectMapper.writeValueAsString(notification));
+                    writer.newLine();
+                }
+                writer.flush();
+                gzip.finish();
+                out.getFD().sync(); // On disk before the rows are deleted
+            }
+            Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE);
+            return file;
+        } catch (IOException e) {
+            if (tmp != null) {
+                try {
+                    Files.deleteIfExists(tmp);
+                } catch (IOException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+            }
+            throw new UncheckedIOException("Failed to write notification archive " + file, e);
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.aliwudi.marketplace.backend.notification.service;
+
+import com.aliwudi.marketplace.backend.common.interservice.UserIntegrationService;
+import com.aliwudi.marketplace.backend.common.model.Notification;
+import com.aliwudi.marketplace.backend.common.status.NotificationBroadcastStatus;
+import com.aliwudi.marketplace.backend.common.status.NotificationStatus;
+import com.aliwudi.marketplace.backend.notification.dto.BroadcastNotificationRequest;
+import com.aliwudi.marketplace.backend.notification.dto.BroadcastStatus;
+import com.aliwudi.marketplace.backend.notification.repository.NotificationBroadcastRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Sends the same notification to many users (up to every user) in the
+ * background.
+ *
+ * Recipients are streamed, either from the request or page by page from the
+ * User Service, and persisted in chunks: each chunk is one multi-row insert of
+ * notifications plus one of their deliveries, in its own transaction, and is
+ * then published to connected SSE clients. A few chunks are in flight at a
+ * time, so memory and database load stay bounded however large the audience.
+ * A chunk that fails is counted and skipped; the broadcast goes on.
+ *
+ * The broadcast runs detached from the request that started it, so User
+ * Service calls made while paging carry no caller token and authenticate with
+ * this service's own account (ServiceAccountTokenFilter, service-account.*),
+ * whose token is renewed as needed however long the broadcast takes.
+ *
+ * Progress is stored in the notification_broadcasts table after every chunk,
+ * so any node can report it. A broadcast whose node stops before it finishes
+ * stays RUNNING; its updatedAt shows when it last made progress.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class NotificationBroadcastService {
+
+    private static final int USER_ID_PAGE_SIZE = 1000; // User Service page limit
+    private static final int ERROR_MAX_LENGTH = 1000; // notification_broadcasts.error
+
+    private final NotificationService notificationService;
+    private final UserIntegrationService userIntegrationService;
+    private final NotificationBroadcastRepository broadcastRepository;
+
+    // Notifications stored per multi-row insert and transaction
+    @Value("${notification.broadcast.chunk-size:1000}")
+    private int chunkSize;
+
+    // Chunks stored concurrently by one broadcast
+    @Value("${notification.broadcast.concurrency:2}")
+    private int concurrency;
+
+    // How long the status of a finished broadcast can still be queried
+    @Value("${notification.broadcast.status-retention:24h}")
+    private Duration statusRetention;
+
+    /**
+     * Starts a broadcast and returns without waiting for it to finish.
+     *
+     * @param request The notification and its recipients.
+     * @return A Mono emitting the initial status of the broadcast.
+     */
+    public Mono<BroadcastStatus> startBroadcast(BroadcastNotificationRequest request) {
+        List<Long> userIds = request.isAllUsers() ? null : request.getUserIds().stream()
+                .filter(userId -> userId != null && userId > 0)
+                .distinct()
+                .toList();
+        Long totalUsers = userIds != null ? (long) userIds.size() : null;
+        String id = UUID.randomUUID().toString();
+        LocalDateTime startedAt = LocalDateTime.now();
+
+        return broadcastRepository.deleteFinishedBefore(startedAt.minus(statusRetention))
+                .then(broadcastRepository.insertRunning(id, totalUsers, startedAt))
+                .then(Mono.fromRunnable(() -> {
+                    log.info("Starting notification broadcast {} of type {} to {}", id, request.getType(),
+                            userIds != null ? userIds.size() + " user(s)" : "all users");
+                    Flux<Long> recipients = userIds != null ? Flux.fromIterable(userIds) : allUserIds();
+                    // Subscribed without the request's context: see the class comment
+                    recipients
+                            .buffer(Math.max(1, chunkSize))
+                            .flatMap(chunk -> createChunk(id, request, chunk), Math.max(1, concurrency))
+                            .then(Mono.defer(() -> broadcastRepository.complete(id, LocalDateTime.now())))
+                            .onErrorResume(e -> {
+                                log.error("Notification broadcast {} failed: {}", id, e.getMessage(), e);
+                                return broadcastRepository.fail(id, truncate(e.getMessage()), LocalDateTime.now());
+                            })
+                            .then(broadcastRepository.findById(id))
+                            .subscribe(
+                                    broadcast -> log.info("Notification broadcast {} {}: {} user(s) notified, {} failed", id,
+                                            broadcast.getState().name().toLowerCase(), broadcast.getNotifiedUsers(), broadcast.getFailedUsers()),
+                                    e -> log.error("Failed to record the end of notification broadcast {}: {}", id, e.getMessage(), e));
+                }))
+                .thenReturn(BroadcastStatus.builder()
+                        .id(id)
+                        .state(NotificationBroadcastStatus.RUNNING)
+                        .totalUsers(totalUsers)
+                        .startedAt(startedAt)
+                        .updatedAt(startedAt)
+                        .build());
+    }
+
+    /**
+     * Returns the status of a broadcast started on any node.
+     *
+     * @param id The ID of the broadcast.
+     * @return A Mono emitting the status, or empty if unknown (or finished
+     * longer than the status retention ago).
+     */
+    public Mono<BroadcastStatus> getBroadcastStatus(String id) {
+        return broadcastRepository.findById(id).map(BroadcastStatus::of);
+    }
+
+    private Mono<Void> createChunk(String id, BroadcastNotificationRequest request, List<Long> userIds) {
+        LocalDateTime now = LocalDateTime.now();
+        List<Notification> notifications = userIds.stream()
+                .map(userId -> Notification.builder()
+                        .userId(userId)
+                        .title(request.getTitle())
+                        .message(request.getMessage())
+                        .type(request.getType())
+                        .createdAt(now)
+                        .status(NotificationStatus.UNREAD)
+                        .targetEntityId(request.getTargetEntityId())
+                        .targetEntityType(request.getTargetEntityType())
+                        .build())
+                .toList();
+
+        return notificationService.createNotifications(notifications)
+                .map(created -> new ChunkOutcome(created, 0))
+                .onErrorResume(e -> {
+                    log.warn("Notification broadcast {}: failed to store a chunk of {} notification(s): {}", id, userIds.size(), e.getMessage());
+                    return Mono.just(new ChunkOutcome(0, userIds.size()));
+                })
+                .flatMap(outcome -> broadcastRepository.addProgress(id, outcome.notified(), outcome.failed(), LocalDateTime.now()))
+                .then();
+    }
+
+    // Streams every user ID with keyset paging, one page at a time as chunks are consumed
+    private Flux<Long> allUserIds() {
+        return userIntegrationService.getUserIdsAfter(0L, USER_ID_PAGE_SIZE)
+                .expand(page -> page.size() < USER_ID_PAGE_SIZE
+                        ? Mono.empty()
+                        : userIntegrationService.getUserIdsAfter(page.get(page.size() - 1), USER_ID_PAGE_SIZE))
+                .concatMapIterable(page -> page);
+    }
+
+    private static String truncate(String error) {
+        return error != null && error.length() > ERROR_MAX_LENGTH ? error.substring(0, ERROR_MAX_LENGTH) : error;
+    }
+
+    /**
+     * Users notified and failed by one chunk.
+     */
+    private record ChunkOutcome(long notified, long failed) {
+    }
+}
@@ -0,0 +1,95 @@
+package com.aliwudi.marketplace.backend.notification.service;
+
+import com.aliwudi.marketplace.backend.notification.dto.NotificationBadge;
+import com.aliwudi.marketplace.backend.notification.repository.NotificationCounterRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Maintains the per-user unread counters behind the notification badge.
+ *
+ * The adjust methods are meant to run in the transaction that creates, reads
+ * or deletes the notifications, so a counter always matches the rows it
+ * counts. They return the new badge values, to be pushed to SSE clients.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class NotificationCounterService {
+
+    private final NotificationCounterRepository counterRepository;
+
+    /**
+     * Returns the unread badge of a user: a primary-key lookup, seeding the
+     * counter first if the user has none yet.
+     *
+     * @param userId The ID of the user.
+     * @return A Mono emitting the badge.
+     */
+    public Mono<NotificationBadge> getBadge(Long userId) {
+        return counterRepository.findById(userId)
+                .switchIfEmpty(Mono.defer(() -> counterRepository.seedUnread(userId, 0, LocalDateTime.now())
+                        .then(counterRepository.findById(userId))))
+                .map(counter -> new NotificationBadge(userId, counter.getUnreadCount(), counter.getRevision()))
+                .defaultIfEmpty(new NotificationBadge(userId, 0, 0));
+    }
+
+    /**
+     * Changes the unread count of a user.
+     *
+     * @param userId The ID of the user.
+     * @param delta The change (negative to decrement).
+     * @return A Mono emitting the new badge of the user.
+     */
+    public Mono<NotificationBadge> adjustUnread(Long userId, long delta) {
+        LocalDateTime now = LocalDateTime.now();
+        return counterRepository.adjustUnread(userId, delta, now)
+                .flatMap(updated -> updated > 0
+                        ? Mono.just(updated)
+                        : counterRepository.seedUnread(userId, delta, now))
+                .then(counterRepository.findById(userId))
+                .map(counter -> new NotificationBadge(userId, counter.getUnreadCount(), counter.getRevision()));
+    }
+
+    /**
+     * Changes the unread counts of several users, with a few statements
+     * whatever the number of users.
+     *
+     * @param deltas The change per user ID.
+     * @return A Flux emitting the new badges of the users.
+     */
+    public Flux<NotificationBadge> adjustUnread(Map<Long, Long> deltas) {
+        if (deltas.isEmpty()) {
+            return Flux.empty();
+        }
+        LocalDateTime now = LocalDateTime.now();
+        // One update per distinct delta; in practice (broadcasts) all users get +1
+        Map<Long, List<Long>> usersByDelta = deltas.entrySet().stream()
+                .collect(Collectors.groupingBy(Map.Entry::getValue,
+                        Collectors.mapping(Map.Entry::getKey, Collectors.toList())));
+
+        return Flux.fromIterable(usersByDelta.entrySet())
+                .concatMap(group -> counterRepository.adjustUnreadAll(group.getValue(), group.getKey(), now)
+                        // Users whose counter did not exist are seeded (a no-op if all had one)
+                        .then(counterRepository.seedUnreadAll(group.getValue(), group.getKey(), now)))
+                .thenMany(counterRepository.findByUserIdIn(deltas.keySet()))
+                .map(counter -> new NotificationBadge(counter.getUserId(), counter.getUnreadCount(), counter.getRevision()));
+    }
+
+    /**
+     * Counts the given IDs, e.g. the recipients of a batch of notifications.
+     */
+    static Map<Long, Long> countByUser(Collection<Long> userIds) {
+        return userIds.stream().collect(Collectors.groupingBy(Function.identity(), Collectors.counting()));
+    }
+}
@@ -0,0 +1,322 @@
+package com.aliwudi.marketplace.backend.notification.service;
+
+import com.aliwudi.marketplace.backend.common.enumeration.NotificationChannel;
+import com.aliwudi.marketplace.backend.common.interservice.UserIntegrationService;
+import com.aliwudi.marketplace.backend.common.model.Notification;
+import com.aliwudi.marketplace.backend.common.model.NotificationDelivery;
+import com.aliwudi.marketplace.backend.common.model.User;
+import com.aliwudi.marketplace.backend.common.status.NotificationDeliveryStatus;
+import com.aliwudi.marketplace.backend.notification.repository.NotificationDeliveryRepository;
+import com.aliwudi.marketplace.backend.notification.repository.NotificationRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Sends external (email) notifications as per-user digests instead of one
+ * message per notification.
+ *
+ * Creating a notification only writes a row to the notification_deliveries
+ * outbox, due at the end of the digest window configured for its type. A
+ * poller claims due deliveries in batches, together with every other pending
+ * delivery of the same users, resolves all recipients with bulk user lookups,
+ * and sends one email per user and channel, rate-limited. Because the fan-out
+ * lives in the database, pending deliveries survive restarts, and claims
+ * abandoned by a stopped node are released after claim-timeout. A running
+ * dispatch renews its claims well within claim-timeout, however long it
+ * takes, and every update it makes is fenced by its claim token.
+ *
+ * Deliveries are marked SENDING before their digest is handed to the
+ * transport, and SENDING deliveries are never released: a digest whose
+ * outcome could not be recorded (e.g. the node stopped right after sending)
+ * is not sent twice, at the cost of possibly not being sent at all.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class NotificationDigestService {
+
+    private static final String DIGEST_TEMPLATE = "email/notification-digest";
+    private static final int USER_LOOKUP_CHUNK_SIZE = 1000; // User Service bulk lookup limit
+    private static final int MAX_ERROR_LENGTH = 500;
+    private static final int CLAIM_RENEWALS_PER_TIMEOUT = 3; // A running dispatch renews its claims this often per claim-timeout
+
+    private final NotificationDeliveryRepository deliveryRepository;
+    private final NotificationRepository notificationRepository;
+    private final UserIntegrationService userIntegrationService;
+    private final EmailNotificationService emailNotificationService;
+
+    // Digest window per notification type; a delivery waits this long for others to join it
+    @Value("${notification.digest.window.order-update:2m}")
+    private Duration orderUpdateWindow;
+
+    @Value("${notification.digest.window.account-update:0s}")
+    private Duration accountUpdateWindow;
+
+    @Value("${notification.digest.window.promotion:1h}")
+    private Duration promotionWindow;
+
+    // How often due deliveries are looked for
+    @Value("${notification.digest.poll-interval:10s}")
+    private Duration pollInterval;
+
+    // Maximum number of due deliveries claimed by one poll
+    @Value("${notification.digest.batch-size:500}")
+    private int batchSize;
+
+    // Upper bound of digests sent per second by this node
+    @Value("${notification.digest.max-sends-per-second:20}")
+    private int maxSendsPerSecond;
+
+    @Value("${notification.digest.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${notification.digest.retry-delay:5m}")
+    private Duration retryDelay;
+
+    // Claims older than this belong to a node that stopped mid-dispatch
+    @Value("${notification.digest.claim-timeout:10m}")
+    private Duration claimTimeout;
+
+    private Disposable pollLoop;
+
+    @PostConstruct
+    public void start() {
+        pollLoop = Flux.interval(pollInterval)
+                .onBackpressureDrop() // Skip a tick if the previous dispatch is still running
+                .concatMap(tick -> dispatchDue()
+                        .onErrorResume(e -> {
+                            log.error("Notification digest dispatch failed: {}", e.getMessage(), e);
+                            return Mono.empty();
+                        }))
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (pollLoop != null) {
+            pollLoop.dispose();
+        }
+    }
+
+    /**
+     * Schedules the external delivery of a notification, if its type has one.
+     * Meant to run in the transaction that saves the notification, so that a
+     * notification and its deliveries are stored together.
+     *
+     * @param notification The saved notification.
+     * @return A Mono completing once the delivery is stored.
+     */
+    public Mono<Void> schedule(Notification notification) {
+        NotificationDelivery delivery = toDelivery(notification);
+        if (delivery == null) {
+            log.debug("No external notification channel configured for type: {}", notification.getType());
+            return Mono.empty();
+        }
+        return deliveryRepository.save(delivery).then();
+    }
+
+    /**
+     * Schedules the external deliveries of a chunk of notifications with one
+     * multi-row insert. Notifications whose type has no external channel are
+     * ignored.
+     *
+     * @param notifications The saved notifications.
+     * @return A Mono completing once the deliveries are stored.
+     */
+    public Mono<Void> scheduleAll(List<Notification> notifications) {
+        List<NotificationDelivery> deliveries = notifications.stream()
+                .map(this::toDelivery)
+                .filter(Objects::nonNull)
+                .toList();
+        return deliveryRepository.insertAll(deliveries).then();
+    }
+
+    private NotificationDelivery toDelivery(Notification notification) {
+        Duration window = digestWindow(notification);
+        if (window == null) {
+            return null;
+        }
+        return NotificationDelivery.builder()
+                .notificationId(notification.getId())
+                .userId(notification.getUserId())
+                .channel(NotificationChannel.EMAIL)
+                .dispatchAfter(notification.getCreatedAt().plus(window))
+                .createdAt(notification.getCreatedAt())
+                .build();
+    }
+
+    private Duration digestWindow(Notification notification) {
+        if (notification.getType() == null) {
+            return null;
+        }
+        return switch (notification.getType()) {
+            case ORDER_UPDATE -> orderUpdateWindow;
+            case ACCOUNT_UPDATE -> accountUpdateWindow;
+            case PROMOTION -> promotionWindow;
+            default -> null;
+        };
+    }
+
+    /**
+     * Claims and sends one batch of due digests.
+     */
+    Mono<Void> dispatchDue() {
+        LocalDateTime now = LocalDateTime.now();
+        String token = UUID.randomUUID().toString();
+
+        return deliveryRepository.releaseStaleClaims(now.minus(claimTimeout))
+                .doOnNext(released -> {
+                    if (released > 0) {
+                        log.warn("Released {} notification deliveries abandoned by a stopped node", released);
+                    }
+                })
+                .then(deliveryRepository.claimDue(token, now, batchSize))
+                .filter(claimed -> claimed > 0)
+                .flatMap(claimed -> deliveryRepository.findByClaimToken(token)
+                        .map(NotificationDelivery::getUserId)
+                        .collect(Collectors.toSet()))
+                .flatMap(userIds -> deliveryRepository.claimPendingOfUsers(token, now, userIds)
+                        .thenMany(deliveryRepository.findByClaimToken(token))
+                        .collectList())
+                .flatMap(deliveries -> Mono.firstWithSignal(dispatch(token, deliveries), renewClaims(token)));
+    }
+
+    /**
+     * Renews the claims of a dispatch until it is cancelled, i.e. until the
+     * dispatch finishes.
+     */
+    private Mono<Void> renewClaims(String token) {
+        return Flux.interval(claimTimeout.dividedBy(CLAIM_RENEWALS_PER_TIMEOUT))
+                .concatMap(tick -> deliveryRepository.renewClaims(token, LocalDateTime.now())
+                        .onErrorResume(e -> {
+                            // The next renewal may still succeed within claim-timeout
+                            log.warn("Failed to renew notification delivery claims: {}", e.getMessage());
+                            return Mono.empty();
+                        }))
+                .then();
+    }
+
+    private Mono<Void> dispatch(String token, List<NotificationDelivery> deliveries) {
+        Map<DigestKey, List<NotificationDelivery>> digests = deliveries.stream()
+                .collect(Collectors.groupingBy(delivery -> new DigestKey(delivery.getUserId(), delivery.getChannel())));
+        Set<Long> userIds = deliveries.stream().map(NotificationDelivery::getUserId).collect(Collectors.toSet());
+        Set<Long> notificationIds = deliveries.stream().map(NotificationDelivery::getNotificationId).collect(Collectors.toSet());
+        log.info("Dispatching {} notification digest(s) covering {} deliveries", digests.size(), deliveries.size());
+
+        Mono<Map<Long, Notification>> notifications = notificationRepository.findAllById(notificationIds)
+                .collectMap(Notification::getId);
+        Mono<Map<Long, User>> users = Flux.fromIterable(userIds)
+                .buffer(USER_LOOKUP_CHUNK_SIZE)
+                .concatMap(userIntegrationService::getUsersByIds) // No caller here: authenticated with the service account token
+                .collectMap(User::getId);
+
+        return Mono.zip(notifications, users)
+                .flatMap(lookups -> Flux.fromIterable(digests.entrySet())
+                        .buffer(Math.max(1, maxSendsPerSecond))
+                        // Each second sends at most maxSendsPerSecond digests
+                        .concatMap(chunk -> Mono.when(
+                                Flux.fromIterable(chunk)
+                                        .flatMap(digest -> send(token, digest.getKey(), digest.getValue(), lookups.getT1(), lookups.getT2())),
+                                Mono.delay(Duration.ofSeconds(1))))
+                        .then())
+                .onErrorResume(e -> {
+                    // Recipients could not be resolved; try the whole batch again later
+                    log.warn("Could not prepare notification digests, will retry: {}", e.getMessage());
+                    return markFailedAttempt(token, deliveries, e);
+                });
+    }
+
+    private Mono<Void> send(String token, DigestKey key, List<NotificationDelivery> deliveries,
+                            Map<Long, Notification> notificationsById, Map<Long, User> usersById) {
+        User user = usersById.get(key.userId());
+        List<Notification> notifications = deliveries.stream()
+                .map(delivery -> notificationsById.get(delivery.getNotificationId()))
+                .filter(Objects::nonNull)
+                .sorted(Comparator.comparing(Notification::getCreatedAt))
+                .toList();
+
+        if (user == null || user.getEmail() == null || user.getEmail().isBlank() || notifications.isEmpty()) {
+            log.debug("Skipping {} digest of user {}: no recipient address or notifications", key.channel(), key.userId());
+            return markCompleted(token, deliveries, NotificationDeliveryStatus.SKIPPED);
+        }
+
+        String subject = notifications.size() == 1
+                ? notifications.get(0).getTitle()
+                : String.format("You have %d new notifications", notifications.size());
+        Map<String, Object> templateVariables = new HashMap<>();
+        templateVariables.put("name", user.getFirstName());
+        templateVariables.put("notifications", notifications);
+
+        return deliveryRepository.markSending(ids(deliveries), token)
+                .flatMap(marked -> {
+                    if (marked == deliveries.size()) {
+                        return emailNotificationService.sendTemplatedEmail(user.getEmail(), subject, DIGEST_TEMPLATE, templateVariables)
+                                .thenReturn(true);
+                    }
+                    // Part of the claim was released and taken over; whatever is still ours goes out in a later digest
+                    log.warn("Lost the claim of {} of {} deliveries in the digest of user {}, not sending it",
+                            deliveries.size() - marked, deliveries.size(), key.userId());
+                    return markFailedAttempt(token, deliveries, new IllegalStateException("Claim lost before sending"))
+                            .thenReturn(false);
+                })
+                .onErrorResume(e -> {
+                    log.warn("Failed to send notification digest to user {}: {}", key.userId(), e.getMessage());
+                    return markFailedAttempt(token, deliveries, e).thenReturn(false);
+                })
+                .filter(sent -> sent)
+                .doOnNext(sent -> log.info("Notification digest of {} notification(s) sent to user {}", notifications.size(), key.userId()))
+                .flatMap(sent -> markCompleted(token, deliveries, NotificationDeliveryStatus.SENT));
+    }
+
+    private Mono<Void> markCompleted(String token, List<NotificationDelivery> deliveries, NotificationDeliveryStatus status) {
+        return deliveryRepository.markCompleted(ids(deliveries), token, status.name(), LocalDateTime.now())
+                .onErrorResume(e -> {
+                    // Never turn a sent digest into a failed attempt; the deliveries stay SENDING and are not sent again
+                    log.error("Failed to record completed notification deliveries: {}", e.getMessage(), e);
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    private Mono<Void> markFailedAttempt(String token, List<NotificationDelivery> deliveries, Throwable error) {
+        String message = String.valueOf(error.getMessage());
+        if (message.length() > MAX_ERROR_LENGTH) {
+            message = message.substring(0, MAX_ERROR_LENGTH);
+        }
+        return deliveryRepository.markFailedAttempt(ids(deliveries), token, LocalDateTime.now().plus(retryDelay), maxAttempts, message)
+                .onErrorResume(e -> {
+                    // Deliveries still DISPATCHING are released after claim-timeout and retried then
+                    log.error("Failed to record failed notification delivery attempt: {}", e.getMessage(), e);
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    private static List<Long> ids(List<NotificationDelivery> deliveries) {
+        return deliveries.stream().map(NotificationDelivery::getId).toList();
+    }
+
+    /**
+     * One digest: all pending deliveries of a user on a channel.
+     */
+    private record DigestKey(Long userId, NotificationChannel channel) {
+    }
+}
@@ -0,0 +1,99 @@
+package com.aliwudi.marketplace.backend.notification.service;
+
+import com.aliwudi.marketplace.backend.common.model.Notification;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Bounded per-user ring buffers of the most recent notifications routed to
+ * this node, used to replay what an SSE client missed while reconnecting.
+ *
+ * A user's buffer exists from their first connection on this node until their
+ * presence here expires (see ClusterNotificationRelay), and receives every
+ * notification routed to them in between. So if the buffer still holds the
+ * client's Last-Event-ID, everything after it is in the buffer too; otherwise
+ * the caller falls back to the database.
+ */
+@Component
+public class NotificationReplayBuffer {
+
+    private final Map<Long, Deque<Notification>> buffers = new ConcurrentHashMap<>();
+    private final int capacity;
+
+    public NotificationReplayBuffer(@Value("${notification.sse.replay.buffer-size:32}") int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Starts buffering notifications for a user, if not already doing so.
+     *
+     * @param userId The ID of the user.
+     */
+    public void track(Long userId) {
+        buffers.computeIfAbsent(userId, id -> new ArrayDeque<>(capacity));
+    }
+
+    /**
+     * Stops buffering notifications for a user and drops their buffer.
+     *
+     * @param userId The ID of the user.
+     */
+    public void forget(Long userId) {
+        buffers.remove(userId);
+    }
+
+    /**
+     * Appends a notification to its recipient's buffer, evicting the oldest
+     * entry when full. Ignored for users that are not tracked.
+     *
+     * @param notification The notification routed to this node.
+     */
+    public void record(Notification notification) {
+        Deque<Notification> buffer = buffers.get(notification.getUserId());
+        if (buffer == null) {
+            return;
+        }
+        synchronized (buffer) {
+            if (buffer.size() >= capacity) {
+                buffer.pollFirst();
+            }
+            buffer.addLast(notification);
+        }
+    }
+
+    /**
+     * Returns the notifications a user received after the given one, if the
+     * buffer can tell for sure.
+     *
+     * @param userId The ID of the user.
+     * @param lastEventId The ID of the last notification the client received.
+     * @return The newer notifications, oldest first, or empty if the buffer no
+     * longer holds lastEventId.
+     */
+    public Optional<List<Notification>> after(Long userId, Long lastEventId) {
+        Deque<Notification> buffer = buffers.get(userId);
+        if (buffer == null) {
+            return Optional.empty();
+        }
+        synchronized (buffer) {
+            List<Notification> newer = new ArrayList<>();
+            boolean found = false;
+            for (Notification notification : buffer) {
+                if (found) {
+                    newer.add(notification);
+                } else if (lastEventId.equals(notification.getId())) {
+                    found = true;
+                }
+            }
+            return found ? Optional.of(newer) : Optional.empty();
+        }
+    }
+}
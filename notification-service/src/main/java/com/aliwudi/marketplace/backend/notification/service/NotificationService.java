@@ -2,22 +2,24 @@ package com.aliwudi.marketplace.backend.notification.service;
 
 import com.aliwudi.marketplace.backend.common.model.Notification;
 import com.aliwudi.marketplace.backend.notification.repository.NotificationRepository;
+import com.aliwudi.marketplace.backend.notification.dto.NotificationBadge;
 import com.aliwudi.marketplace.backend.notification.dto.NotificationRequest;
 import com.aliwudi.marketplace.backend.common.exception.NotificationNotFoundException;
 import com.aliwudi.marketplace.backend.common.enumeration.NotificationType;
 import com.aliwudi.marketplace.backend.common.status.NotificationStatus;
 import com.aliwudi.marketplace.backend.common.response.ApiResponseMessages;
-import com.aliwudi.marketplace.backend.common.interservice.UserIntegrationService;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.reactive.TransactionalOperator;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
-import reactor.core.publisher.Sinks;
-import reactor.core.scheduler.Schedulers;
 
 // NEW: Spring Security Imports for Reactive Context
 import org.springframework.security.core.Authentication;
@@ -25,6 +27,11 @@ import org.springframework.security.core.context.ReactiveSecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails; // Common interface for principal
 
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Service class for managing Notifications. Handles creation, retrieval,
@@ -38,18 +45,32 @@ import java.time.LocalDateTime;
 public class NotificationService {
 
     private final NotificationRepository notificationRepository;
-    private final UserIntegrationService usertegrationService; // To get user's email/phone for external notifications
+    private final NotificationDigestService notificationDigestService; // Schedules email delivery in per-user digests
+    private final NotificationCounterService notificationCounterService; // Unread counters behind the badge
+    private final TransactionalOperator transactionalOperator;
     // private final EmailService emailService; // Uncomment and inject once implemented
     // private final SmsService smsService;     // Uncomment and inject once implemented
 
-    // Sinks.Many is used as a hot publisher to broadcast notifications to multiple subscribers (SSE clients).
-    private final Sinks.Many<Notification> notificationsSink = Sinks.many().multicast().onBackpressureBuffer();
+    private static final String SSE_EVENT_NOTIFICATION = "notification";
+    private static final String SSE_EVENT_BADGE = "badge";
+    private static final String SSE_HEARTBEAT_COMMENT = "heartbeat";
+
+    // Routes notifications to the SSE connections of their recipient only
+    private final NotificationStreamRegistry streamRegistry;
+    private final ClusterNotificationRelay notificationRelay;
+    private final NotificationReplayBuffer replayBuffer;
+
+    // Maximum number of missed notifications replayed on reconnect
+    @Value("${notification.sse.replay.max-events:100}")
+    private int maxReplayEvents;
 
     /**
      * Creates and stores a new notification, then broadcasts it for real-time
-     * delivery. This operation is transactional. Additionally, it determines if
-     * an email or SMS notification should be sent based on the notification
-     * type and user preferences (if implemented).
+     * delivery. This operation is transactional. Additionally, it schedules
+     * the email delivery of ORDER_UPDATE, ACCOUNT_UPDATE and PROMOTION
+     * notifications, which are sent in per-user digests (see
+     * NotificationDigestService), and increments the recipient's unread
+     * counter.
      *
      * @param request The DTO containing data for the new notification.
      * @return A Mono emitting the created Notification.
@@ -70,84 +91,51 @@ public class NotificationService {
                 .build();
 
         return notificationRepository.save(notification)
-                .doOnSuccess(savedNotification -> {
-                    log.info("Notification created successfully with ID: {}", savedNotification.getId());
-
-                    // Emit to SSE sink for real-time in-app updates
-                    notificationsSink.emitNext(savedNotification, Sinks.EmitFailureHandler.FAIL_FAST);
-                    log.debug("Notification ID {} emitted to SSE sink.", savedNotification.getId());
-
-                    // Trigger external notifications (Email/SMS) asynchronously
-                    // We fetch the user details (email, phone) to send these notifications.
-                    usertegrationService.getUserById(savedNotification.getUserId())
-                            .doOnNext(user -> {
-                                switch (savedNotification.getType()) {
-                                    case ORDER_UPDATE:
-                                    case ACCOUNT_UPDATE:
-                                        // Send email for important updates
-                                        if (user.getEmail() != null && !user.getEmail().isBlank()) {
-                                            sendEmailNotification(user.getEmail(), savedNotification.getTitle(), savedNotification.getMessage())
-                                                    .subscribeOn(Schedulers.boundedElastic()) // Offload to a blocking-friendly scheduler
-                                                    .subscribe(
-                                                            success -> log.info("Email notification sent for user {}: {}", user.getId(), savedNotification.getTitle()),
-                                                            error -> log.error("Failed to send email for user {}: {}", user.getId(), error.getMessage())
-                                                    );
-                                        }
-                                        // Example: Send SMS for critical order updates (e.g., "delivered")
-                                        // This requires a 'phone_number' field in your User model
-                                        // if (user.getPhoneNumber() != null && !user.getPhoneNumber().isBlank()) { // Assuming user has getPhoneNumber()
-                                        //     sendSmsNotification(user.getPhoneNumber(), savedNotification.getMessage())
-                                        //             .subscribeOn(Schedulers.boundedElastic())
-                                        //             .subscribe(
-                                        //                 success -> log.info("SMS notification sent for user {}: {}", user.getId(), savedNotification.getTitle()),
-                                        //                 error -> log.error("Failed to send SMS for user {}: {}", user.getId(), error.getMessage())
-                                        //             );
-                                        // }
-                                        break;
-                                    case PROMOTION:
-                                        // Example: Send email for promotions, perhaps not SMS
-                                        if (user.getEmail() != null && !user.getEmail().isBlank()) {
-                                            sendEmailNotification(user.getEmail(), savedNotification.getTitle(), savedNotification.getMessage())
-                                                    .subscribeOn(Schedulers.boundedElastic())
-                                                    .subscribe(
-                                                            success -> log.info("Email notification sent for user {}: {}", user.getId(), savedNotification.getTitle()),
-                                                            error -> log.error("Failed to send email for user {}: {}", user.getId(), error.getMessage())
-                                                    );
-                                        }
-                                        break;
-                                    // Add more cases for other notification types
-                                    default:
-                                        log.debug("No external notification channel configured for type: {}", savedNotification.getType());
-                                        break;
-                                }
-                            })
-                            .subscribe(
-                                    user -> log.debug("User details fetched for external notifications: {}", user.getId()),
-                                    error -> log.warn("Could not fetch user details for external notifications (ID: {}): {}", savedNotification.getUserId(), error.getMessage())
-                            );
-                })
+                // Email delivery is scheduled in the same transaction and sent later as part of a digest
+                .flatMap(savedNotification -> notificationDigestService.schedule(savedNotification)
+                        .then(notificationCounterService.adjustUnread(savedNotification.getUserId(), 1))
+                        .map(badge -> {
+                            log.info("Notification created successfully with ID: {}", savedNotification.getId());
+
+                            // Deliver to the recipient's SSE connections (on any node) for real-time in-app updates
+                            notificationRelay.publish(savedNotification);
+                            notificationRelay.publishBadge(badge);
+                            return savedNotification;
+                        }))
                 .doOnError(e -> log.error("Error creating notification for userId {}: {}", request.getUserId(), e.getMessage(), e));
     }
 
     /**
-     * Placeholder method for sending an email notification. In a real
-     * application, this would call your EmailService. Offloaded to
-     * Schedulers.boundedElastic() to prevent blocking.
+     * Stores a chunk of notifications with one multi-row insert, schedules
+     * their email deliveries and updates the unread counters the same way, and
+     * broadcasts them for real-time delivery. This operation is transactional:
+     * a chunk is stored entirely or not at all, and only published once
+     * committed, so SSE clients never see notifications that were rolled back.
+     *
+     * @param notifications The unsaved notifications.
+     * @return A Mono emitting the number of notifications created.
      */
-    private Mono<Void> sendEmailNotification(String to, String subject, String body) {
-        return Mono.fromRunnable(() -> {
-            log.info("Simulating sending email to: {} with subject: {}", to, subject);
-            // Implement actual call to your EmailService here
-            // e.g., emailService.sendEmail(to, subject, body);
-            try {
-                // Simulate network delay or external API call
-                Thread.sleep(500); // Simulate blocking I/O
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                log.error("Email sending simulation interrupted: {}", e.getMessage());
-            }
-            log.info("Simulated email sent to: {}", to);
-        }).then(); // Convert to Mono<Void>
+    public Mono<Integer> createNotifications(List<Notification> notifications) {
+        return notificationRepository.insertAll(notifications)
+                .collectList()
+                .flatMap(savedNotifications -> notificationDigestService.scheduleAll(savedNotifications)
+                        .thenMany(notificationCounterService.adjustUnread(NotificationCounterService.countByUser(
+                                savedNotifications.stream().map(Notification::getUserId).toList())))
+                        .collectList()
+                        .map(badges -> new CreatedChunk(savedNotifications, badges)))
+                .as(transactionalOperator::transactional)
+                .map(chunk -> {
+                    notificationRelay.publishAll(chunk.notifications());
+                    notificationRelay.publishBadges(chunk.badges());
+                    return chunk.notifications().size();
+                });
+    }
+
+    /**
+     * A stored chunk of notifications and the badges it changed, published
+     * once committed.
+     */
+    private record CreatedChunk(List<Notification> notifications, List<NotificationBadge> badges) {
     }
 
     /**
@@ -194,6 +182,9 @@ public class NotificationService {
                         notification.setStatus(NotificationStatus.READ);
                         notification.setReadAt(LocalDateTime.now()); // Set read timestamp
                         return notificationRepository.save(notification)
+                                .flatMap(updatedNotification -> notificationCounterService.adjustUnread(userId, -1)
+                                        .doOnNext(notificationRelay::publishBadge)
+                                        .thenReturn(updatedNotification))
                                 .doOnSuccess(updatedNotification -> log.info("Notification ID: {} marked as READ.", updatedNotification.getId()))
                                 .doOnError(e -> log.error("Error marking notification ID {} as read: {}", notificationId, e.getMessage(), e));
                     }
@@ -219,7 +210,11 @@ public class NotificationService {
                 .switchIfEmpty(Mono.error(new NotificationNotFoundException(ApiResponseMessages.NOTIFICATION_NOT_FOUND + notificationId)))
                 .filter(notification -> notification.getUserId().equals(userId)) // Ensure user owns the notification
                 .switchIfEmpty(Mono.error(new NotificationNotFoundException(ApiResponseMessages.NOTIFICATION_NOT_FOUND_FOR_USER + notificationId + " and user " + userId)))
-                .flatMap(notificationRepository::delete)
+                .flatMap(notification -> notificationRepository.delete(notification)
+                        // Deleting an unread notification lowers the badge
+                        .then(notification.getStatus() == NotificationStatus.UNREAD
+                                ? notificationCounterService.adjustUnread(userId, -1).doOnNext(notificationRelay::publishBadge).then()
+                                : Mono.empty()))
                 .doOnSuccess(v -> log.info("Notification ID: {} deleted successfully.", notificationId))
                 .doOnError(e -> log.error("Error deleting notification ID {}: {}", notificationId, e.getMessage(), e));
     }
@@ -313,26 +308,118 @@ public class NotificationService {
      */
     public Mono<Long> countNotificationsForUserByStatus(Long userId, NotificationStatus status) {
         log.info("Counting notifications for user ID: {} with status: {}", userId, status);
-        return notificationRepository.countByUserIdAndStatus(userId, status)
+        Mono<Long> statusCount = status == NotificationStatus.UNREAD
+                ? notificationCounterService.getBadge(userId).map(NotificationBadge::getUnreadCount) // Maintained counter, no COUNT(*)
+                : notificationRepository.countByUserIdAndStatus(userId, status);
+        return statusCount
                 .doOnSuccess(count -> log.info("Notifications for user {} with status {}: {}", userId, status, count))
                 .doOnError(e -> log.error("Error counting notifications for user ID {} by status {}: {}", userId, status, e.getMessage(), e));
     }
 
+    /**
+     * Returns the unread badge of a user, from the maintained counter.
+     *
+     * @param userId The ID of the user.
+     * @return A Mono emitting the badge.
+     */
+    public Mono<NotificationBadge> getBadge(Long userId) {
+        return notificationCounterService.getBadge(userId)
+                .doOnError(e -> log.error("Error retrieving notification badge for user ID {}: {}", userId, e.getMessage(), e));
+    }
+
     /**
      * Provides a Flux of new notifications for real-time delivery via SSE.
      * Clients can subscribe to this stream to receive updates as they happen.
-     * Filters notifications to only include those for the subscribed userId.
+     * Only the subscribed user's notifications are routed to the stream, and
+     * heartbeat comments are interleaved to keep idle connections open.
+     *
+     * Every event carries the notification ID as its SSE id. A client that
+     * reconnects with a Last-Event-ID first receives what it missed, from the
+     * in-memory replay buffer when possible, otherwise from the database.
+     *
+     * The stream starts with the user's current unread badge and carries a
+     * badge event (without id, so Last-Event-ID is unaffected) whenever it
+     * changes.
      *
      * @param userId The ID of the user to stream notifications for.
-     * @return A Flux emitting Notification objects.
+     * @param lastEventId The Last-Event-ID sent by a reconnecting client (may be null).
+     * @return A Flux emitting notification and badge events, and heartbeats.
      */
-    public Flux<Notification> getRealTimeNotificationsStream(Long userId) {
+    public Flux<ServerSentEvent<Object>> getRealTimeNotificationsStream(Long userId, String lastEventId) {
         log.info("Subscribing to real-time notifications for user ID: {}", userId);
-        return notificationsSink.asFlux()
-                .filter(notification -> notification.getUserId().equals(userId)) // Filter for specific user
+        Long lastSeenId = parseLastEventId(lastEventId);
+
+        // Live and replayed notifications may overlap while the replay runs; drop duplicates
+        Set<Long> seenDuringReplay = ConcurrentHashMap.newKeySet();
+        AtomicBoolean replaying = new AtomicBoolean(lastSeenId != null);
+        Flux<Notification> replayed = lastSeenId == null
+                ? Flux.empty()
+                : getMissedNotifications(userId, lastSeenId)
+                        .filter(notification -> seenDuringReplay.add(notification.getId()))
+                        .doFinally(signal -> {
+                            replaying.set(false);
+                            seenDuringReplay.clear();
+                        });
+        NotificationStreamRegistry.StreamConnection connection = streamRegistry.connect(userId);
+        Flux<Notification> live = connection.notifications()
+                .filter(notification -> !replaying.get() || seenDuringReplay.add(notification.getId()));
+
+        Flux<ServerSentEvent<Object>> notifications = Flux.merge(live, replayed)
+                .map(notification -> ServerSentEvent.<Object>builder(notification)
+                        .id(String.valueOf(notification.getId()))
+                        .event(SSE_EVENT_NOTIFICATION)
+                        .build());
+
+        // Updates relayed from other nodes can arrive out of order; never show an older badge
+        AtomicLong shownRevision = new AtomicLong(-1);
+        Flux<ServerSentEvent<Object>> badges = Flux.concat(
+                        notificationCounterService.getBadge(userId)
+                                .onErrorResume(e -> {
+                                    log.warn("Could not load the notification badge of user {}: {}", userId, e.getMessage());
+                                    return Mono.empty(); // Still open the live stream
+                                }),
+                        connection.badges())
+                .filter(badge -> shownRevision.getAndAccumulate(badge.getRevision(), Math::max) < badge.getRevision())
+                .map(badge -> ServerSentEvent.<Object>builder(badge)
+                        .event(SSE_EVENT_BADGE)
+                        .build());
+        Flux<ServerSentEvent<Object>> heartbeats = streamRegistry.heartbeats()
+                .map(tick -> ServerSentEvent.<Object>builder().comment(SSE_HEARTBEAT_COMMENT).build());
+
+        return Flux.merge(notifications, badges, heartbeats) // Cancelling the connection stops its heartbeats too
                 .doOnSubscribe(subscription -> log.info("New SSE subscriber for user ID: {}", userId))
                 .doOnCancel(() -> log.info("SSE subscription cancelled for user ID: {}", userId))
-                .doOnError(e -> log.error("Error in SSE stream for user ID {}: {}", userId, e.getMessage(), e))
-                .publishOn(Schedulers.boundedElastic()); // Ensure operations on elements are not on event loop
+                .doOnError(e -> log.error("Error in SSE stream for user ID {}: {}", userId, e.getMessage(), e));
+    }
+
+    /**
+     * Notifications of a user created after the given one, oldest first.
+     */
+    private Flux<Notification> getMissedNotifications(Long userId, Long lastSeenId) {
+        return replayBuffer.after(userId, lastSeenId)
+                .map(missed -> {
+                    log.debug("Replaying {} notification(s) to user {} from memory.", missed.size(), userId);
+                    return Flux.fromIterable(missed);
+                })
+                .orElseGet(() -> {
+                    log.debug("Replaying notifications after ID {} to user {} from the database.", lastSeenId, userId);
+                    return notificationRepository.findByUserIdAndIdGreaterThanOrderByIdAsc(userId, lastSeenId, PageRequest.of(0, maxReplayEvents));
+                })
+                .onErrorResume(e -> {
+                    log.warn("Could not replay missed notifications to user {}: {}", userId, e.getMessage());
+                    return Flux.empty(); // Still open the live stream
+                });
+    }
+
+    private Long parseLastEventId(String lastEventId) {
+        if (lastEventId == null || lastEventId.isBlank()) {
+            return null;
+        }
+        try {
+            return Long.valueOf(lastEventId.trim());
+        } catch (NumberFormatException e) {
+            log.debug("Ignoring malformed Last-Event-ID: {}", lastEventId);
+            return null;
+        }
     }
 }
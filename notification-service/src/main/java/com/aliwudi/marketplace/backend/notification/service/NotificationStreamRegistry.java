@@ -0,0 +1,234 @@
+package com.aliwudi.marketplace.backend.notification.service;
+
+import com.aliwudi.marketplace.backend.common.model.Notification;
+import com.aliwudi.marketplace.backend.notification.dto.NotificationBadge;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Routing table of the SSE connections open on this node, keyed by user ID.
+ *
+ * A notification is handed only to the connections of its recipient (a map
+ * lookup), instead of being offered to every connected client and filtered.
+ * Each connection has its own small sink and a bounded buffer; when a slow
+ * client falls behind, the configured overflow policy decides what to drop,
+ * so one client can never hold memory for everybody else's events.
+ * Badge updates have a separate one-slot buffer per connection: only the
+ * latest unread count of a user matters.
+ * A single shared timer produces the heartbeats for all connections.
+ */
+@Component
+@Slf4j
+public class NotificationStreamRegistry {
+
+    /**
+     * What happens when a connection's buffer is full.
+     */
+    public enum OverflowPolicy {
+        DROP_OLDEST, // Discard the oldest buffered notification
+        DROP_LATEST, // Discard the incoming notification
+        LATEST // Keep only the most recent notification
+    }
+
+    /**
+     * Told when a user gets their first connection on this node, and when
+     * their last one closes.
+     */
+    public interface PresenceListener {
+
+        void onUserConnected(Long userId);
+
+        void onUserDisconnected(Long userId);
+    }
+
+    private final Map<Long, Set<Connection>> connectionsByUser = new ConcurrentHashMap<>();
+    private final AtomicInteger connectionCount = new AtomicInteger();
+
+    private final NotificationReplayBuffer replayBuffer;
+    private final int bufferSize;
+    private final OverflowPolicy overflowPolicy;
+    private final Flux<Long> heartbeats;
+    private volatile PresenceListener presenceListener;
+
+    public NotificationStreamRegistry(NotificationReplayBuffer replayBuffer,
+                                      @Value("${notification.sse.buffer-size:64}") int bufferSize,
+                                      @Value("${notification.sse.overflow-policy:DROP_OLDEST}") OverflowPolicy overflowPolicy,
+                                      @Value("${notification.sse.heartbeat-interval:25s}") Duration heartbeatInterval) {
+        this.replayBuffer = replayBuffer;
+        this.bufferSize = bufferSize;
+        this.overflowPolicy = overflowPolicy;
+        this.heartbeats = Flux.interval(heartbeatInterval).share(); // One timer for all connections
+    }
+
+    /**
+     * The streams of one connection. The connection is registered when its
+     * notifications are subscribed to, and unregistered as soon as that
+     * subscription is cancelled or terminates.
+     *
+     * @param notifications The user's notifications as they are published.
+     * @param badges The user's unread badge whenever it changes.
+     */
+    public record StreamConnection(Flux<Notification> notifications, Flux<NotificationBadge> badges) {
+    }
+
+    /**
+     * Opens a connection for a user.
+     *
+     * @param userId The ID of the connected user.
+     * @return The streams of the connection.
+     */
+    public StreamConnection connect(Long userId) {
+        Connection connection = new Connection(Sinks.many().unicast().onBackpressureBuffer(),
+                Sinks.many().unicast().onBackpressureBuffer());
+        Flux<Notification> notifications = connection.sink().asFlux();
+        notifications = switch (overflowPolicy) {
+            case DROP_OLDEST -> notifications.onBackpressureBuffer(bufferSize,
+                    dropped -> log.debug("SSE buffer full for user {}, dropped notification {}", userId, dropped.getId()),
+                    BufferOverflowStrategy.DROP_OLDEST);
+            case DROP_LATEST -> notifications.onBackpressureBuffer(bufferSize,
+                    dropped -> log.debug("SSE buffer full for user {}, dropped notification {}", userId, dropped.getId()),
+                    BufferOverflowStrategy.DROP_LATEST);
+            case LATEST -> notifications.onBackpressureLatest();
+        };
+
+        notifications = notifications
+                .doOnSubscribe(subscription -> {
+                    replayBuffer.track(userId);
+                    boolean[] firstConnection = new boolean[1];
+                    connectionsByUser.compute(userId, (id, connections) -> {
+                        firstConnection[0] = connections == null;
+                        Set<Connection> userConnections = connections != null ? connections : ConcurrentHashMap.newKeySet();
+                        userConnections.add(connection);
+                        return userConnections;
+                    });
+                    log.debug("SSE connection opened for user {} ({} open on this node)", userId, connectionCount.incrementAndGet());
+                    PresenceListener listener = presenceListener;
+                    if (firstConnection[0] && listener != null) {
+                        listener.onUserConnected(userId);
+                    }
+                })
+                .doFinally(signal -> {
+                    boolean[] lastConnection = new boolean[1];
+                    connectionsByUser.computeIfPresent(userId, (id, connections) -> {
+                        connections.remove(connection);
+                        lastConnection[0] = connections.isEmpty();
+                        return lastConnection[0] ? null : connections;
+                    });
+                    log.debug("SSE connection closed for user {} ({} open on this node)", userId, connectionCount.decrementAndGet());
+                    PresenceListener listener = presenceListener;
+                    if (lastConnection[0] && listener != null) {
+                        listener.onUserDisconnected(userId);
+                    }
+                });
+        return new StreamConnection(notifications, connection.badgeSink().asFlux().onBackpressureLatest());
+    }
+
+    /**
+     * Delivers a notification to every open connection of its recipient on
+     * this node. Does nothing if the recipient is not connected here.
+     *
+     * @param notification The notification to deliver.
+     * @return true if at least one connection of the recipient is open on this node.
+     */
+    public boolean publish(Notification notification) {
+        replayBuffer.record(notification); // Kept for clients that reconnect with Last-Event-ID
+        Set<Connection> connections = connectionsByUser.get(notification.getUserId());
+        if (connections == null) {
+            return false;
+        }
+        for (Connection connection : connections) {
+            // Retry only on concurrent emission; other failures mean the connection is closing
+            connection.sink().emitNext(notification,
+                    (signal, result) -> result == Sinks.EmitResult.FAIL_NON_SERIALIZED);
+        }
+        return !connections.isEmpty();
+    }
+
+    /**
+     * Delivers an unread badge update to every open connection of its user on
+     * this node. Does nothing if the user is not connected here.
+     *
+     * @param badge The new badge.
+     */
+    public void publishBadge(NotificationBadge badge) {
+        Set<Connection> connections = connectionsByUser.get(badge.getUserId());
+        if (connections == null) {
+            return;
+        }
+        for (Connection connection : connections) {
+            connection.badgeSink().emitNext(badge,
+                    (signal, result) -> result == Sinks.EmitResult.FAIL_NON_SERIALIZED);
+        }
+    }
+
+    /**
+     * @param userId The ID of a user.
+     * @return true if the user has at least one open connection on this node.
+     */
+    public boolean isConnected(Long userId) {
+        return connectionsByUser.containsKey(userId);
+    }
+
+    /**
+     * @return The IDs of all users with at least one open connection on this node.
+     */
+    public Set<Long> getConnectedUserIds() {
+        return connectionsByUser.keySet();
+    }
+
+    /**
+     * Registers the (single) listener for presence changes on this node.
+     *
+     * @param presenceListener The listener.
+     */
+    public void setPresenceListener(PresenceListener presenceListener) {
+        this.presenceListener = presenceListener;
+    }
+
+    /**
+     * @return The shared heartbeat ticks, for keeping idle connections open
+     * through proxies and detecting dead clients.
+     */
+    public Flux<Long> heartbeats() {
+        return heartbeats;
+    }
+
+    /**
+     * @return The number of SSE connections open on this node.
+     */
+    public int getConnectionCount() {
+        return connectionCount.get();
+    }
+
+    /**
+     * One SSE connection. Identity-based equality, so a user can hold several.
+     */
+    private static final class Connection {
+
+        private final Sinks.Many<Notification> sink;
+        private final Sinks.Many<NotificationBadge> badgeSink;
+
+        private Connection(Sinks.Many<Notification> sink, Sinks.Many<NotificationBadge> badgeSink) {
+            this.sink = sink;
+            this.badgeSink = badgeSink;
+        }
+
+        Sinks.Many<Notification> sink() {
+            return sink;
+        }
+
+        Sinks.Many<NotificationBadge> badgeSink() {
+            return badgeSink;
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package com.aliwudi.marketplace.backend.notification.service;
+
+import com.aliwudi.marketplace.backend.common.exception.NotificationException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.angus.mail.smtp.SMTPSendFailedException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends emails over a small pool of persistent SMTP connections.
+ *
+ * Each of the pool-size worker threads owns one SMTP session and sends queued
+ * messages on it one after another, so a burst of emails pays the connect,
+ * EHLO and AUTH round trips once per worker instead of once per message.
+ * A session is closed after it has been idle for idle-timeout, renewed after
+ * max-messages-per-connection messages, and checked with NOOP before reuse
+ * when it has been idle for a second or more. A send is retried once on a
+ * fresh session only if it failed before any content was sent (the connect
+ * failed, or the server refused or dropped the session on MAIL FROM or DATA);
+ * once the message may have reached the server, the failure is reported
+ * instead, so that no email goes out twice. The queue in front of the workers
+ * is bounded; when it is full, sends fail fast instead of piling up in memory.
+ */
+@Component
+@Slf4j
+public class SmtpDeliveryEngine {
+
+    private static final String METRIC_QUEUE_DEPTH = "notification.email.queue.depth";
+    private static final String METRIC_SEND = "notification.email.send";
+    private static final String METRIC_QUEUE_WAIT = "notification.email.queue.wait";
+    private static final long POLL_INTERVAL_MILLIS = 1000;
+    private static final long PROBE_AFTER_IDLE_NANOS = TimeUnit.SECONDS.toNanos(1); // Sessions idle for longer are checked before use
+
+    private final JavaMailSenderImpl mailSender;
+    private final BlockingQueue<PendingEmail> queue;
+    private final int poolSize;
+    private final Timer sendSuccessTimer;
+    private final Timer sendFailureTimer;
+    private final Timer queueWaitTimer;
+
+    // Idle sessions are closed after this long, before the server times them out
+    @Value("${notification.email.smtp.idle-timeout:30s}")
+    private Duration idleTimeout;
+
+    // A session is renewed after this many messages; many servers cap messages per session
+    @Value("${notification.email.smtp.max-messages-per-connection:100}")
+    private int maxMessagesPerConnection;
+
+    private ExecutorService workers;
+    private volatile boolean running;
+
+    public SmtpDeliveryEngine(JavaMailSenderImpl mailSender,
+                              MeterRegistry meterRegistry,
+                              @Value("${notification.email.smtp.pool-size:4}") int poolSize,
+                              @Value("${notification.email.smtp.queue-capacity:10000}") int queueCapacity) {
+        this.mailSender = mailSender;
+        this.poolSize = poolSize;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        Gauge.builder(METRIC_QUEUE_DEPTH, queue, BlockingQueue::size)
+                .description("Emails waiting for an SMTP connection")
+                .register(meterRegistry);
+        this.sendSuccessTimer = Timer.builder(METRIC_SEND)
+                .description("Latency of SMTP message transfers")
+                .tag("outcome", "success")
+                .register(meterRegistry);
+        this.sendFailureTimer = Timer.builder(METRIC_SEND)
+                .description("Latency of SMTP message transfers")
+                .tag("outcome", "failure")
+                .register(meterRegistry);
+        this.queueWaitTimer = Timer.builder(METRIC_QUEUE_WAIT)
+                .description("Time emails spend queued before an SMTP connection picks them up")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("smtp-delivery-");
+        threadFactory.setDaemon(true);
+        workers = Executors.newFixedThreadPool(poolSize, threadFactory);
+        for (int i = 0; i < poolSize; i++) {
+            workers.execute(this::runWorker);
+        }
+        log.info("SMTP delivery engine started with {} connection(s) to {}:{}", poolSize, mailSender.getHost(), mailSender.getPort());
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        workers.shutdown();
+        if (!workers.awaitTermination(10, TimeUnit.SECONDS)) {
+            workers.shutdownNow();
+        }
+        // Whatever is still queued fails, so its message is redelivered rather than lost
+        List<PendingEmail> abandoned = new ArrayList<>();
+        queue.drainTo(abandoned);
+        abandoned.forEach(email -> email.result().completeExceptionally(
+                new NotificationException("Email delivery engine shut down before sending to " + email.recipient())));
+    }
+
+    /**
+     * Queues a message for delivery.
+     *
+     * @param message The fully built message.
+     * @param recipient The recipient, for logging and errors.
+     * @return A Mono completing once the server accepted the message.
+     */
+    public Mono<Void> send(MimeMessage message, String recipient) {
+        return Mono.defer(() -> {
+            PendingEmail email = new PendingEmail(message, recipient, new CompletableFuture<>(), System.nanoTime());
+            if (!running || !queue.offer(email)) {
+                return Mono.error(new NotificationException("Email delivery queue is full, could not send to " + recipient));
+            }
+            return Mono.fromFuture(email.result());
+        });
+    }
+
+    private void runWorker() {
+        Transport transport = null;
+        int sentOnConnection = 0;
+        long lastUsed = System.nanoTime();
+
+        while (running) {
+            PendingEmail email;
+            try {
+                email = queue.poll(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            if (email == null) {
+                if (transport != null && System.nanoTime() - lastUsed > idleTimeout.toNanos()) {
+                    transport = close(transport);
+                }
+                continue;
+            }
+
+            queueWaitTimer.record(System.nanoTime() - email.queuedAt(), TimeUnit.NANOSECONDS);
+            long startedAt = System.nanoTime();
+            try {
+                try {
+                    if (transport == null || sentOnConnection >= maxMessagesPerConnection
+                            || (System.nanoTime() - lastUsed > PROBE_AFTER_IDLE_NANOS && !transport.isConnected())) {
+                        // isConnected() pings an idle session with NOOP, so one the server dropped is replaced up front
+                        transport = close(transport);
+                        transport = connect();
+                        sentOnConnection = 0;
+                    }
+                    transfer(transport, email.message());
+                } catch (MessagingException e) {
+                    if (transport != null && !failedBeforeData(e)) {
+                        throw e; // The server may already have the message; retrying could send it twice
+                    }
+                    // Nothing was transferred: the connect failed, or the session failed on MAIL FROM / DATA. Retry once
+                    log.debug("SMTP session failed before the message was transferred, reconnecting: {}", e.getMessage());
+                    transport = close(transport);
+                    transport = connect();
+                    sentOnConnection = 0;
+                    transfer(transport, email.message());
+                }
+                sentOnConnection++;
+                sendSuccessTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+                log.info("Email sent successfully to: {}", email.recipient());
+                email.result().complete(null);
+            } catch (Exception e) {
+                if (!(e instanceof SendFailedException) || e instanceof SMTPSendFailedException) {
+                    transport = close(transport); // Only a rejected recipient leaves the session in a known state
+                }
+                sendFailureTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+                log.error("Failed to send email to {}: {}", email.recipient(), e.getMessage(), e);
+                email.result().completeExceptionally(new NotificationException("Failed to send email to " + email.recipient(), e));
+            }
+            lastUsed = System.nanoTime();
+        }
+        close(transport);
+    }
+
+    private Transport connect() throws MessagingException {
+        Transport transport = mailSender.getSession().getTransport(mailSender.getProtocol());
+        transport.connect(mailSender.getHost(), mailSender.getPort(), mailSender.getUsername(), mailSender.getPassword());
+        return transport;
+    }
+
+    // True if the server refused the transaction, or dropped the session, on MAIL FROM or DATA, i.e.
+    // before any message content was sent. Recipient rejections and failures after the content are
+    // not retried: a new session would get the same answer, or the server may already have the message.
+    private static boolean failedBeforeData(MessagingException e) {
+        if (!(e instanceof SMTPSendFailedException failed) || failed.getCommand() == null) {
+            return false;
+        }
+        String command = failed.getCommand().toUpperCase();
+        return command.startsWith("MAIL FROM") || command.equals("DATA");
+    }
+
+    private static void transfer(Transport transport, MimeMessage message) throws MessagingException {
+        message.saveChanges(); // Computes headers (Message-ID etc.), as JavaMailSender.send would
+        transport.sendMessage(message, message.getAllRecipients());
+    }
+
+    private static Transport close(Transport transport) {
+        if (transport != null) {
+            try {
+                transport.close();
+            } catch (MessagingException e) {
+                log.debug("Failed to close SMTP session cleanly: {}", e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * A message waiting for a worker, with the future its sender waits on.
+     */
+    private record PendingEmail(MimeMessage message, String recipient, CompletableFuture<Void> result, long queuedAt) {
+    }
+}
@@ -4,19 +4,18 @@ import com.aliwudi.marketplace.backend.common.exception.NotificationException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.mail.MailException;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.mail.javamail.MimeMessageHelper;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
-import reactor.core.scheduler.Schedulers;
 
 import jakarta.mail.MessagingException;
 import jakarta.mail.internet.MimeMessage;
 
 /**
  * SMTP implementation of EmailSenderService using Spring's JavaMailSender.
- * Supports sending HTML emails.
+ * Supports sending HTML emails. Messages are built here and handed to
+ * SmtpDeliveryEngine, which sends them over persistent SMTP connections.
  */
 @Service
 @RequiredArgsConstructor
@@ -24,12 +23,13 @@ import jakarta.mail.internet.MimeMessage;
 public class SmtpEmailSenderService implements EmailSenderService {
 
     private final JavaMailSender mailSender;
+    private final SmtpDeliveryEngine deliveryEngine;
 
     @Value("${notification.email.from}") // Inject 'from' email from application.properties
     private String fromEmail;
 
     /**
-     * Sends an email asynchronously using JavaMailSender.
+     * Sends an email asynchronously through the pooled SMTP delivery engine.
      *
      * @param to The recipient's email address.
      * @param subject The subject line of the email.
@@ -47,20 +47,17 @@ public class SmtpEmailSenderService implements EmailSenderService {
                 helper.setTo(to);
                 helper.setSubject(subject);
                 helper.setText(htmlBody, true); // true indicates HTML content
-                mailSender.send(mimeMessage); // This is a blocking call
-                log.info("Email sent successfully to: {}", to);
-                return null; // For Mono<Void> completion
-            } catch (MessagingException | MailException e) {
-                log.error("Failed to send email to {}: {}", to, e.getMessage(), e);
+                return mimeMessage;
+            } catch (MessagingException e) {
+                log.error("Failed to build email to {}: {}", to, e.getMessage(), e);
                 throw new NotificationException("Failed to send email to " + to, e); // Wrap in NotificationException
             }
         })
+        .flatMap(mimeMessage -> deliveryEngine.send(mimeMessage, to)) // Sent on a pooled, already open SMTP session
         .onErrorResume(NotificationException.class, Mono::error) // Propagate custom exception
         .onErrorResume(e -> { // Catch any other unexpected errors
             log.error("An unexpected error occurred during email sending for {}: {}", to, e.getMessage(), e);
             return Mono.error(new NotificationException("An unexpected error occurred during email sending.", e));
-        })
-        .then() // Convert Mono<Object> to Mono<Void>
-        .subscribeOn(Schedulers.boundedElastic()); // Run blocking mail send on a separate thread
+        });
     }
-}
\ No newline at end of file
+}
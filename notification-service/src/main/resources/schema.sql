@@ -0,0 +1,80 @@
+-- src/main/resources/schema.sql
+
+-- Create 'notifications' table if it does not already exist
+CREATE TABLE IF NOT EXISTS notifications (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    user_id BIGINT NOT NULL,
+    title VARCHAR(255),
+    message TEXT,
+    type VARCHAR(50),                                     -- NotificationType
+    status VARCHAR(20) NOT NULL DEFAULT 'UNREAD',         -- NotificationStatus
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL,
+    read_at TIMESTAMP NULL,
+    target_entity_id VARCHAR(100),
+    target_entity_type VARCHAR(50),
+    insert_batch CHAR(36) NULL,                           -- Marks the rows of one multi-row INSERT, to read their IDs back
+    INDEX idx_notifications_user_id_id (user_id, id),     -- Last-Event-ID replay
+    INDEX idx_notifications_user_id_created_at (user_id, created_at),                 -- "My notifications", newest first
+    INDEX idx_notifications_user_id_status_created_at (user_id, status, created_at), -- ... by status
+    INDEX idx_notifications_user_id_type_created_at (user_id, type, created_at),     -- ... by type
+    INDEX idx_notifications_status_created_at (status, created_at),                  -- Archiving of old read notifications
+    INDEX idx_notifications_insert_batch (insert_batch)
+);
+
+-- Existing installations: add the listing and archiving indexes
+-- CREATE INDEX idx_notifications_user_id_created_at ON notifications (user_id, created_at);
+-- CREATE INDEX idx_notifications_user_id_status_created_at ON notifications (user_id, status, created_at);
+-- CREATE INDEX idx_notifications_user_id_type_created_at ON notifications (user_id, type, created_at);
+-- CREATE INDEX idx_notifications_status_created_at ON notifications (status, created_at);
+
+-- Existing installations: add the insert batch column and its index
+-- ALTER TABLE notifications ADD COLUMN insert_batch CHAR(36) NULL;
+-- CREATE INDEX idx_notifications_insert_batch ON notifications (insert_batch);
+
+-- Create 'notification_deliveries' table if it does not already exist
+-- Outbox of external (email/SMS) deliveries, sent in per-user digests
+CREATE TABLE IF NOT EXISTS notification_deliveries (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    notification_id BIGINT NOT NULL,
+    user_id BIGINT NOT NULL,
+    channel VARCHAR(20) NOT NULL,                         -- NotificationChannel
+    status VARCHAR(20) NOT NULL DEFAULT 'PENDING',        -- NotificationDeliveryStatus
+    dispatch_after TIMESTAMP NOT NULL,
+    attempts INT NOT NULL DEFAULT 0,
+    claim_token VARCHAR(36) NULL,
+    claimed_at TIMESTAMP NULL,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL,
+    sent_at TIMESTAMP NULL,
+    last_error VARCHAR(500) NULL,
+    INDEX idx_notification_deliveries_status_dispatch_after (status, dispatch_after), -- Due deliveries
+    INDEX idx_notification_deliveries_user_id_status (user_id, status),               -- Rest of a user's digest
+    INDEX idx_notification_deliveries_claim_token (claim_token),
+    INDEX idx_notification_deliveries_notification_id (notification_id)                -- Cleanup when archiving
+);
+
+-- Existing installations: add the archiving cleanup index
+-- CREATE INDEX idx_notification_deliveries_notification_id ON notification_deliveries (notification_id);
+
+-- Create 'notification_counters' table if it does not already exist
+-- Per-user unread counters behind the notification badge, maintained with the notifications
+CREATE TABLE IF NOT EXISTS notification_counters (
+    user_id BIGINT PRIMARY KEY,
+    unread_count BIGINT NOT NULL DEFAULT 0,
+    revision BIGINT NOT NULL DEFAULT 0,                   -- Incremented by every change
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Create 'notification_broadcasts' table if it does not already exist
+-- Progress of notification broadcasts, so that any node can report it
+CREATE TABLE IF NOT EXISTS notification_broadcasts (
+    id CHAR(36) PRIMARY KEY,
+    state VARCHAR(20) NOT NULL,                           -- NotificationBroadcastStatus
+    total_users BIGINT NULL,                              -- Unknown upfront when sending to all users
+    notified_users BIGINT NOT NULL DEFAULT 0,
+    failed_users BIGINT NOT NULL DEFAULT 0,
+    started_at TIMESTAMP NOT NULL,
+    updated_at TIMESTAMP NOT NULL,                        -- Last progress
+    completed_at TIMESTAMP NULL,
+    error VARCHAR(1000) NULL,
+    INDEX idx_notification_broadcasts_completed_at (completed_at) -- Cleanup of finished broadcasts
+);
@@ -0,0 +1,210 @@
+package com.aliwudi.marketplace.backend.notification.listener;
+
+import static com.aliwudi.marketplace.backend.common.constants.EventRoutingKey.EMAIL_VERIFICATION_ROUTING_KEY;
+import static com.aliwudi.marketplace.backend.common.constants.ExchangeType.USER_EVENTS_EXCHANGE;
+import static com.aliwudi.marketplace.backend.common.constants.QueueType.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.aliwudi.marketplace.backend.common.dto.event.EmailVerificationRequestedEvent;
+import com.aliwudi.marketplace.backend.notification.config.RabbitMQConfig;
+import com.aliwudi.marketplace.backend.notification.service.EmailNotificationService;
+import com.aliwudi.marketplace.backend.notification.service.PhoneCallService;
+import com.aliwudi.marketplace.backend.notification.service.SmsSenderService;
+import com.github.fridujo.rabbitmq.mock.MockConnectionFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.AmqpTemplate;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.connection.CachingConnectionFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.amqp.RabbitAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs UserEventListener against an in-memory RabbitMQ broker with the real
+ * retry topology of RabbitMQConfig: a failed send is rejected into
+ * <queue>.retry, comes back after the retry delay, and is parked in
+ * <queue>.dlq once notification.listener.retry.max-attempts is reached.
+ */
+@SpringBootTest(classes = UserEventListenerRetryTest.BrokerConfig.class, properties = {
+        "notification.listener.retry.delay=200ms",
+        "notification.listener.retry.max-attempts=3",
+        "notification.listener.prefetch=50",
+        "notification.listener.max-concurrency=4"
+})
+class UserEventListenerRetryTest {
+
+    private static final int MAX_ATTEMPTS = 3;
+    private static final Duration RECEIVE_TIMEOUT = Duration.ofSeconds(10);
+
+    @Configuration
+    @ImportAutoConfiguration(RabbitAutoConfiguration.class)
+    @Import({RabbitMQConfig.class, UserEventListener.class})
+    static class BrokerConfig {
+
+        @Bean
+        public ConnectionFactory connectionFactory() {
+            return new CachingConnectionFactory(new MockConnectionFactory());
+        }
+    }
+
+    @MockitoBean
+    private EmailNotificationService emailNotificationService;
+
+    @MockitoBean
+    private SmsSenderService smsSenderService;
+
+    @MockitoBean
+    private PhoneCallService phoneCallService;
+
+    @Autowired
+    private AmqpTemplate amqpTemplate;
+
+    @Autowired
+    private AmqpAdmin amqpAdmin;
+
+    // Send attempts per recipient, recorded by the mocked email service
+    private final Map<String, AtomicInteger> attempts = new ConcurrentHashMap<>();
+
+    @BeforeEach
+    void drainParkedMessages() {
+        amqpAdmin.purgeQueue(EMAIL_VERIFICATION_QUEUE + DEAD_LETTER_QUEUE_SUFFIX, false);
+        attempts.clear();
+    }
+
+    @Test
+    void successfulSendIsAckedOnce() {
+        failFirstAttemptsOf(Set.of(), 0);
+
+        publish("ok@example.com");
+
+        verify(emailNotificationService, timeout(RECEIVE_TIMEOUT.toMillis()))
+                .sendTemplatedEmail(eq("ok@example.com"), anyString(), eq("email/verification-code"), anyMap());
+        assertThat(receiveParked(Duration.ofMillis(500))).isNull();
+        assertThat(attempts.get("ok@example.com").get()).isEqualTo(1);
+    }
+
+    @Test
+    void failedSendIsRedeliveredThroughTheRetryQueue() {
+        failFirstAttemptsOf(Set.of("flaky@example.com"), 1);
+
+        publish("flaky@example.com");
+
+        verify(emailNotificationService, timeout(RECEIVE_TIMEOUT.toMillis()).times(2))
+                .sendTemplatedEmail(eq("flaky@example.com"), anyString(), anyString(), anyMap());
+        assertThat(receiveParked(Duration.ofMillis(500))).isNull();
+    }
+
+    @Test
+    void sendFailingOnEveryAttemptIsParkedAfterMaxAttempts() {
+        failFirstAttemptsOf(Set.of("down@example.com"), Integer.MAX_VALUE);
+
+        publish("down@example.com");
+
+        Message parked = receiveParked(RECEIVE_TIMEOUT);
+        assertThat(parked).isNotNull();
+        assertThat(attempts.get("down@example.com").get()).isEqualTo(MAX_ATTEMPTS);
+        // Every attempt but the last went through the retry queue
+        assertThat(rejections(parked)).isEqualTo(MAX_ATTEMPTS - 1);
+        assertThat(amqpAdmin.getQueueInfo(EMAIL_VERIFICATION_QUEUE + RETRY_QUEUE_SUFFIX).getMessageCount()).isZero();
+    }
+
+    @Test
+    void burstWithFailingSendsIsRetriedAndParkedWithoutLosingMessages() {
+        int total = 500;
+        Set<String> alwaysFailing = ConcurrentHashMap.newKeySet();
+        List<String> recipients = new ArrayList<>();
+        for (int i = 0; i < total; i++) {
+            String email = "user" + i + "@example.com";
+            recipients.add(email);
+            if (i % 50 == 0) {
+                alwaysFailing.add(email);
+            }
+        }
+        // Every recipient fails once; the always-failing ones never recover
+        when(emailNotificationService.sendTemplatedEmail(anyString(), anyString(), anyString(), anyMap()))
+                .thenAnswer(invocation -> {
+                    String to = invocation.getArgument(0);
+                    int attempt = attempts.computeIfAbsent(to, k -> new AtomicInteger()).incrementAndGet();
+                    return attempt == 1 || alwaysFailing.contains(to)
+                            ? Mono.error(new IllegalStateException("SMTP unavailable"))
+                            : Mono.empty();
+                });
+
+        recipients.forEach(this::publish);
+
+        List<String> parked = new ArrayList<>();
+        for (int i = 0; i < alwaysFailing.size(); i++) {
+            Message message = receiveParked(RECEIVE_TIMEOUT);
+            assertThat(message).as("parked message %d", i).isNotNull();
+            parked.add(new String(message.getBody()));
+        }
+        assertThat(parked).allSatisfy(body -> assertThat(alwaysFailing).anyMatch(body::contains));
+        assertThat(receiveParked(Duration.ofMillis(500))).isNull();
+
+        recipients.forEach(email -> assertThat(attempts.get(email).get())
+                .as(email)
+                .isEqualTo(alwaysFailing.contains(email) ? MAX_ATTEMPTS : 2));
+    }
+
+    private void failFirstAttemptsOf(Set<String> recipients, int failures) {
+        when(emailNotificationService.sendTemplatedEmail(anyString(), anyString(), anyString(), any()))
+                .thenAnswer(invocation -> {
+                    String to = invocation.getArgument(0);
+                    int attempt = attempts.computeIfAbsent(to, k -> new AtomicInteger()).incrementAndGet();
+                    return recipients.contains(to) && attempt <= failures
+                            ? Mono.error(new IllegalStateException("SMTP unavailable"))
+                            : Mono.empty();
+                });
+    }
+
+    private void publish(String email) {
+        amqpTemplate.convertAndSend(USER_EVENTS_EXCHANGE, EMAIL_VERIFICATION_ROUTING_KEY,
+                new EmailVerificationRequestedEvent("kc-" + email, email, "Test User", "123456"));
+    }
+
+    // Polls with basic.get (auto-ack), so every parked message is received exactly once
+    private Message receiveParked(Duration timeout) {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        do {
+            Message message = amqpTemplate.receive(EMAIL_VERIFICATION_QUEUE + DEAD_LETTER_QUEUE_SUFFIX);
+            if (message != null) {
+                return message;
+            }
+            LockSupport.parkNanos(Duration.ofMillis(20).toNanos());
+        } while (System.nanoTime() < deadline);
+        return null;
+    }
+
+    private static long rejections(Message message) {
+        List<Map<String, ?>> deaths = message.getMessageProperties().getXDeathHeader();
+        return deaths == null ? 0 : deaths.stream()
+                .filter(death -> EMAIL_VERIFICATION_QUEUE.equals(death.get("queue")) && "rejected".equals(death.get("reason")))
+                .mapToLong(death -> ((Number) death.get("count")).longValue())
+                .sum();
+    }
+}
@@ -0,0 +1,79 @@
+package com.aliwudi.marketplace.backend.notification.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.aliwudi.marketplace.backend.common.enumeration.NotificationType;
+import com.aliwudi.marketplace.backend.common.model.Notification;
+import com.aliwudi.marketplace.backend.common.status.NotificationStatus;
+import io.r2dbc.spi.ConnectionFactories;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.r2dbc.core.DatabaseClient;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * NotificationBulkRepositoryImpl against an in-memory H2 database:
+ * notifications inserted in bulk get the IDs of their own rows, which their
+ * SSE events and email deliveries refer to.
+ */
+class NotificationBulkRepositoryImplTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    private DatabaseClient databaseClient;
+    private NotificationBulkRepositoryImpl repository;
+
+    @BeforeEach
+    void setUp() {
+        databaseClient = DatabaseClient.create(ConnectionFactories.get("r2dbc:h2:mem:///" + UUID.randomUUID() + "?options=DB_CLOSE_DELAY=-1;MODE=MySQL"));
+        databaseClient.sql("CREATE TABLE notifications (id BIGINT AUTO_INCREMENT PRIMARY KEY, user_id BIGINT NOT NULL, "
+                        + "title VARCHAR(255), message TEXT, type VARCHAR(50), status VARCHAR(20) NOT NULL, created_at TIMESTAMP NOT NULL, "
+                        + "read_at TIMESTAMP NULL, target_entity_id VARCHAR(100), target_entity_type VARCHAR(50), insert_batch CHAR(36) NULL)")
+                .then()
+                .block(TIMEOUT);
+        repository = new NotificationBulkRepositoryImpl(databaseClient);
+    }
+
+    @Test
+    void insertedNotificationsGetTheIdsOfTheirRows() {
+        repository.insertAll(List.of(notification(99L))).blockLast(TIMEOUT);
+        List<Notification> notifications = List.of(notification(1L), notification(2L), notification(3L));
+
+        List<Notification> inserted = repository.insertAll(notifications).collectList().block(TIMEOUT);
+
+        assertThat(inserted).hasSize(3);
+        Map<Long, Long> userByNotificationId = databaseClient.sql("SELECT id, user_id FROM notifications")
+                .map(row -> Map.entry(row.get("id", Long.class), row.get("user_id", Long.class)))
+                .all()
+                .collectList()
+                .block(TIMEOUT)
+                .stream()
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+        assertThat(inserted).allSatisfy(notification -> {
+            assertThat(notification.getId()).isNotNull();
+            assertThat(userByNotificationId.get(notification.getId())).isEqualTo(notification.getUserId());
+        });
+    }
+
+    @Test
+    void nothingToInsert() {
+        assertThat(repository.insertAll(List.of()).collectList().block(TIMEOUT)).isEmpty();
+    }
+
+    private static Notification notification(Long userId) {
+        return Notification.builder()
+                .userId(userId)
+                .title("Flash sale")
+                .message("Everything is 20% off today")
+                .type(NotificationType.PROMOTION)
+                .status(NotificationStatus.UNREAD)
+                .createdAt(LocalDateTime.now())
+                .build();
+    }
+}
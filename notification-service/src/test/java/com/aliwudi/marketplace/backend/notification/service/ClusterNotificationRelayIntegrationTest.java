@@ -0,0 +1,215 @@
+package com.aliwudi.marketplace.backend.notification.service;
+
+import static com.aliwudi.marketplace.backend.common.constants.ExchangeType.NOTIFICATION_STREAM_EXCHANGE;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+import com.aliwudi.marketplace.backend.common.model.Notification;
+import com.aliwudi.marketplace.backend.notification.config.RabbitMQConfig;
+import com.github.fridujo.rabbitmq.mock.MockConnectionFactory;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.rabbit.connection.CachingConnectionFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.amqp.RabbitAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import reactor.core.Disposable;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.LongStream;
+
+/**
+ * Two notification-service nodes, each its own application context, sharing
+ * one in-memory RabbitMQ broker: a notification created on one node reaches
+ * the recipient's SSE connections on the other through the presence bindings
+ * ClusterNotificationRelay keeps on the broker.
+ */
+class ClusterNotificationRelayIntegrationTest {
+
+    private static final Duration GRACE_PERIOD = Duration.ofMillis(300);
+    private static final Duration TIMEOUT = Duration.ofSeconds(20);
+
+    private static final MockConnectionFactory BROKER = new MockConnectionFactory();
+    private static final AtomicLong NOTIFICATION_IDS = new AtomicLong();
+
+    private static ConfigurableApplicationContext nodeA;
+    private static ConfigurableApplicationContext nodeB;
+
+    @Configuration
+    @ImportAutoConfiguration(RabbitAutoConfiguration.class)
+    @Import({RabbitMQConfig.class, ClusterNotificationRelay.class, NotificationReplayBuffer.class})
+    static class NodeConfig {
+
+        @Bean
+        public ConnectionFactory connectionFactory() {
+            return new CachingConnectionFactory(BROKER); // Every node connects to the same broker
+        }
+
+        @Bean
+        public CountingStreamRegistry notificationStreamRegistry(NotificationReplayBuffer replayBuffer,
+                                                                 @Value("${notification.sse.buffer-size:64}") int bufferSize) {
+            return new CountingStreamRegistry(replayBuffer, bufferSize);
+        }
+    }
+
+    /**
+     * Counts the notifications handed to this node's registry, whether or not
+     * the recipient is connected, i.e. those the broker routed to this node.
+     */
+    static class CountingStreamRegistry extends NotificationStreamRegistry {
+
+        private final Map<Long, AtomicLong> published = new ConcurrentHashMap<>();
+
+        CountingStreamRegistry(NotificationReplayBuffer replayBuffer, int bufferSize) {
+            super(replayBuffer, bufferSize, OverflowPolicy.DROP_OLDEST, Duration.ofSeconds(25));
+        }
+
+        @Override
+        public boolean publish(Notification notification) {
+            published.computeIfAbsent(notification.getUserId(), id -> new AtomicLong()).incrementAndGet();
+            return super.publish(notification);
+        }
+
+        long published(Long userId) {
+            AtomicLong count = published.get(userId);
+            return count != null ? count.get() : 0;
+        }
+    }
+
+    @BeforeAll
+    static void startNodes() {
+        nodeA = startNode();
+        nodeB = startNode();
+    }
+
+    @AfterAll
+    static void stopNodes() {
+        nodeA.close();
+        nodeB.close();
+    }
+
+    private static ConfigurableApplicationContext startNode() {
+        return new SpringApplicationBuilder(NodeConfig.class)
+                .web(WebApplicationType.NONE)
+                .properties("notification.sse.replay.grace-period=" + GRACE_PERIOD.toMillis() + "ms")
+                .run();
+    }
+
+    @Test
+    void notificationReachesUserConnectedToAnotherNode() {
+        Map<Long, List<Notification>> received = connect(nodeB, 1001L);
+
+        deliverUntilReceived(nodeA, received);
+
+        assertThat(received.get(1001L)).allMatch(notification -> notification.getUserId() == 1001L);
+        assertThat(registry(nodeA).isConnected(1001L)).isFalse();
+    }
+
+    @Test
+    void burstOfConnectionsIsBoundInBatches() {
+        // Two and a half binding batches, connected at once
+        Map<Long, List<Notification>> received = connect(nodeB, LongStream.range(2_000, 4_500).boxed().toList());
+
+        deliverUntilReceived(nodeA, received);
+
+        assertThat(received.values()).allMatch(notifications -> !notifications.isEmpty());
+    }
+
+    @Test
+    void presenceEndsAfterGracePeriod() throws InterruptedException {
+        Long userId = 5001L;
+        List<Notification> notifications = new CopyOnWriteArrayList<>();
+        Disposable subscription = registry(nodeB).connect(userId).notifications().subscribe(notifications::add);
+        deliverUntilReceived(nodeA, Map.of(userId, notifications));
+
+        subscription.dispose();
+        Thread.sleep(GRACE_PERIOD.multipliedBy(4).toMillis()); // Expiry, then the unbinding flush
+        long routedBefore = registry(nodeB).published(userId);
+        relay(nodeA).publish(notification(userId));
+        Thread.sleep(500);
+
+        assertThat(registry(nodeB).published(userId)).isEqualTo(routedBefore);
+    }
+
+    @Test
+    void bindingsAreRestoredAfterBrokerReconnect() throws Exception {
+        Long userId = 6001L;
+        Map<Long, List<Notification>> received = connect(nodeB, userId);
+        deliverUntilReceived(nodeA, received);
+
+        // The broker forgets the binding, as it does for a node whose connection dropped
+        String nodeQueue = nodeB.getBean("notificationNodeQueue", Queue.class).getName();
+        try (Connection connection = BROKER.newConnection(); Channel channel = connection.createChannel()) {
+            channel.queueUnbind(nodeQueue, NOTIFICATION_STREAM_EXCHANGE, String.valueOf(userId));
+        }
+        received.get(userId).clear();
+        CachingConnectionFactory connectionFactory = nodeB.getBean(CachingConnectionFactory.class);
+        connectionFactory.resetConnection();
+        connectionFactory.createConnection().close(); // Reconnecting triggers the rebind
+
+        deliverUntilReceived(nodeA, received);
+    }
+
+    // Connects the users to the node and collects what each of them receives
+    private static Map<Long, List<Notification>> connect(ConfigurableApplicationContext node, Long... userIds) {
+        return connect(node, List.of(userIds));
+    }
+
+    private static Map<Long, List<Notification>> connect(ConfigurableApplicationContext node, List<Long> userIds) {
+        Map<Long, List<Notification>> received = new ConcurrentHashMap<>();
+        for (Long userId : userIds) {
+            List<Notification> notifications = new CopyOnWriteArrayList<>();
+            received.put(userId, notifications);
+            registry(node).connect(userId).notifications().subscribe(notifications::add);
+        }
+        return received;
+    }
+
+    // Bindings are applied asynchronously: publish to whoever has not received anything yet until everyone has
+    private static void deliverUntilReceived(ConfigurableApplicationContext from, Map<Long, List<Notification>> received) {
+        await().atMost(TIMEOUT).pollInterval(Duration.ofMillis(100)).untilAsserted(() -> {
+            List<Notification> pending = new ArrayList<>();
+            received.forEach((userId, notifications) -> {
+                if (notifications.isEmpty()) {
+                    pending.add(notification(userId));
+                }
+            });
+            relay(from).publishAll(pending);
+            assertThat(received.values()).allMatch(notifications -> !notifications.isEmpty());
+        });
+    }
+
+    private static Notification notification(Long userId) {
+        return Notification.builder()
+                .id(NOTIFICATION_IDS.incrementAndGet())
+                .userId(userId)
+                .title("Order shipped")
+                .message("Your order is on its way.")
+                .build();
+    }
+
+    private static ClusterNotificationRelay relay(ConfigurableApplicationContext node) {
+        return node.getBean(ClusterNotificationRelay.class);
+    }
+
+    private static CountingStreamRegistry registry(ConfigurableApplicationContext node) {
+        return node.getBean(CountingStreamRegistry.class);
+    }
+}
@@ -0,0 +1,66 @@
+package com.aliwudi.marketplace.backend.notification.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.thymeleaf.context.Context;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+
+import java.time.Year;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Render throughput of the OTP email (email/verification-code): the
+ * pre-rendered path of EmailTemplateRenderer against processing the
+ * template with Thymeleaf for every email.
+ *
+ * Run with: gradle :notification-service:jmh -Pjmh.includes=EmailTemplateRendererBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EmailTemplateRendererBenchmark {
+
+    private static final String TEMPLATE = "email/verification-code";
+
+    private SpringTemplateEngine templateEngine;
+    private EmailTemplateRenderer renderer;
+    private Map<String, Object> variables;
+
+    @Setup
+    public void setUp() {
+        templateEngine = EmailTemplateRendererTest.templateEngine();
+        renderer = new EmailTemplateRenderer(templateEngine, EmailTemplateRendererTest.messageSource());
+        variables = new HashMap<>();
+        variables.put("name", "Ada Lovelace");
+        variables.put("otpCode", "042817");
+        variables.put("otpValidityMinutes", 5L);
+    }
+
+    @Benchmark
+    public String prerendered() {
+        return renderer.render(TEMPLATE, Locale.ENGLISH, variables);
+    }
+
+    @Benchmark
+    public String thymeleafProcess() {
+        Context context = new Context(Locale.ENGLISH);
+        variables.forEach(context::setVariable);
+        context.setVariable("appName", "Your Marketplace App");
+        context.setVariable("currentYear", String.valueOf(Year.now().getValue()));
+        return templateEngine.process(TEMPLATE, context);
+    }
+}
@@ -0,0 +1,91 @@
+package com.aliwudi.marketplace.backend.notification.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.aliwudi.marketplace.backend.common.model.Notification;
+import com.aliwudi.marketplace.backend.notification.config.ThymeleafConfig;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.context.support.ResourceBundleMessageSource;
+import org.thymeleaf.context.Context;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+
+import java.time.Year;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Checks that every template, in every locale, renders to exactly what
+ * TemplateEngine.process produces, both for the first email (which
+ * pre-renders the template) and for later ones (served from the segments).
+ */
+class EmailTemplateRendererTest {
+
+    private static final List<Locale> LOCALES = List.of(Locale.ENGLISH, Locale.GERMANY, Locale.FRENCH, Locale.ROOT);
+
+    // Values that need escaping: markup, quotes, ampersands, non-ASCII and a URL with a query string
+    private static final String NAME = "Zoë O'Brien <script>alert(\"x\")</script> & Co";
+    private static final String LINK = "https://example.com/reset?token=a&b=\"c\"&name=Zoë";
+
+    private final SpringTemplateEngine templateEngine = templateEngine();
+    private final EmailTemplateRenderer renderer = new EmailTemplateRenderer(templateEngine, messageSource());
+
+    static SpringTemplateEngine templateEngine() {
+        SpringTemplateEngine templateEngine = (SpringTemplateEngine) new ThymeleafConfig().emailTemplateEngine();
+        templateEngine.setTemplateEngineMessageSource(messageSource()); // Done by the application context at runtime
+        return templateEngine;
+    }
+
+    static ResourceBundleMessageSource messageSource() {
+        ResourceBundleMessageSource messageSource = new ResourceBundleMessageSource();
+        messageSource.setBasename("messages");
+        messageSource.setDefaultEncoding("UTF-8");
+        return messageSource;
+    }
+
+    // The variables each template is rendered with by UserEventListener and NotificationDigestService
+    static Stream<Arguments> templates() {
+        Map<String, Map<String, Object>> templates = Map.of(
+                "email/verification-code", Map.of("name", NAME, "otpCode", "042817", "otpValidityMinutes", 5L),
+                "email/registration-success", Map.of("name", NAME, "loginUrl", LINK),
+                "email/password-reset", Map.of("name", NAME, "resetLink", LINK, "tokenValidityHours", 1L),
+                "email/notification-digest", Map.of("name", NAME, "notifications", List.of(
+                        Notification.builder().title("Order <shipped>").message("Your order & more").build(),
+                        Notification.builder().title("Zoë's refund").message("\"Processed\"").build())));
+        return templates.entrySet().stream()
+                .flatMap(template -> LOCALES.stream()
+                        .map(locale -> Arguments.of(template.getKey(), locale, template.getValue())));
+    }
+
+    @ParameterizedTest(name = "{0} [{1}]")
+    @MethodSource("templates")
+    void renderedOutputEqualsThymeleafProcessing(String templateName, Locale locale, Map<String, Object> variables) {
+        String expected = process(templateName, locale, variables);
+
+        // First render pre-renders the template, the second one is assembled from its segments
+        assertThat(renderer.render(templateName, locale, new HashMap<>(variables))).isEqualTo(expected);
+        assertThat(renderer.render(templateName, locale, new HashMap<>(variables))).isEqualTo(expected);
+    }
+
+    @ParameterizedTest(name = "{0} [{1}]")
+    @MethodSource("templates")
+    void nullVariableFallsBackToTemplateDefault(String templateName, Locale locale, Map<String, Object> variables) {
+        Map<String, Object> withoutName = new HashMap<>(variables);
+        withoutName.put("name", null);
+        String expected = process(templateName, locale, withoutName);
+
+        assertThat(renderer.render(templateName, locale, withoutName)).isEqualTo(expected).contains("there");
+    }
+
+    private String process(String templateName, Locale locale, Map<String, Object> variables) {
+        Context context = new Context(locale);
+        variables.forEach(context::setVariable);
+        context.setVariable("appName", messageSource().getMessage("app.name", null, locale));
+        context.setVariable("currentYear", String.valueOf(Year.now().getValue()));
+        return templateEngine.process(templateName, context);
+    }
+}
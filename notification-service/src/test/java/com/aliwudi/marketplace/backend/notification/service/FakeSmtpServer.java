@@ -0,0 +1,185 @@
+package com.aliwudi.marketplace.backend.notification.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A minimal SMTP server for tests and benchmarks: accepts every message and
+ * counts it, with an optional delay per reply to simulate the network round
+ * trip, and faults that can be injected at a given point of the protocol.
+ */
+class FakeSmtpServer implements AutoCloseable {
+
+    /**
+     * Faults the server can inject, each on the next session(s) reaching that point.
+     */
+    enum Fault {
+        /** Reply 421 to the greeting, i.e. refuse the connection. */
+        REFUSE_CONNECTION,
+        /** Close the session without replying when MAIL FROM arrives, as if it had been dropped while idle. */
+        DROP_AT_MAIL_FROM,
+        /** Keep the message but close the session instead of confirming it with 250. */
+        DROP_AFTER_DATA,
+        /** Keep the message but do not confirm it for longer than the client's read timeout. */
+        STALL_AFTER_DATA
+    }
+
+    private static final long STALL_MILLIS = 3000;
+
+    private final ServerSocket serverSocket;
+    private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "fake-smtp");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final long replyDelayNanos;
+    private final Set<Socket> sessions = ConcurrentHashMap.newKeySet();
+    private final Set<String> rejectedRecipients = ConcurrentHashMap.newKeySet();
+    private final ConcurrentHashMap<Fault, AtomicInteger> faults = new ConcurrentHashMap<>();
+    private final AtomicInteger connections = new AtomicInteger();
+    private final AtomicInteger messages = new AtomicInteger();
+    private volatile boolean running = true;
+
+    FakeSmtpServer(long replyDelayNanos) throws IOException {
+        this.replyDelayNanos = replyDelayNanos;
+        this.serverSocket = new ServerSocket(0);
+        executor.execute(this::acceptLoop);
+    }
+
+    int port() {
+        return serverSocket.getLocalPort();
+    }
+
+    /** Sessions opened so far. */
+    int connections() {
+        return connections.get();
+    }
+
+    /** Messages received completely (up to the final dot), whether or not they were confirmed. */
+    int messages() {
+        return messages.get();
+    }
+
+    void inject(Fault fault, int times) {
+        faults.computeIfAbsent(fault, f -> new AtomicInteger()).addAndGet(times);
+    }
+
+    /** Answers RCPT TO of this address with 550. */
+    void reject(String recipient) {
+        rejectedRecipients.add(recipient);
+    }
+
+    /** Closes every open session, like a server timing out idle clients. */
+    void dropSessions() {
+        sessions.forEach(FakeSmtpServer::closeQuietly);
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        serverSocket.close();
+        dropSessions();
+        executor.shutdownNow();
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                connections.incrementAndGet();
+                sessions.add(socket);
+                executor.execute(() -> serve(socket));
+            } catch (IOException e) {
+                if (running) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (socket) {
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+            OutputStream out = socket.getOutputStream();
+            if (take(Fault.REFUSE_CONNECTION)) {
+                reply(out, "421 Service not available");
+                return;
+            }
+            reply(out, "220 fake-smtp ESMTP");
+            String line;
+            while ((line = in.readLine()) != null) {
+                String command = line.length() >= 4 ? line.substring(0, 4).toUpperCase() : line.toUpperCase();
+                switch (command) {
+                    case "EHLO" -> reply(out, "250-fake-smtp\r\n250 8BITMIME");
+                    case "HELO", "RSET", "NOOP" -> reply(out, "250 OK");
+                    case "MAIL" -> {
+                        if (take(Fault.DROP_AT_MAIL_FROM)) {
+                            return;
+                        }
+                        reply(out, "250 OK");
+                    }
+                    case "RCPT" -> reply(out, rejectedRecipients.stream().anyMatch(line::contains)
+                            ? "550 No such user" : "250 OK");
+                    case "DATA" -> {
+                        reply(out, "354 End data with <CR><LF>.<CR><LF>");
+                        while ((line = in.readLine()) != null && !line.equals(".")) {
+                            // Discard the message content
+                        }
+                        messages.incrementAndGet();
+                        if (take(Fault.DROP_AFTER_DATA)) {
+                            return;
+                        }
+                        if (take(Fault.STALL_AFTER_DATA)) {
+                            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(STALL_MILLIS));
+                            return;
+                        }
+                        reply(out, "250 OK queued");
+                    }
+                    case "QUIT" -> {
+                        reply(out, "221 Bye");
+                        return;
+                    }
+                    default -> reply(out, "502 Command not implemented");
+                }
+            }
+        } catch (IOException e) {
+            // Client went away or the session was dropped on purpose
+        } finally {
+            sessions.remove(socket);
+        }
+    }
+
+    private boolean take(Fault fault) {
+        AtomicInteger remaining = faults.get(fault);
+        return remaining != null && remaining.getAndUpdate(n -> n > 0 ? n - 1 : 0) > 0;
+    }
+
+    private void reply(OutputStream out, String reply) throws IOException {
+        if (replyDelayNanos > 0) {
+            LockSupport.parkNanos(replyDelayNanos);
+        }
+        out.write((reply + "\r\n").getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Already closed
+        }
+    }
+}
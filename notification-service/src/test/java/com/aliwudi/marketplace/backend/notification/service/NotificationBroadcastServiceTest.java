@@ -0,0 +1,126 @@
+package com.aliwudi.marketplace.backend.notification.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.aliwudi.marketplace.backend.common.enumeration.NotificationType;
+import com.aliwudi.marketplace.backend.common.interservice.UserIntegrationService;
+import com.aliwudi.marketplace.backend.common.model.Notification;
+import com.aliwudi.marketplace.backend.common.model.NotificationBroadcast;
+import com.aliwudi.marketplace.backend.common.status.NotificationBroadcastStatus;
+import com.aliwudi.marketplace.backend.notification.dto.BroadcastNotificationRequest;
+import com.aliwudi.marketplace.backend.notification.dto.BroadcastStatus;
+import com.aliwudi.marketplace.backend.notification.repository.NotificationBroadcastRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * NotificationBroadcastService against mocked repositories and User Service:
+ * progress is stored after every chunk, and users are paged without the
+ * caller's security context, so that the service account token is used.
+ */
+class NotificationBroadcastServiceTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    private NotificationService notificationService;
+    private UserIntegrationService userIntegrationService;
+    private NotificationBroadcastRepository broadcastRepository;
+    private NotificationBroadcastService service;
+
+    @BeforeEach
+    void setUp() {
+        notificationService = mock(NotificationService.class);
+        userIntegrationService = mock(UserIntegrationService.class);
+        broadcastRepository = mock(NotificationBroadcastRepository.class);
+        when(broadcastRepository.deleteFinishedBefore(any())).thenReturn(Mono.just(0));
+        when(broadcastRepository.insertRunning(anyString(), any(), any())).thenReturn(Mono.just(1));
+        when(broadcastRepository.addProgress(anyString(), anyLong(), anyLong(), any())).thenReturn(Mono.just(1));
+        when(broadcastRepository.complete(anyString(), any())).thenReturn(Mono.just(1));
+        when(broadcastRepository.fail(anyString(), any(), any())).thenReturn(Mono.just(1));
+        when(broadcastRepository.findById(anyString())).thenAnswer(invocation -> Mono.just(NotificationBroadcast.builder()
+                .id(invocation.getArgument(0))
+                .state(NotificationBroadcastStatus.COMPLETED)
+                .build()));
+        when(notificationService.createNotifications(anyList()))
+                .thenAnswer(invocation -> Mono.just(invocation.<List<Notification>>getArgument(0).size()));
+
+        service = new NotificationBroadcastService(notificationService, userIntegrationService, broadcastRepository);
+        ReflectionTestUtils.setField(service, "chunkSize", 2);
+        ReflectionTestUtils.setField(service, "concurrency", 1);
+        ReflectionTestUtils.setField(service, "statusRetention", Duration.ofHours(24));
+    }
+
+    @Test
+    void progressIsStoredAfterEveryChunk() {
+        when(notificationService.createNotifications(anyList()))
+                .thenAnswer(invocation -> Mono.just(2))
+                .thenReturn(Mono.error(new IllegalStateException("Lock wait timeout exceeded")))
+                .thenAnswer(invocation -> Mono.just(1));
+
+        BroadcastStatus status = service.startBroadcast(request(List.of(1L, 2L, 3L, 4L, 5L))).block(TIMEOUT);
+
+        assertThat(status.getState()).isEqualTo(NotificationBroadcastStatus.RUNNING);
+        assertThat(status.getTotalUsers()).isEqualTo(5L);
+        verify(broadcastRepository).insertRunning(eq(status.getId()), eq(5L), any());
+        verify(broadcastRepository, timeout(TIMEOUT.toMillis())).complete(eq(status.getId()), any());
+        verify(broadcastRepository).addProgress(eq(status.getId()), eq(2L), eq(0L), any());
+        verify(broadcastRepository).addProgress(eq(status.getId()), eq(0L), eq(2L), any()); // Failed chunk, skipped
+        verify(broadcastRepository).addProgress(eq(status.getId()), eq(1L), eq(0L), any());
+        verify(broadcastRepository, never()).fail(anyString(), any(), any());
+    }
+
+    @Test
+    void allUsersArePagedWithoutTheCallersSecurityContext() {
+        // The User Service mock only answers calls that would fall back to the service account token
+        when(userIntegrationService.getUserIdsAfter(anyLong(), anyInt())).thenReturn(ReactiveSecurityContextHolder.getContext()
+                .flatMap(context -> Mono.<List<Long>>error(new IllegalStateException("Called with the caller's token")))
+                .switchIfEmpty(Mono.just(List.of(1L, 2L, 3L))));
+        BroadcastNotificationRequest request = request(null);
+        request.setAllUsers(true);
+
+        BroadcastStatus status = service.startBroadcast(request)
+                .contextWrite(ReactiveSecurityContextHolder.withAuthentication(
+                        new UsernamePasswordAuthenticationToken("admin", "token", List.of())))
+                .block(TIMEOUT);
+
+        assertThat(status.getTotalUsers()).isNull();
+        verify(broadcastRepository, timeout(TIMEOUT.toMillis())).complete(eq(status.getId()), any());
+        verify(broadcastRepository).addProgress(eq(status.getId()), eq(2L), eq(0L), any());
+        verify(broadcastRepository).addProgress(eq(status.getId()), eq(1L), eq(0L), any());
+    }
+
+    @Test
+    void statusIsReadFromTheDatabase() {
+        BroadcastStatus status = service.getBroadcastStatus("b-1").block(TIMEOUT);
+
+        assertThat(status.getId()).isEqualTo("b-1");
+        assertThat(status.getState()).isEqualTo(NotificationBroadcastStatus.COMPLETED);
+    }
+
+    private static BroadcastNotificationRequest request(List<Long> userIds) {
+        BroadcastNotificationRequest request = new BroadcastNotificationRequest();
+        request.setTitle("Flash sale");
+        request.setMessage("Everything is 20% off today");
+        request.setType(NotificationType.PROMOTION);
+        request.setUserIds(userIds);
+        return request;
+    }
+}
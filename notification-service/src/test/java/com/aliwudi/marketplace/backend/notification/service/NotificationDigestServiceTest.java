@@ -0,0 +1,144 @@
+package com.aliwudi.marketplace.backend.notification.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.aliwudi.marketplace.backend.common.enumeration.NotificationChannel;
+import com.aliwudi.marketplace.backend.common.interservice.UserIntegrationService;
+import com.aliwudi.marketplace.backend.common.model.Notification;
+import com.aliwudi.marketplace.backend.common.model.NotificationDelivery;
+import com.aliwudi.marketplace.backend.common.model.User;
+import com.aliwudi.marketplace.backend.notification.repository.NotificationDeliveryRepository;
+import com.aliwudi.marketplace.backend.notification.repository.NotificationRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * NotificationDigestService against mocked repositories: deliveries are
+ * marked SENDING before their digest goes out, so a digest whose completion
+ * cannot be recorded is not sent again, and a long dispatch renews its
+ * claims. Every update is fenced by the claim token of the dispatch.
+ */
+class NotificationDigestServiceTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+    private static final List<Long> DELIVERY_IDS = List.of(11L, 12L);
+
+    private final List<String> steps = new CopyOnWriteArrayList<>();
+    private final AtomicReference<String> claimToken = new AtomicReference<>();
+    private NotificationDeliveryRepository deliveryRepository;
+    private EmailNotificationService emailNotificationService;
+    private NotificationDigestService service;
+
+    @BeforeEach
+    void setUp() {
+        deliveryRepository = mock(NotificationDeliveryRepository.class);
+        NotificationRepository notificationRepository = mock(NotificationRepository.class);
+        UserIntegrationService userIntegrationService = mock(UserIntegrationService.class);
+        emailNotificationService = mock(EmailNotificationService.class);
+
+        LocalDateTime createdAt = LocalDateTime.now().minusMinutes(5);
+        when(deliveryRepository.releaseStaleClaims(any())).thenReturn(Mono.just(0));
+        when(deliveryRepository.claimDue(anyString(), any(), anyInt())).thenAnswer(invocation -> {
+            claimToken.set(invocation.getArgument(0));
+            return Mono.just(DELIVERY_IDS.size());
+        });
+        when(deliveryRepository.findByClaimToken(anyString())).thenAnswer(invocation -> Flux.just(
+                delivery(11L, 1L), delivery(12L, 2L)));
+        when(deliveryRepository.claimPendingOfUsers(anyString(), any(), anyCollection())).thenReturn(Mono.just(0));
+        when(deliveryRepository.renewClaims(anyString(), any())).thenReturn(Mono.just(DELIVERY_IDS.size()));
+        when(deliveryRepository.markSending(anyCollection(), anyString())).thenAnswer(invocation -> Mono.fromSupplier(() -> {
+            steps.add("sending");
+            return DELIVERY_IDS.size();
+        }));
+        when(deliveryRepository.markCompleted(anyCollection(), anyString(), anyString(), any())).thenAnswer(invocation -> Mono.fromSupplier(() -> {
+            steps.add("completed");
+            return DELIVERY_IDS.size();
+        }));
+        when(deliveryRepository.markFailedAttempt(anyCollection(), anyString(), any(), anyInt(), any())).thenReturn(Mono.just(DELIVERY_IDS.size()));
+        when(notificationRepository.findAllById(any(Iterable.class))).thenReturn(Flux.just(
+                Notification.builder().id(1L).userId(7L).title("Order shipped").createdAt(createdAt).build(),
+                Notification.builder().id(2L).userId(7L).title("Order delivered").createdAt(createdAt.plusMinutes(1)).build()));
+        when(userIntegrationService.getUsersByIds(anyCollection())).thenReturn(Flux.just(
+                User.builder().id(7L).email("ada@example.com").firstName("Ada").build()));
+        when(emailNotificationService.sendTemplatedEmail(anyString(), anyString(), anyString(), any()))
+                .thenAnswer(invocation -> Mono.fromRunnable(() -> steps.add("send")));
+
+        service = new NotificationDigestService(deliveryRepository, notificationRepository, userIntegrationService, emailNotificationService);
+        ReflectionTestUtils.setField(service, "batchSize", 500);
+        ReflectionTestUtils.setField(service, "maxSendsPerSecond", 20);
+        ReflectionTestUtils.setField(service, "maxAttempts", 5);
+        ReflectionTestUtils.setField(service, "retryDelay", Duration.ofMinutes(5));
+        ReflectionTestUtils.setField(service, "claimTimeout", Duration.ofMinutes(10));
+    }
+
+    @Test
+    void deliveriesAreMarkedSendingBeforeTheDigestGoesOut() {
+        service.dispatchDue().block(TIMEOUT);
+
+        assertThat(steps).containsExactly("sending", "send", "completed");
+        verify(deliveryRepository).markSending(DELIVERY_IDS, claimToken.get());
+        verify(deliveryRepository).markCompleted(eq(DELIVERY_IDS), eq(claimToken.get()), eq("SENT"), any());
+    }
+
+    @Test
+    void sentDigestWhoseCompletionCannotBeRecordedIsNotRetried() {
+        when(deliveryRepository.markCompleted(anyCollection(), anyString(), anyString(), any()))
+                .thenReturn(Mono.error(new IllegalStateException("Connection reset")));
+
+        service.dispatchDue().block(TIMEOUT);
+
+        assertThat(steps).containsExactly("sending", "send");
+        verify(deliveryRepository, never()).markFailedAttempt(anyCollection(), anyString(), any(), anyInt(), any());
+    }
+
+    @Test
+    void digestIsNotSentOnceItsClaimIsLost() {
+        when(deliveryRepository.markSending(anyCollection(), anyString())).thenReturn(Mono.just(1));
+
+        service.dispatchDue().block(TIMEOUT);
+
+        verify(emailNotificationService, never()).sendTemplatedEmail(anyString(), anyString(), anyString(), any());
+        verify(deliveryRepository).markFailedAttempt(eq(DELIVERY_IDS), eq(claimToken.get()), any(), anyInt(), any());
+        verify(deliveryRepository, never()).markCompleted(anyCollection(), anyString(), anyString(), any());
+    }
+
+    @Test
+    void longDispatchRenewsItsClaims() {
+        ReflectionTestUtils.setField(service, "claimTimeout", Duration.ofMillis(300));
+        when(emailNotificationService.sendTemplatedEmail(anyString(), anyString(), anyString(), any()))
+                .thenReturn(Mono.delay(Duration.ofSeconds(1)).then());
+
+        service.dispatchDue().block(TIMEOUT);
+
+        verify(deliveryRepository, atLeast(5)).renewClaims(eq(claimToken.get()), any());
+        verify(deliveryRepository).markCompleted(eq(DELIVERY_IDS), eq(claimToken.get()), eq("SENT"), any());
+    }
+
+    private static NotificationDelivery delivery(Long id, Long notificationId) {
+        return NotificationDelivery.builder()
+                .id(id)
+                .notificationId(notificationId)
+                .userId(7L)
+                .channel(NotificationChannel.EMAIL)
+                .build();
+    }
+}
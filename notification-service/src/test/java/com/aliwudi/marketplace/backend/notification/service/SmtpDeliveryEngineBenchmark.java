@@ -0,0 +1,90 @@
+package com.aliwudi.marketplace.backend.notification.service;
+
+import jakarta.mail.internet.MimeMessage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A burst of 10,000 OTP emails against FakeSmtpServer, whose replies take
+ * 200us to simulate the network: SmtpDeliveryEngine's persistent sessions
+ * against one connection per email (JavaMailSenderImpl.send), each with the
+ * same number of emails in flight.
+ *
+ * Run with: gradle :notification-service:jmh -Pjmh.includes=SmtpDeliveryEngineBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class SmtpDeliveryEngineBenchmark {
+
+    private static final int BURST = 10_000;
+    private static final long REPLY_DELAY_NANOS = TimeUnit.MICROSECONDS.toNanos(200);
+
+    @Param({"1", "4"})
+    public int connections;
+
+    private FakeSmtpServer server;
+    private JavaMailSenderImpl mailSender;
+    private SmtpDeliveryEngine engine;
+    private List<MimeMessage> messages;
+
+    @Setup(Level.Trial)
+    public void startServer() throws IOException {
+        server = new FakeSmtpServer(REPLY_DELAY_NANOS);
+        mailSender = SmtpDeliveryEngineTest.mailSender(server.port());
+        engine = SmtpDeliveryEngineTest.engine(mailSender, connections);
+    }
+
+    @Setup(Level.Iteration)
+    public void buildMessages() {
+        messages = new ArrayList<>(BURST);
+        for (int i = 0; i < BURST; i++) {
+            messages.add(SmtpDeliveryEngineTest.message(mailSender, "user" + i + "@example.com"));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void stopServer() throws Exception {
+        engine.stop();
+        server.close();
+    }
+
+    @Benchmark
+    public void persistentSessions() {
+        Flux.fromIterable(messages)
+                .flatMap(message -> engine.send(message, "recipient"), 256)
+                .blockLast(Duration.ofMinutes(5));
+    }
+
+    @Benchmark
+    public void connectionPerEmail() {
+        Flux.fromIterable(messages)
+                .flatMap(message -> Mono.fromRunnable(() -> mailSender.send(message))
+                        .subscribeOn(Schedulers.boundedElastic()), connections)
+                .blockLast(Duration.ofMinutes(5));
+    }
+}
@@ -0,0 +1,169 @@
+package com.aliwudi.marketplace.backend.notification.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.aliwudi.marketplace.backend.common.exception.NotificationException;
+import com.aliwudi.marketplace.backend.notification.service.FakeSmtpServer.Fault;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Properties;
+
+/**
+ * SmtpDeliveryEngine against FakeSmtpServer: sessions are reused, and a send
+ * is retried on a new session only when the message cannot have reached the
+ * server yet.
+ */
+class SmtpDeliveryEngineTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    private FakeSmtpServer server;
+    private JavaMailSenderImpl mailSender;
+    private SmtpDeliveryEngine engine;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new FakeSmtpServer(0);
+        mailSender = mailSender(server.port());
+        engine = engine(mailSender, 1);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        engine.stop();
+        server.close();
+    }
+
+    static JavaMailSenderImpl mailSender(int port) {
+        JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
+        mailSender.setHost("localhost");
+        mailSender.setPort(port);
+        mailSender.setProtocol("smtp"); // Set from spring.mail.protocol at runtime
+        Properties properties = new Properties();
+        properties.put("mail.smtp.connectiontimeout", "5000");
+        properties.put("mail.smtp.timeout", "1000"); // Below FakeSmtpServer's stall
+        mailSender.setJavaMailProperties(properties);
+        return mailSender;
+    }
+
+    static SmtpDeliveryEngine engine(JavaMailSenderImpl mailSender, int poolSize) {
+        SmtpDeliveryEngine engine = new SmtpDeliveryEngine(mailSender, new SimpleMeterRegistry(), poolSize, 20_000);
+        ReflectionTestUtils.setField(engine, "idleTimeout", Duration.ofSeconds(30));
+        ReflectionTestUtils.setField(engine, "maxMessagesPerConnection", 100);
+        engine.start();
+        return engine;
+    }
+
+    static MimeMessage message(JavaMailSenderImpl mailSender, String to) {
+        try {
+            MimeMessage message = mailSender.createMimeMessage();
+            MimeMessageHelper helper = new MimeMessageHelper(message, "UTF-8");
+            helper.setFrom("noreply@example.com");
+            helper.setTo(to);
+            helper.setSubject("Email Verification OTP");
+            helper.setText("<p>Your verification code is <strong>042817</strong>.</p>", true);
+            return message;
+        } catch (MessagingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Test
+    void messagesShareOneSession() {
+        for (int i = 0; i < 10; i++) {
+            send("user" + i + "@example.com");
+        }
+
+        assertThat(server.messages()).isEqualTo(10);
+        assertThat(server.connections()).isEqualTo(1);
+    }
+
+    @Test
+    void sessionDroppedWhileIdleIsReplaced() throws InterruptedException {
+        send("first@example.com");
+        server.dropSessions();
+        Thread.sleep(1100); // Idle long enough for the session to be checked before reuse
+
+        send("second@example.com");
+
+        assertThat(server.messages()).isEqualTo(2);
+        assertThat(server.connections()).isEqualTo(2);
+    }
+
+    @Test
+    void sessionDroppedAtMailFromIsRetriedOnANewOne() {
+        send("first@example.com");
+        server.inject(Fault.DROP_AT_MAIL_FROM, 1);
+
+        send("second@example.com");
+
+        assertThat(server.messages()).isEqualTo(2);
+        assertThat(server.connections()).isEqualTo(2);
+    }
+
+    @Test
+    void refusedConnectionIsRetried() {
+        server.inject(Fault.REFUSE_CONNECTION, 1);
+
+        send("user@example.com");
+
+        assertThat(server.messages()).isEqualTo(1);
+        assertThat(server.connections()).isEqualTo(2);
+    }
+
+    @Test
+    void failureAfterDataIsNotRetried() {
+        server.inject(Fault.DROP_AFTER_DATA, 1);
+
+        StepVerifier.create(engine.send(message(mailSender, "user@example.com"), "user@example.com"))
+                .expectError(NotificationException.class)
+                .verify(TIMEOUT);
+
+        // The server has the message once; it is not sent a second time
+        assertThat(server.messages()).isEqualTo(1);
+        send("next@example.com");
+        assertThat(server.messages()).isEqualTo(2);
+    }
+
+    @Test
+    void timeoutWaitingForConfirmationIsNotRetried() {
+        server.inject(Fault.STALL_AFTER_DATA, 1);
+
+        StepVerifier.create(engine.send(message(mailSender, "user@example.com"), "user@example.com"))
+                .expectError(NotificationException.class)
+                .verify(TIMEOUT);
+
+        assertThat(server.messages()).isEqualTo(1);
+        send("next@example.com");
+        assertThat(server.messages()).isEqualTo(2);
+    }
+
+    @Test
+    void rejectedRecipientIsNotRetriedAndKeepsTheSession() {
+        server.reject("nobody@example.com");
+
+        StepVerifier.create(engine.send(message(mailSender, "nobody@example.com"), "nobody@example.com"))
+                .expectError(NotificationException.class)
+                .verify(TIMEOUT);
+        send("user@example.com");
+
+        assertThat(server.messages()).isEqualTo(1);
+        assertThat(server.connections()).isEqualTo(1);
+    }
+
+    private void send(String to) {
+        StepVerifier.create(engine.send(message(mailSender, to), to))
+                .verifyComplete();
+    }
+}
@@ -1,6 +1,7 @@
 package com.aliwudi.marketplace.backend.user.auth.service;
 
 import com.aliwudi.marketplace.backend.common.constants.IdentifierType;
+import com.aliwudi.marketplace.backend.common.interservice.ServiceAccountTokenProvider;
 import org.keycloak.admin.client.Keycloak;
 import org.keycloak.admin.client.resource.UserResource;
 import org.keycloak.representations.idm.CredentialRepresentation; // Keep for potential future password reset method
@@ -16,6 +17,8 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.time.Duration;
+import jakarta.ws.rs.client.Client;
 // Using jakarta.ws.rs instead of javax.ws.rs
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.NotFoundException;
@@ -60,17 +63,62 @@ public class KeycloakAdminServiceImpl implements IAdminService { // Implements t
     @Value("${truststore.password}")
     private String truststorePassword;
 
-    private final Map<String, Keycloak> authServerClientCache = new ConcurrentHashMap<>(); // Generic name
+    private final ServiceAccountTokenProvider tokenProvider;
 
-    public KeycloakAdminServiceImpl(KeycloakSettings kcSettings) {
+    // Maximum time an admin call waits for a service account token when none is cached yet
+    private static final Duration TOKEN_WAIT_TIMEOUT = Duration.ofSeconds(10);
+
+    private final Map<String, TokenBoundClient> authServerClientCache = new ConcurrentHashMap<>(); // Generic name
+
+    private volatile Client resteasyClient;
+
+    public KeycloakAdminServiceImpl(KeycloakSettings kcSettings, ServiceAccountTokenProvider tokenProvider) {
         this.kcSettings = kcSettings;
+        this.tokenProvider = tokenProvider;
+    }
+
+    /**
+     * An admin client bound to the service account token it was built with.
+     */
+    private record TokenBoundClient(String accessToken, Keycloak keycloak) {
     }
 
     // Helper method to get an Authorization Server client instance, using the cache.
-    // This client uses the 'client_credentials' grant type for service account authentication.
+    // The client authenticates with the service account token kept fresh by
+    // ServiceAccountTokenProvider, so admin calls never request a token inline
+    // once the cache is warm. A new lightweight client (sharing the same HTTP
+    // connection pool) is bound whenever the managed token is rotated.
     private Keycloak getAuthServerClient() { // Generic method name
-        return authServerClientCache.computeIfAbsent(kcSettings.getRealm(), realm -> {
-            log.info("Initializing Keycloak admin client for realm: {}", realm);
+        String accessToken = tokenProvider.getAccessToken().block(TOKEN_WAIT_TIMEOUT); // Callers already run on boundedElastic
+        if (accessToken == null) {
+            throw new ServiceException("Could not obtain a service account token for the Authorization Server.");
+        }
+        return authServerClientCache.compute(kcSettings.getRealm(), (realm, current) -> {
+            if (current != null && current.accessToken().equals(accessToken)) {
+                return current;
+            }
+            log.debug("Binding Keycloak admin client for realm {} to refreshed service account token", realm);
+            Keycloak keycloak = KeycloakBuilder.builder()
+                    .serverUrl(kcSettings.getUrl())
+                    .realm(realm)
+                    .authorization(accessToken)
+                    .resteasyClient(getResteasyClient())
+                    .build();
+            return new TokenBoundClient(accessToken, keycloak);
+        }).keycloak();
+    }
+
+    // Builds the shared Resteasy HTTP client once, trusting the configured truststore.
+    private Client getResteasyClient() {
+        Client client = resteasyClient;
+        if (client != null) {
+            return client;
+        }
+        synchronized (this) {
+            if (resteasyClient != null) {
+                return resteasyClient;
+            }
+            log.info("Initializing Keycloak admin HTTP client for realm: {}", kcSettings.getRealm());
 
             try {
                 KeyStore trustStore = KeyStore.getInstance("PKCS12");
@@ -110,20 +158,12 @@ public class KeycloakAdminServiceImpl implements IAdminService { // Implements t
                         sslContext.init((KeyManager[]) null, trustManagerFactory.getTrustManagers(), new SecureRandom());
                         HostnameVerifier hostnameVerifier = (hostname, session) -> true;
 
-                        return KeycloakBuilder.builder()
-                                .serverUrl(kcSettings.getUrl())
-                                .realm(kcSettings.getRealm())
-                                .clientId(kcSettings.getClientId())
-                                .grantType(kcSettings.getGrantType())
-                                .clientSecret(kcSettings.getClientSecret())
-                                .resteasyClient(
-                                        new ResteasyClientBuilderImpl()
-                                                .connectionPoolSize(10)
-                                                .sslContext(sslContext) // Set the SSL context
-                                                .hostnameVerifier(hostnameVerifier) // Set the hostname verifier
-                                                .build()
-                                )
+                        resteasyClient = new ResteasyClientBuilderImpl()
+                                .connectionPoolSize(10)
+                                .sslContext(sslContext) // Set the SSL context
+                                .hostnameVerifier(hostnameVerifier) // Set the hostname verifier
                                 .build();
+                        return resteasyClient;
                     }
                 } else {
                     throw new IllegalArgumentException("Truststore Path must be configured.");
@@ -132,7 +172,7 @@ public class KeycloakAdminServiceImpl implements IAdminService { // Implements t
             } catch (Exception ex) {
                 throw new RuntimeException("Failed to Keycloak admin client", ex);
             }
-        });
+        }
     }
 
     /**
@@ -0,0 +1,83 @@
+package com.aliwudi.marketplace.backend.user.auth.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Resolves the Authorization Server endpoints used by the login/logout flow
+ * from the realm's OpenID discovery document, which is fetched once and
+ * reused. The service account token itself is managed by the shared
+ * ServiceAccountTokenProvider.
+ */
+@Component
+@Slf4j
+public class KeycloakEndpointResolver {
+
+    private static final Duration DISCOVERY_METADATA_TTL = Duration.ofHours(12);
+
+    private final KeycloakSettings kcSettings;
+    private final WebClient webClient;
+
+    private Mono<Map<String, Object>> discoveryMetadata;
+
+    public KeycloakEndpointResolver(KeycloakSettings kcSettings,
+                                    WebClient.Builder webClientBuilder,
+                                    ReactorClientHttpConnector connector) {
+        this.kcSettings = kcSettings;
+        this.webClient = webClientBuilder.clone()
+                .clientConnector(connector)
+                .baseUrl(kcSettings.getUrl())
+                .build();
+    }
+
+    @PostConstruct
+    public void init() {
+        String issuer = String.format("%s/realms/%s", kcSettings.getUrl(), kcSettings.getRealm());
+        this.discoveryMetadata = webClient.get()
+                .uri(issuer + "/.well-known/openid-configuration")
+                .retrieve()
+                .bodyToMono(new ParameterizedTypeReference<Map<String, Object>>() {})
+                .doOnSuccess(metadata -> log.info("Loaded OpenID discovery metadata for realm {}", kcSettings.getRealm()))
+                .doOnError(e -> log.warn("Failed to load OpenID discovery metadata for realm {}: {}", kcSettings.getRealm(), e.getMessage()))
+                .cache(metadata -> DISCOVERY_METADATA_TTL, e -> Duration.ZERO, () -> Duration.ZERO); // Keep successes, retry failures
+    }
+
+    /**
+     * Resolves the token endpoint from the cached discovery metadata, falling
+     * back to the standard Keycloak path if discovery is unavailable.
+     *
+     * @return A Mono emitting the token endpoint URL.
+     */
+    public Mono<String> getTokenEndpoint() {
+        return resolveEndpoint("token_endpoint", "/protocol/openid-connect/token");
+    }
+
+    /**
+     * Resolves the token revocation endpoint from the cached discovery
+     * metadata, falling back to the standard Keycloak path.
+     *
+     * @return A Mono emitting the revocation endpoint URL.
+     */
+    public Mono<String> getRevocationEndpoint() {
+        return resolveEndpoint("revocation_endpoint", "/protocol/openid-connect/revoke");
+    }
+
+    private Mono<String> resolveEndpoint(String metadataKey, String fallbackPath) {
+        String fallback = String.format("%s/realms/%s%s", kcSettings.getUrl(), kcSettings.getRealm(), fallbackPath);
+        return discoveryMetadata
+                .map(metadata -> {
+                    Object endpoint = metadata.get(metadataKey);
+                    return endpoint instanceof String url && !url.isBlank() ? url : fallback;
+                })
+                .onErrorReturn(fallback)
+                .defaultIfEmpty(fallback);
+    }
+}
@@ -1,7 +1,12 @@
 package com.aliwudi.marketplace.backend.user.config; 
 
 import static com.aliwudi.marketplace.backend.common.constants.ExchangeType.*;
+import static com.aliwudi.marketplace.backend.common.constants.QueueType.*;
 import org.springframework.amqp.core.AmqpTemplate;
+import org.springframework.amqp.core.Binding;
+import org.springframework.amqp.core.BindingBuilder;
+import org.springframework.amqp.core.FanoutExchange;
+import org.springframework.amqp.core.Queue;
 import org.springframework.amqp.core.TopicExchange;
 import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
@@ -10,6 +15,8 @@ import org.springframework.amqp.support.converter.MessageConverter;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.UUID;
+
 @Configuration
 public class RabbitMQConfig {
 
@@ -22,6 +29,25 @@ public class RabbitMQConfig {
         return new TopicExchange(USER_EVENTS_EXCHANGE, true, false);
     }
 
+    // --- User Search Index Fan-out ---
+    // Every node binds its own exclusive queue, so each user write reaches the
+    // search index of every node (see UserSearchIndexRelay)
+    @Bean
+    public FanoutExchange userSearchExchange() {
+        return new FanoutExchange(USER_SEARCH_EXCHANGE, true, false); // Durable, not auto-delete
+    }
+
+    @Bean
+    public Queue userSearchNodeQueue() {
+        // Non-durable, exclusive, auto-delete: disappears with this node
+        return new Queue(USER_SEARCH_NODE_QUEUE_PREFIX + UUID.randomUUID(), false, true, true);
+    }
+
+    @Bean
+    public Binding userSearchNodeBinding(Queue userSearchNodeQueue, FanoutExchange userSearchExchange) {
+        return BindingBuilder.bind(userSearchNodeQueue).to(userSearchExchange);
+    }
+
     // Configures a message converter to serialize/deserialize messages as JSON
     @Bean
     public MessageConverter jsonMessageConverter() {
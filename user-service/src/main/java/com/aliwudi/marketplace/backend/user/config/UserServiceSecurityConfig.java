@@ -2,11 +2,11 @@
 package com.aliwudi.marketplace.backend.user.config;
 
 import static com.aliwudi.marketplace.backend.common.constants.ApiConstants.*;
-import com.aliwudi.marketplace.backend.common.util.JwtAuthConverter;
-import org.springframework.beans.factory.annotation.Value;
+import com.aliwudi.marketplace.backend.common.config.JwtResourceServerConfig;
+import org.springframework.security.authentication.ReactiveAuthenticationManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.core.convert.converter.Converter;
+import org.springframework.context.annotation.Import;
 import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
 import org.springframework.security.config.web.server.ServerHttpSecurity;
 import org.springframework.security.web.server.SecurityWebFilterChain;
@@ -17,27 +17,16 @@ import org.springframework.security.config.annotation.method.configuration.Enabl
 @Configuration
 @EnableWebFluxSecurity
 @EnableReactiveMethodSecurity // For @PreAuthorize etc.
+@Import(JwtResourceServerConfig.class) // Shared JWT decoder, role converter and authentication manager (JWKS fetched with jwkSetWebClient)
 public class UserServiceSecurityConfig {
 
-
-    @Value("${jwt.auth.converter.principle-attribute}")
-    private String principleAttribute;
-
-    @Value("${jwt.auth.converter.resource-id}")
-    private String resourceId;
-
-    @Bean
-    public Converter getJwtAuthConverter() {
-        return new JwtAuthConverter(principleAttribute, resourceId);
-    }
-
     @Bean
-    public SecurityWebFilterChain securityWebFilterChain(ServerHttpSecurity http, Converter jwtAuthConverter) {
+    public SecurityWebFilterChain securityWebFilterChain(ServerHttpSecurity http, ReactiveAuthenticationManager jwtAuthenticationManager) {
         http
                 .csrf(ServerHttpSecurity.CsrfSpec::disable) // Disable CSRF for stateless APIs
                 .httpBasic(ServerHttpSecurity.HttpBasicSpec::disable) // Disable basic auth, or configure as needed for internal calls
                 .formLogin(ServerHttpSecurity.FormLoginSpec::disable) // Disable form login
-                .oauth2ResourceServer(oauth2 -> oauth2.jwt(jwt -> jwt.jwtAuthenticationConverter(jwtAuthConverter))) // Configure as Resource Server to validate JWTs
+                .oauth2ResourceServer(oauth2 -> oauth2.jwt(jwt -> jwt.authenticationManager(jwtAuthenticationManager))) // Configure as Resource Server to validate JWTs
                 .authorizeExchange(exchange -> exchange
 
                 .pathMatchers(USER_CONTROLLER_BASE + USER_PROFILES_CREATE)
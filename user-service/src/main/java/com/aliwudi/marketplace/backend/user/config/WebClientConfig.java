@@ -1,12 +1,10 @@
 package com.aliwudi.marketplace.backend.user.config;
 
-import org.springframework.beans.factory.annotation.Qualifier;
+import com.aliwudi.marketplace.backend.common.interservice.ServiceAccountTokenProvider;
 import org.springframework.beans.factory.annotation.Value; // Still needed for @Value
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
-import org.springframework.security.oauth2.jwt.NimbusReactiveJwtDecoder;
-import org.springframework.boot.autoconfigure.security.oauth2.resource.OAuth2ResourceServerProperties;
+import org.springframework.context.annotation.Import;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import reactor.netty.http.client.HttpClient;
@@ -32,6 +30,7 @@ import io.netty.handler.ssl.SslContext; // Explicit Netty SslContext import
  * Truststore path and password are now loaded from simplified application properties (e.g., 'truststore.path').
  */
 @Configuration
+@Import(ServiceAccountTokenProvider.class) // Shared service account token, fetched through the truststore connector below
 public class WebClientConfig {
 
     // Injected from application.properties or application.yml using simplified keys
@@ -102,7 +101,8 @@ public class WebClientConfig {
     
     /**
      * Defines a specific WebClient instance that uses the manually configured truststore.
-     * This WebClient will be used exclusively for fetching JWK Sets.
+     * This WebClient will be used exclusively for fetching JWK Sets (picked up
+     * by name by the shared JwtResourceServerConfig).
      *
      * @return A WebClient configured with the manually loaded truststore for trusted connections.
      */
@@ -120,28 +120,4 @@ public class WebClientConfig {
             throw new RuntimeException("Failed to configure WebClient for JWK Set fetching due to SSL error", e);
         }
     }
-
-    /**
-     * Overrides Spring Security's auto-configured ReactiveJwtDecoder to use the
-     * custom 'jwkSetWebClient' for fetching JWK Sets.
-     * This ensures that the truststore configured is applied ONLY to the JWT decoding process.
-     *
-     * @param properties Spring Security OAuth2 Resource Server properties (contains jwk-set-uri).
-     * @param jwkSetWebClient The custom WebClient bean specifically configured for JWK Set fetching.
-     * @return A ReactiveJwtDecoder that uses the provided WebClient.
-     */
-    @Bean
-    public ReactiveJwtDecoder reactiveJwtDecoder(OAuth2ResourceServerProperties properties,
-                                               @Qualifier("jwkSetWebClient") WebClient jwkSetWebClient) {
-        String jwkSetUri = properties.getJwt().getJwkSetUri();
-        if (jwkSetUri == null || jwkSetUri.isEmpty()) {
-            throw new IllegalArgumentException("spring.security.oauth2.resourceserver.jwt.jwk-set-uri must be configured.");
-        }
-
-        NimbusReactiveJwtDecoder jwtDecoder = NimbusReactiveJwtDecoder.withJwkSetUri(jwkSetUri)
-                .webClient(jwkSetWebClient)
-                .build();
-
-        return jwtDecoder;
-    }
 }
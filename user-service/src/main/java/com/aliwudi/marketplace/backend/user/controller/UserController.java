@@ -3,6 +3,7 @@ package com.aliwudi.marketplace.backend.user.controller;
 // Static import for API path constants
 import static com.aliwudi.marketplace.backend.common.constants.ApiConstants.*;
 
+import com.aliwudi.marketplace.backend.user.service.UserActivityTracker;
 import com.aliwudi.marketplace.backend.user.service.UserService;
 import com.aliwudi.marketplace.backend.common.model.User;
 import com.aliwudi.marketplace.backend.common.exception.ResourceNotFoundException;
@@ -13,11 +14,14 @@ import com.aliwudi.marketplace.backend.common.response.ApiResponseMessages; // F
 import com.aliwudi.marketplace.backend.common.dto.UserProfileCreateRequest;
 import com.aliwudi.marketplace.backend.common.enumeration.JwtClaims;
 import com.aliwudi.marketplace.backend.user.auth.service.KeycloakSettings;
+import com.aliwudi.marketplace.backend.user.auth.service.KeycloakEndpointResolver;
 import com.aliwudi.marketplace.backend.user.dto.LoginRequest;
 import com.aliwudi.marketplace.backend.user.dto.LogoutRequest;
 // REMOVED: import com.aliwudi.marketplace.backend.user.auth.service.EmailVerificationService;
 // REMOVED: import com.aliwudi.marketplace.backend.user.auth.service.IAdminService;
+import com.aliwudi.marketplace.backend.user.dto.PaginatedResponse;
 import com.aliwudi.marketplace.backend.user.dto.UserRequest;
+import com.aliwudi.marketplace.backend.user.enumeration.UserSearchField;
 import static com.aliwudi.marketplace.backend.user.enumeration.KeycloakFormParams.*;
 
 import lombok.extern.slf4j.Slf4j;
@@ -33,6 +37,7 @@ import reactor.core.publisher.Mono;
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeParseException; // For date parsing from request params
+import java.util.List;
 import java.util.Map;
 import lombok.Data; // New import for DTOs
 import org.springframework.beans.factory.annotation.Value;
@@ -58,6 +63,8 @@ NOTE: In order to align with industry best practices we have removed
 @RequiredArgsConstructor // Generates a constructor for final fields
 public class UserController {
 
+    private static final int MAX_BULK_USER_IDS = 1000; // Upper bound of one bulk user lookup
+
     private final UserService userService;
     private final WebClient.Builder webClientBuilder; // Inject WebClient.Builder
     private WebClient webClient;
@@ -65,6 +72,8 @@ public class UserController {
     private final JwtDecoder jwtDecoder;
 
     private final KeycloakSettings kcSetting;
+    private final KeycloakEndpointResolver endpointResolver;
+    private final UserActivityTracker userActivityTracker;
 
     // --- NEW: Request DTOs (Data Transfer Objects) for Email Verification ---
     @Data
@@ -104,10 +113,8 @@ public class UserController {
     public Mono<User> login(@Valid @RequestBody LoginRequest loginRequest) {
         log.info("Attempting login for user: {}", loginRequest.getUserIdentifier());
 
-        String tokenUrl = String.format("%s/realms/%s/protocol/openid-connect/token", kcSetting.getUrl(), kcSetting.getRealm());
-
         // Build the form data for the token request
-        BodyInserters.FormInserter<String> formData = BodyInserters
+        BodyInserters.FormInserter<String> loginForm = BodyInserters
                 .fromFormData(GRANT_TYPE.name(), PASSWORD.name())
                 .with(CLIENT_ID.name(), kcSetting.getClientId())
                 .with(USERNAME.name(), loginRequest.getUserIdentifier())
@@ -115,10 +122,13 @@ public class UserController {
 
         // Only add client_secret if it's present (for confidential clients)
         if (kcSetting.getClientSecret() != null && !kcSetting.getClientSecret().isBlank()) {
-            formData = formData.with("client_secret", kcSetting.getClientSecret());
+            loginForm = loginForm.with("client_secret", kcSetting.getClientSecret());
         }
+        BodyInserters.FormInserter<String> formData = loginForm;
 
-        return webClient.post()
+        // The token endpoint comes from the cached discovery metadata
+        return endpointResolver.getTokenEndpoint()
+                .flatMap(tokenUrl -> webClient.post()
                 .uri(tokenUrl)
                 .contentType(MediaType.APPLICATION_FORM_URLENCODED)
                 .body(formData)
@@ -135,7 +145,7 @@ public class UserController {
                 .onStatus(status -> status.is5xxServerError(), clientResponse
                         -> Mono.error(new RuntimeException("Keycloak server error during login for user: " + loginRequest.getUserIdentifier()))
                 )
-                .bodyToMono(Map.class) // Keycloak returns a map of tokens
+                .bodyToMono(Map.class)) // Keycloak returns a map of tokens
                 .flatMap(keycloakTokens -> {
                     log.info("Successfully authenticated user: {}", loginRequest.getUserIdentifier());
 
@@ -158,10 +168,13 @@ public class UserController {
                     }
                 })
                 .flatMap(userId -> userService.findById(userId))
-                .flatMap(user -> {
-                    log.info("User {} logging in. Updating last login time.", user.getId());
-                    user.setLastLoginAt(LocalDateTime.now());
-                    return userService.updateUserOnDB(user);
+                .map(user -> {
+                    log.info("User {} logging in. Recording last login time.", user.getId());
+                    LocalDateTime loginAt = LocalDateTime.now();
+                    user.setLastLoginAt(loginAt);
+                    // Written to the DB in the background with other logins
+                    userActivityTracker.recordLogin(user.getId(), loginAt);
+                    return user;
                 })
                 .doOnError(e -> log.error("Login process error for {}: {}", loginRequest.getUserIdentifier(), e.getMessage(), e));
     }
@@ -171,20 +184,21 @@ public class UserController {
     public Mono<Boolean> logout(@Valid @RequestBody LogoutRequest logoutRequest) {
         log.info("Attempting logout for user (refresh token revocation).");
 
-        String revokeUrl = String.format("%s/realms/%s/protocol/openid-connect/revoke", kcSetting.getUrl(), kcSetting.getRealm());
-
         // Build the form data for the token revocation request
-        BodyInserters.FormInserter<String> formData = BodyInserters
+        BodyInserters.FormInserter<String> revokeForm = BodyInserters
                 .fromFormData(CLIENT_ID.name(), kcSetting.getClientId())
                 .with(TOKEN.name(), logoutRequest.getRefreshToken())
                 .with(TOKEN_TYPE_HINT.name(), REFRESH_TOKEN.name());
 
         // Only add client_secret if it's present (for confidential clients)
         if (kcSetting.getClientSecret() != null && !kcSetting.getClientSecret().isBlank()) {
-            formData = formData.with("client_secret", kcSetting.getClientSecret());
+            revokeForm = revokeForm.with("client_secret", kcSetting.getClientSecret());
         }
+        BodyInserters.FormInserter<String> formData = revokeForm;
 
-        return webClient.post()
+        // The revocation endpoint comes from the cached discovery metadata
+        return endpointResolver.getRevocationEndpoint()
+                .flatMap(revokeUrl -> webClient.post()
                 .uri(revokeUrl)
                 .contentType(MediaType.APPLICATION_FORM_URLENCODED)
                 .body(formData)
@@ -200,7 +214,7 @@ public class UserController {
                                 return Mono.just(new RuntimeException("Token revocation failed: " + errorBody));
                             });
                 })
-                .bodyToMono(Void.class) // Keycloak returns an empty body on success (200 OK)
+                .bodyToMono(Void.class)) // Keycloak returns an empty body on success (200 OK)
                 .then(Mono.defer(() -> {
                     // After successful token revocation, you might want to record the logout in your DB
                     // You'll need the user ID to do this. This typically comes from the access token
@@ -217,12 +231,10 @@ public class UserController {
                         String userIdString = (String) claims.get(JwtClaims.userId.name());
                         if (userIdString != null) {
                             Long userId = Long.valueOf(userIdString);
-                            return userService.findById(userId)
-                                    .flatMap(user -> {
-                                        log.info("User {} logging in. Updating last login time.", user.getId());
-                                        user.setLastLogoutAt(LocalDateTime.now());
-                                        return userService.updateUserOnDB(user);
-                                    }).thenReturn(true);
+                            log.info("User {} logging out. Recording last logout time.", userId);
+                            // Written to the DB in the background with other logouts
+                            userActivityTracker.recordLogout(userId, LocalDateTime.now());
+                            return Mono.just(true);
 
                         } else {
                             log.warn("Could not extract userId from refresh token for logout recording.");
@@ -511,6 +523,29 @@ public class UserController {
         // Exceptions are handled by GlobalExceptionHandler.
     }
 
+    /**
+     * Endpoint to retrieve several users by their IDs in one call, for
+     * services that would otherwise look users up one at a time. Unknown IDs
+     * are skipped. Accessible by 'admin' and by other services ('service').
+     *
+     * @param ids The IDs of the users to retrieve (at most MAX_BULK_USER_IDS).
+     * @return A Flux emitting the users found.
+     * @throws IllegalArgumentException if the list is empty or too long.
+     */
+    @PostMapping(USER_GET_BY_IDS)
+    @ResponseStatus(HttpStatus.OK)
+    @PreAuthorize("hasRole('" + ROLE_ADMIN + "') or hasRole('" + ROLE_SERVICE + "')")
+    public Flux<User> getUsersByIds(@RequestBody List<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            throw new IllegalArgumentException(ApiResponseMessages.INVALID_USER_ID);
+        }
+        if (ids.size() > MAX_BULK_USER_IDS) {
+            throw new IllegalArgumentException(ApiResponseMessages.TOO_MANY_USER_IDS + MAX_BULK_USER_IDS);
+        }
+        return userService.getUsersByIds(ids);
+        // Exceptions are handled by GlobalExceptionHandler.
+    }
+
     /**
      * Endpoint to retrieve a user by their phoneNumber. Accessible by 'admin'
      * or for specific public lookups (e.g., phoneNumber availability check).
@@ -551,6 +586,30 @@ public class UserController {
         // Errors are handled by GlobalExceptionHandler.
     }
 
+    /**
+     * Endpoint to page through the IDs of all users in ascending order, for
+     * services that fan out to every user (e.g. notification broadcasts).
+     * Uses keyset pagination, so deep pages cost the same as the first one.
+     * Accessible by 'admin' and by other services ('service').
+     *
+     * @param afterId The last ID of the previous page (0 for the first page).
+     * @param limit The maximum number of IDs to return (at most MAX_BULK_USER_IDS).
+     * @return A Flux of user IDs.
+     * @throws IllegalArgumentException if the parameters are invalid.
+     */
+    @GetMapping(USER_ADMIN_IDS)
+    @ResponseStatus(HttpStatus.OK)
+    @PreAuthorize("hasRole('" + ROLE_ADMIN + "') or hasRole('" + ROLE_SERVICE + "')")
+    public Flux<Long> getUserIds(
+            @RequestParam(defaultValue = "0") Long afterId,
+            @RequestParam(defaultValue = "1000") int limit) {
+        if (afterId < 0 || limit <= 0 || limit > MAX_BULK_USER_IDS) {
+            throw new IllegalArgumentException(ApiResponseMessages.INVALID_PAGINATION_PARAMETERS);
+        }
+        return userService.getUserIdsAfter(afterId, limit);
+        // Errors are handled by GlobalExceptionHandler.
+    }
+
     /**
      * Endpoint to retrieve all users with pagination. Accessible by 'admin'
      * only.
@@ -852,6 +911,39 @@ public class UserController {
         // Errors are handled by GlobalExceptionHandler.
     }
 
+    /**
+     * Searches users by a case-insensitive "contains" term on one or all of
+     * first name, last name, phone number/email and shipping address, returning
+     * the page of users and the total match count in one response. Accessible
+     * by 'admin'.
+     *
+     * @param searchTerm The search term.
+     * @param field The attribute(s) to search in (defaults to all).
+     * @param page The page number (0-indexed).
+     * @param size The number of items per page.
+     * @param sortDir The sort direction (asc/desc) by user ID.
+     * @return A Mono emitting the paginated matching users with the total count.
+     * @throws IllegalArgumentException if search term or pagination parameters
+     * are invalid.
+     */
+    @GetMapping(USER_ADMIN_SEARCH)
+    @ResponseStatus(HttpStatus.OK)
+    @PreAuthorize("hasRole('" + ROLE_ADMIN + "')")
+    public Mono<PaginatedResponse<User>> searchUsers(
+            @RequestParam String searchTerm,
+            @RequestParam(defaultValue = "ALL") UserSearchField field,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "asc") String sortDir) {
+        if (searchTerm == null || searchTerm.isBlank() || page < 0 || size <= 0) {
+            throw new IllegalArgumentException(ApiResponseMessages.INVALID_SEARCH_TERM + " or " + ApiResponseMessages.INVALID_PAGINATION_PARAMETERS);
+        }
+        Sort sort = sortDir.equalsIgnoreCase(Sort.Direction.ASC.name()) ? Sort.by("id").ascending() : Sort.by("id").descending();
+        Pageable pageable = PageRequest.of(page, size, sort);
+        return userService.searchUsers(searchTerm, field, pageable);
+        // Errors are handled by GlobalExceptionHandler.
+    }
+
     /**
      * Checks if a user with the given authorization id exists.
      *
@@ -0,0 +1,33 @@
+package com.aliwudi.marketplace.backend.user.dto;
+
+import com.aliwudi.marketplace.backend.common.model.User;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A user written on one user-service node, relayed to the search index of
+ * the other nodes: the searchable attributes of the user, or the fact that it
+ * was deleted. Nothing else of the user (e.g. its password hash) is sent.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserSearchIndexChange {
+    private Long userId;
+    private boolean deleted;
+    private String firstName;
+    private String lastName;
+    private String phoneNumber;
+    private String email;
+    private String shippingAddress;
+
+    public static UserSearchIndexChange upserted(User user) {
+        return new UserSearchIndexChange(user.getId(), false, user.getFirstName(), user.getLastName(),
+                user.getPhoneNumber(), user.getEmail(), user.getShippingAddress());
+    }
+
+    public static UserSearchIndexChange deleted(Long userId) {
+        return new UserSearchIndexChange(userId, true, null, null, null, null, null);
+    }
+}
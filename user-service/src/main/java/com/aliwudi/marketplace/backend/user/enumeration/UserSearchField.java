@@ -0,0 +1,12 @@
+package com.aliwudi.marketplace.backend.user.enumeration;
+
+/**
+ * User attributes the admin user search can be restricted to.
+ */
+public enum UserSearchField {
+    ALL,
+    FIRST_NAME,
+    LAST_NAME,
+    PHONE_NUMBER_OR_EMAIL,
+    SHIPPING_ADDRESS;
+}
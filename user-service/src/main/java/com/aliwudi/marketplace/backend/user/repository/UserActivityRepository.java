@@ -0,0 +1,22 @@
+package com.aliwudi.marketplace.backend.user.repository;
+
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * Bulk writes of login/logout timestamps, mixed into {@link UserRepository}.
+ */
+public interface UserActivityRepository {
+
+    /**
+     * Updates last login and/or last logout times of many users with a single
+     * UPDATE statement. A null timestamp leaves the stored value untouched.
+     *
+     * @param lastLoginAt Last login time per user ID.
+     * @param lastLogoutAt Last logout time per user ID.
+     * @return A Mono emitting the number of updated rows.
+     */
+    Mono<Long> updateLoginActivity(Map<Long, LocalDateTime> lastLoginAt, Map<Long, LocalDateTime> lastLogoutAt);
+}
@@ -0,0 +1,71 @@
+package com.aliwudi.marketplace.backend.user.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Builds one portable (MySQL/H2) UPDATE ... SET col = CASE id WHEN ... END
+ * statement for the whole batch instead of one UPDATE per user.
+ */
+@RequiredArgsConstructor
+public class UserActivityRepositoryImpl implements UserActivityRepository {
+
+    private final DatabaseClient databaseClient;
+
+    @Override
+    public Mono<Long> updateLoginActivity(Map<Long, LocalDateTime> lastLoginAt, Map<Long, LocalDateTime> lastLogoutAt) {
+        Set<Long> userIds = new LinkedHashSet<>(lastLoginAt.keySet());
+        userIds.addAll(lastLogoutAt.keySet());
+        if (userIds.isEmpty()) {
+            return Mono.just(0L);
+        }
+
+        Map<String, Object> bindings = new LinkedHashMap<>();
+        List<String> assignments = new ArrayList<>();
+        if (!lastLoginAt.isEmpty()) {
+            assignments.add(caseAssignment("last_login_at", "login", lastLoginAt, bindings));
+        }
+        if (!lastLogoutAt.isEmpty()) {
+            assignments.add(caseAssignment("last_logout_at", "logout", lastLogoutAt, bindings));
+        }
+
+        List<String> idParams = new ArrayList<>();
+        int i = 0;
+        for (Long userId : userIds) {
+            String param = "id" + i++;
+            idParams.add(":" + param);
+            bindings.put(param, userId);
+        }
+
+        String sql = "UPDATE users SET " + String.join(", ", assignments)
+                + " WHERE id IN (" + String.join(", ", idParams) + ")";
+
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(sql);
+        for (Map.Entry<String, Object> binding : bindings.entrySet()) {
+            spec = spec.bind(binding.getKey(), binding.getValue());
+        }
+        return spec.fetch().rowsUpdated();
+    }
+
+    private String caseAssignment(String column, String paramPrefix, Map<Long, LocalDateTime> values, Map<String, Object> bindings) {
+        StringBuilder sql = new StringBuilder(column).append(" = CASE id");
+        int i = 0;
+        for (Map.Entry<Long, LocalDateTime> entry : values.entrySet()) {
+            String idParam = paramPrefix + "Id" + i;
+            String valueParam = paramPrefix + "At" + i++;
+            sql.append(" WHEN :").append(idParam).append(" THEN :").append(valueParam);
+            bindings.put(idParam, entry.getKey());
+            bindings.put(valueParam, entry.getValue());
+        }
+        return sql.append(" ELSE ").append(column).append(" END").toString();
+    }
+}
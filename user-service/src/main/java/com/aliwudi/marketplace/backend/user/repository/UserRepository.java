@@ -9,7 +9,7 @@ import org.springframework.data.repository.reactive.ReactiveCrudRepository;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
-public interface UserRepository extends R2dbcRepository<User, Long> {
+public interface UserRepository extends R2dbcRepository<User, Long>, UserActivityRepository {
 
     // --- Basic CRUD operations are inherited from ReactiveCrudRepository ---
 
@@ -90,4 +90,8 @@ public interface UserRepository extends R2dbcRepository<User, Long> {
            "LEFT JOIN roles r ON ur.role_id = r.id " +
            "WHERE u.email = :email")
     Flux<User> findUserWithRolesByEmail(String email);    
-}
\ No newline at end of file
+
+    // Keyset page of user IDs, for walking all users without OFFSET scans
+    @Query("SELECT id FROM users WHERE id > :afterId ORDER BY id LIMIT :limit")
+    Flux<Long> findIdsAfter(Long afterId, int limit);
+}
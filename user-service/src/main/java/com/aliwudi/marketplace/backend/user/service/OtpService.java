@@ -4,16 +4,22 @@ import com.aliwudi.marketplace.backend.common.exception.OtpValidationException;
 import static com.aliwudi.marketplace.backend.common.constants.RedisConstants.*;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
-import reactor.core.scheduler.Schedulers;
 
 import java.security.SecureRandom;
 import java.time.Duration;
+import java.util.List;
 
 /**
  * Service for generating, storing, and validating One-Time Passwords (OTPs) using Redis.
+ *
+ * Validation runs as a single Lua script so the compare, delete and failed
+ * attempt bookkeeping happen atomically in one round trip: a code can only be
+ * consumed once, and too many wrong codes lock the user out for a while.
  */
 @Service
 @RequiredArgsConstructor
@@ -25,57 +31,119 @@ public class OtpService {
     private static final int OTP_LENGTH = 6;
     private static final SecureRandom secureRandom = new SecureRandom();
 
+    // Script results
+    private static final long OTP_VALID = 1L;
+    private static final long OTP_MISMATCH = 0L;
+    private static final long OTP_NOT_FOUND = -1L;
+    private static final long OTP_LOCKED = -2L;
+    private static final long OTP_LOCKED_NOW = -3L;
+
+    /**
+     * KEYS[1] = OTP key, KEYS[2] = attempts key, KEYS[3] = lock key
+     * ARGV[1] = provided code, ARGV[2] = max attempts, ARGV[3] = lockout seconds
+     */
+    private static final RedisScript<Long> VALIDATE_AND_DELETE_SCRIPT = RedisScript.of("""
+            if redis.call('EXISTS', KEYS[3]) == 1 then
+              return -2
+            end
+            local stored = redis.call('GET', KEYS[1])
+            if not stored then
+              return -1
+            end
+            if stored == ARGV[1] then
+              redis.call('DEL', KEYS[1], KEYS[2])
+              return 1
+            end
+            local attempts = redis.call('INCR', KEYS[2])
+            if attempts == 1 then
+              -- The attempt counter lives exactly as long as the code it belongs to
+              local ttl = redis.call('PTTL', KEYS[1])
+              if ttl > 0 then
+                redis.call('PEXPIRE', KEYS[2], ttl)
+              end
+            end
+            if attempts >= tonumber(ARGV[2]) then
+              redis.call('DEL', KEYS[1], KEYS[2])
+              redis.call('SET', KEYS[3], '1', 'EX', ARGV[3])
+              return -3
+            end
+            return 0
+            """, Long.class);
+
+    // Wrong codes allowed before the user is locked out
+    @Value("${otp.max-attempts:5}")
+    private int maxAttempts;
+
+    // How long a locked out user cannot verify any code
+    @Value("${otp.lockout-duration:15m}")
+    private Duration lockoutDuration;
+
     /**
-     * Generates a new OTP, stores it in Redis with a TTL, and returns the OTP.
+     * Generates a new OTP and stores it in Redis with a TTL (SET NX), then
+     * returns it. If the user still has an active OTP, that code is returned
+     * instead, so duplicate requests never invalidate a code already sent out.
      *
      * @param userId The ID of the user (e.g., internal DB ID or Authorization Server authId) to associate with the OTP.
      * @param validityDuration The duration for which the OTP is valid.
-     * @return Mono<String> emitting the generated OTP code.
+     * @return Mono<String> emitting the OTP code to deliver.
      */
     public Mono<String> generateAndStoreOtp(String userId, Duration validityDuration) {
-        return Mono.fromCallable(() -> {
-            String otpCode = generateRandomOtp();
-            String redisKey = OTP_PREFIX + userId;
-            log.debug("Generated OTP {} for user {}. Storing in Redis for {} minutes.", otpCode, userId, validityDuration.toMinutes());
-            return reactiveRedisTemplate.opsForValue().set(redisKey, otpCode, validityDuration)
-                    .thenReturn(otpCode);
-        })
-        .flatMap(m -> m) // Flatten Mono<Mono<String>>
-        .subscribeOn(Schedulers.boundedElastic()); // Offload blocking Redis calls if any, though ReactiveRedisTemplate is non-blocking
+        String redisKey = OTP_PREFIX + userId;
+        String otpCode = generateRandomOtp();
+        return reactiveRedisTemplate.opsForValue().setIfAbsent(redisKey, otpCode, validityDuration)
+                .flatMap(stored -> {
+                    if (stored) {
+                        log.debug("Generated OTP for user {}. Stored in Redis for {} minutes.", userId, validityDuration.toMinutes());
+                        return Mono.just(otpCode);
+                    }
+                    log.debug("User {} already has an active OTP, reusing it.", userId);
+                    return reactiveRedisTemplate.opsForValue().get(redisKey)
+                            // The active code expired in between, store the new one
+                            .switchIfEmpty(Mono.defer(() -> reactiveRedisTemplate.opsForValue()
+                                    .set(redisKey, otpCode, validityDuration)
+                                    .thenReturn(otpCode)));
+                });
     }
 
     /**
      * Validates a provided OTP against the one stored in Redis for a given user.
-     * If valid, the OTP is deleted from Redis to prevent reuse.
+     * If valid, the OTP is deleted in the same atomic step to prevent reuse.
      *
      * @param userId The ID of the user.
      * @param providedOtp The OTP submitted by the user.
-     * @return Mono<Boolean> emitting true if OTP is valid, false otherwise.
-     * @throws OtpValidationException if the OTP is invalid or expired.
+     * @return Mono<Boolean> emitting true if OTP is valid.
+     * @throws OtpValidationException if the OTP is invalid or expired, or the user is locked out.
      */
     public Mono<Boolean> validateOtp(String userId, String providedOtp) {
-        String redisKey = OTP_PREFIX + userId;
         log.debug("Attempting to validate OTP for user {}.", userId);
+        if (providedOtp == null || providedOtp.isBlank()) {
+            return Mono.error(new OtpValidationException("Invalid verification code."));
+        }
 
-        return reactiveRedisTemplate.opsForValue().get(redisKey)
-                .flatMap(storedOtp -> {
-                    if (storedOtp == null) {
-                        log.warn("OTP for user {} not found in Redis (or expired/already used).", userId);
-                        return Mono.error(new OtpValidationException("Invalid or expired verification code."));
+        List<String> keys = List.of(OTP_PREFIX + userId, OTP_ATTEMPTS_PREFIX + userId, OTP_LOCK_PREFIX + userId);
+        List<String> args = List.of(providedOtp, String.valueOf(maxAttempts), String.valueOf(lockoutDuration.toSeconds()));
+
+        return reactiveRedisTemplate.execute(VALIDATE_AND_DELETE_SCRIPT, keys, args)
+                .next()
+                .flatMap(result -> {
+                    if (result == OTP_VALID) {
+                        log.info("OTP for user {} is valid and has been consumed.", userId);
+                        return Mono.just(true);
                     }
-                    if (!storedOtp.equals(providedOtp)) {
+                    if (result == OTP_MISMATCH) {
                         log.warn("Invalid OTP provided for user {}. Mismatch.", userId);
                         return Mono.error(new OtpValidationException("Invalid verification code."));
                     }
-
-                    // OTP is valid, delete from Redis to prevent reuse
-                    log.info("OTP for user {} is valid. Deleting from Redis.", userId);
-                    return reactiveRedisTemplate.delete(redisKey)
-                            .thenReturn(true);
+                    if (result == OTP_LOCKED || result == OTP_LOCKED_NOW) {
+                        log.warn("User {} is locked out of OTP verification.", userId);
+                        return Mono.error(new OtpValidationException("Too many invalid attempts. Please try again later."));
+                    }
+                    log.warn("OTP for user {} not found in Redis (or expired/already used).", userId);
+                    return Mono.error(new OtpValidationException("Invalid or expired verification code."));
                 })
-                .switchIfEmpty(Mono.error(new OtpValidationException("Invalid or expired verification code."))) // Handles case where get() returns empty
-                .doOnError(e -> log.error("Error during OTP validation for user {}: {}", userId, e.getMessage(), e))
-                .subscribeOn(Schedulers.boundedElastic());
+                .switchIfEmpty(Mono.error(new OtpValidationException("Invalid or expired verification code.")))
+                .doOnError(e -> !(e instanceof OtpValidationException),
+                        e -> log.error("Error during OTP validation for user {}: {}", userId, e.getMessage(), e));
     }
 
     /**
@@ -88,4 +156,4 @@ public class OtpService {
         int otp = secureRandom.nextInt(max - min + 1) + min;
         return String.format("%0" + OTP_LENGTH + "d", otp); // Pad with leading zeros
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,161 @@
+package com.aliwudi.marketplace.backend.user.service;
+
+import com.aliwudi.marketplace.backend.user.repository.UserRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Records login/logout timestamps in memory and writes them to the users table
+ * in the background, so the login and logout requests never wait on a
+ * database write.
+ *
+ * Repeated logins by the same user between two flushes are coalesced into a
+ * single row update, and each flush is one UPDATE statement per batch of users.
+ * Failed flushes are put back into the buffer and retried on the next tick.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class UserActivityTracker {
+
+    private final UserRepository userRepository;
+
+    private final Map<Long, PendingActivity> buffer = new ConcurrentHashMap<>();
+    private Disposable flushLoop;
+
+    // How often buffered timestamps are written to the database
+    @Value("${user.activity.flush-interval:5s}")
+    private Duration flushInterval;
+
+    // Maximum number of users written by one UPDATE statement
+    @Value("${user.activity.max-batch-size:500}")
+    private int maxBatchSize;
+
+    @PostConstruct
+    public void start() {
+        flushLoop = Flux.interval(flushInterval)
+                .onBackpressureDrop() // Skip a tick if the previous flush is still running
+                .concatMap(tick -> flush())
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (flushLoop != null) {
+            flushLoop.dispose();
+        }
+        flush().block(Duration.ofSeconds(10)); // Don't lose what is still buffered
+    }
+
+    /**
+     * Buffers the login time of a user.
+     *
+     * @param userId The ID of the user.
+     * @param loginAt The login time.
+     */
+    public void recordLogin(Long userId, LocalDateTime loginAt) {
+        buffer.merge(userId, new PendingActivity(loginAt, null), PendingActivity::merge);
+    }
+
+    /**
+     * Buffers the logout time of a user.
+     *
+     * @param userId The ID of the user.
+     * @param logoutAt The logout time.
+     */
+    public void recordLogout(Long userId, LocalDateTime logoutAt) {
+        buffer.merge(userId, new PendingActivity(null, logoutAt), PendingActivity::merge);
+    }
+
+    /**
+     * Drains the buffer and writes it in batches. Never errors; failed
+     * batches go back to the buffer.
+     */
+    Mono<Void> flush() {
+        if (buffer.isEmpty()) {
+            return Mono.empty();
+        }
+
+        Map<Long, PendingActivity> drained = new HashMap<>();
+        for (Long userId : buffer.keySet()) {
+            PendingActivity activity = buffer.remove(userId);
+            if (activity != null) {
+                drained.put(userId, activity);
+            }
+        }
+
+        List<Map<Long, PendingActivity>> batches = new ArrayList<>();
+        Map<Long, PendingActivity> batch = new HashMap<>();
+        for (Map.Entry<Long, PendingActivity> entry : drained.entrySet()) {
+            batch.put(entry.getKey(), entry.getValue());
+            if (batch.size() >= maxBatchSize) {
+                batches.add(batch);
+                batch = new HashMap<>();
+            }
+        }
+        if (!batch.isEmpty()) {
+            batches.add(batch);
+        }
+
+        return Flux.fromIterable(batches)
+                .concatMap(this::write)
+                .then();
+    }
+
+    private Mono<Void> write(Map<Long, PendingActivity> batch) {
+        Map<Long, LocalDateTime> logins = new HashMap<>();
+        Map<Long, LocalDateTime> logouts = new HashMap<>();
+        batch.forEach((userId, activity) -> {
+            if (activity.lastLoginAt() != null) {
+                logins.put(userId, activity.lastLoginAt());
+            }
+            if (activity.lastLogoutAt() != null) {
+                logouts.put(userId, activity.lastLogoutAt());
+            }
+        });
+
+        return userRepository.updateLoginActivity(logins, logouts)
+                .doOnNext(updated -> log.debug("Flushed login activity of {} user(s)", updated))
+                .onErrorResume(e -> {
+                    log.warn("Failed to flush login activity of {} user(s), will retry: {}", batch.size(), e.getMessage());
+                    batch.forEach((userId, activity) -> buffer.merge(userId, activity, PendingActivity::merge));
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    /**
+     * Latest not yet persisted login/logout times of one user.
+     */
+    record PendingActivity(LocalDateTime lastLoginAt, LocalDateTime lastLogoutAt) {
+
+        PendingActivity merge(PendingActivity other) {
+            return new PendingActivity(latest(lastLoginAt, other.lastLoginAt), latest(lastLogoutAt, other.lastLogoutAt));
+        }
+
+        private static LocalDateTime latest(LocalDateTime a, LocalDateTime b) {
+            if (a == null) {
+                return b;
+            }
+            if (b == null) {
+                return a;
+            }
+            return a.isAfter(b) ? a : b;
+        }
+    }
+}
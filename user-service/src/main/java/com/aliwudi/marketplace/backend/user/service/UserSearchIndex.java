@@ -0,0 +1,352 @@
+package com.aliwudi.marketplace.backend.user.service;
+
+import com.aliwudi.marketplace.backend.common.model.User;
+import com.aliwudi.marketplace.backend.user.dto.UserSearchIndexChange;
+import com.aliwudi.marketplace.backend.user.enumeration.UserSearchField;
+import com.aliwudi.marketplace.backend.user.repository.UserRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory trigram index over the searchable user attributes (names, phone
+ * number, email, shipping address) used by the admin user search.
+ *
+ * A "contains" search for a term of three or more characters only looks at
+ * users sharing all of the term's trigrams, instead of scanning the whole
+ * users table with a leading-wildcard ILIKE. One- and two-character grams are
+ * indexed as well (roughly doubling the postings), so a shorter term is a
+ * single lookup rather than a scan of every user. MySQL and H2 have no
+ * trigram index, hence the in-memory index.
+ *
+ * The index is loaded when the application is ready and updated by UserService
+ * on create/update/delete. Each such write is also passed to the write
+ * listener, which UserSearchIndexRelay uses to apply it to the index of every
+ * other node. The index is fully rebuilt every user.search.rebuild-interval
+ * (10 minutes by default) to pick up changes made outside this service, or
+ * whose propagation was lost (e.g. during a broker outage): those are the
+ * only ones a search can miss, for at most one interval. A rebuild streams
+ * the users table into a fresh index while the current one keeps serving
+ * searches; writes made meanwhile are applied to both, and win over the
+ * (possibly older) rows of the load.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class UserSearchIndex {
+
+    private static final int GRAM_SIZE = 3; // Longer terms are looked up by their trigrams, shorter ones as a whole
+    private static final int LOAD_BATCH_SIZE = 500; // Loaded users added to a rebuild per lock acquisition
+
+    private final UserRepository userRepository;
+
+    // Postings and documents are replaced together on rebuild
+    private volatile Snapshot snapshot = Snapshot.empty();
+    // The rebuild in progress, if any; guarded by this
+    private Rebuild pendingRebuild;
+    private Disposable rebuildLoop;
+    private volatile WriteListener writeListener;
+
+    @Value("${user.search.rebuild-interval:10m}")
+    private Duration rebuildInterval;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        rebuildLoop = Flux.interval(Duration.ZERO, rebuildInterval)
+                .onBackpressureDrop()
+                .concatMap(tick -> rebuild()
+                        .onErrorResume(e -> {
+                            log.warn("Failed to rebuild user search index: {}", e.getMessage());
+                            return Mono.empty();
+                        }))
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (rebuildLoop != null) {
+            rebuildLoop.dispose();
+        }
+    }
+
+    /**
+     * Told about every user written through upsert and remove.
+     */
+    public interface WriteListener {
+
+        void onUserUpserted(User user);
+
+        void onUserRemoved(Long userId);
+    }
+
+    /**
+     * Sets the listener told about every write made through this index.
+     *
+     * @param writeListener The listener.
+     */
+    public void setWriteListener(WriteListener writeListener) {
+        this.writeListener = writeListener;
+    }
+
+    /**
+     * Reloads every user from the database into a fresh index, which replaces
+     * the current one once the load is complete.
+     */
+    Mono<Void> rebuild() {
+        return Mono.defer(() -> {
+            Rebuild current = new Rebuild(Snapshot.empty(), new HashSet<>());
+            synchronized (this) {
+                pendingRebuild = current;
+            }
+            return userRepository.findAll()
+                    .map(IndexedUser::of)
+                    .buffer(LOAD_BATCH_SIZE)
+                    .doOnNext(users -> {
+                        synchronized (this) {
+                            for (IndexedUser user : users) {
+                                // A user written during the load is already in its latest state
+                                if (!current.written().contains(user.id())) {
+                                    current.fresh().add(user);
+                                }
+                            }
+                        }
+                    })
+                    .then(Mono.<Void>fromRunnable(() -> {
+                        synchronized (this) {
+                            snapshot = current.fresh();
+                        }
+                        log.debug("User search index rebuilt with {} user(s)", current.fresh().documents().size());
+                    }))
+                    .doFinally(signal -> {
+                        synchronized (this) {
+                            if (pendingRebuild == current) {
+                                pendingRebuild = null;
+                            }
+                        }
+                    });
+        });
+    }
+
+    /**
+     * Adds a user to the index, or replaces its indexed attributes.
+     *
+     * @param user The created or updated user.
+     */
+    public void upsert(User user) {
+        if (user == null || user.getId() == null) {
+            return;
+        }
+        put(IndexedUser.of(user));
+        WriteListener listener = writeListener;
+        if (listener != null) {
+            listener.onUserUpserted(user);
+        }
+    }
+
+    /**
+     * Removes a user from the index.
+     *
+     * @param userId The ID of the deleted user.
+     */
+    public void remove(Long userId) {
+        delete(userId);
+        WriteListener listener = writeListener;
+        if (listener != null) {
+            listener.onUserRemoved(userId);
+        }
+    }
+
+    /**
+     * Applies a user write made on another node. Not passed to the write
+     * listener.
+     *
+     * @param change The written user.
+     */
+    public void apply(UserSearchIndexChange change) {
+        if (change.isDeleted()) {
+            delete(change.getUserId());
+        } else {
+            put(new IndexedUser(change.getUserId(), normalize(change.getFirstName()), normalize(change.getLastName()),
+                    normalize(change.getPhoneNumber()), normalize(change.getEmail()), normalize(change.getShippingAddress())));
+        }
+    }
+
+    private synchronized void put(IndexedUser user) {
+        snapshot.remove(user.id());
+        snapshot.add(user);
+        if (pendingRebuild != null) {
+            pendingRebuild.written().add(user.id());
+            pendingRebuild.fresh().remove(user.id());
+            pendingRebuild.fresh().add(user);
+        }
+    }
+
+    private synchronized void delete(Long userId) {
+        snapshot.remove(userId);
+        if (pendingRebuild != null) {
+            pendingRebuild.written().add(userId);
+            pendingRebuild.fresh().remove(userId);
+        }
+    }
+
+    /**
+     * Finds the IDs of all users whose selected attribute(s) contain the term
+     * (case-insensitive), ordered by ID.
+     *
+     * @param term The search term.
+     * @param field The attribute(s) to search in.
+     * @param direction The ID sort direction.
+     * @return The matching user IDs, in order.
+     */
+    public List<Long> search(String term, UserSearchField field, Sort.Direction direction) {
+        String needle = normalize(term);
+        Snapshot current = snapshot;
+
+        Collection<Long> candidates = needle.isEmpty()
+                ? current.documents().keySet() // Every user matches
+                : current.candidates(needle);
+
+        List<Long> matches = new ArrayList<>();
+        for (Long userId : candidates) {
+            IndexedUser user = current.documents().get(userId);
+            if (user != null && user.matches(field, needle)) {
+                matches.add(userId);
+            }
+        }
+        matches.sort(direction.isAscending() ? Comparator.naturalOrder() : Comparator.reverseOrder());
+        return matches;
+    }
+
+    private static String normalize(String value) {
+        return value == null ? "" : value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static Set<String> grams(String value, int size) {
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + size <= value.length(); i++) {
+            grams.add(value.substring(i, i + size));
+        }
+        return grams;
+    }
+
+    /**
+     * Gram postings plus the indexed attributes of every user. Writers are
+     * serialized by the index; readers may see a write in progress, which is
+     * harmless because every candidate is re-checked against its document.
+     */
+    private record Snapshot(Map<String, Set<Long>> postings, Map<Long, IndexedUser> documents) {
+
+        static Snapshot empty() {
+            return new Snapshot(new ConcurrentHashMap<>(), new ConcurrentHashMap<>());
+        }
+
+        void add(IndexedUser user) {
+            documents.put(user.id(), user);
+            for (String gram : user.grams()) {
+                postings.computeIfAbsent(gram, g -> ConcurrentHashMap.newKeySet()).add(user.id());
+            }
+        }
+
+        void remove(Long userId) {
+            IndexedUser previous = documents.remove(userId);
+            if (previous == null) {
+                return;
+            }
+            for (String gram : previous.grams()) {
+                Set<Long> ids = postings.get(gram);
+                if (ids != null) {
+                    ids.remove(userId);
+                    if (ids.isEmpty()) {
+                        postings.remove(gram);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Users having every trigram of the term, starting from the rarest one;
+         * for a shorter term, the users having the term itself as a gram.
+         */
+        Collection<Long> candidates(String needle) {
+            if (needle.length() < GRAM_SIZE) {
+                return postings.getOrDefault(needle, Set.of());
+            }
+            List<Set<Long>> lists = new ArrayList<>();
+            for (String gram : grams(needle, GRAM_SIZE)) {
+                Set<Long> ids = postings.get(gram);
+                if (ids == null) {
+                    return List.of();
+                }
+                lists.add(ids);
+            }
+            lists.sort(Comparator.comparingInt(Set::size));
+            Set<Long> result = new HashSet<>(lists.get(0));
+            for (int i = 1; i < lists.size() && !result.isEmpty(); i++) {
+                result.retainAll(lists.get(i));
+            }
+            return result;
+        }
+    }
+
+    /**
+     * A fresh index being loaded, and the IDs of the users written (upserted
+     * or removed) since the load started.
+     */
+    private record Rebuild(Snapshot fresh, Set<Long> written) {
+    }
+
+    /**
+     * Lower-cased searchable attributes of one user.
+     */
+    private record IndexedUser(Long id, String firstName, String lastName, String phoneNumber,
+                               String email, String shippingAddress) {
+
+        static IndexedUser of(User user) {
+            return new IndexedUser(user.getId(), normalize(user.getFirstName()), normalize(user.getLastName()),
+                    normalize(user.getPhoneNumber()), normalize(user.getEmail()), normalize(user.getShippingAddress()));
+        }
+
+        /**
+         * Grams of one to three characters of every attribute.
+         */
+        Set<String> grams() {
+            Set<String> grams = new HashSet<>();
+            for (String value : List.of(firstName, lastName, phoneNumber, email, shippingAddress)) {
+                for (int size = 1; size <= GRAM_SIZE; size++) {
+                    grams.addAll(UserSearchIndex.grams(value, size));
+                }
+            }
+            return grams;
+        }
+
+        boolean matches(UserSearchField field, String needle) {
+            return switch (field) {
+                case FIRST_NAME -> firstName.contains(needle);
+                case LAST_NAME -> lastName.contains(needle);
+                case PHONE_NUMBER_OR_EMAIL -> phoneNumber.contains(needle) || email.contains(needle);
+                case SHIPPING_ADDRESS -> shippingAddress.contains(needle);
+                case ALL -> firstName.contains(needle) || lastName.contains(needle) || phoneNumber.contains(needle)
+                        || email.contains(needle) || shippingAddress.contains(needle);
+            };
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.aliwudi.marketplace.backend.user.service;
+
+import static com.aliwudi.marketplace.backend.common.constants.ExchangeType.*;
+import com.aliwudi.marketplace.backend.common.model.User;
+import com.aliwudi.marketplace.backend.user.dto.UserSearchIndexChange;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.AmqpTemplate;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Keeps the user search index of every user-service node up to date with the
+ * users written on any of them.
+ *
+ * Every write made through this node's UserSearchIndex is published to the
+ * user search fanout exchange, to which each node binds its own exclusive
+ * queue; the other nodes apply it to their index as it arrives. Writes are
+ * sent in the order they were made, and one consumer per node applies them
+ * in that order. A write lost on the way (e.g. while the broker is down) is
+ * picked up by the next full rebuild of the index.
+ */
+@Component
+@Slf4j
+public class UserSearchIndexRelay implements UserSearchIndex.WriteListener {
+
+    private static final String ORIGIN_NODE_HEADER = "x-origin-node";
+
+    private final UserSearchIndex searchIndex;
+    private final AmqpTemplate amqpTemplate;
+    private final String nodeId;
+
+    // Sends are blocking broker calls; run them off the caller's thread, in write order
+    private final Scheduler relayScheduler = Schedulers.newSingle("user-search-relay");
+
+    public UserSearchIndexRelay(UserSearchIndex searchIndex,
+                                AmqpTemplate amqpTemplate,
+                                @Qualifier("userSearchNodeQueue") Queue userSearchNodeQueue) {
+        this.searchIndex = searchIndex;
+        this.amqpTemplate = amqpTemplate;
+        this.nodeId = userSearchNodeQueue.getName();
+    }
+
+    @PostConstruct
+    public void init() {
+        searchIndex.setWriteListener(this);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        relayScheduler.dispose();
+    }
+
+    @Override
+    public void onUserUpserted(User user) {
+        relay(UserSearchIndexChange.upserted(user));
+    }
+
+    @Override
+    public void onUserRemoved(Long userId) {
+        relay(UserSearchIndexChange.deleted(userId));
+    }
+
+    private void relay(UserSearchIndexChange change) {
+        Mono.fromRunnable(() -> amqpTemplate.convertAndSend(
+                        USER_SEARCH_EXCHANGE,
+                        "", // Ignored by the fanout exchange
+                        change,
+                        message -> {
+                            message.getMessageProperties().setHeader(ORIGIN_NODE_HEADER, nodeId);
+                            return message;
+                        }))
+                .subscribeOn(relayScheduler)
+                .subscribe(
+                        v -> { },
+                        e -> log.warn("Failed to relay search index change of user {} to other nodes: {}", change.getUserId(), e.getMessage()));
+    }
+
+    /**
+     * Receives the users written on every node, including this one.
+     *
+     * @param change The written user.
+     * @param originNode The node that wrote it.
+     */
+    @RabbitListener(queues = "#{userSearchNodeQueue.name}")
+    public void handleRelayedChange(UserSearchIndexChange change,
+                                    @Header(name = ORIGIN_NODE_HEADER, required = false) String originNode) {
+        if (nodeId.equals(originNode)) {
+            return; // Already applied locally by the write itself
+        }
+        searchIndex.apply(change);
+    }
+}
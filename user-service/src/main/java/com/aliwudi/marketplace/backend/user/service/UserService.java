@@ -18,20 +18,26 @@ import com.aliwudi.marketplace.backend.common.exception.UserNotFoundException; /
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Collectors;
 
 import com.aliwudi.marketplace.backend.common.response.ApiResponseMessages;
 import com.aliwudi.marketplace.backend.common.dto.UserProfileCreateRequest;
 import com.aliwudi.marketplace.backend.common.exception.InvalidUserDataException;
+import com.aliwudi.marketplace.backend.user.dto.PaginatedResponse;
 import com.aliwudi.marketplace.backend.user.dto.UserRequest;
+import com.aliwudi.marketplace.backend.user.enumeration.UserSearchField;
 import com.aliwudi.marketplace.backend.user.auth.service.IAdminService;
 import static com.aliwudi.marketplace.backend.user.enumeration.AuthServerAttribute.*;
 import java.time.Duration;
@@ -56,6 +62,7 @@ public class UserService {
     private final IAdminService iAdminService; // For Authorization Server Admin API interactions
     private final OtpService otpService; // NEW: Inject OtpService
     private final NotificationEventPublisherService notificationEventPublisherService; // Already injected
+    private final UserSearchIndex userSearchIndex;
 
     // OTP validity for email verification (e.g., 5 minutes)
     private static final Duration EMAIL_OTP_VALIDITY = Duration.ofMinutes(5);
@@ -295,7 +302,10 @@ public class UserService {
                                 });
                     })
                     .flatMap(this::prepareDto)
-                    .doOnSuccess(u -> log.debug("User created successfully with ID: {}", u.getId()))
+                    .doOnSuccess(u -> {
+                        log.debug("User created successfully with ID: {}", u.getId());
+                        userSearchIndex.upsert(u);
+                    })
                     .doOnError(e -> log.error("Error creating user {}: {}", userPrimaryIdentifier, e.getMessage(), e));
         });
     }
@@ -777,7 +787,10 @@ public class UserService {
                             });
                 })
                 .flatMap(this::prepareDto)
-                .doOnSuccess(u -> log.debug("User updated successfully with ID: {}", u.getId()))
+                .doOnSuccess(u -> {
+                    log.debug("User updated successfully with ID: {}", u.getId());
+                    userSearchIndex.upsert(u);
+                })
                 .doOnError(e -> log.error("Error updating user with ID {}: {}", id, e.getMessage(), e));
     }
 
@@ -794,7 +807,10 @@ public class UserService {
      */
     public Mono<User> updateUserOnDB(User user) {
         return userRepository.save(user)
-               .doOnSuccess(_user -> log.debug("User with id {} save successfully", _user.getId()))
+               .doOnSuccess(_user -> {
+                   log.debug("User with id {} save successfully", _user.getId());
+                   userSearchIndex.upsert(_user);
+               })
               .doOnError(e -> log.error("Error saving user with  id  {}: {}", user.getId(), e.getMessage(), e));
     }    
    
@@ -825,7 +841,10 @@ public class UserService {
                             })
                             // 3. If Authorization Server deletion succeeds, then delete from Local Database
                             .then(userRepository.deleteById(id))
-                            .doOnSuccess(v -> log.info("User deleted from local database for ID: {}", id))
+                            .doOnSuccess(v -> {
+                                log.info("User deleted from local database for ID: {}", id);
+                                userSearchIndex.remove(id);
+                            })
                             .onErrorResume(e -> {
                                 // CRITICAL INCONSISTENCY: Keycloak deletion succeeded, but local DB failed.
                                 // Automatic rollback (re-creating user in Keycloak) for deletion is complex and usually not safe.
@@ -871,7 +890,10 @@ public class UserService {
                             })
                             // 3. If Authorization Server deletion succeeds, then delete from Local Database
                             .then(userRepository.deleteById(user.getId())) // Use user's primary ID for local deletion
-                            .doOnSuccess(v -> log.info("User deleted from local database for ID: {} (Auth ID: {})", user.getId(), authId))
+                            .doOnSuccess(v -> {
+                                log.info("User deleted from local database for ID: {} (Auth ID: {})", user.getId(), authId);
+                                userSearchIndex.remove(user.getId());
+                            })
                             .onErrorResume(e -> {
                                 // CRITICAL INCONSISTENCY: Keycloak deletion succeeded, but local DB failed.
                                 // Automatic rollback (re-creating user in Keycloak) for deletion is complex and usually not safe.
@@ -932,6 +954,34 @@ public class UserService {
                 .doOnError(e -> log.error("Error retrieving user by phone number {}: {}", phoneNumber, e.getMessage(), e));
     }
 
+    /**
+     * Retrieves the IDs of the users following a given ID, in ascending order.
+     * Callers walk all users by passing the last ID of the previous page.
+     *
+     * @param afterId The last ID of the previous page (0 for the first page).
+     * @param limit The maximum number of IDs to return.
+     * @return A Flux emitting user IDs.
+     */
+    public Flux<Long> getUserIdsAfter(Long afterId, int limit) {
+        log.debug("Retrieving up to {} user IDs after {}", limit, afterId);
+        return userRepository.findIdsAfter(afterId, limit)
+                .doOnError(e -> log.error("Error retrieving user IDs after {}: {}", afterId, e.getMessage(), e));
+    }
+
+    /**
+     * Retrieves several users by their IDs in one query. Unknown IDs are
+     * skipped. Roles are not loaded: this lookup serves callers that only need
+     * contact details, such as notification digests.
+     *
+     * @param ids The IDs of the users.
+     * @return A Flux emitting the users found.
+     */
+    public Flux<User> getUsersByIds(Collection<Long> ids) {
+        log.debug("Retrieving {} user(s) by ID", ids.size());
+        return userRepository.findAllById(ids)
+                .doOnError(e -> log.error("Error retrieving users by IDs: {}", e.getMessage(), e));
+    }
+
     /**
      * Retrieves all users with pagination, enriching each.
      *
@@ -1103,6 +1153,49 @@ public class UserService {
                 .doOnError(e -> log.error("Error counting users by shipping address {}: {}", shippingAddress, e.getMessage(), e));
     }
 
+    /**
+     * Searches users by a case-insensitive "contains" term on one or all
+     * searchable attributes, returning the requested page together with the
+     * total number of matches. Matching is done by the in-memory search index;
+     * only the rows of the requested page are loaded from the database.
+     *
+     * @param term The search term.
+     * @param field The attribute(s) to search in.
+     * @param pageable Pagination information; results are ordered by user ID
+     * in the direction of the pageable's sort.
+     * @return A Mono emitting the page of matching users (enriched) and the total count.
+     */
+    public Mono<PaginatedResponse<User>> searchUsers(String term, UserSearchField field, Pageable pageable) {
+        log.debug("Searching users by {} containing '{}' with pagination: {}", field, term, pageable);
+        Sort.Order idOrder = pageable.getSort().getOrderFor("id");
+        Sort.Direction direction = idOrder != null ? idOrder.getDirection() : Sort.Direction.ASC;
+
+        List<Long> matches = userSearchIndex.search(term, field, direction);
+        int total = matches.size();
+        int from = (int) Math.min(pageable.getOffset(), total);
+        int to = Math.min(from + pageable.getPageSize(), total);
+        List<Long> pageIds = matches.subList(from, to);
+
+        return userRepository.findAllById(pageIds)
+                .flatMap(this::prepareDto)
+                .collectMap(User::getId)
+                .map(usersById -> {
+                    // Keep the index order; skip users deleted since they were indexed
+                    List<User> content = pageIds.stream()
+                            .map(usersById::get)
+                            .filter(Objects::nonNull)
+                            .collect(Collectors.toList());
+                    // Users deleted outside this service are dropped from the index and not counted
+                    List<Long> deleted = pageIds.stream().filter(id -> !usersById.containsKey(id)).toList();
+                    deleted.forEach(userSearchIndex::remove);
+                    int found = total - deleted.size();
+                    return new PaginatedResponse<>(content, found, (found + pageable.getPageSize() - 1) / pageable.getPageSize(),
+                            pageable.getPageNumber(), pageable.getPageSize(), to >= total, pageable.getPageNumber() == 0);
+                })
+                .doOnSuccess(result -> log.debug("Found {} user(s) by {} containing '{}'", result.getTotalElements(), field, term))
+                .doOnError(e -> log.error("Error searching users by {} containing '{}': {}", field, term, e.getMessage(), e));
+    }
+
     /**
      * Checks if a user with the given user id exists.
      *
@@ -0,0 +1,85 @@
+package com.aliwudi.marketplace.backend.user.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.aliwudi.marketplace.backend.common.exception.OtpValidationException;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Load test of the OTP flow against an embedded redis-server: many users
+ * request a code, guess wrong once and then verify it, concurrently. Every
+ * user must end up verified exactly once, with no keys left behind.
+ */
+class OtpServiceLoadTest {
+
+    private static final int USERS = 5_000;
+    private static final int CONCURRENCY = 64;
+
+    private static RedisServer redisServer;
+    private static LettuceConnectionFactory connectionFactory;
+    private static ReactiveStringRedisTemplate redisTemplate;
+
+    @BeforeAll
+    static void startRedis() throws IOException {
+        int port = OtpServiceTest.freePort();
+        redisServer = new RedisServer(port);
+        redisServer.start();
+        connectionFactory = new LettuceConnectionFactory("localhost", port);
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        redisTemplate = new ReactiveStringRedisTemplate(connectionFactory);
+    }
+
+    @AfterAll
+    static void stopRedis() throws IOException {
+        connectionFactory.destroy();
+        redisServer.stop();
+    }
+
+    @Test
+    void concurrentUsersAreEachVerifiedExactlyOnce() {
+        OtpService otpService = OtpServiceTest.otpService(redisTemplate);
+        AtomicInteger verified = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+
+        long start = System.nanoTime();
+        Flux.range(0, USERS)
+                .flatMap(i -> {
+                    String userId = "load-user-" + i;
+                    return otpService.generateAndStoreOtp(userId, Duration.ofMinutes(5))
+                            .flatMap(code -> otpService.validateOtp(userId, code.equals("000000") ? "000001" : "000000")
+                                    .onErrorResume(OtpValidationException.class, e -> {
+                                        rejected.incrementAndGet();
+                                        return Mono.just(false);
+                                    })
+                                    .then(otpService.validateOtp(userId, code))
+                                    // A replay of the consumed code must fail
+                                    .flatMap(valid -> otpService.validateOtp(userId, code)
+                                            .onErrorResume(OtpValidationException.class, e -> Mono.just(false))
+                                            .doOnNext(replayed -> assertThat(replayed).isFalse())
+                                            .thenReturn(valid)));
+                }, CONCURRENCY)
+                .filter(Boolean::booleanValue)
+                .doOnNext(valid -> verified.incrementAndGet())
+                .blockLast(Duration.ofMinutes(2));
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+        System.out.printf("OTP load test: %d users (4 Redis round trips each) in %d ms, %.0f validations/s%n",
+                USERS, elapsed.toMillis(), USERS * 3 / (elapsed.toNanos() / 1e9));
+        assertThat(verified).hasValue(USERS);
+        assertThat(rejected).hasValue(USERS);
+        // Consumed codes and their attempt counters are all gone
+        assertThat(redisTemplate.keys("*").count().block()).isZero();
+    }
+}
@@ -0,0 +1,195 @@
+package com.aliwudi.marketplace.backend.user.service;
+
+import static com.aliwudi.marketplace.backend.common.constants.RedisConstants.*;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.aliwudi.marketplace.backend.common.exception.OtpValidationException;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Runs OtpService, including its compare-and-delete Lua script, against a
+ * real embedded redis-server.
+ */
+class OtpServiceTest {
+
+    private static final int MAX_ATTEMPTS = 3;
+    private static final Duration LOCKOUT = Duration.ofMinutes(15);
+    private static final Duration VALIDITY = Duration.ofMinutes(5);
+
+    private static RedisServer redisServer;
+    private static LettuceConnectionFactory connectionFactory;
+    private static ReactiveStringRedisTemplate redisTemplate;
+
+    private OtpService otpService;
+
+    @BeforeAll
+    static void startRedis() throws IOException {
+        int port = freePort();
+        redisServer = new RedisServer(port);
+        redisServer.start();
+        connectionFactory = new LettuceConnectionFactory("localhost", port);
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        redisTemplate = new ReactiveStringRedisTemplate(connectionFactory);
+    }
+
+    @AfterAll
+    static void stopRedis() throws IOException {
+        connectionFactory.destroy();
+        redisServer.stop();
+    }
+
+    @BeforeEach
+    void setUp() {
+        redisTemplate.execute(connection -> connection.serverCommands().flushAll()).blockLast();
+        otpService = otpService(redisTemplate);
+    }
+
+    static OtpService otpService(ReactiveStringRedisTemplate redisTemplate) {
+        OtpService otpService = new OtpService(redisTemplate);
+        ReflectionTestUtils.setField(otpService, "maxAttempts", MAX_ATTEMPTS);
+        ReflectionTestUtils.setField(otpService, "lockoutDuration", LOCKOUT);
+        return otpService;
+    }
+
+    static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    @Test
+    void correctCodeIsValidOnlyOnce() {
+        String code = otpService.generateAndStoreOtp("user-1", VALIDITY).block();
+
+        StepVerifier.create(otpService.validateOtp("user-1", code))
+                .expectNext(true)
+                .verifyComplete();
+        StepVerifier.create(otpService.validateOtp("user-1", code))
+                .expectErrorMessage("Invalid or expired verification code.")
+                .verify();
+        assertThat(exists(OTP_PREFIX + "user-1")).isFalse();
+    }
+
+    @Test
+    void activeCodeIsReusedInsteadOfReplaced() {
+        String first = otpService.generateAndStoreOtp("user-1", VALIDITY).block();
+        String second = otpService.generateAndStoreOtp("user-1", VALIDITY).block();
+
+        assertThat(second).isEqualTo(first);
+    }
+
+    @Test
+    void wrongCodeIsRejectedAndCountedForTheCodesLifetime() {
+        String code = otpService.generateAndStoreOtp("user-1", VALIDITY).block();
+
+        StepVerifier.create(otpService.validateOtp("user-1", wrong(code)))
+                .expectErrorMessage("Invalid verification code.")
+                .verify();
+
+        assertThat(redisTemplate.opsForValue().get(OTP_ATTEMPTS_PREFIX + "user-1").block()).isEqualTo("1");
+        Duration attemptsTtl = redisTemplate.getExpire(OTP_ATTEMPTS_PREFIX + "user-1").block();
+        assertThat(attemptsTtl).isPositive().isLessThanOrEqualTo(VALIDITY);
+        // The code itself survives a wrong guess, and the right code still clears the counter
+        StepVerifier.create(otpService.validateOtp("user-1", code))
+                .expectNext(true)
+                .verifyComplete();
+        assertThat(exists(OTP_ATTEMPTS_PREFIX + "user-1")).isFalse();
+    }
+
+    @Test
+    void tooManyWrongCodesLockTheUserOut() {
+        String code = otpService.generateAndStoreOtp("user-1", VALIDITY).block();
+
+        for (int attempt = 1; attempt < MAX_ATTEMPTS; attempt++) {
+            StepVerifier.create(otpService.validateOtp("user-1", wrong(code)))
+                    .expectErrorMessage("Invalid verification code.")
+                    .verify();
+        }
+        StepVerifier.create(otpService.validateOtp("user-1", wrong(code)))
+                .expectErrorMessage("Too many invalid attempts. Please try again later.")
+                .verify();
+
+        // Locked out: the code is gone and even a correct one is refused
+        assertThat(exists(OTP_PREFIX + "user-1")).isFalse();
+        Duration lockTtl = redisTemplate.getExpire(OTP_LOCK_PREFIX + "user-1").block();
+        assertThat(lockTtl).isPositive().isLessThanOrEqualTo(LOCKOUT);
+        String next = otpService.generateAndStoreOtp("user-1", VALIDITY).block();
+        StepVerifier.create(otpService.validateOtp("user-1", next))
+                .expectErrorMessage("Too many invalid attempts. Please try again later.")
+                .verify();
+    }
+
+    @Test
+    void expiredCodeIsRejected() throws InterruptedException {
+        String code = otpService.generateAndStoreOtp("user-1", Duration.ofMillis(200)).block();
+
+        Thread.sleep(400);
+
+        StepVerifier.create(otpService.validateOtp("user-1", code))
+                .expectErrorMessage("Invalid or expired verification code.")
+                .verify();
+    }
+
+    @Test
+    void blankCodeIsRejectedWithoutTouchingRedis() {
+        StepVerifier.create(otpService.validateOtp("user-1", " "))
+                .expectError(OtpValidationException.class)
+                .verify();
+        assertThat(exists(OTP_ATTEMPTS_PREFIX + "user-1")).isFalse();
+    }
+
+    @Test
+    void concurrentValidationsConsumeTheCodeExactlyOnce() {
+        String code = otpService.generateAndStoreOtp("user-1", VALIDITY).block();
+
+        List<Boolean> results = Flux.range(0, 50)
+                .flatMap(i -> otpService.validateOtp("user-1", code)
+                        .onErrorResume(OtpValidationException.class, e -> Mono.just(false)), 50)
+                .collectList()
+                .block();
+
+        assertThat(results).hasSize(50);
+        assertThat(results).filteredOn(Boolean::booleanValue).hasSize(1);
+    }
+
+    @Test
+    void concurrentWrongCodesNeverExceedMaxAttempts() {
+        String code = otpService.generateAndStoreOtp("user-1", VALIDITY).block();
+
+        List<String> errors = Flux.range(0, 20)
+                .flatMap(i -> otpService.validateOtp("user-1", wrong(code))
+                        .map(String::valueOf)
+                        .onErrorResume(OtpValidationException.class, e -> Mono.just(e.getMessage())), 20)
+                .collectList()
+                .block();
+
+        // Exactly MAX_ATTEMPTS guesses were compared against the code, the rest hit the lock
+        assertThat(errors).filteredOn("Invalid verification code."::equals).hasSize(MAX_ATTEMPTS - 1);
+        assertThat(errors).filteredOn("Too many invalid attempts. Please try again later."::equals)
+                .hasSize(20 - (MAX_ATTEMPTS - 1));
+    }
+
+    private static boolean exists(String key) {
+        return Boolean.TRUE.equals(redisTemplate.hasKey(key).block());
+    }
+
+    private static String wrong(String code) {
+        return code.equals("000000") ? "000001" : "000000";
+    }
+}
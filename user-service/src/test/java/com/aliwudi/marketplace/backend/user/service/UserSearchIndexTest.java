@@ -0,0 +1,146 @@
+package com.aliwudi.marketplace.backend.user.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.aliwudi.marketplace.backend.common.model.User;
+import com.aliwudi.marketplace.backend.user.dto.UserSearchIndexChange;
+import com.aliwudi.marketplace.backend.user.enumeration.UserSearchField;
+import com.aliwudi.marketplace.backend.user.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Sort;
+import reactor.core.publisher.Sinks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * UserSearchIndex against a users table whose load the test controls: writes
+ * made while a rebuild is loading survive it, short terms are looked up
+ * rather than scanned, and writes relayed from other nodes are applied
+ * without being relayed again.
+ */
+class UserSearchIndexTest {
+
+    private UserRepository userRepository;
+    private UserSearchIndex index;
+    private Sinks.Many<User> usersTable;
+
+    @BeforeEach
+    void setUp() {
+        userRepository = mock(UserRepository.class);
+        usersTable = Sinks.many().unicast().onBackpressureBuffer();
+        when(userRepository.findAll()).thenAnswer(invocation -> usersTable.asFlux());
+        index = new UserSearchIndex(userRepository);
+    }
+
+    @Test
+    void upsertDuringRebuildWinsOverTheLoadedRow() throws Exception {
+        CompletableFuture<Void> rebuilt = index.rebuild().toFuture();
+
+        index.upsert(user(1L, "Adaeze", "Okafor")); // Renamed while the old row is being loaded
+        usersTable.tryEmitNext(user(1L, "Ada", "Okafor"));
+        usersTable.tryEmitNext(user(2L, "Chinedu", "Eze"));
+        usersTable.tryEmitComplete();
+        rebuilt.get(10, TimeUnit.SECONDS);
+
+        assertThat(search("adaeze", UserSearchField.FIRST_NAME)).containsExactly(1L);
+        assertThat(search("ada", UserSearchField.FIRST_NAME)).containsExactly(1L);
+        assertThat(search("chinedu", UserSearchField.ALL)).containsExactly(2L);
+    }
+
+    @Test
+    void removeDuringRebuildIsNotBroughtBackByTheLoad() throws Exception {
+        index.upsert(user(3L, "Bola", "Ade"));
+        CompletableFuture<Void> rebuilt = index.rebuild().toFuture();
+
+        usersTable.tryEmitNext(user(3L, "Bola", "Ade")); // Read before the delete
+        index.remove(3L);
+        usersTable.tryEmitNext(user(4L, "Bolaji", "Ade"));
+        usersTable.tryEmitComplete();
+        rebuilt.get(10, TimeUnit.SECONDS);
+
+        assertThat(search("bola", UserSearchField.FIRST_NAME)).containsExactly(4L);
+    }
+
+    @Test
+    void currentIndexServesSearchesAndWritesUntilTheRebuildCompletes() throws Exception {
+        index.upsert(user(5L, "Emeka", "Nwosu"));
+        CompletableFuture<Void> rebuilt = index.rebuild().toFuture();
+
+        usersTable.tryEmitNext(user(5L, "Emeka", "Nwosu"));
+        index.upsert(user(6L, "Emeka", "Obi"));
+
+        assertThat(rebuilt).isNotDone();
+        assertThat(search("emeka", UserSearchField.FIRST_NAME)).containsExactly(5L, 6L);
+
+        usersTable.tryEmitComplete();
+        rebuilt.get(10, TimeUnit.SECONDS);
+        assertThat(search("emeka", UserSearchField.FIRST_NAME)).containsExactly(5L, 6L);
+    }
+
+    @Test
+    void shortTermsMatchAsSubstrings() {
+        index.upsert(user(7L, "Ngozi", "Ng"));
+        index.upsert(user(8L, "Tunde", "Bakare"));
+        index.upsert(user(9L, "Ugo", "Ibe"));
+
+        assertThat(search("ng", UserSearchField.LAST_NAME)).containsExactly(7L);
+        assertThat(search("ng", UserSearchField.FIRST_NAME)).containsExactly(7L);
+        assertThat(search("U", UserSearchField.FIRST_NAME)).containsExactly(8L, 9L);
+        assertThat(search("qz", UserSearchField.ALL)).isEmpty();
+        assertThat(search(" ", UserSearchField.ALL)).containsExactly(7L, 8L, 9L); // Blank matches everyone
+    }
+
+    @Test
+    void idsAreOrderedInTheRequestedDirection() {
+        index.upsert(user(11L, "Kemi", "Ade"));
+        index.upsert(user(10L, "Kemi", "Ojo"));
+
+        assertThat(index.search("kemi", UserSearchField.FIRST_NAME, Sort.Direction.DESC)).containsExactly(11L, 10L);
+    }
+
+    @Test
+    void localWritesAreRelayedAndRelayedOnesAreNot() {
+        List<String> relayed = new ArrayList<>();
+        index.setWriteListener(new UserSearchIndex.WriteListener() {
+            @Override
+            public void onUserUpserted(User user) {
+                relayed.add("upsert " + user.getId());
+            }
+
+            @Override
+            public void onUserRemoved(Long userId) {
+                relayed.add("remove " + userId);
+            }
+        });
+
+        index.upsert(user(12L, "Ifeoma", "Uche"));
+        index.remove(12L);
+        index.apply(UserSearchIndexChange.upserted(user(13L, "Musa", "Bello")));
+        index.apply(UserSearchIndexChange.upserted(user(14L, "Musa", "Ali")));
+        index.apply(UserSearchIndexChange.deleted(14L));
+
+        assertThat(relayed).containsExactly("upsert 12", "remove 12");
+        assertThat(search("musa", UserSearchField.FIRST_NAME)).containsExactly(13L);
+    }
+
+    private List<Long> search(String term, UserSearchField field) {
+        return index.search(term, field, Sort.Direction.ASC);
+    }
+
+    private static User user(Long id, String firstName, String lastName) {
+        return User.builder()
+                .id(id)
+                .firstName(firstName)
+                .lastName(lastName)
+                .email(firstName.toLowerCase() + "." + lastName.toLowerCase() + "@example.com")
+                .phoneNumber("+23480" + id)
+                .shippingAddress(id + " Marina Road, Lagos")
+                .build();
+    }
+}